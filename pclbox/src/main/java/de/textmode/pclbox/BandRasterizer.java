@@ -0,0 +1,916 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@link BandRasterizer} is a {@link PrinterCommandHandler} that renders the raster graphics and the
+ * rectangular area fills (rules and patterns, <code>&lt;esc&gt;*c#A/B/H/V/G/P</code>) of a PCL data stream
+ * into a {@link PageBitmap} with one bit per pixel.
+ *
+ * <p>While the PCL data stream is parsed, the {@link BandRasterizer} tracks the cursor position and records
+ * the graphics of the current page in a display list. If the page is ejected, the page is split into
+ * horizontal bands that are rendered concurrently by an {@link ExecutorService}. The rendered
+ * {@link PageBitmap} is passed to a {@link PageBitmapHandler}. The {@link PageBitmap} objects and their
+ * (off-heap) buffers are reused for subsequent pages.
+ *
+ * <p>Text is not rendered (fonts are not rasterized) but moves the cursor using the current HMI. User-defined
+ * patterns are rendered as solid fills. Color raster graphics are rendered black wherever a bit is set in
+ * any plane.
+ *
+ * <p>A page is ejected by a form feed or - if the page has been marked - by the commands "Printer Reset",
+ * "Page Size", "Paper Source", "Page Length", "Orientation" and the "Universal Exit Language" command. A page
+ * that has been marked but not yet ejected is ejected by {@link #close()}.
+ */
+public final class BandRasterizer implements PrinterCommandHandler, Closeable {
+
+    private static final int DEFAULT_RESOLUTION = 300;
+    private static final int DEFAULT_BAND_HEIGHT = 128;
+    private static final int MAX_POOLED_BITMAPS = 2;
+    private static final double DECIPOINTS_PER_INCH = 720.0;
+
+    private static final int OP_RULE = 1;
+    private static final int OP_RASTER = 2;
+    private static final int OP_SIZE = 8;
+
+    private static final int FILL_ERASE = 1;
+    private static final int FILL_SHADING = 2;
+    private static final int FILL_CROSS_HATCH = 3;
+
+    private static final byte[] SOLID_PATTERN = {-1, -1, -1, -1, -1, -1, -1, -1};
+    private static final byte[][] SHADING_PATTERNS = createShadingPatterns();
+    private static final byte[][] CROSS_HATCH_PATTERNS = createCrossHatchPatterns();
+
+    private final PageBitmapHandler pageHandler;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int resolution;
+    private final int bandHeight;
+    private final RasterDecoder rasterDecoder;
+    private final ArrayDeque<PageBitmap> pool = new ArrayDeque<>();
+
+    private int[] ops = new int[OP_SIZE * 256];
+    private int opCount;
+    private byte[] rasterData = new byte[64 * 1024];
+    private int rasterDataLength;
+
+    private int pageNumber;
+    private boolean marked;
+    private int pageSize;
+    private int orientation;
+    private double unitsPerInch;
+    private double hmi;
+    private double vmi;
+    private double topMargin;
+    private double cursorX;
+    private double cursorY;
+    private double ruleWidth;
+    private double ruleHeight;
+    private int patternId;
+    private int rasterResolution;
+    private double rasterX;
+    private double rasterY;
+    private int rasterRows;
+
+    /**
+     * Constructor of the {@link BandRasterizer}. The pages are rendered with 300 dpi by an own
+     * {@link ExecutorService} that uses one thread per available processor. The {@link ExecutorService} is
+     * shut down by {@link #close()}.
+     *
+     * @param pageHandler   the {@link PageBitmapHandler} that is invoked for every rendered page.
+     */
+    public BandRasterizer(final PageBitmapHandler pageHandler) {
+        this(pageHandler, createExecutor(), true, DEFAULT_RESOLUTION);
+    }
+
+    /**
+     * Constructor of the {@link BandRasterizer}. The given {@link ExecutorService} is not shut down by
+     * {@link #close()}.
+     *
+     * @param pageHandler   the {@link PageBitmapHandler} that is invoked for every rendered page.
+     * @param executor   the {@link ExecutorService} that renders the bands of a page.
+     * @param resolution   the resolution of the rendered pages in dots per inch.
+     */
+    public BandRasterizer(
+            final PageBitmapHandler pageHandler,
+            final ExecutorService executor,
+            final int resolution) {
+
+        this(pageHandler, executor, false, resolution);
+    }
+
+    private BandRasterizer(
+            final PageBitmapHandler pageHandler,
+            final ExecutorService executor,
+            final boolean ownExecutor,
+            final int resolution) {
+
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Invalid resolution " + resolution);
+        }
+
+        this.pageHandler = pageHandler;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.resolution = resolution;
+        this.bandHeight = DEFAULT_BAND_HEIGHT;
+        this.rasterDecoder = new RasterDecoder(this::addRasterRow, this::processCommand);
+        this.reset();
+    }
+
+    /**
+     * Returns the number of pages that have been rendered so far.
+     *
+     * @return the number of rendered pages.
+     */
+    public int getPageCount() {
+        return this.pageNumber;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        this.rasterDecoder.handlePrinterCommand(command);
+    }
+
+    /**
+     * Ejects the current page if it has been marked. If the {@link BandRasterizer} has created its own
+     * {@link ExecutorService}, the {@link ExecutorService} is shut down.
+     *
+     * @throws IOException if the {@link PageBitmapHandler} throws an {@link IOException}.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (this.marked) {
+                this.ejectPage();
+            }
+        } finally {
+            if (this.ownExecutor) {
+                this.executor.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Processes a {@link PrinterCommand}. This is invoked by the {@link RasterDecoder} before the
+     * {@link RasterDecoder} processes the {@link PrinterCommand} itself.
+     */
+    private void processCommand(final PrinterCommand command) throws IOException {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getValue());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                this.process(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getValue(ix));
+            }
+
+        } else if (command instanceof TextCommand) {
+            this.marked = true;
+            this.cursorX += this.decipointsToDots(this.hmi) * ((TextCommand) command).text.length;
+
+        } else if (command instanceof ControlCharacterCommand) {
+            this.processControlCharacter(((ControlCharacterCommand) command).getControlCharacter());
+
+        } else if (command instanceof TwoBytePclCommand
+                && ((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+            this.ejectPageIfMarked();
+            this.reset();
+        }
+    }
+
+    /**
+     * Processes a control character.
+     */
+    private void processControlCharacter(final int controlCharacter) throws IOException {
+        switch (controlCharacter) {
+        case ControlCharacterCommand.BACKSPACE:
+            this.cursorX = Math.max(0, this.cursorX - this.decipointsToDots(this.hmi));
+            break;
+        case ControlCharacterCommand.LINE_FEED:
+            this.cursorY += this.decipointsToDots(this.vmi);
+            break;
+        case ControlCharacterCommand.FORM_FEED:
+            this.ejectPage();
+            break;
+        case ControlCharacterCommand.CARRIAGE_RETURN:
+            this.cursorX = 0;
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value) throws IOException {
+
+        final double number = ParameterizedPclCommand.toDouble(value);
+        final boolean relative = value.startsWith("+") || value.startsWith("-");
+
+        if (parameterizedCharacter == '*') {
+            if (groupCharacter == 'p') {
+                if (terminationCharacter == 'X') {
+                    this.cursorX = this.moveCursor(this.cursorX, this.unitsToDots(number), relative);
+                } else if (terminationCharacter == 'Y') {
+                    this.cursorY = this.moveCursor(this.cursorY, this.unitsToDots(number), relative);
+                }
+            } else if (groupCharacter == 'c') {
+                this.processRectangle(terminationCharacter, number);
+            } else if (groupCharacter == 't' && terminationCharacter == 'R') {
+                if (number > 0 && !this.rasterDecoder.isGraphicsActive()) {
+                    this.rasterResolution = (int) number;
+                }
+            } else if (groupCharacter == 'r') {
+                if (terminationCharacter == 'A' && !this.rasterDecoder.isGraphicsActive()) {
+                    this.startRasterGraphics(number == 1 || number == 3);
+                } else if ((terminationCharacter == 'B' || terminationCharacter == 'C')
+                        && this.rasterDecoder.isGraphicsActive()) {
+                    this.endRasterGraphics();
+                }
+            } else if (groupCharacter == 'b' && !this.rasterDecoder.isGraphicsActive()
+                    && (terminationCharacter == 'W' || terminationCharacter == 'V' || terminationCharacter == 'Y')) {
+                // Implicit start of raster graphics at the left edge of the logical page
+                this.startRasterGraphics(false);
+            }
+        } else if (parameterizedCharacter == '&') {
+            if (groupCharacter == 'a') {
+                this.processCursorPosition(terminationCharacter, number, relative);
+            } else if (groupCharacter == 'l') {
+                this.processPageControl(terminationCharacter, number);
+            } else if (groupCharacter == 'u' && terminationCharacter == 'D') {
+                if (number > 0) {
+                    this.unitsPerInch = number;
+                }
+            } else if (groupCharacter == 'k' && terminationCharacter == 'H') {
+                this.hmi = Math.max(0, number * 6);
+            }
+        } else if (parameterizedCharacter == '%' && groupCharacter == 0 && terminationCharacter == 'X') {
+            // Universal Exit Language
+            this.ejectPageIfMarked();
+        }
+    }
+
+    /**
+     * Processes the cursor positioning commands <code>&lt;esc&gt;&amp;a#H/V/C/R</code>.
+     */
+    private void processCursorPosition(final int terminationCharacter, final double number, final boolean relative) {
+        switch (terminationCharacter) {
+        case 'H':
+            this.cursorX = this.moveCursor(this.cursorX, this.decipointsToDots(number), relative);
+            break;
+        case 'V':
+            this.cursorY = this.moveCursor(this.cursorY, this.decipointsToDots(number), relative);
+            break;
+        case 'C':
+            this.cursorX = this.moveCursor(this.cursorX, this.decipointsToDots(number * this.hmi), relative);
+            break;
+        case 'R':
+            if (relative) {
+                this.cursorY = Math.max(0, this.cursorY + this.decipointsToDots(number * this.vmi));
+            } else {
+                this.cursorY = this.decipointsToDots(this.topMargin + (number + 0.75) * this.vmi);
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes the page control commands <code>&lt;esc&gt;&amp;l#...</code>.
+     */
+    private void processPageControl(final int terminationCharacter, final double number) throws IOException {
+        switch (terminationCharacter) {
+        case 'A':
+            this.ejectPageIfMarked();
+            if (PageSizes.isKnown((int) number)) {
+                this.pageSize = (int) number;
+            }
+            this.homeCursor();
+            break;
+        case 'O':
+            this.ejectPageIfMarked();
+            this.orientation = (int) number;
+            this.homeCursor();
+            break;
+        case 'H':
+        case 'P':
+            this.ejectPageIfMarked();
+            this.homeCursor();
+            break;
+        case 'C':
+            this.vmi = Math.max(0, number * 15);
+            break;
+        case 'D':
+            if (number > 0) {
+                this.vmi = DECIPOINTS_PER_INCH / number;
+            }
+            break;
+        case 'E':
+            this.topMargin = Math.max(0, number * this.vmi);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes the rectangular area fill commands <code>&lt;esc&gt;*c#A/B/H/V/G/P</code>.
+     */
+    private void processRectangle(final int terminationCharacter, final double number) {
+        switch (terminationCharacter) {
+        case 'A':
+            this.ruleWidth = Math.max(0, this.unitsToDots(number));
+            break;
+        case 'B':
+            this.ruleHeight = Math.max(0, this.unitsToDots(number));
+            break;
+        case 'H':
+            this.ruleWidth = Math.max(0, this.decipointsToDots(number));
+            break;
+        case 'V':
+            this.ruleHeight = Math.max(0, this.decipointsToDots(number));
+            break;
+        case 'G':
+            this.patternId = (int) number;
+            break;
+        case 'P':
+            this.addRule((int) number);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Adds a rectangular area fill at the current cursor position to the display list.
+     */
+    private void addRule(final int fillType) {
+        final int x = (int) Math.round(this.cursorX);
+        final int y = (int) Math.round(this.cursorY);
+        final int width = (int) Math.round(this.cursorX + this.ruleWidth) - x;
+        final int height = (int) Math.round(this.cursorY + this.ruleHeight) - y;
+
+        this.marked = true;
+        if (width > 0 && height > 0) {
+            final int op = this.addOp(OP_RULE, x, y, width, height);
+            this.ops[op + 5] = fillType;
+            this.ops[op + 6] = this.patternId;
+        }
+    }
+
+    /**
+     * Starts raster graphics at the current vertical cursor position.
+     */
+    private void startRasterGraphics(final boolean atCursor) {
+        this.rasterX = atCursor ? this.cursorX : 0;
+        this.rasterY = this.cursorY;
+        this.rasterRows = 0;
+    }
+
+    /**
+     * Ends raster graphics. The cursor is moved to the left graphics margin below the last raster row.
+     */
+    private void endRasterGraphics() {
+        this.cursorX = this.rasterX;
+        this.cursorY = this.rasterY + this.rasterRows * this.getRasterScale();
+    }
+
+    /**
+     * Adds a decoded raster row to the display list. The planes of the raster row are merged.
+     */
+    private void addRasterRow(final RasterRow row) {
+        this.marked = true;
+        this.rasterRows = Math.max(this.rasterRows, row.getRowIndex() + 1);
+
+        final int length = row.getLength();
+        this.ensureRasterData(length);
+
+        final int dataOffset = this.rasterDataLength;
+        final byte[] data = this.rasterData;
+        int merged = 0;
+        System.arraycopy(row.getPlane(0), 0, data, dataOffset, length);
+        for (int plane = 1; plane < row.getPlaneCount(); ++plane) {
+            final byte[] bytes = row.getPlane(plane);
+            for (int i = 0; i < length; ++i) {
+                data[dataOffset + i] |= bytes[i];
+            }
+        }
+        for (int i = 0; i < length; ++i) {
+            merged |= data[dataOffset + i];
+        }
+
+        if (merged == 0) {
+            return; // blank rows do not need to be rendered
+        }
+
+        final double scale = this.getRasterScale();
+        final int top = (int) (this.rasterY + row.getRowIndex() * scale);
+        final int bottom = (int) (this.rasterY + (row.getRowIndex() + 1) * scale);
+
+        final int x = (int) Math.round(this.rasterX);
+        final int op = this.addOp(OP_RASTER, x, top, length * 8, Math.max(1, bottom - top));
+        this.ops[op + 5] = dataOffset;
+        this.ops[op + 6] = length;
+        this.ops[op + 7] = this.rasterResolution;
+        this.rasterDataLength += length;
+    }
+
+    /**
+     * Appends an entry to the display list and returns its index within the array of the display list.
+     */
+    private int addOp(final int type, final int x, final int y, final int width, final int height) {
+        final int op = this.opCount * OP_SIZE;
+        if (op + OP_SIZE > this.ops.length) {
+            final int[] newOps = new int[this.ops.length * 2];
+            System.arraycopy(this.ops, 0, newOps, 0, op);
+            this.ops = newOps;
+        }
+
+        this.ops[op] = type;
+        this.ops[op + 1] = x;
+        this.ops[op + 2] = y;
+        this.ops[op + 3] = width;
+        this.ops[op + 4] = height;
+        ++this.opCount;
+        return op;
+    }
+
+    /**
+     * Ensures that the buffer for the raster data can take the given number of additional bytes.
+     */
+    private void ensureRasterData(final int length) {
+        final int required = this.rasterDataLength + length;
+        if (required > this.rasterData.length) {
+            final byte[] newData = new byte[Math.max(required, this.rasterData.length * 2)];
+            System.arraycopy(this.rasterData, 0, newData, 0, this.rasterDataLength);
+            this.rasterData = newData;
+        }
+    }
+
+    /**
+     * Ejects the current page if it has been marked.
+     */
+    private void ejectPageIfMarked() throws IOException {
+        if (this.marked) {
+            this.ejectPage();
+        }
+    }
+
+    /**
+     * Renders the current page and passes it to the {@link PageBitmapHandler}. The display list is cleared
+     * afterwards and the cursor is moved to the top of the next page.
+     */
+    private void ejectPage() throws IOException {
+        final boolean landscape = (this.orientation & 1) != 0;
+        final int portraitWidth = (int) Math.round(this.decipointsToDots(PageSizes.getWidth(this.pageSize)));
+        final int portraitHeight = (int) Math.round(this.decipointsToDots(PageSizes.getHeight(this.pageSize)));
+
+        final PageBitmap bitmap = this.acquireBitmap(
+                landscape ? portraitHeight : portraitWidth,
+                landscape ? portraitWidth : portraitHeight);
+
+        bitmap.pageNumber = ++this.pageNumber;
+
+        try {
+            this.render(bitmap);
+            this.pageHandler.handlePageBitmap(bitmap);
+        } finally {
+            this.releaseBitmap(bitmap);
+            this.opCount = 0;
+            this.rasterDataLength = 0;
+            this.marked = false;
+            this.cursorY = this.getHomeY();
+        }
+    }
+
+    /**
+     * Renders the display list into the given {@link PageBitmap}. Every band is rendered by its own task.
+     */
+    private void render(final PageBitmap bitmap) throws IOException {
+        final List<Callable<Void>> tasks = new ArrayList<>();
+        for (int top = 0; top < bitmap.height; top += this.bandHeight) {
+            final int bandTop = top;
+            final int bandBottom = Math.min(bitmap.height, top + this.bandHeight);
+            tasks.add(() -> {
+                this.renderBand(bitmap, bandTop, bandBottom);
+                return null;
+            });
+        }
+
+        try {
+            for (final Future<Void> future : this.executor.invokeAll(tasks)) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Rendering of page " + bitmap.pageNumber + " has been interrupted");
+        } catch (final ExecutionException e) {
+            throw new IOException("Rendering of page " + bitmap.pageNumber + " failed", e.getCause());
+        }
+    }
+
+    /**
+     * Renders all entries of the display list that intersect the given band.
+     */
+    private void renderBand(final PageBitmap bitmap, final int top, final int bottom) {
+        final ByteBuffer buffer = bitmap.getRenderBuffer();
+        final int bytesPerLine = bitmap.bytesPerLine;
+
+        clear(buffer, top * bytesPerLine, bottom * bytesPerLine);
+
+        final int end = this.opCount * OP_SIZE;
+        for (int op = 0; op < end; op += OP_SIZE) {
+            final int y = this.ops[op + 2];
+            final int from = Math.max(top, y);
+            final int to = Math.min(bottom, y + this.ops[op + 4]);
+            if (from >= to) {
+                continue;
+            }
+
+            if (this.ops[op] == OP_RULE) {
+                this.renderRule(bitmap, op, from, to);
+            } else {
+                this.renderRasterRow(bitmap, op, from, to);
+            }
+        }
+
+        // The padding bits at the end of every line must not be set
+        final int padding = bytesPerLine * 8 - bitmap.width;
+        if (padding > 0) {
+            final int mask = 0xFF << padding;
+            for (int line = top; line < bottom; ++line) {
+                final int index = line * bytesPerLine + bytesPerLine - 1;
+                buffer.put(index, (byte) (buffer.get(index) & mask));
+            }
+        }
+    }
+
+    /**
+     * Renders a rectangular area fill.
+     */
+    private void renderRule(final PageBitmap bitmap, final int op, final int from, final int to) {
+        final ByteBuffer buffer = bitmap.getRenderBuffer();
+        final int x0 = Math.max(0, this.ops[op + 1]);
+        final int x1 = Math.min(bitmap.width, this.ops[op + 1] + this.ops[op + 3]);
+        final int fillType = this.ops[op + 5];
+        final boolean erase = fillType == FILL_ERASE;
+        final byte[] pattern = getPattern(fillType, this.ops[op + 6]);
+
+        for (int line = from; line < to; ++line) {
+            fillSpan(buffer, line * bitmap.bytesPerLine, x0, x1, pattern[line & 7] & 0xFF, erase);
+        }
+    }
+
+    /**
+     * Renders a raster row. If the resolution of the raster graphics equals the resolution of the
+     * {@link PageBitmap} and the raster row starts within the page, the bytes of the raster row are
+     * combined with the {@link PageBitmap} directly. Otherwise the raster row is scaled.
+     */
+    private void renderRasterRow(final PageBitmap bitmap, final int op, final int from, final int to) {
+        final ByteBuffer buffer = bitmap.getRenderBuffer();
+        final int x = this.ops[op + 1];
+        final int dataOffset = this.ops[op + 5];
+        final int length = this.ops[op + 6];
+        final byte[] data = this.rasterData;
+
+        if (this.ops[op + 7] == this.resolution && x >= 0) {
+            final int shift = x & 7;
+            for (int line = from; line < to; ++line) {
+                final int lineStart = line * bitmap.bytesPerLine;
+                final int lastIndex = lineStart + bitmap.bytesPerLine - 1;
+                final int start = lineStart + (x >> 3);
+                for (int i = 0; i < length && start + i <= lastIndex; ++i) {
+                    final int value = data[dataOffset + i] & 0xFF;
+                    if (value != 0) {
+                        final int index = start + i;
+                        orByte(buffer, index, value >>> shift);
+                        if (shift != 0 && index < lastIndex) {
+                            orByte(buffer, index + 1, (value << (8 - shift)) & 0xFF);
+                        }
+                    }
+                }
+            }
+            return;
+        }
+
+        final double scale = (double) this.resolution / this.ops[op + 7];
+        final int pixels = length * 8;
+        int i = 0;
+        while (i < pixels) {
+            if ((data[dataOffset + (i >> 3)] & (0x80 >>> (i & 7))) == 0) {
+                i += (i & 7) == 0 && data[dataOffset + (i >> 3)] == 0 ? 8 : 1;
+                continue;
+            }
+
+            int j = i + 1;
+            while (j < pixels && (data[dataOffset + (j >> 3)] & (0x80 >>> (j & 7))) != 0) {
+                ++j;
+            }
+
+            final int x0 = x + (int) (i * scale);
+            final int x1 = Math.min(bitmap.width, Math.max(x0 + 1, x + (int) (j * scale)));
+            for (int line = from; line < to; ++line) {
+                fillSpan(buffer, line * bitmap.bytesPerLine, Math.max(0, x0), x1, 0xFF, false);
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * Sets (or clears) the pixels x0 (inclusive) to x1 (exclusive) of a line using the given pattern byte.
+     */
+    private static void fillSpan(
+            final ByteBuffer buffer,
+            final int lineStart,
+            final int x0,
+            final int x1,
+            final int pattern,
+            final boolean erase) {
+
+        if (x0 >= x1) {
+            return;
+        }
+
+        final int first = lineStart + (x0 >> 3);
+        final int last = lineStart + ((x1 - 1) >> 3);
+        final int firstMask = 0xFF >>> (x0 & 7);
+        final int lastMask = (0xFF << (7 - ((x1 - 1) & 7))) & 0xFF;
+
+        if (first == last) {
+            applyMask(buffer, first, firstMask & lastMask, pattern, erase);
+        } else {
+            applyMask(buffer, first, firstMask, pattern, erase);
+            for (int index = first + 1; index < last; ++index) {
+                applyMask(buffer, index, 0xFF, pattern, erase);
+            }
+            applyMask(buffer, last, lastMask, pattern, erase);
+        }
+    }
+
+    private static void applyMask(
+            final ByteBuffer buffer,
+            final int index,
+            final int mask,
+            final int pattern,
+            final boolean erase) {
+
+        if (erase) {
+            buffer.put(index, (byte) (buffer.get(index) & ~mask));
+        } else {
+            orByte(buffer, index, mask & pattern);
+        }
+    }
+
+    private static void orByte(final ByteBuffer buffer, final int index, final int value) {
+        buffer.put(index, (byte) (buffer.get(index) | value));
+    }
+
+    /**
+     * Clears the bytes from (inclusive) to (exclusive) of the buffer.
+     */
+    private static void clear(final ByteBuffer buffer, final int from, final int to) {
+        int index = from;
+        while (index + 8 <= to) {
+            buffer.putLong(index, 0L);
+            index += 8;
+        }
+        while (index < to) {
+            buffer.put(index++, (byte) 0x00);
+        }
+    }
+
+    /**
+     * Returns a pooled {@link PageBitmap} with the given dimensions or allocates a new one.
+     */
+    private PageBitmap acquireBitmap(final int width, final int height) {
+        final int bytesPerLine = (width + 7) / 8;
+        final int capacity = bytesPerLine * height;
+
+        PageBitmap bitmap = null;
+        for (final PageBitmap pooled : this.pool) {
+            if (pooled.getCapacity() >= capacity) {
+                bitmap = pooled;
+                break;
+            }
+        }
+
+        if (bitmap != null) {
+            this.pool.remove(bitmap);
+        } else {
+            bitmap = new PageBitmap(capacity);
+        }
+
+        bitmap.width = width;
+        bitmap.height = height;
+        bitmap.bytesPerLine = bytesPerLine;
+        bitmap.resolution = this.resolution;
+        return bitmap;
+    }
+
+    /**
+     * Returns the {@link PageBitmap} to the pool.
+     */
+    private void releaseBitmap(final PageBitmap bitmap) {
+        if (this.pool.size() < MAX_POOLED_BITMAPS) {
+            this.pool.push(bitmap);
+        }
+    }
+
+    /**
+     * Resets the {@link BandRasterizer} to the default values (i. e. after a "Printer Reset" command).
+     */
+    private void reset() {
+        this.pageSize = PageSizes.DEFAULT_PAGE_SIZE;
+        this.orientation = 0;
+        this.unitsPerInch = 300;
+        this.hmi = 72;
+        this.vmi = 120;
+        this.topMargin = 360;
+        this.ruleWidth = 0;
+        this.ruleHeight = 0;
+        this.patternId = 0;
+        this.rasterResolution = 75;
+        this.homeCursor();
+    }
+
+    private void homeCursor() {
+        this.cursorX = 0;
+        this.cursorY = this.getHomeY();
+    }
+
+    /**
+     * Returns the vertical cursor position of the first line of a page (in dots).
+     */
+    private double getHomeY() {
+        return this.decipointsToDots(this.topMargin + 0.75 * this.vmi);
+    }
+
+    private double getRasterScale() {
+        return (double) this.resolution / this.rasterResolution;
+    }
+
+    private double moveCursor(final double position, final double distance, final boolean relative) {
+        return Math.max(0, relative ? position + distance : distance);
+    }
+
+    private double unitsToDots(final double units) {
+        return units * this.resolution / this.unitsPerInch;
+    }
+
+    private double decipointsToDots(final double decipoints) {
+        return decipoints * this.resolution / DECIPOINTS_PER_INCH;
+    }
+
+    /**
+     * Returns the pattern for the given fill type and pattern id. Every byte of the pattern is one line of
+     * an 8x8 pixel pattern. User-defined patterns are not supported, so a solid pattern is returned for them.
+     */
+    private static byte[] getPattern(final int fillType, final int patternId) {
+        if (fillType == FILL_SHADING) {
+            return SHADING_PATTERNS[Math.max(0, Math.min(100, patternId))];
+        } else if (fillType == FILL_CROSS_HATCH) {
+            return patternId >= 1 && patternId <= 6 ? CROSS_HATCH_PATTERNS[patternId] : SOLID_PATTERN;
+        } else {
+            return SOLID_PATTERN;
+        }
+    }
+
+    /**
+     * Returns the fraction of the pixels (0.0 to 1.0) that are set by a rectangular area fill with the given
+     * fill type and pattern id. An erase fill sets no pixels.
+     *
+     * @param fillType   the value of the PCL command "Fill Rectangular Area".
+     * @param patternId   the current pattern id.
+     *
+     * @return the fraction of the pixels that are set.
+     */
+    static double getPatternDensity(final int fillType, final int patternId) {
+        if (fillType == FILL_ERASE) {
+            return 0.0;
+        }
+
+        int count = 0;
+        for (final byte line : getPattern(fillType, patternId)) {
+            count += Integer.bitCount(line & 0xFF);
+        }
+        return count / 64.0;
+    }
+
+    /**
+     * Creates the shading patterns for the gray levels 0 to 100 (percent) using an ordered dither. The gray
+     * levels are grouped like a printer does (2%, 10%, 15%, 30%, 45%, 70%, 90% and 100%).
+     */
+    private static byte[][] createShadingPatterns() {
+        final int[] bayer = {
+            0, 32, 8, 40, 2, 34, 10, 42,
+            48, 16, 56, 24, 50, 18, 58, 26,
+            12, 44, 4, 36, 14, 46, 6, 38,
+            60, 28, 52, 20, 62, 30, 54, 22,
+            3, 35, 11, 43, 1, 33, 9, 41,
+            51, 19, 59, 27, 49, 17, 57, 25,
+            15, 47, 7, 39, 13, 45, 5, 37,
+            63, 31, 55, 23, 61, 29, 53, 21,
+        };
+
+        final byte[][] result = new byte[101][8];
+        for (int id = 1; id <= 100; ++id) {
+            final int percent;
+            if (id <= 2) {
+                percent = 2;
+            } else if (id <= 10) {
+                percent = 10;
+            } else if (id <= 20) {
+                percent = 15;
+            } else if (id <= 35) {
+                percent = 30;
+            } else if (id <= 55) {
+                percent = 45;
+            } else if (id <= 80) {
+                percent = 70;
+            } else if (id <= 99) {
+                percent = 90;
+            } else {
+                percent = 100;
+            }
+
+            final int level = Math.max(1, Math.round(percent * 64 / 100.0f));
+            for (int y = 0; y < 8; ++y) {
+                int line = 0;
+                for (int x = 0; x < 8; ++x) {
+                    if (bayer[y * 8 + x] < level) {
+                        line |= 0x80 >>> x;
+                    }
+                }
+                result[id][y] = (byte) line;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the six predefined cross-hatch patterns (index 1 to 6).
+     */
+    private static byte[][] createCrossHatchPatterns() {
+        final byte[][] result = new byte[7][8];
+        for (int y = 0; y < 8; ++y) {
+            result[1][y] = (byte) (y == 0 ? 0xFF : 0x00);           // horizontal lines
+            result[2][y] = (byte) 0x80;                             // vertical lines
+            result[3][y] = (byte) (0x01 << y);                      // diagonal lines (lower left to upper right)
+            result[4][y] = (byte) (0x80 >>> y);                     // diagonal lines (upper left to lower right)
+            result[5][y] = (byte) (y == 0 ? 0xFF : 0x80);           // square grid
+            result[6][y] = (byte) ((0x01 << y) | (0x80 >>> y));     // diagonal grid
+        }
+        return result;
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), runnable -> {
+            final Thread thread = new Thread(runnable, "pclbox-rasterizer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link CancellationToken} can be passed to a {@link PclParser} to stop the parsing from another
+ * thread. The {@link PclParser} checks the token at every command boundary and returns a partial
+ * {@link PclParseResult} if the token has been cancelled.
+ *
+ * <p>A {@link CancellationToken} can be shared by multiple {@link PclParser} instances (i. e. all
+ * parsers working on the same job).
+ */
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    /**
+     * Requests the cancellation. Parsers that use this token will stop at the next command boundary.
+     */
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Returns true if the cancellation has been requested.
+     *
+     * @return true if the cancellation has been requested.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+}
@@ -0,0 +1,483 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The {@link ColorRasterDecoder} is a {@link PrinterCommandHandler} that decodes color raster graphics. It uses a
+ * {@link RasterDecoder} to decompress the raster rows and merges the planes of every row into a
+ * {@link ColorScanline} that is passed to a {@link ColorScanlineHandler}. All {@link PrinterCommand} objects are
+ * passed to an optional {@link PrinterCommandHandler}, so the {@link ColorRasterDecoder} can be placed in front
+ * of another {@link PrinterCommandHandler}.
+ *
+ * <p>The {@link ColorRasterDecoder} interprets the following PCL commands:
+ * <ul>
+ * <li><code>&lt;esc&gt;*r#U</code> - Simple Color (monochrome, RGB or CMY palette).</li>
+ * <li><code>&lt;esc&gt;*v#W</code> - Configure Image Data (short form). All four pixel encoding modes (indexed
+ * by plane, indexed by pixel, direct by plane and direct by pixel) are supported. Direct by pixel honors the
+ * number of bits per primary (1 to 16), direct by plane always uses one bit per primary. Color spaces other than
+ * RGB and CMY are treated as RGB.</li>
+ * <li><code>&lt;esc&gt;*v#A</code>, <code>&lt;esc&gt;*v#B</code>, <code>&lt;esc&gt;*v#C</code> and
+ * <code>&lt;esc&gt;*v#I</code> - Color Components and Assign Color Index.</li>
+ * <li><code>&lt;esc&gt;*p#P</code> - Push/Pop Palette.</li>
+ * </ul>
+ *
+ * <p>The palette is kept as a lookup table of RGB values (<code>0xRRGGBB</code>). Indexed raster rows are
+ * delivered as palette indices, direct raster rows as RGB values.
+ */
+public final class ColorRasterDecoder implements PrinterCommandHandler {
+
+    private static final int RGB = 0;
+    private static final int CMY = 1;
+
+    private static final int INDEXED_BY_PLANE = 0;
+    private static final int INDEXED_BY_PIXEL = 1;
+    private static final int DIRECT_BY_PLANE = 2;
+    private static final int DIRECT_BY_PIXEL = 3;
+
+    private static final int WHITE = 0xFFFFFF;
+    private static final int BLACK = 0x000000;
+
+    private static final int[] MONOCHROME_PALETTE = {WHITE, BLACK};
+    private static final int[] RGB_PALETTE = {
+        BLACK, 0xFF0000, 0x00FF00, 0xFFFF00, 0x0000FF, 0xFF00FF, 0x00FFFF, WHITE,
+    };
+    private static final int[] CMY_PALETTE = {
+        WHITE, 0x00FFFF, 0xFF00FF, 0x0000FF, 0xFFFF00, 0x00FF00, 0xFF0000, BLACK,
+    };
+
+    private final ColorScanlineHandler scanlineHandler;
+    private final PrinterCommandHandler nextHandler;
+    private final RasterDecoder rasterDecoder;
+    private final ColorScanline scanline = new ColorScanline();
+    private final ArrayDeque<int[]> paletteStack = new ArrayDeque<>();
+    private final int[] bitsPerPrimary = new int[3];
+    private final double[] colorComponents = new double[3];
+
+    private int colorSpace;
+    private int pixelEncodingMode;
+    private int bitsPerIndex;
+    private int[] palette;
+
+    /**
+     * Constructor of the {@link ColorRasterDecoder}.
+     *
+     * @param scanlineHandler   the {@link ColorScanlineHandler} that is invoked for every decoded raster row.
+     */
+    public ColorRasterDecoder(final ColorScanlineHandler scanlineHandler) {
+        this(scanlineHandler, null);
+    }
+
+    /**
+     * Constructor of the {@link ColorRasterDecoder}.
+     *
+     * @param scanlineHandler   the {@link ColorScanlineHandler} that is invoked for every decoded raster row.
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public ColorRasterDecoder(final ColorScanlineHandler scanlineHandler, final PrinterCommandHandler nextHandler) {
+        this.scanlineHandler = scanlineHandler;
+        this.nextHandler = nextHandler;
+        this.rasterDecoder = new RasterDecoder(this::convertRow, this::processCommand);
+        this.reset();
+    }
+
+    /**
+     * Returns the number of entries of the current palette.
+     *
+     * @return the number of entries of the current palette.
+     */
+    public int getPaletteSize() {
+        return this.palette.length;
+    }
+
+    /**
+     * Returns the color of the palette entry with the given index as an RGB value (<code>0xRRGGBB</code>).
+     *
+     * @param index   the index of the palette entry.
+     *
+     * @return the color of the palette entry.
+     */
+    public int getPaletteColor(final int index) {
+        return this.palette[index];
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        this.rasterDecoder.handlePrinterCommand(command);
+    }
+
+    /**
+     * Processes a {@link PrinterCommand}. This is invoked by the {@link RasterDecoder} before the
+     * {@link RasterDecoder} processes the {@link PrinterCommand} itself.
+     */
+    private void processCommand(final PrinterCommand command) throws IOException {
+        if (this.nextHandler != null) {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getValue(),
+                    pc.getDataSectionWithoutCopy());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            final int last = cc.getCommandCount() - 1;
+            for (int ix = 0; ix <= last; ++ix) {
+                this.process(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getValue(ix),
+                        ix == last ? cc.getDataSectionWithoutCopy() : null);
+            }
+
+        } else if (command instanceof TwoBytePclCommand
+                && ((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+            this.reset();
+        }
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value,
+            final byte[] data) {
+
+        if (parameterizedCharacter != '*') {
+            return;
+        }
+
+        if (groupCharacter == 'v') {
+            switch (terminationCharacter) {
+            case 'W':
+                if (!this.rasterDecoder.isGraphicsActive()) {
+                    this.configureImageData(data);
+                }
+                break;
+            case 'A':
+            case 'B':
+            case 'C':
+                this.colorComponents[terminationCharacter - 'A'] = ParameterizedPclCommand.toDouble(value);
+                break;
+            case 'I':
+                this.assignColorIndex(ParameterizedPclCommand.toInt(value));
+                break;
+            default:
+                break;
+            }
+        } else if (groupCharacter == 'r' && terminationCharacter == 'U') {
+            if (!this.rasterDecoder.isGraphicsActive()) {
+                this.selectSimpleColor(ParameterizedPclCommand.toInt(value));
+            }
+        } else if (groupCharacter == 'p' && terminationCharacter == 'P') {
+            final int operation = ParameterizedPclCommand.toInt(value);
+            if (operation == 0) {
+                this.paletteStack.push(this.palette.clone());
+            } else if (operation == 1 && !this.paletteStack.isEmpty()) {
+                this.palette = this.paletteStack.pop();
+            }
+        }
+    }
+
+    /**
+     * Handles the PCL command "Simple Color". The {@link RasterDecoder} sets the number of planes itself.
+     */
+    private void selectSimpleColor(final int mode) {
+        if (mode == 3 || mode == -3) {
+            this.colorSpace = mode == 3 ? RGB : CMY;
+            this.bitsPerIndex = 3;
+            this.palette = (mode == 3 ? RGB_PALETTE : CMY_PALETTE).clone();
+        } else {
+            this.colorSpace = RGB;
+            this.bitsPerIndex = 1;
+            this.palette = MONOCHROME_PALETTE.clone();
+        }
+
+        this.pixelEncodingMode = INDEXED_BY_PLANE;
+        Arrays.fill(this.bitsPerPrimary, 8);
+        this.rasterDecoder.setBitsPerPixel(1);
+    }
+
+    /**
+     * Handles the PCL command "Configure Image Data". Only the first six bytes (the short form) are interpreted.
+     */
+    private void configureImageData(final byte[] data) {
+        if (data == null || data.length < 6) {
+            return;
+        }
+
+        final int space = data[0] & 0xFF;
+        final int mode = data[1] & 0xFF;
+        final int indexBits = data[2] & 0xFF;
+        if (mode > DIRECT_BY_PIXEL || (mode <= INDEXED_BY_PIXEL && (indexBits < 1 || indexBits > 8))) {
+            return;
+        }
+
+        this.colorSpace = space == CMY ? CMY : RGB;
+        this.pixelEncodingMode = mode;
+        this.bitsPerIndex = indexBits;
+        for (int ix = 0; ix < 3; ++ix) {
+            this.bitsPerPrimary[ix] = Math.max(1, Math.min(16, data[3 + ix] & 0xFF));
+        }
+
+        switch (mode) {
+        case INDEXED_BY_PLANE:
+            this.rasterDecoder.setPlanesPerRow(indexBits);
+            this.rasterDecoder.setBitsPerPixel(1);
+            break;
+        case INDEXED_BY_PIXEL:
+            this.rasterDecoder.setPlanesPerRow(1);
+            this.rasterDecoder.setBitsPerPixel(indexBits);
+            break;
+        case DIRECT_BY_PLANE:
+            this.rasterDecoder.setPlanesPerRow(3);
+            this.rasterDecoder.setBitsPerPixel(1);
+            break;
+        default:
+            this.rasterDecoder.setPlanesPerRow(1);
+            this.rasterDecoder.setBitsPerPixel(this.getBitsPerDirectPixel());
+            break;
+        }
+
+        this.palette = this.createDefaultPalette();
+    }
+
+    /**
+     * Returns the number of bits of a pixel in the direct by pixel mode (the sum of the bits per primary).
+     */
+    private int getBitsPerDirectPixel() {
+        return this.bitsPerPrimary[0] + this.bitsPerPrimary[1] + this.bitsPerPrimary[2];
+    }
+
+    /**
+     * Creates the default palette for the current color space and number of bits per index. The first
+     * entries are the primary colors of the color space, all other entries are black.
+     */
+    private int[] createDefaultPalette() {
+        if (this.pixelEncodingMode >= DIRECT_BY_PLANE) {
+            return MONOCHROME_PALETTE.clone();
+        }
+
+        if (this.bitsPerIndex == 1) {
+            return MONOCHROME_PALETTE.clone();
+        }
+
+        final int[] result = new int[1 << this.bitsPerIndex];
+        final int[] primaries = this.colorSpace == CMY ? CMY_PALETTE : RGB_PALETTE;
+        System.arraycopy(primaries, 0, result, 0, Math.min(primaries.length, result.length));
+        return result;
+    }
+
+    /**
+     * Handles the PCL command "Assign Color Index". The color components are reset afterwards.
+     */
+    private void assignColorIndex(final int index) {
+        if (index >= 0 && index < this.palette.length) {
+            int rgb = 0;
+            for (int ix = 0; ix < 3; ++ix) {
+                final double max = (1 << this.bitsPerPrimary[ix]) - 1;
+                int component = (int) Math.round(this.colorComponents[ix] * 255 / max);
+                component = Math.max(0, Math.min(255, component));
+                if (this.colorSpace == CMY) {
+                    component = 255 - component;
+                }
+                rgb = (rgb << 8) | component;
+            }
+            this.palette[index] = rgb;
+        }
+
+        Arrays.fill(this.colorComponents, 0);
+    }
+
+    /**
+     * Merges the planes of a decoded {@link RasterRow} and passes the resulting {@link ColorScanline} to the
+     * {@link ColorScanlineHandler}.
+     */
+    private void convertRow(final RasterRow row) throws IOException {
+        final int bitsPerPixel;
+        switch (this.pixelEncodingMode) {
+        case INDEXED_BY_PIXEL:
+            bitsPerPixel = this.bitsPerIndex;
+            break;
+        case DIRECT_BY_PIXEL:
+            bitsPerPixel = this.getBitsPerDirectPixel();
+            break;
+        default:
+            bitsPerPixel = 1;
+            break;
+        }
+
+        final int available = (int) ((long) row.getLength() * 8 / bitsPerPixel);
+        final int rasterWidth = this.rasterDecoder.getRasterWidth();
+        final int width = rasterWidth > 0 ? Math.min(rasterWidth, available) : available;
+        final boolean indexed = this.pixelEncodingMode <= INDEXED_BY_PIXEL;
+
+        final int size = indexed ? width : width * 3;
+        if (this.scanline.data.length < size) {
+            this.scanline.data = new byte[Math.max(size, this.scanline.data.length * 2)];
+        }
+
+        switch (this.pixelEncodingMode) {
+        case INDEXED_BY_PLANE:
+            this.mergeIndexedByPlane(row, width);
+            break;
+        case INDEXED_BY_PIXEL:
+            this.extractIndexedByPixel(row.getPlane(0), width);
+            break;
+        case DIRECT_BY_PLANE:
+            this.mergeDirectByPlane(row, width);
+            break;
+        default:
+            this.copyDirectByPixel(row.getPlane(0), width);
+            break;
+        }
+
+        this.scanline.offset = row.getOffset();
+        this.scanline.rowIndex = row.getRowIndex();
+        this.scanline.width = width;
+        this.scanline.indexed = indexed;
+        this.scanline.palette = this.palette;
+        this.scanlineHandler.handleScanline(this.scanline);
+    }
+
+    /**
+     * Merges the planes of a row into palette indices. The first plane is the least significant bit.
+     */
+    private void mergeIndexedByPlane(final RasterRow row, final int width) {
+        final byte[] out = this.scanline.data;
+        Arrays.fill(out, 0, width, (byte) 0x00);
+
+        final int planes = Math.min(row.getPlaneCount(), this.bitsPerIndex);
+        for (int plane = 0; plane < planes; ++plane) {
+            final byte[] bits = row.getPlane(plane);
+            final int bit = 1 << plane;
+            for (int x = 0; x < width; x += 8) {
+                final int value = bits[x >> 3] & 0xFF;
+                if (value == 0) {
+                    continue;
+                }
+
+                final int end = Math.min(width, x + 8);
+                for (int px = x; px < end; ++px) {
+                    if ((value & (0x80 >>> (px - x))) != 0) {
+                        out[px] |= bit;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Extracts the palette indices of a row that contains one index with {@link #bitsPerIndex} bits per pixel.
+     */
+    private void extractIndexedByPixel(final byte[] bits, final int width) {
+        final byte[] out = this.scanline.data;
+        final int indexBits = this.bitsPerIndex;
+        final int mask = (1 << indexBits) - 1;
+
+        long bitPos = 0;
+        for (int x = 0; x < width; ++x) {
+            final int pos = (int) (bitPos >> 3);
+            final int shift = 16 - indexBits - (int) (bitPos & 7);
+            final int next = pos + 1 < bits.length ? bits[pos + 1] & 0xFF : 0;
+            final int word = ((bits[pos] & 0xFF) << 8) | next;
+            out[x] = (byte) ((word >>> shift) & mask);
+            bitPos += indexBits;
+        }
+    }
+
+    /**
+     * Merges the red, green and blue planes of a row (one bit per pixel and plane) into RGB values.
+     */
+    private void mergeDirectByPlane(final RasterRow row, final int width) {
+        final byte[] out = this.scanline.data;
+        final boolean invert = this.colorSpace == CMY;
+
+        for (int plane = 0; plane < 3; ++plane) {
+            final byte[] bits = plane < row.getPlaneCount() ? row.getPlane(plane) : null;
+            for (int x = 0; x < width; ++x) {
+                final boolean set = bits != null && (bits[x >> 3] & (0x80 >>> (x & 7))) != 0;
+                out[x * 3 + plane] = (byte) (set != invert ? 0xFF : 0x00);
+            }
+        }
+    }
+
+    /**
+     * Copies the RGB values of a row that contains one value per primary with {@link #bitsPerPrimary} bits. Values
+     * with other than eight bits are scaled to eight bits.
+     */
+    private void copyDirectByPixel(final byte[] bytes, final int width) {
+        final byte[] out = this.scanline.data;
+        final int length = width * 3;
+        if (this.bitsPerPrimary[0] != 8 || this.bitsPerPrimary[1] != 8 || this.bitsPerPrimary[2] != 8) {
+            this.unpackDirectByPixel(bytes, length);
+        } else if (this.colorSpace == CMY) {
+            for (int ix = 0; ix < length; ++ix) {
+                out[ix] = (byte) ~bytes[ix];
+            }
+        } else {
+            System.arraycopy(bytes, 0, out, 0, length);
+        }
+    }
+
+    /**
+     * Extracts the values of the primaries of a row bit by bit and scales them to eight bits.
+     */
+    private void unpackDirectByPixel(final byte[] bytes, final int length) {
+        final byte[] out = this.scanline.data;
+        final boolean invert = this.colorSpace == CMY;
+
+        long bitPos = 0;
+        for (int ix = 0; ix < length; ++ix) {
+            final int bits = this.bitsPerPrimary[ix % 3];
+            final int pos = (int) (bitPos >> 3);
+            int word = 0;
+            for (int b = 0; b < 3; ++b) {
+                word = (word << 8) | (pos + b < bytes.length ? bytes[pos + b] & 0xFF : 0);
+            }
+
+            final int max = (1 << bits) - 1;
+            final int value = (word >>> (24 - bits - (int) (bitPos & 7))) & max;
+            final int component = (value * 255 + max / 2) / max;
+            out[ix] = (byte) (invert ? 255 - component : component);
+            bitPos += bits;
+        }
+    }
+
+    /**
+     * Resets the {@link ColorRasterDecoder} to the default values (i. e. after a "Printer Reset" command).
+     */
+    private void reset() {
+        this.paletteStack.clear();
+        Arrays.fill(this.colorComponents, 0);
+        this.selectSimpleColor(1);
+    }
+}
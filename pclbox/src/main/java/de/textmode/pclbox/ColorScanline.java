@@ -0,0 +1,134 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * A {@link ColorScanline} contains a decoded raster row of color raster graphics. The planes of the raster row
+ * have already been merged, so the {@link ColorScanline} contains one value per pixel:
+ * <ul>
+ * <li>an indexed {@link ColorScanline} contains one byte per pixel, the index into the current palette.</li>
+ * <li>an RGB {@link ColorScanline} contains three bytes per pixel (red, green and blue).</li>
+ * </ul>
+ * The {@link ColorScanline} and its buffer are reused by the {@link ColorRasterDecoder} for every row.
+ */
+public final class ColorScanline {
+
+    long offset;
+    int rowIndex;
+    int width;
+    boolean indexed;
+    byte[] data = new byte[0];
+    int[] palette;
+
+    /**
+     * Constructor. Only the {@link ColorRasterDecoder} creates {@link ColorScanline} objects.
+     */
+    ColorScanline() {
+    }
+
+    /**
+     * Gets the offset of the PCL command that has transferred the (last plane of the) raster row, measured
+     * from the beginning of the read data stream.
+     *
+     * @return the offset of the PCL command that has transferred the raster row.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the index of the row, measured from the "Start Raster Graphics" command.
+     *
+     * @return the index of the row.
+     */
+    public int getRowIndex() {
+        return this.rowIndex;
+    }
+
+    /**
+     * Gets the number of pixels of the scanline.
+     *
+     * @return the number of pixels of the scanline.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns true if the scanline contains palette indices, false if it contains RGB values.
+     *
+     * @return true if the scanline contains palette indices.
+     */
+    public boolean isIndexed() {
+        return this.indexed;
+    }
+
+    /**
+     * Gets the buffer of the scanline. It contains {@link #getWidth()} bytes if the scanline is indexed and
+     * <code>3 * getWidth()</code> bytes (red, green, blue) otherwise. The buffer may be larger and must not
+     * be modified.
+     *
+     * @return the buffer of the scanline.
+     */
+    public byte[] getData() {
+        return this.data;
+    }
+
+    /**
+     * Gets the palette index of the given pixel.
+     *
+     * @param x   index of the pixel.
+     *
+     * @return the palette index of the pixel.
+     *
+     * @throws IllegalStateException if the scanline is not indexed.
+     */
+    public int getIndex(final int x) {
+        if (!this.indexed) {
+            throw new IllegalStateException("The scanline does not contain palette indices");
+        }
+
+        return this.data[this.checkPixel(x)] & 0xFF;
+    }
+
+    /**
+     * Gets the color of the given pixel as an RGB value (<code>0xRRGGBB</code>). The color of an indexed pixel
+     * is looked up in the palette that has been active when the row has been transferred.
+     *
+     * @param x   index of the pixel.
+     *
+     * @return the color of the pixel.
+     */
+    public int getRgb(final int x) {
+        final int pixel = this.checkPixel(x);
+        if (this.indexed) {
+            final int index = this.data[pixel] & 0xFF;
+            return index < this.palette.length ? this.palette[index] : 0x000000;
+        }
+
+        final int pos = pixel * 3;
+        return ((this.data[pos] & 0xFF) << 16) | ((this.data[pos + 1] & 0xFF) << 8) | (this.data[pos + 2] & 0xFF);
+    }
+
+    private int checkPixel(final int x) {
+        if (x < 0 || x >= this.width) {
+            throw new IndexOutOfBoundsException("Invalid pixel index " + x);
+        }
+        return x;
+    }
+}
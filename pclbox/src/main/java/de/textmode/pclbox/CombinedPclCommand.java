@@ -0,0 +1,391 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The {@link CombinedPclCommand} is a {@link Pcl5Command} that represents a complete PCL sequence like
+ * "<code>&lt;esc&gt;&amp;l1o2a0E</code>". The parameterized character and the group character, which are
+ * shared by all commands of the sequence, are stored only once. The values and termination characters of
+ * the commands are stored as compact arrays.
+ *
+ * <p>A {@link CombinedPclCommand} is only delivered by the {@link PclParser} if this has been requested
+ * with {@link PclParser#setCombineSequences(boolean)}. Sequences that contain just one command are
+ * always delivered as a {@link ParameterizedPclCommand}.
+ */
+public final class CombinedPclCommand extends Pcl5Command {
+
+    private final int parameterizedCharacter;
+    private final int groupCharacter;
+    private final String[] values;
+    private final int[] terminationCharacters;
+    private final byte[] dataSection;
+
+    /**
+     * Constructor of a {@link CombinedPclCommand}.
+     *
+     * @param offset   position within the data stream
+     * @param parameterizedCharacter   the parameterized character of the PCL sequence (ASCII range 33 to 47)
+     * @param groupCharacter   the group character of the PCL sequence (ASCII range 96 to 126) or 0 if the
+     *     PCL sequence does not contain a group character.
+     * @param values   the value strings of the commands, exactly as read from the data stream (may be empty)
+     * @param terminationCharacters   the termination characters of the commands (ASCII range 64 to 94)
+     * @param dataSection   some binary data that belongs to the last PCL command of the sequence or
+     *     <code>null</code> if the last PCL command does not have a data section.
+     */
+    public CombinedPclCommand(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final String[] values,
+            final int[] terminationCharacters,
+            final byte[] dataSection) {
+
+        this(offset, parameterizedCharacter, groupCharacter, values, terminationCharacters, dataSection, true);
+    }
+
+    /**
+     * Constructor of a {@link CombinedPclCommand} that is used if the arrays have just been created (i. e. by
+     * the {@link Pcl5Parser}, the {@link PclCompactor} or the {@link RedundantCommandFilter}). The data section
+     * may also be shared with another command, because no command ever modifies its data section.
+     *
+     * @param offset   position within the data stream
+     * @param parameterizedCharacter   the parameterized character of the PCL sequence (ASCII range 33 to 47)
+     * @param groupCharacter   the group character of the PCL sequence (ASCII range 96 to 126) or 0 if the
+     *     PCL sequence does not contain a group character.
+     * @param values   the value strings of the commands, exactly as read from the data stream (may be empty)
+     * @param terminationCharacters   the termination characters of the commands (ASCII range 64 to 94)
+     * @param dataSection   some binary data that belongs to the last PCL command of the sequence or
+     *     <code>null</code> if the last PCL command does not have a data section.
+     * @param copyArrays   false if the {@link CombinedPclCommand} takes ownership of the arrays
+     */
+    CombinedPclCommand(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final String[] values,
+            final int[] terminationCharacters,
+            final byte[] dataSection,
+            final boolean copyArrays) {
+
+        super(offset);
+
+        if (values.length != terminationCharacters.length) {
+            throw new IllegalArgumentException("The number of values and termination characters differ");
+        }
+
+        this.parameterizedCharacter = parameterizedCharacter;
+        this.groupCharacter = groupCharacter;
+
+        if (copyArrays) {
+            this.values = values.clone();
+            this.terminationCharacters = terminationCharacters.clone();
+            this.dataSection = dataSection == null ? null : dataSection.clone();
+        } else {
+            this.values = values;
+            this.terminationCharacters = terminationCharacters;
+            this.dataSection = dataSection;
+        }
+    }
+
+    /**
+     * Gets the parameterized character that is shared by all PCL commands of the sequence.
+     *
+     * @return the parameterized character
+     */
+    public int getParameterizedCharacter() {
+        return this.parameterizedCharacter;
+    }
+
+    /**
+     * Returns the group character that is shared by all PCL commands of the sequence or 0 if the
+     * PCL sequence does not contain a group character.
+     *
+     * @return the group character or 0 if the PCL sequence does not contain a group character.
+     */
+    public int getGroupCharacter() {
+        return this.groupCharacter;
+    }
+
+    /**
+     * Returns the number of PCL commands in the sequence.
+     *
+     * @return the number of PCL commands in the sequence.
+     */
+    public int getCommandCount() {
+        return this.values.length;
+    }
+
+    /**
+     * Gets the value string of the PCL command with the given index. If the value has been omitted in
+     * the data stream, "0" is returned (just like {@link ParameterizedPclCommand#getValue()} does).
+     *
+     * @param index   index of the PCL command within the sequence.
+     *
+     * @return the value (as a string).
+     */
+    public String getValue(final int index) {
+        return this.values[index].isEmpty() ? "0" : this.values[index];
+    }
+
+    /**
+     * Gets the value string of the PCL command with the given index exactly as read from the data stream
+     * (which may be empty).
+     *
+     * @param index   index of the PCL command within the sequence.
+     *
+     * @return the value (as a string).
+     */
+    String getRawValue(final int index) {
+        return this.values[index];
+    }
+
+    /**
+     * Gets the value of the PCL command with the given index as an integer. Decimal places are truncated.
+     * If the value is not a valid number, 0 is returned.
+     *
+     * @param index   index of the PCL command within the sequence.
+     *
+     * @return the value (as an integer).
+     */
+    public int getIntValue(final int index) {
+        return ParameterizedPclCommand.toInt(this.values[index]);
+    }
+
+    /**
+     * Returns the termination character (ASCII range 64 to 94) of the PCL command with the given index.
+     *
+     * @param index   index of the PCL command within the sequence.
+     *
+     * @return the termination character
+     */
+    public int getTerminationCharacter(final int index) {
+        return this.terminationCharacters[index];
+    }
+
+    /**
+     * Gets the offset of the PCL command with the given index, measured from the beginning of the read
+     * data stream. The offset of the first command is the offset of the escape byte.
+     *
+     * @param index   index of the PCL command within the sequence.
+     *
+     * @return the offset of the PCL command.
+     */
+    public long getCommandOffset(final int index) {
+        if (index < 0 || index >= this.values.length) {
+            throw new IndexOutOfBoundsException("Invalid command index " + index);
+        }
+
+        long result = this.getOffset();
+        if (index > 0) {
+            result += this.getPrefixLength();
+        }
+
+        for (int i = 0; i < index; ++i) {
+            result += this.values[i].length() + 1;
+        }
+
+        return result;
+    }
+
+    /**
+     * Gets the data section of the last PCL command of the sequence if this command contains such a data section.
+     *
+     * @return the data section or <code>null</code> if the last PCL command does not contain a data section.
+     */
+    public byte[] getDataSection() {
+        return this.dataSection == null ? null : this.dataSection.clone();
+    }
+
+    /**
+     * Gets the data section of the last PCL command without copying it. The returned array must not be modified.
+     *
+     * @return the data section or <code>null</code> if the last PCL command does not contain a data section.
+     */
+    byte[] getDataSectionWithoutCopy() {
+        return this.dataSection;
+    }
+
+    /**
+     * Returns the PCL command with the given index as a {@link ParameterizedPclCommand}.
+     *
+     * @param index   index of the PCL command within the sequence.
+     *
+     * @return the PCL command as a {@link ParameterizedPclCommand}.
+     */
+    public ParameterizedPclCommand getCommand(final int index) {
+        return new ParameterizedPclCommand(
+                this.getCommandOffset(index),
+                this.parameterizedCharacter,
+                this.groupCharacter,
+                this.values[index],
+                this.terminationCharacters[index],
+                index == this.values.length - 1 ? this.dataSection : null,
+                false);
+    }
+
+    /**
+     * Splits the sequence into multiple {@link ParameterizedPclCommand} objects. These are the same
+     * commands the {@link PclParser} delivers if the delivery of combined sequences is disabled.
+     *
+     * @return a {@link List} with all PCL commands of the sequence.
+     */
+    public List<ParameterizedPclCommand> toParameterizedPclCommands() {
+        final List<ParameterizedPclCommand> result = new ArrayList<>(this.values.length);
+        for (int ix = 0; ix < this.values.length; ++ix) {
+            result.add(this.getCommand(ix));
+        }
+        return result;
+    }
+
+    @Override
+    public String getTextualDescription() {
+        final StringBuilder sb = new StringBuilder();
+        for (int ix = 0; ix < this.values.length; ++ix) {
+            if (ix > 0) {
+                sb.append(", ");
+            }
+            sb.append(this.getCommand(ix).getTextualDescription());
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void accept(PrinterCommandVisitor visitor) throws IOException {
+        visitor.handle(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.values)
+                ^ Arrays.hashCode(this.terminationCharacters)
+                ^ this.getParameterizedCharacter()
+                ^ this.getGroupCharacter()
+                ^ this.getOffsetHash()
+                ^ Arrays.hashCode(this.dataSection); //do not use the getter - the getter clones!
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof CombinedPclCommand) {
+            final CombinedPclCommand o = (CombinedPclCommand) other;
+            return Arrays.equals(o.values, this.values)
+                    && Arrays.equals(o.terminationCharacters, this.terminationCharacters)
+                    && o.getParameterizedCharacter() == this.getParameterizedCharacter()
+                    && o.getGroupCharacter() == this.getGroupCharacter()
+                    && o.getOffset() == this.getOffset()
+                    && Arrays.equals(o.dataSection, this.dataSection); //do not use the getter - the getter clones!
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "<esc>" + this.toDisplayString() + "@" + this.getOffset();
+    }
+
+    @Override
+    public String toCommandString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append((char) this.getParameterizedCharacter());
+
+        if (this.getGroupCharacter() != 0x00) {
+            sb.append((char) this.getGroupCharacter());
+        }
+
+        for (final int terminationCharacter : this.terminationCharacters) {
+            sb.append((char) terminationCharacter);
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public String toDisplayString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append((char) this.getParameterizedCharacter());
+
+        if (this.getGroupCharacter() != 0x00) {
+            sb.append((char) this.getGroupCharacter());
+        }
+
+        final int last = this.values.length - 1;
+        for (int ix = 0; ix <= last; ++ix) {
+            sb.append(this.values[ix]);
+
+            // All but the last termination character are written as parameter characters (lower case)...
+            sb.append((char) (ix == last ? this.terminationCharacters[ix] : this.terminationCharacters[ix] + 32));
+        }
+
+        return sb.toString();
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        final int last = this.values.length - 1;
+
+        int resultSize = this.getPrefixLength() + (this.dataSection != null ? this.dataSection.length : 0);
+        for (final String value : this.values) {
+            resultSize += value.length() + 1;
+        }
+
+        final byte[] result = new byte[resultSize];
+        int pos = 0;
+
+        result[pos++] = 0x1B;
+        result[pos++] = (byte) this.getParameterizedCharacter();
+        if (this.getGroupCharacter() != 0x00) {
+            result[pos++] = (byte) this.getGroupCharacter();
+        }
+
+        for (int ix = 0; ix <= last; ++ix) {
+            final String value = this.values[ix];
+            for (int i = 0; i < value.length(); ++i) {
+                result[pos++] = (byte) value.charAt(i);
+            }
+
+            result[pos++] = (byte) (ix == last ? this.terminationCharacters[ix] : this.terminationCharacters[ix] + 32);
+        }
+
+        if (this.dataSection != null) {
+            System.arraycopy(this.dataSection, 0, result, pos, this.dataSection.length);
+        }
+
+        return result;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.toByteArray());
+    }
+
+    /**
+     * Returns the number of bytes that preceed the value of the first command (escape byte, parameterized
+     * character and - if present - the group character).
+     *
+     * @return the number of bytes that preceed the value of the first command.
+     */
+    private int getPrefixLength() {
+        return this.getGroupCharacter() != 0x00 ? 3 : 2;
+    }
+}
@@ -0,0 +1,342 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The {@link CoverageAnalyzer} is a {@link PrinterCommandHandler} that estimates the toner/ink coverage of every
+ * page of a PCL data stream. It counts the set pixels of the decoded raster graphics and adds the area of the
+ * rectangular area fills (<code>&lt;esc&gt;*c#P</code>). The result of every page is passed as a
+ * {@link PageCoverage} to a {@link PageCoverageHandler}.
+ *
+ * <p>The set pixels are counted with {@link Long#bitCount(long)} over 64-bit words of the raster rows. Rows that
+ * are identical to the previous row (see {@link RasterRow#isUnchanged()}) are not counted again. Text is not
+ * counted.
+ *
+ * <p>A page ends with a form feed or - if the page has been marked - with the commands "Printer Reset",
+ * "Page Size", "Paper Source", "Page Length", "Orientation" and the "Universal Exit Language" command. A page
+ * that has been marked but not yet ended is reported by {@link #finish()}.
+ */
+public final class CoverageAnalyzer implements PrinterCommandHandler {
+
+    private static final double DECIPOINTS_PER_INCH = 720.0;
+
+    private final PageCoverageHandler coverageHandler;
+    private final RasterDecoder rasterDecoder;
+
+    private ByteBuffer[] planeWords = new ByteBuffer[0];
+    private long[] rowPlanePixels = new long[1];
+    private long rowPixels;
+
+    private int pageNumber;
+    private boolean marked;
+    private double rasterArea;
+    private double ruleArea;
+    private long rasterPixels;
+    private double[] planeAreas = new double[0];
+
+    private int pageSize;
+    private double unitsPerInch;
+    private double ruleWidth;
+    private double ruleHeight;
+    private int patternId;
+    private int rasterResolution;
+
+    /**
+     * Constructor of the {@link CoverageAnalyzer}.
+     *
+     * @param coverageHandler   the {@link PageCoverageHandler} that is invoked for every page.
+     */
+    public CoverageAnalyzer(final PageCoverageHandler coverageHandler) {
+        this.coverageHandler = coverageHandler;
+        this.rasterDecoder = new RasterDecoder(this::countRow, this::processCommand);
+        this.reset();
+    }
+
+    /**
+     * Returns the number of pages that have been reported so far.
+     *
+     * @return the number of reported pages.
+     */
+    public int getPageCount() {
+        return this.pageNumber;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        this.rasterDecoder.handlePrinterCommand(command);
+    }
+
+    /**
+     * Reports the current page if it has been marked. This should be invoked after the PCL data stream has
+     * been parsed.
+     *
+     * @throws IOException if the {@link PageCoverageHandler} throws an {@link IOException}.
+     */
+    public void finish() throws IOException {
+        this.endPageIfMarked();
+    }
+
+    /**
+     * Processes a {@link PrinterCommand}. This is invoked by the {@link RasterDecoder} before the
+     * {@link RasterDecoder} processes the {@link PrinterCommand} itself.
+     */
+    private void processCommand(final PrinterCommand command) throws IOException {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getValue());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                this.process(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getValue(ix));
+            }
+
+        } else if (command instanceof TextCommand) {
+            this.marked = true;
+
+        } else if (command instanceof ControlCharacterCommand) {
+            if (((ControlCharacterCommand) command).getControlCharacter() == ControlCharacterCommand.FORM_FEED) {
+                this.endPage();
+            }
+
+        } else if (command instanceof TwoBytePclCommand
+                && ((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+            this.endPageIfMarked();
+            this.reset();
+        }
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value) throws IOException {
+
+        if (parameterizedCharacter == '*') {
+            if (groupCharacter == 'c') {
+                this.processRectangle(terminationCharacter, ParameterizedPclCommand.toDouble(value));
+            } else if (groupCharacter == 't' && terminationCharacter == 'R') {
+                final int resolution = ParameterizedPclCommand.toInt(value);
+                if (resolution > 0 && !this.rasterDecoder.isGraphicsActive()) {
+                    this.rasterResolution = resolution;
+                }
+            }
+        } else if (parameterizedCharacter == '&') {
+            if (groupCharacter == 'l') {
+                switch (terminationCharacter) {
+                case 'A':
+                    this.endPageIfMarked();
+                    final int size = ParameterizedPclCommand.toInt(value);
+                    if (PageSizes.isKnown(size)) {
+                        this.pageSize = size;
+                    }
+                    break;
+                case 'O':
+                case 'H':
+                case 'P':
+                    this.endPageIfMarked();
+                    break;
+                default:
+                    break;
+                }
+            } else if (groupCharacter == 'u' && terminationCharacter == 'D') {
+                final double units = ParameterizedPclCommand.toDouble(value);
+                if (units > 0) {
+                    this.unitsPerInch = units;
+                }
+            }
+        } else if (parameterizedCharacter == '%' && groupCharacter == 0 && terminationCharacter == 'X') {
+            // Universal Exit Language
+            this.endPageIfMarked();
+        }
+    }
+
+    /**
+     * Processes the rectangular area fill commands <code>&lt;esc&gt;*c#A/B/H/V/G/P</code>.
+     */
+    private void processRectangle(final int terminationCharacter, final double number) {
+        switch (terminationCharacter) {
+        case 'A':
+            this.ruleWidth = Math.max(0, number / this.unitsPerInch);
+            break;
+        case 'B':
+            this.ruleHeight = Math.max(0, number / this.unitsPerInch);
+            break;
+        case 'H':
+            this.ruleWidth = Math.max(0, number / DECIPOINTS_PER_INCH);
+            break;
+        case 'V':
+            this.ruleHeight = Math.max(0, number / DECIPOINTS_PER_INCH);
+            break;
+        case 'G':
+            this.patternId = (int) number;
+            break;
+        case 'P':
+            this.marked = true;
+            this.ruleArea += this.ruleWidth * this.ruleHeight
+                    * BandRasterizer.getPatternDensity((int) number, this.patternId);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Counts the set pixels of a decoded raster row. The counts of the previous row are reused if the row
+     * has not changed.
+     */
+    private void countRow(final RasterRow row) {
+        this.marked = true;
+
+        final int planes = row.getPlaneCount();
+        if (!row.isUnchanged() || this.rowPlanePixels.length != planes) {
+            this.countPixels(row);
+        }
+
+        final double pixelArea = 1.0 / ((double) this.rasterResolution * this.rasterResolution);
+        if (this.planeAreas.length < planes) {
+            this.planeAreas = Arrays.copyOf(this.planeAreas, planes);
+        }
+
+        for (int plane = 0; plane < planes; ++plane) {
+            this.planeAreas[plane] += this.rowPlanePixels[plane] * pixelArea;
+        }
+        this.rasterPixels += this.rowPixels;
+        this.rasterArea += this.rowPixels * pixelArea;
+    }
+
+    /**
+     * Counts the set pixels of every plane and the pixels that are set in any plane.
+     */
+    private void countPixels(final RasterRow row) {
+        final int planes = row.getPlaneCount();
+        final int length = row.getLength();
+
+        if (this.rowPlanePixels.length != planes) {
+            this.rowPlanePixels = new long[planes];
+        } else {
+            Arrays.fill(this.rowPlanePixels, 0);
+        }
+
+        final ByteBuffer[] words = this.getPlaneWords(row);
+        final int wordEnd = length & ~7;
+        long total = 0;
+
+        for (int pos = 0; pos < wordEnd; pos += 8) {
+            long any = 0;
+            for (int plane = 0; plane < planes; ++plane) {
+                final long word = words[plane].getLong(pos);
+                this.rowPlanePixels[plane] += Long.bitCount(word);
+                any |= word;
+            }
+            total += Long.bitCount(any);
+        }
+
+        for (int pos = wordEnd; pos < length; ++pos) {
+            int any = 0;
+            for (int plane = 0; plane < planes; ++plane) {
+                final int value = row.getPlane(plane)[pos] & 0xFF;
+                this.rowPlanePixels[plane] += Integer.bitCount(value);
+                any |= value;
+            }
+            total += Integer.bitCount(any);
+        }
+
+        this.rowPixels = total;
+    }
+
+    /**
+     * Returns a {@link ByteBuffer} for every plane of the row that wraps the plane buffer. The
+     * {@link ByteBuffer} objects are only created again if the {@link RasterDecoder} has enlarged the buffers.
+     */
+    private ByteBuffer[] getPlaneWords(final RasterRow row) {
+        final int planes = row.getPlaneCount();
+        if (this.planeWords.length < planes) {
+            this.planeWords = Arrays.copyOf(this.planeWords, planes);
+        }
+
+        for (int plane = 0; plane < planes; ++plane) {
+            final byte[] buffer = row.getPlane(plane);
+            if (this.planeWords[plane] == null || this.planeWords[plane].array() != buffer) {
+                this.planeWords[plane] = ByteBuffer.wrap(buffer);
+            }
+        }
+        return this.planeWords;
+    }
+
+    /**
+     * Ends the current page if it has been marked.
+     */
+    private void endPageIfMarked() throws IOException {
+        if (this.marked) {
+            this.endPage();
+        }
+    }
+
+    /**
+     * Passes the {@link PageCoverage} of the current page to the {@link PageCoverageHandler} and clears
+     * the counters.
+     */
+    private void endPage() throws IOException {
+        final double pageArea = PageSizes.getWidth(this.pageSize) * (double) PageSizes.getHeight(this.pageSize)
+                / (DECIPOINTS_PER_INCH * DECIPOINTS_PER_INCH);
+
+        final PageCoverage coverage = new PageCoverage(
+                ++this.pageNumber,
+                pageArea,
+                this.rasterArea,
+                this.ruleArea,
+                this.rasterPixels,
+                this.planeAreas.clone());
+
+        this.marked = false;
+        this.rasterArea = 0;
+        this.ruleArea = 0;
+        this.rasterPixels = 0;
+        Arrays.fill(this.planeAreas, 0);
+
+        this.coverageHandler.handlePageCoverage(coverage);
+    }
+
+    /**
+     * Resets the {@link CoverageAnalyzer} to the default values (i. e. after a "Printer Reset" command).
+     */
+    private void reset() {
+        this.pageSize = PageSizes.DEFAULT_PAGE_SIZE;
+        this.unitsPerInch = 300;
+        this.ruleWidth = 0;
+        this.ruleHeight = 0;
+        this.patternId = 0;
+        this.rasterResolution = 75;
+    }
+}
@@ -0,0 +1,73 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link DataSectionFilter} tells the {@link PclParser} which data sections (raster data, fonts, macros and so
+ * on) are needed by the {@link PrinterCommandHandler}. Data sections that are not needed are skipped with
+ * {@link PclInputStream#seek(long)} instead of being read, so a {@link PrinterCommandHandler} that only looks at
+ * some commands (i. e. a search) does not pay for copying the data sections. See
+ * {@link PclParser#setDataSectionFilter(DataSectionFilter)}.
+ */
+public interface DataSectionFilter {
+
+    /**
+     * A {@link DataSectionFilter} that reads all data sections and the data of all foreign languages, which is
+     * needed if the parsed commands are written again (i. e. with a {@link PclWriter}).
+     */
+    DataSectionFilter READ_ALL = new DataSectionFilter() {
+        @Override
+        public boolean isDataSectionRequired(
+                final int parameterizedCharacter,
+                final int groupCharacter,
+                final int terminationCharacter) {
+            return true;
+        }
+
+        @Override
+        public boolean isForeignLanguageDataRequired(final String language) {
+            return true;
+        }
+    };
+
+    /**
+     * Returns true if the data section of the given PCL command is needed.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL command.
+     * @param groupCharacter   the group character of the PCL command or 0 if the PCL command does not contain
+     *     a group character.
+     * @param terminationCharacter   the termination character of the PCL command.
+     *
+     * @return true if the data section has to be read, false if it can be skipped.
+     */
+    boolean isDataSectionRequired(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter);
+
+    /**
+     * Returns true if the data of the given foreign language (see {@link ForeignLanguageCommand}) is needed.
+     * By default, a {@link DataSectionFilter} skips the data so only its location is delivered.
+     *
+     * @param language   the name of the language as given in the PJL command "ENTER LANGUAGE".
+     *
+     * @return true if the data has to be read, false if it can be skipped.
+     */
+    default boolean isForeignLanguageDataRequired(final String language) {
+        return false;
+    }
+}
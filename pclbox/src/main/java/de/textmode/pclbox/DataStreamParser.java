@@ -23,6 +23,12 @@ import java.io.IOException;
  */
 abstract class DataStreamParser {
 
+    /**
+     * Returned by {@link #parse()} if the parser has already read a complete "Universal Exit Language" command
+     * (<code>&lt;esc&gt;%-12345X</code>) that ends right before the current position of the stream.
+     */
+    static final int UNIVERSAL_EXIT_LANGUAGE_READ = -2;
+
     private final PclParserContext ctx;
 
     /**
@@ -0,0 +1,232 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The {@link FontSelection} holds the font characteristics of the primary or the secondary font as they have
+ * been requested by the PCL font selection commands (<code>&lt;esc&gt;(#U</code>,
+ * <code>&lt;esc&gt;(s#P/H/V/S/B/T</code> and <code>&lt;esc&gt;(#X</code>). A {@link FontSelection} is
+ * immutable, so it can be shared by all {@link PclState} snapshots that use it.
+ */
+public final class FontSelection {
+
+    /**
+     * The font selection after a "Printer Reset" (10 pitch Courier with the Roman-8 symbol set).
+     */
+    public static final FontSelection DEFAULT = new FontSelection("8U", 0, 10.0, 12.0, 0, 0, 4099, -1);
+
+    private final String symbolSet;
+    private final int spacing;
+    private final double pitch;
+    private final double height;
+    private final int style;
+    private final int strokeWeight;
+    private final int typeface;
+    private final int fontId;
+
+    private FontSelection(
+            final String symbolSet,
+            final int spacing,
+            final double pitch,
+            final double height,
+            final int style,
+            final int strokeWeight,
+            final int typeface,
+            final int fontId) {
+
+        this.symbolSet = symbolSet;
+        this.spacing = spacing;
+        this.pitch = pitch;
+        this.height = height;
+        this.style = style;
+        this.strokeWeight = strokeWeight;
+        this.typeface = typeface;
+        this.fontId = fontId;
+    }
+
+    /**
+     * Returns the symbol set as it is written in the PCL command "Symbol Set" (like "8U" or "10U").
+     *
+     * @return the symbol set.
+     */
+    public String getSymbolSet() {
+        return this.symbolSet;
+    }
+
+    /**
+     * Returns the spacing (0 = fixed, 1 = proportional).
+     *
+     * @return the spacing.
+     */
+    public int getSpacing() {
+        return this.spacing;
+    }
+
+    /**
+     * Returns the pitch in characters per inch.
+     *
+     * @return the pitch.
+     */
+    public double getPitch() {
+        return this.pitch;
+    }
+
+    /**
+     * Returns the height in points.
+     *
+     * @return the height.
+     */
+    public double getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the style (0 = upright).
+     *
+     * @return the style.
+     */
+    public int getStyle() {
+        return this.style;
+    }
+
+    /**
+     * Returns the stroke weight (-7 to 7, 0 = medium).
+     *
+     * @return the stroke weight.
+     */
+    public int getStrokeWeight() {
+        return this.strokeWeight;
+    }
+
+    /**
+     * Returns the typeface number.
+     *
+     * @return the typeface number.
+     */
+    public int getTypeface() {
+        return this.typeface;
+    }
+
+    /**
+     * Returns the ID of the soft font that has been selected with the PCL command "Select Font by ID" or -1
+     * if the font has been selected by its characteristics.
+     *
+     * @return the font ID or -1.
+     */
+    public int getFontId() {
+        return this.fontId;
+    }
+
+    /**
+     * Returns the {@link FontSelection} that results from a font selection command. This
+     * {@link FontSelection} is returned if the command does not change it.
+     *
+     * @param groupCharacter   the group character of the command (0 or 's').
+     * @param terminationCharacter   the termination character of the command.
+     * @param value   the value of the command.
+     *
+     * @return the resulting {@link FontSelection}.
+     */
+    FontSelection with(final int groupCharacter, final int terminationCharacter, final String value) {
+        if (groupCharacter == 0) {
+            if (terminationCharacter == 'X') {
+                final int id = ParameterizedPclCommand.toInt(value);
+                return id == this.fontId ? this : new FontSelection(this.symbolSet, this.spacing, this.pitch,
+                        this.height, this.style, this.strokeWeight, this.typeface, id);
+            } else if (terminationCharacter == '@') {
+                return DEFAULT;
+            }
+
+            final String set = ParameterizedPclCommand.toInt(value) + String.valueOf((char) terminationCharacter);
+            return set.equals(this.symbolSet) && this.fontId < 0 ? this : new FontSelection(set, this.spacing,
+                    this.pitch, this.height, this.style, this.strokeWeight, this.typeface, -1);
+        }
+
+        if (groupCharacter != 's') {
+            return this;
+        }
+
+        final double number = ParameterizedPclCommand.toDouble(value);
+        final int integer = (int) number;
+        switch (terminationCharacter) {
+        case 'P':
+            return new FontSelection(this.symbolSet, integer, this.pitch, this.height, this.style,
+                    this.strokeWeight, this.typeface, -1);
+        case 'H':
+            return new FontSelection(this.symbolSet, this.spacing, number, this.height, this.style,
+                    this.strokeWeight, this.typeface, -1);
+        case 'V':
+            return new FontSelection(this.symbolSet, this.spacing, this.pitch, number, this.style,
+                    this.strokeWeight, this.typeface, -1);
+        case 'S':
+            return new FontSelection(this.symbolSet, this.spacing, this.pitch, this.height, integer,
+                    this.strokeWeight, this.typeface, -1);
+        case 'B':
+            return new FontSelection(this.symbolSet, this.spacing, this.pitch, this.height, this.style,
+                    integer, this.typeface, -1);
+        case 'T':
+            return new FontSelection(this.symbolSet, this.spacing, this.pitch, this.height, this.style,
+                    this.strokeWeight, integer, -1);
+        default:
+            return this;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        return this.symbolSet.hashCode()
+                ^ this.spacing
+                ^ Double.hashCode(this.pitch)
+                ^ Double.hashCode(this.height)
+                ^ this.style
+                ^ this.strokeWeight
+                ^ this.typeface
+                ^ this.fontId;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof FontSelection) {
+            final FontSelection o = (FontSelection) other;
+            return o.symbolSet.equals(this.symbolSet)
+                    && o.spacing == this.spacing
+                    && o.pitch == this.pitch
+                    && o.height == this.height
+                    && o.style == this.style
+                    && o.strokeWeight == this.strokeWeight
+                    && o.typeface == this.typeface
+                    && o.fontId == this.fontId;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (this.fontId >= 0) {
+            return "Font " + this.fontId;
+        }
+
+        return this.symbolSet
+                + " spacing=" + this.spacing
+                + " pitch=" + this.pitch
+                + " height=" + this.height
+                + " style=" + this.style
+                + " weight=" + this.strokeWeight
+                + " typeface=" + this.typeface;
+    }
+}
@@ -0,0 +1,197 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * A {@link ForeignLanguageCommand} holds the data of a printer language that is not parsed by pclbox (i. e.
+ * PostScript, PDF or PCL XL). Such data follows the PJL command "<code>@PJL ENTER LANGUAGE=...</code>" and
+ * ends right before the next "Universal Exit Language" command (or at the end of the data stream). The
+ * {@link PclParser} delivers the complete data as one {@link ForeignLanguageCommand}, which is located by
+ * {@link #getOffset()} and {@link #getLength()}.
+ *
+ * <p>If a {@link DataSectionFilter} is set, the {@link PclParser} only reads the data if it has been requested
+ * (see {@link DataSectionFilter#isForeignLanguageDataRequired(String)}). Otherwise only the location of the data
+ * is delivered and the command cannot be written again (i. e. with a {@link PclWriter}).
+ */
+public final class ForeignLanguageCommand extends PrinterCommand {
+
+    private final String language;
+    private final long length;
+    private final byte[] data;
+
+    /**
+     * Constructor of a {@link ForeignLanguageCommand}.
+     *
+     * @param offset   position within the data stream
+     * @param language   the name of the language as given in the PJL command "ENTER LANGUAGE" (i. e.
+     *     "POSTSCRIPT")
+     * @param length   the number of bytes of the data
+     * @param data   the data or <code>null</code> if the data has been skipped
+     */
+    public ForeignLanguageCommand(final long offset, final String language, final long length, final byte[] data) {
+        this(offset, language, length, data, true);
+    }
+
+    /**
+     * Constructor of a {@link ForeignLanguageCommand} that is used by the {@link ForeignLanguageParser}.
+     *
+     * @param offset   position within the data stream
+     * @param language   the name of the language as given in the PJL command "ENTER LANGUAGE"
+     * @param length   the number of bytes of the data
+     * @param data   the data or <code>null</code> if the data has been skipped
+     * @param copyData   false if the {@link ForeignLanguageCommand} takes ownership of the data array
+     */
+    ForeignLanguageCommand(
+            final long offset,
+            final String language,
+            final long length,
+            final byte[] data,
+            final boolean copyData) {
+
+        super(offset);
+
+        if (data != null && data.length != length) {
+            throw new IllegalArgumentException("The length of the data differs from the given length " + length);
+        }
+
+        this.language = language;
+        this.length = length;
+        this.data = data == null || !copyData ? data : data.clone();
+    }
+
+    /**
+     * Gets the name of the language as given in the PJL command "ENTER LANGUAGE" (i. e. "POSTSCRIPT").
+     *
+     * @return the name of the language.
+     */
+    public String getLanguage() {
+        return this.language;
+    }
+
+    /**
+     * Gets the number of bytes of the data.
+     *
+     * @return the number of bytes of the data.
+     */
+    public long getLength() {
+        return this.length;
+    }
+
+    /**
+     * Gets the offset of the first byte after the data, measured from the beginning of the read data stream.
+     *
+     * @return the offset of the first byte after the data.
+     */
+    public long getEndOffset() {
+        return this.getOffset() + this.length;
+    }
+
+    /**
+     * Gets the data.
+     *
+     * @return the data or <code>null</code> if the data has been skipped.
+     */
+    public byte[] getData() {
+        return this.data == null ? null : this.data.clone();
+    }
+
+    /**
+     * Gets the data without copying it. The returned array must not be modified.
+     *
+     * @return the data or <code>null</code> if the data has been skipped.
+     */
+    byte[] getDataWithoutCopy() {
+        return this.data;
+    }
+
+    @Override
+    public String getTextualDescription() {
+        return "Foreign Language Data";
+    }
+
+    @Override
+    public void accept(PrinterCommandVisitor visitor) throws IOException {
+        visitor.handle(this);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.language.hashCode()
+                ^ Long.hashCode(this.length)
+                ^ this.getOffsetHash()
+                ^ Arrays.hashCode(this.data); //do not use the getter - the getter clones!
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof ForeignLanguageCommand) {
+            final ForeignLanguageCommand o = (ForeignLanguageCommand) other;
+            return o.getLanguage().equals(this.getLanguage())
+                    && o.getLength() == this.getLength()
+                    && o.getOffset() == this.getOffset()
+                    && Arrays.equals(o.data, this.data); //do not use the getter - the getter clones!
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.toDisplayString() + "@" + this.getOffset();
+    }
+
+    @Override
+    public String toCommandString() {
+        // Just like for the PJL commands we use a static "command string" for all foreign language data...
+        return "LANGUAGE";
+    }
+
+    @Override
+    public String toDisplayString() {
+        return this.language + "[" + this.length + "]";
+    }
+
+    @Override
+    public byte[] toByteArray() {
+        return this.getRequiredData().clone();
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(this.getRequiredData());
+    }
+
+    /**
+     * Gets the data without copying it for writing the {@link ForeignLanguageCommand}. The returned array must
+     * not be modified.
+     *
+     * @return the data.
+     *
+     * @throws IllegalStateException if the data has been skipped.
+     */
+    byte[] getRequiredData() {
+        if (this.data == null) {
+            throw new IllegalStateException(
+                    "The " + this.language + " data at offset " + this.getOffset() + " has been skipped");
+        }
+        return this.data;
+    }
+}
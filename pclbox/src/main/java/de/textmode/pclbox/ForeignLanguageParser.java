@@ -0,0 +1,269 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * This {@link ForeignLanguageParser} handles the data of a printer language that is not parsed by pclbox (i. e.
+ * PostScript or PDF). It is constructed from the {@link PjlParser} after the PJL command
+ * "<code>@PJL ENTER LANGUAGE=...</code>" has been read. The data is not tokenized. Instead, the data is searched
+ * for the next "Universal Exit Language" command and delivered as one {@link ForeignLanguageCommand}.
+ *
+ * <p>The data is only read into memory if the {@link DataSectionFilter} requests it. If the stream can be
+ * positioned freely, the data is searched in large blocks. Otherwise the data is searched byte by byte, so no
+ * byte after the "Universal Exit Language" command is consumed and the stream never has to be positioned
+ * backward. In both cases the parser ends right after the "Universal Exit Language" command and returns
+ * {@link DataStreamParser#UNIVERSAL_EXIT_LANGUAGE_READ}, so the {@link Pcl5Parser} continues with it.
+ */
+final class ForeignLanguageParser extends DataStreamParser {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int END_OF_STREAM = -1;
+    private static final int ESCAPE = 0x1B;
+
+    // Some virtual machines reserve some header words in an array...
+    private static final int MAXIMUM_DATA_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * The "Universal Exit Language" command that ends the data of the foreign language.
+     */
+    static final byte[] UNIVERSAL_EXIT_LANGUAGE = { 0x1B, '%', '-', '1', '2', '3', '4', '5', 'X' };
+
+    private final String language;
+
+    /**
+     * Constructor.
+     *
+     * @param context   the {@link PclParserContext} that contains all needed stuff.
+     * @param language   the name of the language as given in the PJL command "ENTER LANGUAGE".
+     */
+    ForeignLanguageParser(final PclParserContext context, final String language) {
+        super(context);
+        this.language = language;
+    }
+
+    @Override
+    int parse() throws IOException, PclException {
+        final PclInputStream input = this.getInputStream();
+        final long offset = input.tell();
+
+        if (this.getContext().checkpoint(offset)) {
+            return END_OF_STREAM;
+        }
+
+        final DataSectionFilter filter = this.getContext().getDataSectionFilter();
+        final boolean isDataRequired = filter == null || filter.isForeignLanguageDataRequired(this.language);
+
+        if (isRandomAccess(input)) {
+            return this.parseRandomAccess(input, offset, isDataRequired);
+        } else {
+            return this.parseSequential(input, offset, isDataRequired);
+        }
+    }
+
+    /**
+     * Searches the "Universal Exit Language" command in large blocks. If the data is needed, it is read
+     * afterwards with exactly one copy.
+     */
+    private int parseRandomAccess(final PclInputStream input, final long offset, final boolean isDataRequired)
+            throws IOException, PclException {
+
+        // The buffer always starts with the bytes at bufferOffset. The last bytes of a block are kept for
+        // the next search because they may be the beginning of a "Universal Exit Language" command...
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        final int keep = UNIVERSAL_EXIT_LANGUAGE.length - 1;
+        long bufferOffset = offset;
+        int length = 0;
+        long endOffset = -1;
+        boolean isTerminated = false;
+
+        while (endOffset < 0) {
+            final int read = input.read(buffer, length, buffer.length - length);
+            if (read <= 0) {
+                endOffset = bufferOffset + length;
+            } else {
+                length += read;
+
+                final int found = indexOfUniversalExitLanguage(buffer, length);
+                if (found >= 0) {
+                    endOffset = bufferOffset + found;
+                    isTerminated = true;
+                } else if (length > keep) {
+                    final int consumed = length - keep;
+                    System.arraycopy(buffer, consumed, buffer, 0, keep);
+                    bufferOffset += consumed;
+                    length = keep;
+                }
+            }
+        }
+
+        byte[] data = null;
+        if (isDataRequired) {
+            data = new byte[this.checkDataLength(offset, endOffset - offset)];
+            input.seek(offset);
+            readFully(input, data);
+        }
+
+        this.handleForeignLanguageCommand(offset, endOffset, data);
+
+        if (isTerminated) {
+            input.seek(endOffset + UNIVERSAL_EXIT_LANGUAGE.length);
+            return UNIVERSAL_EXIT_LANGUAGE_READ;
+        } else {
+            input.seek(endOffset);
+            return END_OF_STREAM;
+        }
+    }
+
+    /**
+     * Searches the "Universal Exit Language" command byte by byte, so no byte after it is read.
+     */
+    private int parseSequential(final PclInputStream input, final long offset, final boolean isDataRequired)
+            throws IOException, PclException {
+
+        final byte[] pattern = UNIVERSAL_EXIT_LANGUAGE;
+        byte[] data = isDataRequired ? new byte[BUFFER_SIZE] : null;
+        long length = 0;
+        int matched = 0;
+
+        int readByte = input.read();
+        while (readByte != END_OF_STREAM) {
+            if (data != null) {
+                if (length == data.length) {
+                    final long capacity = Math.min(2L * length, MAXIMUM_DATA_LENGTH);
+                    data = Arrays.copyOf(data, this.checkDataLength(offset, Math.max(capacity, length + 1)));
+                }
+                data[(int) length] = (byte) readByte;
+            }
+            ++length;
+
+            // The escape byte only occurs at the beginning of the "Universal Exit Language" command, so after a
+            // mismatch the search starts over (at the current byte if it is an escape byte)...
+            if (readByte == pattern[matched]) {
+                ++matched;
+                if (matched == pattern.length) {
+                    final long endOffset = offset + length - pattern.length;
+                    this.handleForeignLanguageCommand(offset, endOffset, trim(data, endOffset - offset));
+                    return UNIVERSAL_EXIT_LANGUAGE_READ;
+                }
+            } else {
+                matched = readByte == ESCAPE ? 1 : 0;
+            }
+
+            readByte = input.read();
+        }
+
+        this.handleForeignLanguageCommand(offset, offset + length, trim(data, length));
+        return END_OF_STREAM;
+    }
+
+    /**
+     * Passes the {@link ForeignLanguageCommand} to the {@link PrinterCommandHandler} if the data is not empty.
+     */
+    private void handleForeignLanguageCommand(final long offset, final long endOffset, final byte[] data)
+            throws IOException {
+
+        if (endOffset > offset) {
+            this.getPrinterCommandHandler().handlePrinterCommand(
+                    new ForeignLanguageCommand(offset, this.language, endOffset - offset, data, false));
+        }
+    }
+
+    /**
+     * Checks that the data of the given length fits into an array.
+     */
+    private int checkDataLength(final long offset, final long length) throws PclException {
+        if (length > MAXIMUM_DATA_LENGTH) {
+            throw new PclException(String.format(
+                    "The %1$s data at offset %2$d is too large to be read into memory",
+                    this.language,
+                    offset));
+        }
+        return (int) length;
+    }
+
+    /**
+     * Returns true if the given {@link PclInputStream} can be positioned backward without mark() and reset().
+     */
+    private static boolean isRandomAccess(final PclInputStream input) {
+        if (input instanceof PclInputStreamForFileInputStream) {
+            return true;
+        } else if (input instanceof PclInputStreamForInputStream) {
+            return ((PclInputStreamForInputStream) input).isRandomAccess();
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the given array completely.
+     */
+    private static void readFully(final PclInputStream input, final byte[] data) throws IOException {
+        int pos = 0;
+        while (pos < data.length) {
+            final int read = input.read(data, pos, data.length - pos);
+            if (read <= 0) {
+                throw new EOFException(String.format(
+                        "The PCL data stream unexpectedly ends at offset %1$d. The data stream may be corrupted.",
+                        input.tell()));
+            }
+            pos += read;
+        }
+    }
+
+    /**
+     * Returns the first bytes of the given array, without copying if the array has the requested length.
+     */
+    private static byte[] trim(final byte[] data, final long length) {
+        if (data == null || data.length == length) {
+            return data;
+        }
+        return Arrays.copyOf(data, (int) length);
+    }
+
+    /**
+     * Searches the "Universal Exit Language" command within the first bytes of the given buffer.
+     *
+     * @param buffer   the buffer to be searched.
+     * @param length   the number of valid bytes in the buffer.
+     *
+     * @return the index of the escape byte of the "Universal Exit Language" command or -1 if the buffer does not
+     *     contain a complete "Universal Exit Language" command.
+     */
+    static int indexOfUniversalExitLanguage(final byte[] buffer, final int length) {
+        final byte[] pattern = UNIVERSAL_EXIT_LANGUAGE;
+        final int last = length - pattern.length;
+
+        // The remaining bytes of the command are only compared if an escape byte has been found...
+        for (int pos = 0; pos <= last; ++pos) {
+            if (buffer[pos] == pattern[0]) {
+                int ix = 1;
+                while (ix < pattern.length && buffer[pos + ix] == pattern[ix]) {
+                    ++ix;
+                }
+                if (ix == pattern.length) {
+                    return pos;
+                }
+            }
+        }
+
+        return -1;
+    }
+}
@@ -53,6 +53,10 @@ final class HpglParser extends DataStreamParser {
         int firstByte = this.getInputStream().read();
 
         while (firstByte != ESCAPE && firstByte != END_OF_STREAM) {
+            if (this.getContext().checkpoint(this.getInputStream().tell() - 1)) {
+                return END_OF_STREAM;
+            }
+
             final int secondByte = this.getInputStream().read();
             if (secondByte == END_OF_STREAM) {
                 throw this.createEndOfFileException();
@@ -0,0 +1,116 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link MacroDefinition} holds the parsed {@link PrinterCommand} objects of a PCL macro and the range of
+ * the macro definition within the data stream. The {@link PrinterCommand} objects between the commands
+ * "Start Macro Definition" (<code>&lt;esc&gt;&amp;f0X</code>) and "Stop Macro Definition"
+ * (<code>&lt;esc&gt;&amp;f1X</code>) belong to the macro, the two commands themselves do not.
+ */
+public final class MacroDefinition {
+
+    private final int macroId;
+    private final long startOffset;
+    private final long endOffset;
+    private final PrinterCommand[] commands;
+
+    /**
+     * Constructor of a {@link MacroDefinition}.
+     *
+     * @param macroId   the macro ID.
+     * @param startOffset   the offset of the first {@link PrinterCommand} of the macro (or the end offset if
+     *     the macro is empty).
+     * @param endOffset   the offset of the command that has ended the macro definition.
+     * @param commands   the {@link PrinterCommand} objects of the macro.
+     */
+    MacroDefinition(final int macroId, final long startOffset, final long endOffset, final PrinterCommand[] commands) {
+        this.macroId = macroId;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.commands = commands;
+    }
+
+    /**
+     * Returns the macro ID.
+     *
+     * @return the macro ID.
+     */
+    public int getMacroId() {
+        return this.macroId;
+    }
+
+    /**
+     * Returns the offset of the first {@link PrinterCommand} of the macro, measured from the beginning of the
+     * read data stream.
+     *
+     * @return the offset of the first {@link PrinterCommand} of the macro.
+     */
+    public long getStartOffset() {
+        return this.startOffset;
+    }
+
+    /**
+     * Returns the offset of the command that has ended the macro definition, measured from the beginning of
+     * the read data stream. So the macro occupies the bytes from {@link #getStartOffset()} (inclusive) to
+     * {@link #getEndOffset()} (exclusive).
+     *
+     * @return the offset of the command that has ended the macro definition.
+     */
+    public long getEndOffset() {
+        return this.endOffset;
+    }
+
+    /**
+     * Returns the number of {@link PrinterCommand} objects of the macro.
+     *
+     * @return the number of {@link PrinterCommand} objects.
+     */
+    public int getCommandCount() {
+        return this.commands.length;
+    }
+
+    /**
+     * Returns the {@link PrinterCommand} objects of the macro.
+     *
+     * @return an unmodifiable {@link List} with the {@link PrinterCommand} objects of the macro.
+     */
+    public List<PrinterCommand> getCommands() {
+        return Collections.unmodifiableList(Arrays.asList(this.commands));
+    }
+
+    /**
+     * Returns the {@link PrinterCommand} objects of the macro without copying them. The returned array must
+     * not be modified.
+     *
+     * @return the {@link PrinterCommand} objects of the macro.
+     */
+    PrinterCommand[] getCommandsWithoutCopy() {
+        return this.commands;
+    }
+
+    @Override
+    public String toString() {
+        return "Macro " + this.macroId + " (" + this.commands.length + " commands @" + this.startOffset + "-"
+                + this.endOffset + ")";
+    }
+}
@@ -0,0 +1,377 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The {@link MacroExpander} is a {@link PrinterCommandHandler} that interprets the PCL macro commands and passes
+ * the expanded stream of {@link PrinterCommand} objects to another {@link PrinterCommandHandler}:
+ * <ul>
+ * <li>The {@link PrinterCommand} objects of a macro definition (<code>&lt;esc&gt;&amp;f0X</code> to
+ * <code>&lt;esc&gt;&amp;f1X</code>) are recorded as a {@link MacroDefinition} and are not passed on.</li>
+ * <li>If a macro is executed or called (<code>&lt;esc&gt;&amp;f2X</code> or <code>&lt;esc&gt;&amp;f3X</code>),
+ * the recorded {@link PrinterCommand} objects are passed on instead. Macros may be nested up to two levels.</li>
+ * <li>If an overlay macro has been enabled (<code>&lt;esc&gt;&amp;f4X</code>), it is expanded in front of
+ * every form feed and in front of a "Printer Reset" or "Universal Exit Language" command that ejects a
+ * marked page.</li>
+ * </ul>
+ * The macro commands "Macro ID" (<code>&lt;esc&gt;&amp;f#Y</code>) and "Macro Control"
+ * (<code>&lt;esc&gt;&amp;f#X</code>) are consumed. The expanded {@link PrinterCommand} objects keep the offsets
+ * of their macro definition, so no byte of the data stream is read again.
+ *
+ * <p>Macros are temporary unless they are made permanent (<code>&lt;esc&gt;&amp;f10X</code>). A "Printer Reset"
+ * deletes all temporary macros and disables the overlay macro.
+ *
+ * <p>Note that the {@link MacroExpander} does not keep track of the printer environment. A printer saves the
+ * environment before a macro is called or an overlay macro is expanded and restores it afterwards, so changes
+ * made by the macro do not affect the following commands. The {@link MacroExpander} expands a called macro
+ * exactly like an executed macro, so a {@link PrinterCommandHandler} that needs the exact environment has to
+ * save and restore it on its own.
+ */
+public final class MacroExpander implements PrinterCommandHandler {
+
+    private static final int MAX_NESTING_LEVEL = 2;
+
+    private static final int START_DEFINITION = 0;
+    private static final int STOP_DEFINITION = 1;
+    private static final int EXECUTE = 2;
+    private static final int CALL = 3;
+    private static final int ENABLE_OVERLAY = 4;
+    private static final int DISABLE_OVERLAY = 5;
+    private static final int DELETE_ALL = 6;
+    private static final int DELETE_TEMPORARY = 7;
+    private static final int DELETE = 8;
+    private static final int MAKE_TEMPORARY = 9;
+    private static final int MAKE_PERMANENT = 10;
+
+    private final PrinterCommandHandler nextHandler;
+    private final Map<Integer, MacroSlot> macros = new HashMap<>();
+
+    private int macroId;
+    private int overlayMacroId = -1;
+    private boolean overlayActive;
+    private boolean marked;
+
+    private int recordedMacroId;
+    private List<PrinterCommand> recordedCommands;
+
+    /**
+     * Constructor of the {@link MacroExpander}.
+     *
+     * @param nextHandler   the {@link PrinterCommandHandler} that receives the expanded {@link PrinterCommand}
+     *     objects.
+     */
+    public MacroExpander(final PrinterCommandHandler nextHandler) {
+        this.nextHandler = nextHandler;
+    }
+
+    /**
+     * Returns the IDs of all macros that are currently defined.
+     *
+     * @return an unmodifiable (sorted) {@link Set} with the macro IDs.
+     */
+    public Set<Integer> getMacroIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(this.macros.keySet()));
+    }
+
+    /**
+     * Returns the {@link MacroDefinition} of the macro with the given ID.
+     *
+     * @param macroId   the macro ID.
+     *
+     * @return the {@link MacroDefinition} or <code>null</code> if no macro with the given ID is defined.
+     */
+    public MacroDefinition getMacro(final int macroId) {
+        final MacroSlot slot = this.macros.get(macroId);
+        return slot != null ? slot.definition : null;
+    }
+
+    /**
+     * Returns true if the macro with the given ID is a permanent macro (means, it is not deleted by a
+     * "Printer Reset").
+     *
+     * @param macroId   the macro ID.
+     *
+     * @return true if the macro is a permanent macro.
+     */
+    public boolean isPermanent(final int macroId) {
+        final MacroSlot slot = this.macros.get(macroId);
+        return slot != null && slot.permanent;
+    }
+
+    /**
+     * Returns the ID of the overlay macro or -1 if no overlay macro is enabled.
+     *
+     * @return the ID of the overlay macro or -1.
+     */
+    public int getOverlayMacroId() {
+        return this.overlayMacroId;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        this.process(command, 0);
+    }
+
+    /**
+     * Processes a {@link PrinterCommand} on the given nesting level (0 is the data stream itself).
+     */
+    private void process(final PrinterCommand command, final int level) throws IOException {
+        if (command instanceof CombinedPclCommand && isMacroSequence((CombinedPclCommand) command)) {
+            // Split the sequence, a macro definition may start or stop within it...
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                this.process(cc.getCommand(ix), level);
+            }
+            return;
+        }
+
+        if (this.recordedCommands != null && level == 0) {
+            if (isMacroControl(command, STOP_DEFINITION)) {
+                this.stopDefinition(command.getOffset());
+                return;
+            } else if (isPrinterReset(command) || isUniversalExitLanguage(command)) {
+                this.stopDefinition(command.getOffset());
+            } else {
+                this.recordedCommands.add(command);
+                return;
+            }
+        }
+
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            if (pc.getParameterizedCharacter() == '&' && pc.getGroupCharacter() == 'f') {
+                if (pc.getTerminationCharacter() == 'Y') {
+                    this.macroId = pc.getIntValue();
+                    return;
+                } else if (pc.getTerminationCharacter() == 'X') {
+                    this.controlMacro(pc.getIntValue(), pc.getOffset(), level);
+                    return;
+                }
+            }
+
+            if (isUniversalExitLanguage(command)) {
+                this.ejectPage(false, level);
+            } else if (isMarkingCommand(pc.getParameterizedCharacter(), pc.getGroupCharacter(),
+                    pc.getTerminationCharacter())) {
+                this.marked = true;
+            }
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                if (isMarkingCommand(cc.getParameterizedCharacter(), cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix))) {
+                    this.marked = true;
+                }
+            }
+
+        } else if (command instanceof TextCommand) {
+            this.marked = true;
+
+        } else if (command instanceof ControlCharacterCommand) {
+            if (((ControlCharacterCommand) command).getControlCharacter() == ControlCharacterCommand.FORM_FEED) {
+                this.ejectPage(true, level);
+            }
+
+        } else if (isPrinterReset(command)) {
+            this.ejectPage(false, level);
+            this.overlayMacroId = -1;
+            this.deleteMacros(false);
+        }
+
+        this.nextHandler.handlePrinterCommand(command);
+    }
+
+    /**
+     * Handles the PCL command "Macro Control".
+     */
+    private void controlMacro(final int operation, final long offset, final int level) throws IOException {
+        final MacroSlot slot = this.macros.get(this.macroId);
+
+        switch (operation) {
+        case START_DEFINITION:
+            if (level == 0) {
+                this.recordedMacroId = this.macroId;
+                this.recordedCommands = new ArrayList<>();
+            }
+            break;
+        case EXECUTE:
+        case CALL:
+            // The environment is not saved and restored for a macro call, see the class documentation...
+            this.expand(this.macroId, level);
+            break;
+        case ENABLE_OVERLAY:
+            this.overlayMacroId = this.macroId;
+            break;
+        case DISABLE_OVERLAY:
+            this.overlayMacroId = -1;
+            break;
+        case DELETE_ALL:
+            this.deleteMacros(true);
+            break;
+        case DELETE_TEMPORARY:
+            this.deleteMacros(false);
+            break;
+        case DELETE:
+            this.macros.remove(this.macroId);
+            break;
+        case MAKE_TEMPORARY:
+            if (slot != null) {
+                slot.permanent = false;
+            }
+            break;
+        case MAKE_PERMANENT:
+            if (slot != null) {
+                slot.permanent = true;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Stops the recording of a macro definition and stores the {@link MacroDefinition}. An existing macro with
+     * the same ID is replaced.
+     */
+    private void stopDefinition(final long endOffset) {
+        final PrinterCommand[] commands = this.recordedCommands.toArray(new PrinterCommand[0]);
+        final long startOffset = commands.length > 0 ? commands[0].getOffset() : endOffset;
+
+        final MacroSlot slot = new MacroSlot();
+        slot.definition = new MacroDefinition(this.recordedMacroId, startOffset, endOffset, commands);
+        this.macros.put(this.recordedMacroId, slot);
+        this.recordedCommands = null;
+    }
+
+    /**
+     * Passes the {@link PrinterCommand} objects of the macro with the given ID on.
+     */
+    private void expand(final int id, final int level) throws IOException {
+        final MacroSlot slot = this.macros.get(id);
+        if (slot == null || level >= MAX_NESTING_LEVEL + (this.overlayActive ? 1 : 0)) {
+            return;
+        }
+
+        for (final PrinterCommand command : slot.definition.getCommandsWithoutCopy()) {
+            this.process(command, level + 1);
+        }
+    }
+
+    /**
+     * Expands the overlay macro if a page is ejected. A form feed always ejects the page, all other commands
+     * only eject a marked page.
+     */
+    private void ejectPage(final boolean always, final int level) throws IOException {
+        if (!always && !this.marked) {
+            return;
+        }
+
+        if (this.overlayMacroId >= 0 && !this.overlayActive) {
+            this.overlayActive = true;
+            try {
+                this.expand(this.overlayMacroId, level);
+            } finally {
+                this.overlayActive = false;
+            }
+        }
+        this.marked = false;
+    }
+
+    /**
+     * Deletes all temporary macros or - if requested - all macros.
+     */
+    private void deleteMacros(final boolean permanentMacrosToo) {
+        final Iterator<MacroSlot> it = this.macros.values().iterator();
+        while (it.hasNext()) {
+            final MacroSlot slot = it.next();
+            if (permanentMacrosToo || !slot.permanent) {
+                it.remove();
+            }
+        }
+    }
+
+    private static boolean isMacroSequence(final CombinedPclCommand command) {
+        if (command.getParameterizedCharacter() != '&' || command.getGroupCharacter() != 'f') {
+            return false;
+        }
+
+        for (int ix = 0; ix < command.getCommandCount(); ++ix) {
+            final int terminationCharacter = command.getTerminationCharacter(ix);
+            if (terminationCharacter == 'X' || terminationCharacter == 'Y') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isMacroControl(final PrinterCommand command, final int operation) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            return pc.getParameterizedCharacter() == '&'
+                    && pc.getGroupCharacter() == 'f'
+                    && pc.getTerminationCharacter() == 'X'
+                    && pc.getIntValue() == operation;
+        }
+        return false;
+    }
+
+    private static boolean isPrinterReset(final PrinterCommand command) {
+        return command instanceof TwoBytePclCommand && ((TwoBytePclCommand) command).getOperationCharacter() == 'E';
+    }
+
+    private static boolean isUniversalExitLanguage(final PrinterCommand command) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            return pc.getParameterizedCharacter() == '%'
+                    && pc.getGroupCharacter() == 0
+                    && pc.getTerminationCharacter() == 'X';
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the PCL command marks the page (raster data and rectangular area fills).
+     */
+    private static boolean isMarkingCommand(final int parameterized, final int group, final int termination) {
+        if (parameterized != '*') {
+            return false;
+        }
+
+        return group == 'b' && (termination == 'W' || termination == 'V') || group == 'c' && termination == 'P';
+    }
+
+    /**
+     * A {@link MacroSlot} holds the {@link MacroDefinition} of a macro ID and whether the macro is permanent.
+     */
+    private static final class MacroSlot {
+
+        private MacroDefinition definition;
+        private boolean permanent;
+    }
+}
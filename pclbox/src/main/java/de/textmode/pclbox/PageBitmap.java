@@ -0,0 +1,144 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link PageBitmap} is a packed bitmap with one bit per pixel that holds a rendered page. Each line of the
+ * bitmap starts on a byte boundary, the most significant bit of a byte is the leftmost pixel. A set bit
+ * means black (marked), a cleared bit means white.
+ *
+ * <p>The pixel data is held in a direct (off-heap) {@link ByteBuffer} that is reused by the
+ * {@link BandRasterizer} for subsequent pages.
+ */
+public final class PageBitmap {
+
+    private final ByteBuffer buffer;
+
+    int pageNumber;
+    int width;
+    int height;
+    int bytesPerLine;
+    int resolution;
+
+    /**
+     * Constructor of a {@link PageBitmap}.
+     *
+     * @param capacity   the capacity of the buffer in bytes.
+     */
+    PageBitmap(final int capacity) {
+        this.buffer = ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Returns the number of the page, starting with 1.
+     *
+     * @return the number of the page.
+     */
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    /**
+     * Returns the width of the bitmap in pixels.
+     *
+     * @return the width of the bitmap in pixels.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the bitmap in pixels.
+     *
+     * @return the height of the bitmap in pixels.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Returns the number of bytes of every line of the bitmap.
+     *
+     * @return the number of bytes of every line.
+     */
+    public int getBytesPerLine() {
+        return this.bytesPerLine;
+    }
+
+    /**
+     * Returns the resolution of the bitmap in dots per inch.
+     *
+     * @return the resolution of the bitmap.
+     */
+    public int getResolution() {
+        return this.resolution;
+    }
+
+    /**
+     * Returns true if the pixel at the given position is set (black).
+     *
+     * @param x   horizontal position of the pixel, starting with 0.
+     * @param y   vertical position of the pixel, starting with 0.
+     *
+     * @return true if the pixel is set.
+     */
+    public boolean isSet(final int x, final int y) {
+        if (x < 0 || x >= this.width || y < 0 || y >= this.height) {
+            throw new IndexOutOfBoundsException("Invalid pixel position " + x + "/" + y);
+        }
+
+        return (this.buffer.get(y * this.bytesPerLine + (x >> 3)) & (0x80 >>> (x & 7))) != 0;
+    }
+
+    /**
+     * Returns a read-only view of the pixel data. The view contains exactly
+     * <code>getBytesPerLine() * getHeight()</code> bytes.
+     *
+     * @return a read-only {@link ByteBuffer} with the pixel data.
+     */
+    public ByteBuffer getBuffer() {
+        final ByteBuffer result = this.buffer.asReadOnlyBuffer();
+        result.limit(this.bytesPerLine * this.height);
+        return result;
+    }
+
+    /**
+     * Returns the buffer of the {@link PageBitmap} that is used for rendering.
+     *
+     * @return the buffer of the {@link PageBitmap}.
+     */
+    ByteBuffer getRenderBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Returns the capacity of the buffer in bytes.
+     *
+     * @return the capacity of the buffer in bytes.
+     */
+    int getCapacity() {
+        return this.buffer.capacity();
+    }
+
+    @Override
+    public String toString() {
+        return "Page " + this.pageNumber + " (" + this.width + "x" + this.height + " @ " + this.resolution + " dpi)";
+    }
+}
@@ -0,0 +1,36 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.IOException;
+
+/**
+ * This is the handler interface for every {@link PageBitmap} rendered by the {@link BandRasterizer}.
+ */
+public interface PageBitmapHandler {
+
+    /**
+     * Handles the {@link PageBitmap}. The {@link PageBitmap} (and its buffer) is reused for subsequent pages,
+     * so it must not be accessed after this method has returned.
+     *
+     * @param bitmap   the rendered {@link PageBitmap}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void handlePageBitmap(final PageBitmap bitmap) throws IOException;
+}
@@ -0,0 +1,142 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+
+/**
+ * The {@link PageCoverage} holds the estimated toner/ink coverage of a page as computed by the
+ * {@link CoverageAnalyzer}. All areas are given in square inches.
+ */
+public final class PageCoverage {
+
+    private final int pageNumber;
+    private final double pageArea;
+    private final double rasterArea;
+    private final double ruleArea;
+    private final long rasterPixels;
+    private final double[] planeAreas;
+
+    /**
+     * Constructor of a {@link PageCoverage}.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     * @param pageArea   the area of the page.
+     * @param rasterArea   the area that is covered by the set pixels of the raster graphics.
+     * @param ruleArea   the area that is covered by rectangular area fills.
+     * @param rasterPixels   the number of set pixels of the raster graphics.
+     * @param planeAreas   the area that is covered by the set pixels of every plane of the raster graphics.
+     */
+    PageCoverage(
+            final int pageNumber,
+            final double pageArea,
+            final double rasterArea,
+            final double ruleArea,
+            final long rasterPixels,
+            final double[] planeAreas) {
+
+        this.pageNumber = pageNumber;
+        this.pageArea = pageArea;
+        this.rasterArea = rasterArea;
+        this.ruleArea = ruleArea;
+        this.rasterPixels = rasterPixels;
+        this.planeAreas = planeAreas;
+    }
+
+    /**
+     * Returns the number of the page, starting with 1.
+     *
+     * @return the number of the page.
+     */
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    /**
+     * Returns the area of the page.
+     *
+     * @return the area of the page in square inches.
+     */
+    public double getPageArea() {
+        return this.pageArea;
+    }
+
+    /**
+     * Returns the area that is covered by the set pixels of the raster graphics. A pixel is counted if it is
+     * set in any plane.
+     *
+     * @return the area in square inches.
+     */
+    public double getRasterArea() {
+        return this.rasterArea;
+    }
+
+    /**
+     * Returns the area that is covered by rectangular area fills (weighted with the density of the pattern).
+     *
+     * @return the area in square inches.
+     */
+    public double getRuleArea() {
+        return this.ruleArea;
+    }
+
+    /**
+     * Returns the number of set pixels of the raster graphics (in raster resolution). A pixel is counted if
+     * it is set in any plane.
+     *
+     * @return the number of set pixels.
+     */
+    public long getRasterPixels() {
+        return this.rasterPixels;
+    }
+
+    /**
+     * Returns the number of planes of the raster graphics of the page.
+     *
+     * @return the number of planes.
+     */
+    public int getPlaneCount() {
+        return this.planeAreas.length;
+    }
+
+    /**
+     * Returns the area that is covered by the set pixels of the given plane of the raster graphics. For CMY
+     * raster graphics this is the coverage of the cyan, magenta and yellow ink.
+     *
+     * @param plane   index of the plane.
+     *
+     * @return the area in square inches.
+     */
+    public double getPlaneArea(final int plane) {
+        return this.planeAreas[plane];
+    }
+
+    /**
+     * Returns the coverage of the page in percent. Overlapping graphics are counted multiple times, so this is
+     * an estimate that is capped at 100 percent.
+     *
+     * @return the coverage in percent.
+     */
+    public double getCoverage() {
+        return this.pageArea > 0 ? Math.min(100.0, (this.rasterArea + this.ruleArea) * 100.0 / this.pageArea) : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Page %d: %.2f%%", this.pageNumber, this.getCoverage());
+    }
+}
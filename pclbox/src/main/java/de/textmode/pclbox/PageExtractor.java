@@ -0,0 +1,266 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The {@link PageExtractor} copies pages and jobs out of a PCL file without parsing and serializing the
+ * {@link PrinterCommand}s of the copied pages. The byte ranges of the pages and jobs are taken from the
+ * {@link PageIndexFile} of the PCL file and are moved to the target with {@link FileChannel#transferTo}, so
+ * the operating system can copy the bytes without passing them through the Java heap.
+ *
+ * <p>Extracted pages are preceded by a prologue that consists of the PJL header of the job the pages belong to
+ * and all soft font, symbol set and macro downloads of that job that precede the first extracted page. Only
+ * the bytes between the PJL header and the first extracted page are parsed to find these downloads and the
+ * result is kept, so extracting the pages of a job in ascending order parses every byte at most once. Note
+ * that other settings of the preceding pages (i. e. the orientation) are not part of the prologue.
+ *
+ * <p>The methods of the {@link PageExtractor} are thread safe.
+ */
+public final class PageExtractor implements Closeable {
+
+    private static final byte[] UNIVERSAL_EXIT_LANGUAGE = "\u001B%-12345X".getBytes(StandardCharsets.ISO_8859_1);
+
+    private final PageIndexFile index;
+    private final FileChannel channel;
+    private final PclInputStream stream;
+    private final Map<Integer, JobPrologue> prologues = new HashMap<>();
+
+    /**
+     * The resource downloads of a job that have been found so far.
+     */
+    private static final class JobPrologue {
+
+        private final PrologueCollector collector = new PrologueCollector();
+        private long scannedUpTo;
+
+        JobPrologue(final long scannedUpTo) {
+            this.scannedUpTo = scannedUpTo;
+        }
+    }
+
+    /**
+     * Constructor of the {@link PageExtractor}. The {@link PageIndexFile} of the PCL file is created if needed.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public PageExtractor(final File pclFile) throws IOException, PclException {
+        this(pclFile, PageIndexFile.open(pclFile));
+    }
+
+    /**
+     * Constructor of the {@link PageExtractor}.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     * @param index   the {@link PageIndexFile} of the PCL file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public PageExtractor(final File pclFile, final PageIndexFile index) throws IOException {
+        final FileInputStream input = new FileInputStream(pclFile);
+
+        this.index = index;
+        this.channel = input.getChannel();
+        this.stream = new PclInputStreamForInputStream(input);
+    }
+
+    /**
+     * Returns the {@link PageIndexFile} of the PCL file.
+     *
+     * @return the {@link PageIndexFile}.
+     */
+    public PageIndexFile getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Writes a single page (including the prologue) to the given {@link WritableByteChannel}.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     * @param out   the {@link WritableByteChannel} the page is written to.
+     *
+     * @return the number of written bytes.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public long extractPage(final int pageNumber, final WritableByteChannel out) throws IOException, PclException {
+        return this.extractPages(pageNumber, pageNumber, out);
+    }
+
+    /**
+     * Writes the given pages to the given {@link WritableByteChannel}. If the pages belong to different jobs,
+     * every job is written separately (each with its own prologue).
+     *
+     * @param firstPage   the number of the first page, starting with 1.
+     * @param lastPage   the number of the last page.
+     * @param out   the {@link WritableByteChannel} the pages are written to.
+     *
+     * @return the number of written bytes.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public synchronized long extractPages(final int firstPage, final int lastPage, final WritableByteChannel out)
+            throws IOException, PclException {
+
+        if (firstPage < 1 || lastPage > this.index.getPageCount() || lastPage < firstPage) {
+            throw new IndexOutOfBoundsException("Invalid pages " + firstPage + " to " + lastPage);
+        }
+
+        long written = 0;
+        int page = firstPage;
+        while (page <= lastPage) {
+            final int job = this.index.getJobNumber(page);
+            final boolean hasPjlHeader = this.index.getPjlHeaderEndOffset(job) > this.index.getJobStartOffset(job);
+
+            written += this.writePrologue(job, this.index.getStartOffset(page), out);
+
+            // The pages of a job are transferred as one range as long as they are adjacent...
+            long startOffset = this.index.getStartOffset(page);
+            long endOffset = this.index.getEndOffset(page);
+            ++page;
+
+            while (page <= lastPage && this.index.getJobNumber(page) == job) {
+                if (this.index.getStartOffset(page) != endOffset) {
+                    written += this.transfer(startOffset, endOffset, out);
+                    startOffset = this.index.getStartOffset(page);
+                }
+                endOffset = this.index.getEndOffset(page);
+                ++page;
+            }
+            written += this.transfer(startOffset, endOffset, out);
+
+            if (hasPjlHeader) {
+                written += write(ByteBuffer.wrap(UNIVERSAL_EXIT_LANGUAGE), out);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes the given job unmodified to the given {@link WritableByteChannel}.
+     *
+     * @param jobNumber   the number of the job, starting with 1.
+     * @param out   the {@link WritableByteChannel} the job is written to.
+     *
+     * @return the number of written bytes.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public long extractJob(final int jobNumber, final WritableByteChannel out) throws IOException {
+        return this.transfer(this.index.getJobStartOffset(jobNumber), this.index.getJobEndOffset(jobNumber), out);
+    }
+
+    /**
+     * Writes the given byte range of the PCL file unmodified to the given {@link WritableByteChannel}.
+     *
+     * @param startOffset   the offset of the first byte.
+     * @param endOffset   the offset of the first byte after the range.
+     * @param out   the {@link WritableByteChannel} the bytes are written to.
+     *
+     * @return the number of written bytes.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public long transfer(final long startOffset, final long endOffset, final WritableByteChannel out)
+            throws IOException {
+
+        if (startOffset < 0 || endOffset < startOffset || endOffset > this.channel.size()) {
+            throw new IllegalArgumentException("Invalid range " + startOffset + " to " + endOffset);
+        }
+
+        // FileChannel.transferTo() may transfer less bytes than requested...
+        long position = startOffset;
+        while (position < endOffset) {
+            final long transferred = this.channel.transferTo(position, endOffset - position, out);
+            if (transferred <= 0) {
+                throw new IOException("Unable to transfer the bytes at offset " + position);
+            }
+            position += transferred;
+        }
+
+        return endOffset - startOffset;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.prologues.clear();
+        this.stream.close();
+    }
+
+    /**
+     * Writes the PJL header of the given job and the resource downloads that precede the given offset.
+     */
+    private long writePrologue(final int job, final long pageOffset, final WritableByteChannel out)
+            throws IOException, PclException {
+
+        final long pjlHeaderEnd = this.index.getPjlHeaderEndOffset(job);
+        long written = this.transfer(this.index.getJobStartOffset(job), pjlHeaderEnd, out);
+
+        JobPrologue prologue = this.prologues.get(Integer.valueOf(job));
+        if (prologue == null || prologue.scannedUpTo > pageOffset) {
+            // Pages are usually extracted in ascending order, so we start again only if we have to...
+            prologue = new JobPrologue(pjlHeaderEnd);
+            this.prologues.put(Integer.valueOf(job), prologue);
+        }
+
+        if (prologue.scannedUpTo < pageOffset) {
+            final PclParser parser = new PclParser(this.stream, prologue.collector);
+            parser.setCombineSequences(true);
+
+            final PclParseResult result = parser.parse(prologue.scannedUpTo, pageOffset);
+            prologue.collector.finish(result.getOffset());
+            prologue.scannedUpTo = result.getOffset();
+        }
+
+        for (final PrologueCollector.Piece piece : prologue.collector.getPieces()) {
+            if (piece.getData() != null) {
+                written += write(ByteBuffer.wrap(piece.getData()), out);
+            } else {
+                written += this.transfer(piece.getStartOffset(), piece.getEndOffset(), out);
+            }
+        }
+
+        return written;
+    }
+
+    /**
+     * Writes the given {@link ByteBuffer} completely to the given {@link WritableByteChannel}.
+     */
+    private static long write(final ByteBuffer buffer, final WritableByteChannel out) throws IOException {
+        final int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,47 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * This is the handler interface for the page boundaries that are detected by the {@link PageIndexer}
+ * and the {@link PageScanner}.
+ */
+public interface PageHandler {
+
+    /**
+     * Handles the start of a page. This is invoked as soon as it is known that the bytes starting at the
+     * given offset form a page (that is when the first command that marks the page or the form feed that
+     * ends an empty page has been read), so this may be invoked some commands after the start of the page.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     * @param startOffset   offset of the first byte of the page, measured from the beginning of the data stream.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void handlePageStart(final int pageNumber, final long startOffset) throws IOException;
+
+    /**
+     * Handles the end of a page.
+     *
+     * @param page   the {@link PageRange} of the page.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void handlePageEnd(final PageRange page) throws IOException;
+}
@@ -0,0 +1,117 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Arrays;
+
+/**
+ * The {@link PageIndex} is a {@link PageHandler} that records the offsets of all pages of a data stream in
+ * compact arrays. It allows random access to the pages of the data stream.
+ */
+public final class PageIndex implements PageHandler {
+
+    private long[] startOffsets = new long[64];
+    private long[] endOffsets = new long[64];
+    private int pageCount;
+
+    @Override
+    public void handlePageStart(final int pageNumber, final long startOffset) {
+        // The start offset is recorded together with the end offset...
+    }
+
+    @Override
+    public void handlePageEnd(final PageRange page) {
+        if (this.pageCount == this.startOffsets.length) {
+            this.startOffsets = Arrays.copyOf(this.startOffsets, this.pageCount * 2);
+            this.endOffsets = Arrays.copyOf(this.endOffsets, this.pageCount * 2);
+        }
+
+        this.startOffsets[this.pageCount] = page.getStartOffset();
+        this.endOffsets[this.pageCount] = page.getEndOffset();
+        ++this.pageCount;
+    }
+
+    /**
+     * Returns the number of pages.
+     *
+     * @return the number of pages.
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * Returns the {@link PageRange} of the page with the given number.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the {@link PageRange} of the page.
+     */
+    public PageRange getPage(final int pageNumber) {
+        final int ix = this.toIndex(pageNumber);
+        return new PageRange(pageNumber, this.startOffsets[ix], this.endOffsets[ix]);
+    }
+
+    /**
+     * Returns the offset of the first byte of the page with the given number.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the offset of the first byte of the page.
+     */
+    public long getStartOffset(final int pageNumber) {
+        return this.startOffsets[this.toIndex(pageNumber)];
+    }
+
+    /**
+     * Returns the offset of the first byte after the page with the given number.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the offset of the first byte after the page.
+     */
+    public long getEndOffset(final int pageNumber) {
+        return this.endOffsets[this.toIndex(pageNumber)];
+    }
+
+    /**
+     * Returns the number of the page that contains the byte at the given offset.
+     *
+     * @param offset   offset measured from the beginning of the data stream.
+     *
+     * @return the number of the page (starting with 1) or 0 if the byte does not belong to any page.
+     */
+    public int findPage(final long offset) {
+        // The pages are ordered and do not overlap, so a binary search over the start offsets is sufficient...
+        int ix = Arrays.binarySearch(this.startOffsets, 0, this.pageCount, offset);
+        if (ix < 0) {
+            ix = -ix - 2;
+        }
+
+        return ix >= 0 && offset < this.endOffsets[ix] ? ix + 1 : 0;
+    }
+
+    /**
+     * Checks the given page number and converts it to an index of the offset arrays.
+     */
+    private int toIndex(final int pageNumber) {
+        if (pageNumber < 1 || pageNumber > this.pageCount) {
+            throw new IndexOutOfBoundsException("Invalid page number " + pageNumber);
+        }
+        return pageNumber - 1;
+    }
+}
@@ -0,0 +1,327 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@link PageIndexFile} gives random access to the pages and jobs of a PCL data stream by a memory mapped
+ * sidecar index file. The index file is written by the {@link PageIndexWriter} when the PCL file is parsed for
+ * the first time and is stored next to the PCL file (with the additional extension "{@value #EXTENSION}").
+ * A page can then be parsed with {@link PclParser#parse(PageRange)} without reading the preceding pages.
+ *
+ * <p>All pages start in PCL mode (the PJL commands after a "Universal Exit Language" command never belong to
+ * a page), so the offsets of a page, the PJL header of its job and the symbol sets that are selected at the
+ * beginning of the page are all that is needed to resume parsing at the page.
+ *
+ * <p>The index file consists of a header, the page table and the job table. All numbers are big endian:
+ * <pre>
+ * header     int     magic "PCLI"
+ *            int     version
+ *            long    length of the PCL file
+ *            long    last modification of the PCL file
+ *            int     number of pages
+ *            int     number of jobs
+ * page table long    start offset of the page
+ *            long    end offset of the page
+ *            int     number of the job (starting with 1)
+ *            int     symbol set of the primary font (value * 256 + termination character)
+ *            int     symbol set of the secondary font (value * 256 + termination character)
+ *            int     1 if the secondary font is active, otherwise 0
+ * job table  long    start offset of the job
+ *            long    end offset of the PJL header of the job
+ *            long    end offset of the job
+ * </pre>
+ */
+public final class PageIndexFile {
+
+    /**
+     * The extension that is appended to the name of the PCL file.
+     */
+    public static final String EXTENSION = ".pclidx";
+
+    static final int MAGIC = 0x50434C49;
+    static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 32;
+    private static final int PAGE_ENTRY_SIZE = 32;
+    private static final int JOB_ENTRY_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final long fileLength;
+    private final int pageCount;
+    private final int jobCount;
+    private final int jobTable;
+
+    /**
+     * Constructor of the {@link PageIndexFile}.
+     */
+    private PageIndexFile(final ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.fileLength = buffer.getLong(8);
+        this.pageCount = buffer.getInt(24);
+        this.jobCount = buffer.getInt(28);
+        this.jobTable = HEADER_SIZE + this.pageCount * PAGE_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns the index file that belongs to the given PCL file.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @return the index file.
+     */
+    public static File getIndexFile(final File pclFile) {
+        return new File(pclFile.getPath() + EXTENSION);
+    }
+
+    /**
+     * Opens the index of the given PCL file. If the index file does not exist or does not match the PCL file
+     * (because the PCL file has been modified), the PCL file is parsed and the index file is written again.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @return the {@link PageIndexFile}.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public static PageIndexFile open(final File pclFile) throws IOException, PclException {
+        final PageIndexFile result = load(getIndexFile(pclFile), pclFile);
+        return result != null ? result : create(pclFile);
+    }
+
+    /**
+     * Parses the given PCL file and writes its index file. The index file is written to a temporary file
+     * first which is then renamed, so readers never see an incomplete index file.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @return the {@link PageIndexFile}.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public static PageIndexFile create(final File pclFile) throws IOException, PclException {
+        final PageIndexWriter writer = new PageIndexWriter();
+        try (PclParser parser = new PclParser(pclFile, writer)) {
+            parser.setCombineSequences(true);
+            writer.finish(parser.parse().getOffset());
+        }
+
+        final File indexFile = getIndexFile(pclFile);
+        final File tempFile = new File(indexFile.getPath() + ".tmp");
+        try {
+            writer.write(tempFile, pclFile);
+            Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        final PageIndexFile result = load(indexFile, pclFile);
+        if (result == null) {
+            throw new IOException("The PCL file " + pclFile + " has been modified while it was indexed");
+        }
+        return result;
+    }
+
+    /**
+     * Maps the given index file if it exists and matches the given PCL file.
+     *
+     * @return the {@link PageIndexFile} or <code>null</code> if the index file does not exist or is stale.
+     */
+    static PageIndexFile load(final File indexFile, final File pclFile) throws IOException {
+        if (!indexFile.isFile() || indexFile.length() < HEADER_SIZE) {
+            return null;
+        }
+
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION
+                || buffer.getLong(8) != pclFile.length() || buffer.getLong(16) != pclFile.lastModified()) {
+            return null;
+        }
+
+        final long expectedSize = HEADER_SIZE
+                + (long) buffer.getInt(24) * PAGE_ENTRY_SIZE
+                + (long) buffer.getInt(28) * JOB_ENTRY_SIZE;
+
+        if (buffer.capacity() != expectedSize) {
+            throw new IOException("The index file " + indexFile + " is corrupt");
+        }
+
+        return new PageIndexFile(buffer);
+    }
+
+    /**
+     * Returns the length of the indexed PCL file.
+     *
+     * @return the length of the indexed PCL file.
+     */
+    public long getFileLength() {
+        return this.fileLength;
+    }
+
+    /**
+     * Returns the number of pages.
+     *
+     * @return the number of pages.
+     */
+    public int getPageCount() {
+        return this.pageCount;
+    }
+
+    /**
+     * Returns the {@link PageRange} of the page with the given number.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the {@link PageRange} of the page.
+     */
+    public PageRange getPage(final int pageNumber) {
+        final int pos = this.getPageEntry(pageNumber);
+        return new PageRange(
+                pageNumber,
+                this.buffer.getLong(pos),
+                this.buffer.getLong(pos + 8),
+                decodeSymbolSet(this.buffer.getInt(pos + 20)),
+                decodeSymbolSet(this.buffer.getInt(pos + 24)),
+                this.buffer.getInt(pos + 28) != 0);
+    }
+
+    /**
+     * Returns the offset of the first byte of the page with the given number.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the offset of the first byte of the page.
+     */
+    public long getStartOffset(final int pageNumber) {
+        return this.buffer.getLong(this.getPageEntry(pageNumber));
+    }
+
+    /**
+     * Returns the offset of the first byte after the page with the given number.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the offset of the first byte after the page.
+     */
+    public long getEndOffset(final int pageNumber) {
+        return this.buffer.getLong(this.getPageEntry(pageNumber) + 8);
+    }
+
+    /**
+     * Returns the number of the job the page with the given number belongs to.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the number of the job, starting with 1.
+     */
+    public int getJobNumber(final int pageNumber) {
+        return this.buffer.getInt(this.getPageEntry(pageNumber) + 16);
+    }
+
+    /**
+     * Returns the number of jobs.
+     *
+     * @return the number of jobs.
+     */
+    public int getJobCount() {
+        return this.jobCount;
+    }
+
+    /**
+     * Returns the offset of the first byte of the job with the given number. This is the offset of the
+     * "Universal Exit Language" command that starts the job (or 0 for a job at the beginning of the data
+     * stream that does not start with this command).
+     *
+     * @param jobNumber   the number of the job, starting with 1.
+     *
+     * @return the offset of the first byte of the job.
+     */
+    public long getJobStartOffset(final int jobNumber) {
+        return this.buffer.getLong(this.getJobEntry(jobNumber));
+    }
+
+    /**
+     * Returns the offset of the first byte after the PJL header of the job with the given number. The PJL
+     * header starts at {@link #getJobStartOffset(int)}.
+     *
+     * @param jobNumber   the number of the job, starting with 1.
+     *
+     * @return the offset of the first byte after the PJL header of the job.
+     */
+    public long getPjlHeaderEndOffset(final int jobNumber) {
+        return this.buffer.getLong(this.getJobEntry(jobNumber) + 8);
+    }
+
+    /**
+     * Returns the offset of the first byte after the job with the given number.
+     *
+     * @param jobNumber   the number of the job, starting with 1.
+     *
+     * @return the offset of the first byte after the job.
+     */
+    public long getJobEndOffset(final int jobNumber) {
+        return this.buffer.getLong(this.getJobEntry(jobNumber) + 16);
+    }
+
+    /**
+     * Encodes the given symbol set (like "8U") as it is stored in the page table.
+     */
+    static int encodeSymbolSet(final String symbolSet) {
+        final int last = symbolSet.length() - 1;
+        return Integer.parseInt(symbolSet.substring(0, last)) << 8 | symbolSet.charAt(last);
+    }
+
+    /**
+     * Decodes a symbol set that is stored in the page table.
+     */
+    static String decodeSymbolSet(final int code) {
+        return (code >> 8) + String.valueOf((char) (code & 0xFF));
+    }
+
+    /**
+     * Returns the position of the entry of the given page within the page table.
+     */
+    private int getPageEntry(final int pageNumber) {
+        if (pageNumber < 1 || pageNumber > this.pageCount) {
+            throw new IndexOutOfBoundsException("Invalid page number " + pageNumber);
+        }
+        return HEADER_SIZE + (pageNumber - 1) * PAGE_ENTRY_SIZE;
+    }
+
+    /**
+     * Returns the position of the entry of the given job within the job table.
+     */
+    private int getJobEntry(final int jobNumber) {
+        if (jobNumber < 1 || jobNumber > this.jobCount) {
+            throw new IndexOutOfBoundsException("Invalid job number " + jobNumber);
+        }
+        return this.jobTable + (jobNumber - 1) * JOB_ENTRY_SIZE;
+    }
+}
@@ -0,0 +1,275 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * The {@link PageIndexWriter} is a {@link PrinterCommandHandler} that collects the pages and jobs of a data
+ * stream while the {@link PclParser} parses it (usually for the first time) and writes them to a
+ * {@link PageIndexFile}. The pages are detected by a {@link PageIndexer}.
+ *
+ * <p>A job starts at every "Universal Exit Language" command (or at the beginning of the data stream if the data
+ * stream does not start with this command) and ends at the next one. The PJL header of a job contains the
+ * "Universal Exit Language" command and the following PJL commands.
+ *
+ * <p>For every page the symbol sets that are selected right before the first command of the page are recorded,
+ * so the text of the page can be decoded correctly if the parsing is resumed at the page.
+ */
+public final class PageIndexWriter implements PrinterCommandHandler {
+
+    private final PageIndex pages = new PageIndex();
+    private final PageIndexer pageIndexer;
+    private final PrinterCommandHandler nextHandler;
+
+    private final SymbolSetTracker symbolSets = new SymbolSetTracker();
+
+    private int[] pageJobs = new int[64];
+    private int[] pageSymbolSets = new int[3 * 64];
+    private long commandOffset = -1;
+    private String pagePrimarySymbolSet = SymbolSets.DEFAULT_SYMBOL_SET;
+    private String pageSecondarySymbolSet = SymbolSets.DEFAULT_SYMBOL_SET;
+    private boolean pageSecondaryFontActive;
+    private long[] jobs = new long[3 * 16];
+    private int jobCount;
+    private boolean inPjlHeader;
+    private long endOffset = -1;
+
+    /**
+     * Constructor of the {@link PageIndexWriter}.
+     */
+    public PageIndexWriter() {
+        this(null);
+    }
+
+    /**
+     * Constructor of the {@link PageIndexWriter}.
+     *
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public PageIndexWriter(final PrinterCommandHandler nextHandler) {
+        this.nextHandler = nextHandler;
+        this.pageIndexer = new PageIndexer(new PageHandler() {
+            @Override
+            public void handlePageStart(final int pageNumber, final long startOffset) {
+                // Nothing to do - the page is recorded when it ends...
+            }
+
+            @Override
+            public void handlePageEnd(final PageRange page) {
+                PageIndexWriter.this.addPage(page);
+            }
+        });
+    }
+
+    /**
+     * Returns the number of pages that have been ended so far.
+     *
+     * @return the number of ended pages.
+     */
+    public int getPageCount() {
+        return this.pages.getPageCount();
+    }
+
+    /**
+     * Returns the number of jobs that have been found so far.
+     *
+     * @return the number of jobs.
+     */
+    public int getJobCount() {
+        return this.jobCount;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        final long offset = command.getOffset();
+        final boolean isUniversalExitLanguage = isUniversalExitLanguageCommand(command);
+
+        if (this.jobCount == 0 && !isUniversalExitLanguage) {
+            this.startJob(0);
+            this.inPjlHeader = false;
+        }
+
+        // The page ends before the job ends. The symbol sets are tracked after the page boundaries have been
+        // detected, so they still hold the state before the command...
+        this.commandOffset = offset;
+        this.pageIndexer.handlePrinterCommand(command);
+
+        if (this.pageIndexer.getCurrentPageStartOffset() == offset) {
+            this.pagePrimarySymbolSet = this.symbolSets.getPrimarySymbolSet();
+            this.pageSecondarySymbolSet = this.symbolSets.getSecondarySymbolSet();
+            this.pageSecondaryFontActive = this.symbolSets.isSecondaryFontActive();
+        }
+        this.symbolSets.track(command);
+
+        if (isUniversalExitLanguage) {
+            this.endJob(offset);
+            this.startJob(offset);
+        } else if (this.inPjlHeader && !(command instanceof PjlCommand)) {
+            this.jobs[3 * this.jobCount - 2] = offset;
+            this.inPjlHeader = false;
+        }
+
+        if (this.nextHandler != null) {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+    }
+
+    /**
+     * Ends the current page (if it has been marked) and the current job. This must be invoked after the
+     * PCL data stream has been parsed.
+     *
+     * @param streamEndOffset   offset of the end of the data stream (i. e. as returned by
+     *     {@link PclParseResult#getOffset()}).
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void finish(final long streamEndOffset) throws IOException {
+        this.pageIndexer.finish(streamEndOffset);
+        this.endJob(streamEndOffset);
+        this.endOffset = streamEndOffset;
+    }
+
+    /**
+     * Writes the index to the given file.
+     *
+     * @param indexFile   the file to be written.
+     * @param pclFile   the file that contains the PCL data stream. Its length and the time of its last
+     *     modification are stored in the index so a stale index can be detected.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(final File indexFile, final File pclFile) throws IOException {
+        try (OutputStream out = new FileOutputStream(indexFile)) {
+            this.writeTo(out, pclFile.length(), pclFile.lastModified());
+        }
+    }
+
+    /**
+     * Writes the index to the given {@link OutputStream}. The format is described at {@link PageIndexFile}.
+     *
+     * @param out   the {@link OutputStream} the index is written to. The {@link OutputStream} is not closed.
+     * @param fileLength   the length of the file that contains the PCL data stream.
+     * @param lastModified   the time of the last modification of the file that contains the PCL data stream.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(final OutputStream out, final long fileLength, final long lastModified) throws IOException {
+        if (this.endOffset < 0) {
+            throw new IllegalStateException("The PageIndexWriter has not been finished");
+        }
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(PageIndexFile.MAGIC);
+        data.writeInt(PageIndexFile.VERSION);
+        data.writeLong(fileLength);
+        data.writeLong(lastModified);
+        data.writeInt(this.pages.getPageCount());
+        data.writeInt(this.jobCount);
+
+        for (int page = 1; page <= this.pages.getPageCount(); ++page) {
+            data.writeLong(this.pages.getStartOffset(page));
+            data.writeLong(this.pages.getEndOffset(page));
+            data.writeInt(this.pageJobs[page - 1]);
+            data.writeInt(this.pageSymbolSets[3 * page - 3]);
+            data.writeInt(this.pageSymbolSets[3 * page - 2]);
+            data.writeInt(this.pageSymbolSets[3 * page - 1]);
+        }
+
+        for (int ix = 0; ix < 3 * this.jobCount; ++ix) {
+            data.writeLong(this.jobs[ix]);
+        }
+
+        data.flush();
+    }
+
+    /**
+     * Records a page together with the number of the current job and the symbol sets at the beginning of the
+     * page.
+     */
+    private void addPage(final PageRange page) {
+        final int ix = page.getPageNumber() - 1;
+        if (ix == this.pageJobs.length) {
+            this.pageJobs = Arrays.copyOf(this.pageJobs, ix * 2);
+            this.pageSymbolSets = Arrays.copyOf(this.pageSymbolSets, ix * 6);
+        }
+
+        this.pageJobs[ix] = this.jobCount;
+
+        // A page that consists of a single form feed starts and ends with the current command...
+        if (page.getStartOffset() == this.commandOffset) {
+            this.pagePrimarySymbolSet = this.symbolSets.getPrimarySymbolSet();
+            this.pageSecondarySymbolSet = this.symbolSets.getSecondarySymbolSet();
+            this.pageSecondaryFontActive = this.symbolSets.isSecondaryFontActive();
+        }
+
+        this.pageSymbolSets[3 * ix] = PageIndexFile.encodeSymbolSet(this.pagePrimarySymbolSet);
+        this.pageSymbolSets[3 * ix + 1] = PageIndexFile.encodeSymbolSet(this.pageSecondarySymbolSet);
+        this.pageSymbolSets[3 * ix + 2] = this.pageSecondaryFontActive ? 1 : 0;
+        this.pages.handlePageEnd(page);
+    }
+
+    /**
+     * Starts a new job at the given offset. Until the first command that is not a PJL command has been read,
+     * the PJL header of the job is in progress.
+     */
+    private void startJob(final long offset) {
+        if (3 * this.jobCount == this.jobs.length) {
+            this.jobs = Arrays.copyOf(this.jobs, this.jobs.length * 2);
+        }
+
+        final int ix = 3 * this.jobCount++;
+        this.jobs[ix] = offset;
+        this.jobs[ix + 1] = offset;
+        this.jobs[ix + 2] = offset;
+        this.inPjlHeader = true;
+    }
+
+    /**
+     * Ends the current job at the given offset.
+     */
+    private void endJob(final long offset) {
+        if (this.jobCount > 0) {
+            if (this.inPjlHeader) {
+                this.jobs[3 * this.jobCount - 2] = offset;
+                this.inPjlHeader = false;
+            }
+            this.jobs[3 * this.jobCount - 1] = offset;
+        }
+    }
+
+    /**
+     * Returns true if the given {@link PrinterCommand} is a "Universal Exit Language" command.
+     */
+    private static boolean isUniversalExitLanguageCommand(final PrinterCommand command) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            return pc.getParameterizedCharacter() == '%'
+                    && pc.getGroupCharacter() == 0x00
+                    && pc.getTerminationCharacter() == 'X'
+                    && pc.getValue().equals("-12345");
+        }
+        return false;
+    }
+}
@@ -0,0 +1,182 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * The {@link PageIndexer} is a {@link PrinterCommandHandler} that detects the page boundaries while the
+ * {@link PclParser} parses the data stream. For every page the {@link PageHandler} is told about the start
+ * and the end of the page (see {@link PageTracker} for the rules). If only the page boundaries are needed,
+ * the {@link PageScanner} is much faster because it does not create any {@link PrinterCommand}.
+ *
+ * <p>A page boundary is always located at the offset of the command that causes it. If the {@link PclParser}
+ * delivers every PCL command of a sequence separately, a page may therefore start in the middle of a PCL
+ * sequence (like the "2A" of "<code>&lt;esc&gt;&amp;l2x2A</code>"). Enable
+ * {@link PclParser#setCombineSequences(boolean)} to get the same boundaries as the {@link PageScanner}.
+ *
+ * <p>Example:
+ * <pre>
+ * final PageIndex index = new PageIndex();
+ * final PageIndexer indexer = new PageIndexer(index);
+ * try (PclParser parser = new PclParser(file, indexer)) {
+ *     parser.setCombineSequences(true);
+ *     indexer.finish(parser.parse().getOffset());
+ * }
+ * </pre>
+ */
+public final class PageIndexer implements PrinterCommandHandler {
+
+    private final PageTracker tracker;
+    private final PrinterCommandHandler nextHandler;
+
+    /**
+     * Constructor of the {@link PageIndexer}.
+     *
+     * @param pageHandler   the {@link PageHandler} that is invoked for every page.
+     */
+    public PageIndexer(final PageHandler pageHandler) {
+        this(pageHandler, null);
+    }
+
+    /**
+     * Constructor of the {@link PageIndexer}.
+     *
+     * @param pageHandler   the {@link PageHandler} that is invoked for every page.
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public PageIndexer(final PageHandler pageHandler, final PrinterCommandHandler nextHandler) {
+        this.tracker = new PageTracker(pageHandler);
+        this.nextHandler = nextHandler;
+    }
+
+    /**
+     * Returns the number of pages that have been ended so far.
+     *
+     * @return the number of ended pages.
+     */
+    public int getPageCount() {
+        return this.tracker.getPageCount();
+    }
+
+    /**
+     * Returns the offset of the first byte of the page in progress.
+     *
+     * @return the offset of the first byte of the page in progress or -1 if no page is in progress.
+     */
+    long getCurrentPageStartOffset() {
+        return this.tracker.getCurrentStartOffset();
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        final long offset = command.getOffset();
+
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    offset,
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getIntValue());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                this.process(
+                        offset,
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getIntValue(ix));
+            }
+
+        } else if (command instanceof TextCommand) {
+            this.tracker.command(offset);
+            this.tracker.mark();
+
+        } else if (command instanceof ControlCharacterCommand) {
+            if (((ControlCharacterCommand) command).getControlCharacter() == ControlCharacterCommand.FORM_FEED) {
+                this.tracker.formFeed(offset);
+            } else {
+                this.tracker.command(offset);
+            }
+
+        } else if (command instanceof TwoBytePclCommand) {
+            if (((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+                this.tracker.eject(offset);
+            } else {
+                this.tracker.command(offset);
+            }
+
+        } else if (command instanceof HpglCommand) {
+            final String mnemonic = ((HpglCommand) command).getCommand();
+            this.tracker.command(offset);
+            if (mnemonic.length() == 2 && PageTracker.isMarkingHpglCommand(mnemonic.charAt(0), mnemonic.charAt(1))) {
+                this.tracker.mark();
+            }
+        }
+
+        // PJL commands and the data of foreign languages never belong to a page...
+
+        if (this.nextHandler != null) {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+    }
+
+    /**
+     * Ends the current page if it has been marked. This should be invoked after the PCL data stream has
+     * been parsed.
+     *
+     * @param endOffset   offset of the end of the data stream (i. e. as returned by
+     *     {@link PclParseResult#getOffset()}).
+     *
+     * @throws IOException if the {@link PageHandler} throws an {@link IOException}.
+     */
+    public void finish(final long endOffset) throws IOException {
+        this.tracker.finish(endOffset);
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final int value) throws IOException {
+
+        switch (PageTracker.classify(parameterizedCharacter, groupCharacter, terminationCharacter, value)) {
+        case PageTracker.MARK:
+            this.tracker.command(offset);
+            this.tracker.mark();
+            break;
+        case PageTracker.EJECT:
+            this.tracker.eject(offset);
+            break;
+        case PageTracker.EXIT_LANGUAGE:
+            this.tracker.exitLanguage(offset);
+            break;
+        default:
+            this.tracker.command(offset);
+            break;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The {@link PageRange} holds the location of a page within a PCL data stream. The page starts with the
+ * byte at {@link #getStartOffset()} and ends right before the byte at {@link #getEndOffset()}, so the
+ * bytes of the page can be copied without parsing the data stream again.
+ *
+ * <p>The {@link PageRange} also holds the symbol sets of the primary and the secondary font that are selected
+ * at the beginning of the page, so {@link PclParser#parse(PageRange)} decodes the text of the page just like
+ * the text is decoded if the whole data stream is parsed. A {@link PageRange} that has been detected by the
+ * {@link PageIndexer} always holds the symbol sets that are selected after a "Printer Reset".
+ */
+public final class PageRange {
+
+    private final int pageNumber;
+    private final long startOffset;
+    private final long endOffset;
+    private final String primarySymbolSet;
+    private final String secondarySymbolSet;
+    private final boolean secondaryFontActive;
+
+    /**
+     * Constructor of a {@link PageRange}.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     * @param startOffset   offset of the first byte of the page, measured from the beginning of the data stream.
+     * @param endOffset   offset of the first byte after the page, measured from the beginning of the data stream.
+     */
+    public PageRange(final int pageNumber, final long startOffset, final long endOffset) {
+        this(pageNumber, startOffset, endOffset, SymbolSets.DEFAULT_SYMBOL_SET, SymbolSets.DEFAULT_SYMBOL_SET, false);
+    }
+
+    /**
+     * Constructor of a {@link PageRange} that starts with the given symbol sets.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     * @param startOffset   offset of the first byte of the page, measured from the beginning of the data stream.
+     * @param endOffset   offset of the first byte after the page, measured from the beginning of the data stream.
+     * @param primarySymbolSet   the symbol set of the primary font at the beginning of the page (like "8U").
+     * @param secondarySymbolSet   the symbol set of the secondary font at the beginning of the page.
+     * @param secondaryFontActive   true if the secondary font is active at the beginning of the page.
+     */
+    public PageRange(
+            final int pageNumber,
+            final long startOffset,
+            final long endOffset,
+            final String primarySymbolSet,
+            final String secondarySymbolSet,
+            final boolean secondaryFontActive) {
+
+        if (startOffset < 0 || endOffset < startOffset) {
+            throw new IllegalArgumentException("Invalid page range " + startOffset + " to " + endOffset);
+        }
+
+        this.pageNumber = pageNumber;
+        this.startOffset = startOffset;
+        this.endOffset = endOffset;
+        this.primarySymbolSet = primarySymbolSet;
+        this.secondarySymbolSet = secondarySymbolSet;
+        this.secondaryFontActive = secondaryFontActive;
+    }
+
+    /**
+     * Returns the number of the page, starting with 1.
+     *
+     * @return the number of the page.
+     */
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    /**
+     * Returns the offset of the first byte of the page, measured from the beginning of the data stream.
+     *
+     * @return the offset of the first byte of the page.
+     */
+    public long getStartOffset() {
+        return this.startOffset;
+    }
+
+    /**
+     * Returns the offset of the first byte after the page, measured from the beginning of the data stream.
+     *
+     * @return the offset of the first byte after the page.
+     */
+    public long getEndOffset() {
+        return this.endOffset;
+    }
+
+    /**
+     * Returns the symbol set of the primary font at the beginning of the page.
+     *
+     * @return the symbol set of the primary font (like "8U").
+     */
+    public String getPrimarySymbolSet() {
+        return this.primarySymbolSet;
+    }
+
+    /**
+     * Returns the symbol set of the secondary font at the beginning of the page.
+     *
+     * @return the symbol set of the secondary font (like "8U").
+     */
+    public String getSecondarySymbolSet() {
+        return this.secondarySymbolSet;
+    }
+
+    /**
+     * Returns true if the secondary font is active at the beginning of the page ("Shift Out").
+     *
+     * @return true if the secondary font is active.
+     */
+    public boolean isSecondaryFontActive() {
+        return this.secondaryFontActive;
+    }
+
+    /**
+     * Returns the number of bytes of the page.
+     *
+     * @return the number of bytes of the page.
+     */
+    public long getLength() {
+        return this.endOffset - this.startOffset;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.pageNumber ^ Long.hashCode(this.startOffset) ^ Long.hashCode(this.endOffset);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof PageRange) {
+            final PageRange o = (PageRange) other;
+            return o.pageNumber == this.pageNumber
+                    && o.startOffset == this.startOffset
+                    && o.endOffset == this.endOffset
+                    && o.primarySymbolSet.equals(this.primarySymbolSet)
+                    && o.secondarySymbolSet.equals(this.secondarySymbolSet)
+                    && o.secondaryFontActive == this.secondaryFontActive;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Page " + this.pageNumber + "@" + this.startOffset + "-" + this.endOffset;
+    }
+}
@@ -0,0 +1,675 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@link PageScanner} detects the page boundaries of a data stream without creating any
+ * {@link PrinterCommand}. It reads the data stream in large blocks and follows the syntax of PCL, PJL and
+ * HP/GL just like the {@link PclParser} does, but it only looks at the few commands that start, mark or end a
+ * page. Data sections (raster data, fonts and so on) and the data of foreign languages (i. e. PostScript, see
+ * {@link ForeignLanguageCommand}) are skipped. The detected pages are the same as the ones detected by the
+ * {@link PageIndexer} if the {@link PclParser} delivers combined PCL sequences.
+ *
+ * <p>Example:
+ * <pre>
+ * final PageIndex index = PageScanner.createIndex(file);
+ * for (int page = 1; page &lt;= index.getPageCount(); ++page) {
+ *     System.out.println(index.getPage(page));
+ * }
+ * </pre>
+ */
+public final class PageScanner {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final int END_OF_STREAM = -1;
+    private static final int ESCAPE = 0x1B;
+    private static final int VERTICAL_TAB = 0x0B;
+    private static final int CARRIAGE_RETURN = 0x0D;
+    private static final int LINE_FEED = 0x0A;
+    private static final int HPGL_TERMINATOR = ';';
+    private static final int DOUBLE_QUOTES = '\"';
+
+    private static final int MAX_DATA_SECTION_SIZE = 32767;
+    private static final String PJL_PREFIX = "@PJL";
+
+    private final PageHandler pageHandler;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private final StringBuilder pjlLine = new StringBuilder();
+
+    private PageTracker tracker;
+    private InputStream input;
+    private long bufferOffset;
+    private int position;
+    private int limit;
+
+    // The value of the PCL command that is currently scanned...
+    private int valueLength;
+    private long valueNumber;
+    private boolean valueNegative;
+    private boolean valueFraction;
+    private boolean valueInvalid;
+
+    /**
+     * Constructor of the {@link PageScanner}.
+     *
+     * @param pageHandler   the {@link PageHandler} that is invoked for every page.
+     */
+    public PageScanner(final PageHandler pageHandler) {
+        this.pageHandler = pageHandler;
+    }
+
+    /**
+     * Scans the given file and returns a {@link PageIndex} with all pages of the file.
+     *
+     * @param file   the {@link File} that contains the PCL data stream.
+     *
+     * @return the {@link PageIndex} with all pages of the file.
+     *
+     * @throws EOFException if the end of the stream was reached unexpectedly.
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public static PageIndex createIndex(final File file) throws IOException, PclException {
+        final PageIndex index = new PageIndex();
+        new PageScanner(index).scan(file);
+        return index;
+    }
+
+    /**
+     * Scans the given file.
+     *
+     * @param file   the {@link File} that contains the PCL data stream.
+     *
+     * @return the number of scanned bytes.
+     *
+     * @throws EOFException if the end of the stream was reached unexpectedly.
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public long scan(final File file) throws IOException, PclException {
+        try (InputStream in = new FileInputStream(file)) {
+            return this.scan(in);
+        }
+    }
+
+    /**
+     * Scans the given {@link InputStream} up to its end. The {@link InputStream} is not closed. Every
+     * invocation of this method starts with page number 1.
+     *
+     * @param in   the {@link InputStream} that contains the PCL data stream.
+     *
+     * @return the number of scanned bytes.
+     *
+     * @throws EOFException if the end of the stream was reached unexpectedly.
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public long scan(final InputStream in) throws IOException, PclException {
+        this.tracker = new PageTracker(this.pageHandler);
+        this.input = in;
+        this.bufferOffset = 0;
+        this.position = 0;
+        this.limit = 0;
+
+        try {
+            int readByte = this.read();
+            while (readByte != END_OF_STREAM) {
+                final long offset = this.tell() - 1;
+
+                if (readByte == ESCAPE) {
+                    readByte = this.scanPclCommand(offset);
+                } else if (isControlCharacter(readByte)) {
+                    if (readByte == ControlCharacterCommand.FORM_FEED) {
+                        this.tracker.formFeed(offset);
+                    } else {
+                        this.tracker.command(offset);
+                    }
+                    readByte = this.read();
+                } else {
+                    this.tracker.command(offset);
+                    this.tracker.mark();
+                    readByte = this.skipText();
+                }
+            }
+
+            final long length = this.tell();
+            this.tracker.finish(length);
+            return length;
+        } finally {
+            this.input = null;
+        }
+    }
+
+    /**
+     * Scans a PCL command or sequence. The escape byte has already been read.
+     *
+     * @return the next byte after the command.
+     */
+    private int scanPclCommand(final long offset) throws IOException, PclException {
+        final int parameterizedCharacter = this.read();
+        if (parameterizedCharacter == END_OF_STREAM) {
+            throw this.createEndOfFileException();
+        }
+
+        if (parameterizedCharacter >= 48 && parameterizedCharacter <= 126) {
+            if (parameterizedCharacter == 'E') {
+                this.tracker.eject(offset);
+            } else {
+                this.tracker.command(offset);
+            }
+            return this.read();
+        }
+
+        if (parameterizedCharacter < 33 || parameterizedCharacter > 47) {
+            throw this.createInvalidByteException();
+        }
+
+        int readByte = this.read();
+        if (readByte == END_OF_STREAM) {
+            throw this.createEndOfFileException();
+        }
+
+        final int groupCharacter = isGroupCharacter(readByte) ? readByte : 0x00;
+        if (groupCharacter != 0x00) {
+            readByte = this.read();
+            if (readByte == END_OF_STREAM) {
+                throw this.createEndOfFileException();
+            }
+        }
+
+        if (readByte == ESCAPE) {
+            throw this.createInvalidByteException();
+        }
+
+        if (parameterizedCharacter == '&' && groupCharacter == 'p' && readByte == '<') {
+            this.skipOceImageStreamDataContainer();
+            this.tracker.command(offset);
+            return this.read();
+        }
+
+        this.clearValue();
+        boolean firstCommand = true;
+
+        while (readByte != ESCAPE && readByte != END_OF_STREAM) {
+            if (readByte >= 64 && readByte <= 94) {
+                if (isCommandWithDataSection(parameterizedCharacter, groupCharacter, readByte)) {
+                    this.skipDataSection();
+                }
+
+                if (firstCommand && parameterizedCharacter == '%' && groupCharacter == 0x00) {
+                    if (readByte == 'X' && this.isUniversalExitLanguageValue()) {
+                        this.tracker.exitLanguage(offset);
+                        return this.skipPjl();
+                    } else if (readByte == 'B') {
+                        this.tracker.command(offset);
+                        return this.scanHpgl();
+                    }
+                }
+
+                this.process(offset, parameterizedCharacter, groupCharacter, readByte);
+                return this.read();
+            }
+
+            if (readByte >= 96 && readByte <= 126) {
+                this.process(offset, parameterizedCharacter, groupCharacter, readByte - 32);
+                this.clearValue();
+                firstCommand = false;
+            } else {
+                this.appendValue(readByte);
+            }
+
+            readByte = this.read();
+        }
+
+        if (this.valueLength != 0) {
+            throw this.createEndOfFileException();
+        }
+
+        return readByte;
+    }
+
+    /**
+     * Processes a single PCL command of a sequence.
+     */
+    private void process(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter) throws IOException {
+
+        final int value = this.getIntValue();
+        final int effect = PageTracker.classify(parameterizedCharacter, groupCharacter, terminationCharacter, value);
+
+        if (effect == PageTracker.EJECT) {
+            this.tracker.eject(offset);
+        } else {
+            this.tracker.command(offset);
+            if (effect == PageTracker.MARK) {
+                this.tracker.mark();
+            }
+        }
+    }
+
+    /**
+     * Skips the remaining part of the Oce ImageStream Data Container (up to "&gt;A").
+     */
+    private void skipOceImageStreamDataContainer() throws IOException, PclException {
+        int readByte;
+        do {
+            readByte = this.read();
+            if (readByte == END_OF_STREAM) {
+                throw this.createEndOfFileException();
+            }
+        } while (readByte != '>');
+
+        if (this.read() != 'A') {
+            throw this.createInvalidByteException();
+        }
+    }
+
+    /**
+     * Skips PJL commands up to the next escape byte. If a PJL command switches to a foreign language, the data
+     * of the foreign language is skipped as well.
+     *
+     * @return the escape byte or -1 at the end of the stream.
+     */
+    private int skipPjl() throws IOException, PclException {
+        final StringBuilder line = this.pjlLine;
+        line.setLength(0);
+        int readByte = this.read();
+
+        while (readByte != END_OF_STREAM && readByte != ESCAPE) {
+            if (line.length() == 0 && readByte != '@') {
+                throw new PclException("No PJL command is found at offset " + (this.tell() - 1));
+            }
+
+            // The carriage return is optional and stripped...
+            if (readByte == LINE_FEED) {
+                if (!startsWithPjlPrefix(line)) {
+                    throw new PclException("No PJL command is found at offset " + (this.tell() - 1 - line.length()));
+                }
+
+                // The data of a foreign language directly follows the line feed...
+                if (PjlParser.getForeignLanguage(line.toString()) != null) {
+                    return this.skipForeignLanguage();
+                }
+
+                line.setLength(0);
+            } else if (readByte != CARRIAGE_RETURN) {
+                line.append((char) readByte);
+            }
+
+            readByte = this.read();
+        }
+
+        if (line.length() != 0) {
+            throw new PclException(String.format(
+                    "The PJL command at offset %d is not properly terminated with a line feed",
+                    this.tell() - line.length()));
+        }
+
+        return readByte;
+    }
+
+    /**
+     * Returns true if the given PJL command starts with the prefix "@PJL".
+     */
+    private static boolean startsWithPjlPrefix(final CharSequence line) {
+        if (line.length() < PJL_PREFIX.length()) {
+            return false;
+        }
+        for (int ix = 0; ix < PJL_PREFIX.length(); ++ix) {
+            if (line.charAt(ix) != PJL_PREFIX.charAt(ix)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips the data of a foreign language up to the next "Universal Exit Language" command. The data is
+     * searched directly within the buffer.
+     *
+     * @return the escape byte of the "Universal Exit Language" command or -1 at the end of the stream.
+     */
+    private int skipForeignLanguage() throws IOException {
+        final byte[] pattern = ForeignLanguageParser.UNIVERSAL_EXIT_LANGUAGE;
+
+        for (;;) {
+            final byte[] buf = this.buffer;
+            final int end = this.limit;
+            int pos = this.position;
+            while (pos < end && buf[pos] != ESCAPE) {
+                ++pos;
+            }
+
+            this.position = pos;
+            if (pos == end) {
+                if (!this.fill()) {
+                    return END_OF_STREAM;
+                }
+                continue;
+            }
+
+            // The escape byte is not consumed until the complete command is in the buffer...
+            if (!this.ensureAvailable(pattern.length)) {
+                this.position = this.limit;
+                return END_OF_STREAM;
+            }
+
+            int ix = 1;
+            while (ix < pattern.length && this.buffer[this.position + ix] == pattern[ix]) {
+                ++ix;
+            }
+
+            ++this.position;
+            if (ix == pattern.length) {
+                return ESCAPE;
+            }
+        }
+    }
+
+    /**
+     * Scans HP/GL commands up to the next escape byte.
+     *
+     * @return the escape byte or -1 at the end of the stream.
+     */
+    private int scanHpgl() throws IOException {
+        int firstByte = this.read();
+
+        while (firstByte != ESCAPE && firstByte != END_OF_STREAM) {
+            final long offset = this.tell() - 1;
+
+            final int secondByte = this.read();
+            if (secondByte == END_OF_STREAM) {
+                throw this.createEndOfFileException();
+            }
+
+            this.tracker.command(offset);
+            if (PageTracker.isMarkingHpglCommand(toUpperCase(firstByte), toUpperCase(secondByte))) {
+                this.tracker.mark();
+            }
+
+            firstByte = this.skipHpglParameters();
+            if (firstByte == HPGL_TERMINATOR) {
+                firstByte = this.read();
+            }
+        }
+
+        return firstByte;
+    }
+
+    /**
+     * Skips the parameters of a HP/GL command.
+     *
+     * @return the value of the last read byte.
+     */
+    private int skipHpglParameters() throws IOException {
+        boolean inQuotedString = false;
+        int readByte = this.read();
+
+        while (readByte != END_OF_STREAM) {
+            if ((readByte == HPGL_TERMINATOR && !inQuotedString) || readByte == ESCAPE) {
+                return readByte;
+            }
+
+            if (readByte == DOUBLE_QUOTES) {
+                if (inQuotedString) {
+                    final int nextByte = this.read();
+                    if (nextByte != DOUBLE_QUOTES) {
+                        return nextByte;
+                    }
+                } else {
+                    inQuotedString = true;
+                }
+            }
+
+            readByte = this.read();
+        }
+
+        throw this.createEndOfFileException();
+    }
+
+    /**
+     * Skips text up to the next escape byte or control character. The text is searched directly
+     * within the buffer.
+     *
+     * @return the escape byte, the control character or -1 at the end of the stream.
+     */
+    private int skipText() throws IOException {
+        for (;;) {
+            final byte[] buf = this.buffer;
+            final int end = this.limit;
+            int pos = this.position;
+
+            while (pos < end) {
+                final int value = buf[pos++] & 0xFF;
+                if (value == ESCAPE || isControlCharacter(value)) {
+                    this.position = pos;
+                    return value;
+                }
+            }
+
+            this.position = pos;
+            if (!this.fill()) {
+                return END_OF_STREAM;
+            }
+        }
+    }
+
+    /**
+     * Skips the data section of a PCL command. The size of the data section is the value of the command.
+     */
+    private void skipDataSection() throws IOException, PclException {
+        if (this.valueLength == 0 || this.valueFraction || this.valueInvalid
+                || this.valueNumber > MAX_DATA_SECTION_SIZE || (this.valueNegative && this.valueNumber != 0)) {
+
+            throw new PclException(String.format(
+                    "The PCL command before offset %1$d contains an invalid data section size.", this.tell()));
+        }
+
+        int remaining = (int) this.valueNumber;
+        while (remaining > 0) {
+            if (this.position == this.limit && !this.fill()) {
+                throw this.createEndOfFileException();
+            }
+
+            final int skipped = Math.min(remaining, this.limit - this.position);
+            this.position += skipped;
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Resets the value of the current PCL command.
+     */
+    private void clearValue() {
+        this.valueLength = 0;
+        this.valueNumber = 0;
+        this.valueNegative = false;
+        this.valueFraction = false;
+        this.valueInvalid = false;
+    }
+
+    /**
+     * Appends a character to the value of the current PCL command.
+     */
+    private void appendValue(final int value) throws IOException, PclException {
+        if (value >= '0' && value <= '9') {
+            if (!this.valueFraction && this.valueNumber <= Integer.MAX_VALUE) {
+                this.valueNumber = this.valueNumber * 10 + (value - '0');
+            }
+        } else if (value == '.') {
+            this.valueFraction = true;
+        } else if (value == '-' || value == '+') {
+            if (this.valueLength == 0) {
+                this.valueNegative = value == '-';
+            } else {
+                this.valueInvalid = true;
+            }
+        } else {
+            throw this.createInvalidByteException();
+        }
+
+        ++this.valueLength;
+    }
+
+    /**
+     * Returns the value of the current PCL command as an integer, just like
+     * {@link ParameterizedPclCommand#toInt(String)} does.
+     */
+    private int getIntValue() {
+        if (this.valueInvalid || this.valueNumber > Integer.MAX_VALUE) {
+            return 0;
+        }
+        return (int) (this.valueNegative ? -this.valueNumber : this.valueNumber);
+    }
+
+    /**
+     * Returns true if the value of the current PCL command is exactly "-12345".
+     */
+    private boolean isUniversalExitLanguageValue() {
+        return this.valueLength == 6 && this.valueNegative && this.valueNumber == 12345 && !this.valueFraction;
+    }
+
+    /**
+     * Reads the next byte.
+     *
+     * @return the next byte or -1 at the end of the stream.
+     */
+    private int read() throws IOException {
+        if (this.position == this.limit && !this.fill()) {
+            return END_OF_STREAM;
+        }
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    /**
+     * Makes sure that the buffer contains at least the given number of bytes starting at the current position.
+     * The remaining bytes are moved to the beginning of the buffer if more bytes have to be read.
+     *
+     * @return false if the end of the stream has been reached before.
+     */
+    private boolean ensureAvailable(final int count) throws IOException {
+        if (this.limit - this.position >= count) {
+            return true;
+        }
+
+        final int remaining = this.limit - this.position;
+        System.arraycopy(this.buffer, this.position, this.buffer, 0, remaining);
+        this.bufferOffset += this.position;
+        this.position = 0;
+        this.limit = remaining;
+
+        while (this.limit < count) {
+            final int read = this.input.read(this.buffer, this.limit, this.buffer.length - this.limit);
+            if (read <= 0) {
+                return false;
+            }
+            this.limit += read;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the offset of the next byte that will be read.
+     */
+    private long tell() {
+        return this.bufferOffset + this.position;
+    }
+
+    /**
+     * Reads the next block from the {@link InputStream}.
+     *
+     * @return false if the end of the stream has been reached.
+     */
+    private boolean fill() throws IOException {
+        this.bufferOffset += this.limit;
+        this.position = 0;
+        this.limit = 0;
+
+        final int read = this.input.read(this.buffer, 0, this.buffer.length);
+        if (read > 0) {
+            this.limit = read;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns a new {@link EOFException} that contains the offset at which the data stream
+     * hits unexpectedly the end.
+     */
+    private EOFException createEndOfFileException() {
+        return new EOFException(String.format(
+                "The PCL data stream unexpectedly ends at offset %1$d. The data stream may be corrupted.",
+                this.tell()));
+    }
+
+    /**
+     * Returns a new {@link PclException} for the previously read byte.
+     */
+    private PclException createInvalidByteException() {
+        return new PclException(String.format(
+                "The byte value of the character at offset %1$d is invalid.", this.tell() - 1));
+    }
+
+    /**
+     * Checks if a byte with the given value is a PCL5 control character.
+     */
+    private static boolean isControlCharacter(final int value) {
+        if (value >= ControlCharacterCommand.BACKSPACE && value <= ControlCharacterCommand.SHIFT_IN) {
+            return value != VERTICAL_TAB;
+        } else {
+            return false;
+        }
+    }
+
+    /**
+     * Returns true if the given value is valid for a group character.
+     */
+    private static boolean isGroupCharacter(final int value) {
+        return value >= 96 && value <= 126;
+    }
+
+    /**
+     * Returns true if a PCL command with the specified characteristics contains a data section.
+     */
+    private static boolean isCommandWithDataSection(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter) {
+
+        return terminationCharacter == 'W'
+                || (parameterizedCharacter == '&' && groupCharacter == 'p' && terminationCharacter == 'X')
+                || (parameterizedCharacter == '*' && groupCharacter == 'b' && terminationCharacter == 'V');
+    }
+
+    /**
+     * Converts a lower case ASCII letter to upper case.
+     */
+    private static int toUpperCase(final int value) {
+        return value >= 'a' && value <= 'z' ? value - 32 : value;
+    }
+}
@@ -0,0 +1,98 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.HashMap;
+
+/**
+ * This class provides the dimensions of the physical page sizes that can be selected with the PCL command
+ * "Page Size" (<code>&lt;esc&gt;&amp;l#A</code>). All dimensions are given in decipoints (1/720 inch) and
+ * refer to the portrait orientation.
+ */
+final class PageSizes {
+
+    /**
+     * The page size that is used if no (or an unknown) page size has been selected (Letter).
+     */
+    static final int DEFAULT_PAGE_SIZE = 2;
+
+    private static final HashMap<Integer, int[]> MAPPINGS = new HashMap<>();
+
+    static {
+        MAPPINGS.put(1, new int[] {5220, 7560});       // Executive
+        MAPPINGS.put(2, new int[] {6120, 7920});       // Letter
+        MAPPINGS.put(3, new int[] {6120, 10080});      // Legal
+        MAPPINGS.put(6, new int[] {7920, 12240});      // Ledger
+        MAPPINGS.put(25, new int[] {4195, 5953});      // A5
+        MAPPINGS.put(26, new int[] {5953, 8419});      // A4
+        MAPPINGS.put(27, new int[] {8419, 11906});     // A3
+        MAPPINGS.put(45, new int[] {5159, 7286});      // JIS B5
+        MAPPINGS.put(46, new int[] {7286, 10318});     // JIS B4
+        MAPPINGS.put(80, new int[] {2790, 5400});      // Monarch Envelope
+        MAPPINGS.put(81, new int[] {2970, 6840});      // Commercial Envelope 10
+        MAPPINGS.put(90, new int[] {3118, 6236});      // International DL Envelope
+        MAPPINGS.put(91, new int[] {4592, 6491});      // International C5 Envelope
+        MAPPINGS.put(100, new int[] {4989, 7087});     // International B5 Envelope
+    }
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private PageSizes() {
+    }
+
+    /**
+     * Returns true if the given page size is known.
+     *
+     * @param pageSize   the value of the PCL command "Page Size".
+     *
+     * @return true if the page size is known.
+     */
+    static boolean isKnown(final int pageSize) {
+        return MAPPINGS.containsKey(pageSize);
+    }
+
+    /**
+     * Returns the width of the given page size in decipoints. The width of the default page size is
+     * returned if the page size is unknown.
+     *
+     * @param pageSize   the value of the PCL command "Page Size".
+     *
+     * @return the width of the page (portrait orientation) in decipoints.
+     */
+    static int getWidth(final int pageSize) {
+        return getDimensions(pageSize)[0];
+    }
+
+    /**
+     * Returns the height of the given page size in decipoints. The height of the default page size is
+     * returned if the page size is unknown.
+     *
+     * @param pageSize   the value of the PCL command "Page Size".
+     *
+     * @return the height of the page (portrait orientation) in decipoints.
+     */
+    static int getHeight(final int pageSize) {
+        return getDimensions(pageSize)[1];
+    }
+
+    private static int[] getDimensions(final int pageSize) {
+        final int[] result = MAPPINGS.get(pageSize);
+        return result != null ? result : MAPPINGS.get(DEFAULT_PAGE_SIZE);
+    }
+}
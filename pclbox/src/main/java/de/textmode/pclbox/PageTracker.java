@@ -0,0 +1,258 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * The {@link PageTracker} implements the page boundary rules that are shared by the {@link PageIndexer} and
+ * the {@link PageScanner}. It is told about the commands of the data stream and passes the detected pages
+ * to a {@link PageHandler}.
+ *
+ * <p>A page starts with the first command after the end of the previous page that is neither a PJL command
+ * nor a "Universal Exit Language" command. A form feed always ends a page (the form feed belongs to the page).
+ * The commands "Printer Reset", "Page Size", "Paper Source", "Page Length", "Orientation" and the "Universal
+ * Exit Language" command end a page only if the page has been marked. The ending command belongs to the next
+ * page. A page that has not been marked is dropped at a "Universal Exit Language" command and at the end of
+ * the data stream.
+ */
+final class PageTracker {
+
+    // The effect of a PCL command on the page boundaries, as returned by classify()...
+    static final int NONE = 0;
+    static final int MARK = 1;
+    static final int EJECT = 2;
+    static final int EXIT_LANGUAGE = 3;
+
+    private static final int UEL_VALUE = -12345;
+
+    private final PageHandler pageHandler;
+
+    private int pageNumber;
+    private boolean inPage;
+    private boolean started;
+    private boolean marked;
+    private long startOffset;
+
+    /**
+     * Constructor of the {@link PageTracker}.
+     *
+     * @param pageHandler   the {@link PageHandler} that is invoked for every page.
+     */
+    PageTracker(final PageHandler pageHandler) {
+        this.pageHandler = pageHandler;
+    }
+
+    /**
+     * Returns the number of pages that have been ended so far.
+     *
+     * @return the number of ended pages.
+     */
+    int getPageCount() {
+        return this.started ? this.pageNumber - 1 : this.pageNumber;
+    }
+
+    /**
+     * Returns the offset of the first byte of the page in progress.
+     *
+     * @return the offset of the first byte of the page in progress or -1 if no page is in progress.
+     */
+    long getCurrentStartOffset() {
+        return this.inPage ? this.startOffset : -1;
+    }
+
+    /**
+     * Tells the {@link PageTracker} that a command that belongs to a page has been read. If no page is in
+     * progress, a new page starts at the given offset.
+     *
+     * @param offset   offset of the command.
+     */
+    void command(final long offset) {
+        if (!this.inPage) {
+            this.inPage = true;
+            this.startOffset = offset;
+        }
+    }
+
+    /**
+     * Tells the {@link PageTracker} that the current page has been marked (i. e. by text or raster graphics).
+     */
+    void mark() throws IOException {
+        this.marked = true;
+        this.start();
+    }
+
+    /**
+     * Tells the {@link PageTracker} that a form feed has been read.
+     *
+     * @param offset   offset of the form feed.
+     */
+    void formFeed(final long offset) throws IOException {
+        this.command(offset);
+        this.start();
+        this.end(offset + 1);
+    }
+
+    /**
+     * Tells the {@link PageTracker} that a command has been read that ends a marked page. The command itself
+     * belongs to the next page.
+     *
+     * @param offset   offset of the command.
+     */
+    void eject(final long offset) throws IOException {
+        if (this.marked) {
+            this.end(offset);
+        }
+        this.command(offset);
+    }
+
+    /**
+     * Tells the {@link PageTracker} that a "Universal Exit Language" command has been read. The following
+     * PJL commands do not belong to any page.
+     *
+     * @param offset   offset of the "Universal Exit Language" command.
+     */
+    void exitLanguage(final long offset) throws IOException {
+        if (this.marked) {
+            this.end(offset);
+        }
+        this.inPage = false;
+    }
+
+    /**
+     * Tells the {@link PageTracker} that the end of the data stream has been reached. A page that has been
+     * marked is ended.
+     *
+     * @param offset   offset of the end of the data stream.
+     */
+    void finish(final long offset) throws IOException {
+        this.exitLanguage(offset);
+    }
+
+    /**
+     * Reports the start of the current page if this has not been done so far.
+     */
+    private void start() throws IOException {
+        if (!this.started) {
+            this.started = true;
+            this.pageHandler.handlePageStart(++this.pageNumber, this.startOffset);
+        }
+    }
+
+    /**
+     * Ends the current page.
+     */
+    private void end(final long endOffset) throws IOException {
+        final PageRange page = new PageRange(this.pageNumber, this.startOffset, endOffset);
+
+        this.inPage = false;
+        this.started = false;
+        this.marked = false;
+
+        this.pageHandler.handlePageEnd(page);
+    }
+
+    /**
+     * Returns the effect of a PCL command on the page boundaries. Text and form feeds are handled by the caller.
+     * Note that the command "Number of Copies" (<code>&lt;esc&gt;&amp;l#X</code>) does not end a page.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL command.
+     * @param groupCharacter   the group character of the PCL command or 0.
+     * @param terminationCharacter   the termination character of the PCL command.
+     * @param value   the value of the PCL command as an integer.
+     *
+     * @return one of {@link #NONE}, {@link #MARK}, {@link #EJECT} or {@link #EXIT_LANGUAGE}.
+     */
+    static int classify(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final int value) {
+
+        switch (parameterizedCharacter) {
+        case '*':
+            if (groupCharacter == 'b') {
+                // Transfer Raster Data (by Row / by Plane)
+                return terminationCharacter == 'W' || terminationCharacter == 'V' ? MARK : NONE;
+            } else if (groupCharacter == 'c') {
+                // Fill Rectangular Area
+                return terminationCharacter == 'P' ? MARK : NONE;
+            }
+            return NONE;
+
+        case '&':
+            if (groupCharacter == 'l') {
+                switch (terminationCharacter) {
+                case 'A':
+                case 'H':
+                case 'O':
+                case 'P':
+                    return EJECT;
+                default:
+                    return NONE;
+                }
+            } else if (groupCharacter == 'p') {
+                // Transparent Print Data
+                return terminationCharacter == 'X' ? MARK : NONE;
+            } else if (groupCharacter == 'f') {
+                // Macro Control "Execute" and "Call"
+                return terminationCharacter == 'X' && (value == 2 || value == 3) ? MARK : NONE;
+            }
+            return NONE;
+
+        case '%':
+            return groupCharacter == 0 && terminationCharacter == 'X' && value == UEL_VALUE ? EXIT_LANGUAGE : NONE;
+
+        default:
+            return NONE;
+        }
+    }
+
+    /**
+     * Returns true if the HP/GL command with the given (upper case) mnemonic draws something.
+     *
+     * @param first   the first character of the mnemonic.
+     * @param second   the second character of the mnemonic.
+     *
+     * @return true if the HP/GL command draws something.
+     */
+    static boolean isMarkingHpglCommand(final int first, final int second) {
+        switch (first << 8 | second) {
+        case 'A' << 8 | 'A':  // Arc Absolute
+        case 'A' << 8 | 'R':  // Arc Relative
+        case 'A' << 8 | 'T':  // Absolute Arc Three Point
+        case 'B' << 8 | 'R':  // Bezier Relative
+        case 'B' << 8 | 'Z':  // Bezier Absolute
+        case 'C' << 8 | 'I':  // Circle
+        case 'E' << 8 | 'A':  // Edge Rectangle Absolute
+        case 'E' << 8 | 'P':  // Edge Polygon
+        case 'E' << 8 | 'R':  // Edge Rectangle Relative
+        case 'E' << 8 | 'W':  // Edge Wedge
+        case 'F' << 8 | 'P':  // Fill Polygon
+        case 'L' << 8 | 'B':  // Label
+        case 'P' << 8 | 'D':  // Pen Down
+        case 'P' << 8 | 'E':  // Polyline Encoded
+        case 'R' << 8 | 'A':  // Fill Rectangle Absolute
+        case 'R' << 8 | 'R':  // Fill Rectangle Relative
+        case 'R' << 8 | 'T':  // Relative Arc Three Point
+        case 'W' << 8 | 'G':  // Fill Wedge
+            return true;
+        default:
+            return false;
+        }
+    }
+}
@@ -81,13 +81,38 @@ public final class ParameterizedPclCommand extends Pcl5Command {
             final int terminationCharacter,
             final byte[] dataSection) {
 
+        this(offset, parameterizedCharacter, groupCharacter, value, terminationCharacter, dataSection, true);
+    }
+
+    /**
+     * Constructor of a {@link ParameterizedPclCommand} that is used if the data section has just been read or
+     * created (or is shared with another command that never modifies it).
+     *
+     * @param offset   position within the data stream
+     * @param parameterizedCharacter   the parameterized character of the PCL command (ASCII range 33 to 47)
+     * @param groupCharacter   the group character of the PCL command (ASCII range 96 to 126) or 0 if the
+     *     PCL command does not contain a group character.
+     * @param value   the value string. If an empty string is given "0" is used as the value
+     * @param terminationCharacter   the termination character of the PCL command (ASCII range 64 to 94)
+     * @param dataSection   some binary data that belongs to the PCL command (i. e. a binary font header)
+     * @param copyData   false if the {@link ParameterizedPclCommand} takes ownership of the data section
+     */
+    ParameterizedPclCommand(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final String value,
+            final int terminationCharacter,
+            final byte[] dataSection,
+            final boolean copyData) {
+
         super(offset);
 
         this.parameterizedCharacter = parameterizedCharacter;
         this.groupCharacter = groupCharacter;
         this.value = value.isEmpty() ? "0" : value;
         this.terminationCharacter = terminationCharacter;
-        this.dataSection = dataSection == null ? null : dataSection.clone();
+        this.dataSection = dataSection == null || !copyData ? dataSection : dataSection.clone();
     }
 
     /**
@@ -127,6 +152,16 @@ public final class ParameterizedPclCommand extends Pcl5Command {
         return this.value;
     }
 
+    /**
+     * Gets the value as an integer. Decimal places are truncated. If the value is not a valid
+     * number, 0 is returned.
+     *
+     * @return the value (as an integer).
+     */
+    public int getIntValue() {
+        return toInt(this.value);
+    }
+
     /**
      * Gets the data section of the PCL command if the PCL command contains such a data section.
      *
@@ -136,6 +171,77 @@ public final class ParameterizedPclCommand extends Pcl5Command {
         return this.dataSection == null ? null : this.dataSection.clone();
     }
 
+    /**
+     * Gets the data section of the PCL command without copying it. The returned array must not be modified.
+     *
+     * @return the data section or <code>null</code> if the PCL command does not contain a data section.
+     */
+    byte[] getDataSectionWithoutCopy() {
+        return this.dataSection;
+    }
+
+    /**
+     * Converts the given value string of a PCL command to an integer. Decimal places are truncated. If the
+     * value is not a valid number (or is out of range), 0 is returned. This method is used instead of
+     * {@link Integer#parseInt(String)} because it does not throw exceptions and accepts a leading "+".
+     *
+     * @param value   the value string of a PCL command.
+     *
+     * @return the value (as an integer).
+     */
+    static int toInt(final String value) {
+        final int length = value.length();
+        if (length == 0) {
+            return 0;
+        }
+
+        int pos = 0;
+        boolean negative = false;
+        final char sign = value.charAt(0);
+        if (sign == '-' || sign == '+') {
+            negative = sign == '-';
+            ++pos;
+        }
+
+        long result = 0;
+        while (pos < length) {
+            final char c = value.charAt(pos++);
+            if (c == '.') {
+                break;
+            }
+            if (c < '0' || c > '9') {
+                return 0;
+            }
+
+            result = result * 10 + (c - '0');
+            if (result > Integer.MAX_VALUE) {
+                return 0;
+            }
+        }
+
+        return (int) (negative ? -result : result);
+    }
+
+    /**
+     * Converts the given value string of a PCL command to a double (PCL allows up to four decimal places for
+     * some commands). If the value is not a valid number, 0 is returned.
+     *
+     * @param value   the value string of a PCL command.
+     *
+     * @return the value (as a double).
+     */
+    static double toDouble(final String value) {
+        if (value.indexOf('.') < 0) {
+            return toInt(value);
+        }
+
+        try {
+            return Double.parseDouble(value);
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
     @Override
     public void accept(PrinterCommandVisitor visitor) throws IOException {
         visitor.handle(this);
@@ -209,7 +315,7 @@ public final class ParameterizedPclCommand extends Pcl5Command {
 
         // There are some PCL-Commands that are usually written without
         // the value....
-        if (!isWithoutValue()) {
+        if (!this.isWithoutValue()) {
             sb.append(this.getValue());
         }
 
@@ -223,10 +329,17 @@ public final class ParameterizedPclCommand extends Pcl5Command {
      *
      * @return true if this {@link ParameterizedPclCommand} should be written without the value.
      */
-    private boolean isWithoutValue() {
-        return (this.toCommandString().equals("*rB") && this.getValue().equals("0"))
-                || (this.toCommandString().equals("*rC") && this.getValue().equals("0"))
-                || (this.toCommandString().equals("&d@") && this.getValue().equals("0"));
+    boolean isWithoutValue() {
+        // Compared character by character because this is invoked for every written command...
+        if (!this.value.equals("0")) {
+            return false;
+        }
+
+        if (this.parameterizedCharacter == '*' && this.groupCharacter == 'r') {
+            return this.terminationCharacter == 'B' || this.terminationCharacter == 'C';
+        }
+
+        return this.parameterizedCharacter == '&' && this.groupCharacter == 'd' && this.terminationCharacter == '@';
     }
 
     @Override
@@ -19,6 +19,9 @@ package de.textmode.pclbox;
 import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * This {@link DataStreamParser} parses PCL5 printer data stream.
@@ -45,6 +48,14 @@ final class Pcl5Parser extends DataStreamParser {
     private static final int TERMINATION_CHARACTER_MIN = 64;
     private static final int TERMINATION_CHARACTER_MAX = 94;
 
+    // Values and termination characters of the commands of a PCL sequence that are collected if
+    // PCL sequences shall be delivered as a CombinedPclCommand...
+    private final List<String> sequenceValues = new ArrayList<>();
+    private int[] sequenceTerminationCharacters = new int[8];
+
+    // Symbol sets of the primary and the secondary font, recorded in every TextCommand so the text
+    // can be decoded...
+    private final SymbolSetTracker symbolSets;
 
     /**
      * Constructor. Just gets the {@link PclParserContext}.
@@ -53,6 +64,7 @@ final class Pcl5Parser extends DataStreamParser {
      */
     Pcl5Parser(final PclParserContext context) {
         super(context);
+        this.symbolSets = context.getSymbolSets();
     }
 
     @Override
@@ -62,9 +74,18 @@ final class Pcl5Parser extends DataStreamParser {
 
         while (firstByte != END_OF_STREAM) {
 
-            final long offset = this.getInputStream().tell() - 1;
+            // The parser of a foreign language ends right after the "Universal Exit Language" command...
+            final boolean isUniversalExitLanguageRead = firstByte == UNIVERSAL_EXIT_LANGUAGE_READ;
+            final long offset = this.getInputStream().tell()
+                    - (isUniversalExitLanguageRead ? ForeignLanguageParser.UNIVERSAL_EXIT_LANGUAGE.length : 1);
+
+            if (this.getContext().checkpoint(offset)) {
+                return END_OF_STREAM;
+            }
 
-            if (firstByte == ESCAPE) {
+            if (isUniversalExitLanguageRead) {
+                firstByte = this.handleReadUniversalExitLanguage(offset);
+            } else if (firstByte == ESCAPE) {
                 firstByte = this.parsePclCommand(offset);
             } else {
                 if (isControlCharacter(firstByte)) {
@@ -77,6 +98,22 @@ final class Pcl5Parser extends DataStreamParser {
         return END_OF_STREAM;
     }
 
+    /**
+     * Handles a "Universal Exit Language" command that has already been read by the {@link ForeignLanguageParser}
+     * and switches to PJL.
+     *
+     * @param offset   the offset of the "Universal Exit Language" command.
+     *
+     * @return the first byte after the PJL commands.
+     */
+    private int handleReadUniversalExitLanguage(final long offset) throws IOException, PclException {
+        this.getPrinterCommandHandler().handlePrinterCommand(
+                new ParameterizedPclCommand(offset, '%', 0, "-12345", 'X'));
+
+        this.symbolSets.reset();
+        return new PjlParser(this.getContext()).parse();
+    }
+
     /**
      * Checks if a byte with the given value is a PCL5 control character.
      *
@@ -85,7 +122,7 @@ final class Pcl5Parser extends DataStreamParser {
      * @return true if the given byte is a control character.
      */
     private static boolean isControlCharacter(final int byteToCheck) {
-        if (byteToCheck >= ControlCharacterCommand.BACKSPACE && byteToCheck <= ControlCharacterCommand.SHIFT_OUT) {
+        if (byteToCheck >= ControlCharacterCommand.BACKSPACE && byteToCheck <= ControlCharacterCommand.SHIFT_IN) {
             return byteToCheck != VERTICAL_TAB;
         } else {
             return false;
@@ -111,7 +148,10 @@ final class Pcl5Parser extends DataStreamParser {
             readByte = this.getInputStream().read();
         }
 
-        this.getPrinterCommandHandler().handlePrinterCommand(new TextCommand(offset, out.toByteArray()));
+        this.getPrinterCommandHandler().handlePrinterCommand(new TextCommand(
+                offset,
+                out.toByteArray(),
+                this.symbolSets.getActiveSymbolSet()));
 
         return readByte;
     }
@@ -126,6 +166,12 @@ final class Pcl5Parser extends DataStreamParser {
      *     or just the end of the stream.
      */
     private int handleReadControlCharacter(final long offset, final int controlCharacter) throws IOException {
+        if (controlCharacter == ControlCharacterCommand.SHIFT_OUT) {
+            this.symbolSets.setSecondaryFontActive(true);
+        } else if (controlCharacter == ControlCharacterCommand.SHIFT_IN) {
+            this.symbolSets.setSecondaryFontActive(false);
+        }
+
         this.getPrinterCommandHandler().handlePrinterCommand(
                 new ControlCharacterCommand(offset, (byte) controlCharacter));
 
@@ -149,6 +195,10 @@ final class Pcl5Parser extends DataStreamParser {
         }
 
         if (isOperationCharacter(parameterizedCharacter)) {
+            if (parameterizedCharacter == 'E') {
+                this.symbolSets.reset();
+            }
+
             this.getPrinterCommandHandler().handlePrinterCommand(
                     new TwoBytePclCommand(offset, parameterizedCharacter));
 
@@ -193,6 +243,9 @@ final class Pcl5Parser extends DataStreamParser {
             return this.getInputStream().read();
         }
 
+        final boolean combineSequences = this.getContext().isCombineSequences();
+        this.sequenceValues.clear();
+
         final StringBuilder sb = new StringBuilder();
         long currentCommandOffset = offset;
         while (readByte != ESCAPE && readByte != END_OF_STREAM) {
@@ -220,28 +273,48 @@ final class Pcl5Parser extends DataStreamParser {
                                 sb.toString()));
                     }
 
-                    dataSection = new byte[dataSectionSize];
-                    final int read = this.getInputStream().read(dataSection);
+                    final DataSectionFilter filter = this.getContext().getDataSectionFilter();
+                    if (filter != null
+                            && !filter.isDataSectionRequired(parameterizedCharacter, groupCharacter, readByte)) {
+
+                        dataSection = null;
+                        this.getInputStream().seek(this.getInputStream().tell() + dataSectionSize);
+                    } else {
+                        dataSection = new byte[dataSectionSize];
+                        final int read = this.getInputStream().read(dataSection);
 
-                    if (read != dataSectionSize) {
-                        throw this.createEndOfFileException();
+                        if (read != dataSectionSize) {
+                            throw this.createEndOfFileException();
+                        }
                     }
                 } else {
                     dataSection = null;
                 }
 
+                if (!this.sequenceValues.isEmpty()) {
+                    this.addSequenceCommand(sb.toString(), readByte);
+                    this.trackSymbolSets(parameterizedCharacter, groupCharacter);
+                    this.getPrinterCommandHandler().handlePrinterCommand(
+                            this.createCombinedCommand(offset, parameterizedCharacter, groupCharacter, dataSection));
+
+                    return this.getInputStream().read();
+                }
+
                 final ParameterizedPclCommand command = new ParameterizedPclCommand(
                         currentCommandOffset,
                         parameterizedCharacter,
                         groupCharacter,
                         sb.toString(),
                         readByte,
-                        dataSection);
+                        dataSection,
+                        false);
 
+                this.symbolSets.track(parameterizedCharacter, groupCharacter, command.getValue(), readByte);
                 this.getPrinterCommandHandler().handlePrinterCommand(command);
 
                 // If we've read a "Universal Exit Language Command", we have to switch to PJL...
                 if (this.isUniversalExitLanguageCommand(command)) {
+                    this.symbolSets.reset();
                     return new PjlParser(this.getContext()).parse();
                 } else if (this.isEnterHpglModeCommand(command)) {
                     return new HpglParser(this.getContext()).parse();
@@ -252,13 +325,23 @@ final class Pcl5Parser extends DataStreamParser {
 
             // If we encounter a parameter character, we've parsed one part of a PCL escape sequence...
             if (isParameterCharacter(readByte)) {
-                this.getPrinterCommandHandler().handlePrinterCommand(
-                        new ParameterizedPclCommand(
-                                currentCommandOffset,
-                                parameterizedCharacter,
-                                groupCharacter,
-                                sb.toString(),
-                                parameterCharacterToTerminationCharacter(readByte)));
+                if (combineSequences) {
+                    this.addSequenceCommand(sb.toString(), parameterCharacterToTerminationCharacter(readByte));
+                } else {
+                    this.symbolSets.track(
+                            parameterizedCharacter,
+                            groupCharacter,
+                            sb.toString(),
+                            parameterCharacterToTerminationCharacter(readByte));
+
+                    this.getPrinterCommandHandler().handlePrinterCommand(
+                            new ParameterizedPclCommand(
+                                    currentCommandOffset,
+                                    parameterizedCharacter,
+                                    groupCharacter,
+                                    sb.toString(),
+                                    parameterCharacterToTerminationCharacter(readByte)));
+                }
 
                 sb.setLength(0);
                 currentCommandOffset = this.getInputStream().tell();
@@ -279,9 +362,78 @@ final class Pcl5Parser extends DataStreamParser {
             throw this.createEndOfFileException();
         }
 
+        // A sequence may also be terminated by a parameter character (which is not correct but tolerated)...
+        this.trackSymbolSets(parameterizedCharacter, groupCharacter);
+        if (this.sequenceValues.size() == 1) {
+            this.getPrinterCommandHandler().handlePrinterCommand(new ParameterizedPclCommand(
+                    offset,
+                    parameterizedCharacter,
+                    groupCharacter,
+                    this.sequenceValues.get(0),
+                    this.sequenceTerminationCharacters[0]));
+        } else if (!this.sequenceValues.isEmpty()) {
+            this.getPrinterCommandHandler().handlePrinterCommand(
+                    this.createCombinedCommand(offset, parameterizedCharacter, groupCharacter, null));
+        }
+
         return readByte;
     }
 
+    /**
+     * Tracks the symbol sets of all PCL commands of the currently collected PCL sequence.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL sequence
+     * @param groupCharacter   the group character of the PCL sequence
+     */
+    private void trackSymbolSets(final int parameterizedCharacter, final int groupCharacter) {
+        for (int ix = 0; ix < this.sequenceValues.size(); ++ix) {
+            this.symbolSets.track(
+                    parameterizedCharacter,
+                    groupCharacter,
+                    this.sequenceValues.get(ix),
+                    this.sequenceTerminationCharacters[ix]);
+        }
+    }
+
+    /**
+     * Adds a PCL command to the currently collected PCL sequence.
+     *
+     * @param value   the value of the PCL command
+     * @param terminationCharacter   the termination character of the PCL command
+     */
+    private void addSequenceCommand(final String value, final int terminationCharacter) {
+        final int index = this.sequenceValues.size();
+        if (index == this.sequenceTerminationCharacters.length) {
+            this.sequenceTerminationCharacters = Arrays.copyOf(this.sequenceTerminationCharacters, index * 2);
+        }
+
+        this.sequenceValues.add(value);
+        this.sequenceTerminationCharacters[index] = terminationCharacter;
+    }
+
+    /**
+     * Creates a {@link CombinedPclCommand} from the currently collected PCL sequence.
+     */
+    private CombinedPclCommand createCombinedCommand(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final byte[] dataSection) {
+
+        final int count = this.sequenceValues.size();
+        final CombinedPclCommand result = new CombinedPclCommand(
+                offset,
+                parameterizedCharacter,
+                groupCharacter,
+                this.sequenceValues.toArray(new String[count]),
+                Arrays.copyOf(this.sequenceTerminationCharacters, count),
+                dataSection,
+                false);
+
+        this.sequenceValues.clear();
+        return result;
+    }
+
     /**
      * Parses the proprietary PCL-Command ImageStream Data Container from Oce.
      */
@@ -0,0 +1,352 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link PclCommandPattern} describes the {@link PrinterCommand}s that are searched by {@link PclGrep}. A pattern
+ * matches either
+ * <ul>
+ * <li>PCL commands with the given parameterized, group and termination character and a value within a given
+ * range (see {@link #pcl(int, int, int, double, double)}),</li>
+ * <li>PJL commands that contain a match of a regular expression (see {@link #pjl(String)}) or</li>
+ * <li>HP/GL2 commands with the given mnemonic (see {@link #hpgl(String)}).</li>
+ * </ul>
+ *
+ * <p>Patterns can also be parsed from a string (see {@link #parse(String)}), i. e. "<code>ESC&amp;l4H</code>",
+ * "<code>&amp;lH</code>" (any value), "<code>*p100..200X</code>" (a value range), "<code>pjl:JOB NAME</code>" or
+ * "<code>hpgl:PE</code>".
+ */
+public final class PclCommandPattern {
+
+    private static final String PJL_PREFIX = "pjl:";
+    private static final String HPGL_PREFIX = "hpgl:";
+
+    private final String description;
+    private final int parameterizedCharacter;
+    private final int groupCharacter;
+    private final int terminationCharacter;
+    private final double minValue;
+    private final double maxValue;
+    private final Pattern pjlPattern;
+    private final String mnemonic;
+
+    /**
+     * Constructor of the {@link PclCommandPattern}.
+     */
+    private PclCommandPattern(
+            final String description,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final double minValue,
+            final double maxValue,
+            final Pattern pjlPattern,
+            final String mnemonic) {
+
+        this.description = description;
+        this.parameterizedCharacter = parameterizedCharacter;
+        this.groupCharacter = groupCharacter;
+        this.terminationCharacter = terminationCharacter;
+        this.minValue = minValue;
+        this.maxValue = maxValue;
+        this.pjlPattern = pjlPattern;
+        this.mnemonic = mnemonic;
+    }
+
+    /**
+     * Creates a {@link PclCommandPattern} that matches PCL commands with any value.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL command (ASCII range 33 to 47)
+     * @param groupCharacter   the group character of the PCL command (ASCII range 96 to 126) or 0 if the
+     *     PCL command does not contain a group character.
+     * @param terminationCharacter   the termination character of the PCL command (ASCII range 64 to 94)
+     *
+     * @return the {@link PclCommandPattern}.
+     */
+    public static PclCommandPattern pcl(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter) {
+
+        return pcl(parameterizedCharacter, groupCharacter, terminationCharacter,
+                Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Creates a {@link PclCommandPattern} that matches PCL commands with a value within the given range.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL command (ASCII range 33 to 47)
+     * @param groupCharacter   the group character of the PCL command (ASCII range 96 to 126) or 0 if the
+     *     PCL command does not contain a group character.
+     * @param terminationCharacter   the termination character of the PCL command (ASCII range 64 to 94)
+     * @param minValue   the minimum value (inclusive).
+     * @param maxValue   the maximum value (inclusive).
+     *
+     * @return the {@link PclCommandPattern}.
+     */
+    public static PclCommandPattern pcl(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final double minValue,
+            final double maxValue) {
+
+        if (parameterizedCharacter < 33 || parameterizedCharacter > 47) {
+            throw new IllegalArgumentException("Invalid parameterized character " + (char) parameterizedCharacter);
+        }
+        if (groupCharacter != 0 && (groupCharacter < 96 || groupCharacter > 126)) {
+            throw new IllegalArgumentException("Invalid group character " + (char) groupCharacter);
+        }
+        if (terminationCharacter < 64 || terminationCharacter > 94) {
+            throw new IllegalArgumentException("Invalid termination character " + (char) terminationCharacter);
+        }
+        if (minValue > maxValue) {
+            throw new IllegalArgumentException("Invalid value range " + minValue + " to " + maxValue);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append((char) parameterizedCharacter);
+        if (groupCharacter != 0) {
+            sb.append((char) groupCharacter);
+        }
+        if (minValue == maxValue) {
+            sb.append(formatValue(minValue));
+        } else if (minValue != Double.NEGATIVE_INFINITY || maxValue != Double.POSITIVE_INFINITY) {
+            sb.append(minValue == Double.NEGATIVE_INFINITY ? "" : formatValue(minValue));
+            sb.append("..");
+            sb.append(maxValue == Double.POSITIVE_INFINITY ? "" : formatValue(maxValue));
+        }
+        sb.append((char) terminationCharacter);
+
+        return new PclCommandPattern(sb.toString(), parameterizedCharacter, groupCharacter, terminationCharacter,
+                minValue, maxValue, null, null);
+    }
+
+    /**
+     * Creates a {@link PclCommandPattern} that matches PJL commands that contain a match of the given regular
+     * expression. The regular expression is case insensitive.
+     *
+     * @param regex   the regular expression.
+     *
+     * @return the {@link PclCommandPattern}.
+     */
+    public static PclCommandPattern pjl(final String regex) {
+        return new PclCommandPattern(PJL_PREFIX + regex, 0, 0, 0, 0, 0,
+                Pattern.compile(regex, Pattern.CASE_INSENSITIVE), null);
+    }
+
+    /**
+     * Creates a {@link PclCommandPattern} that matches HP/GL2 commands with the given mnemonic.
+     *
+     * @param mnemonic   the two letter mnemonic of the HP/GL2 command (i. e. "PE").
+     *
+     * @return the {@link PclCommandPattern}.
+     */
+    public static PclCommandPattern hpgl(final String mnemonic) {
+        if (mnemonic.length() != 2) {
+            throw new IllegalArgumentException("Invalid HP/GL2 mnemonic " + mnemonic);
+        }
+
+        final String upper = mnemonic.toUpperCase(Locale.ROOT);
+        return new PclCommandPattern(HPGL_PREFIX + upper, 0, 0, 0, 0, 0, null, upper);
+    }
+
+    /**
+     * Parses a {@link PclCommandPattern} from the given string:
+     * <ul>
+     * <li>"<code>pjl:</code>" followed by a regular expression creates a pattern for PJL commands.</li>
+     * <li>"<code>hpgl:</code>" followed by a mnemonic creates a pattern for HP/GL2 commands.</li>
+     * <li>Everything else is a PCL command that may be started with "<code>ESC</code>" or
+     * "<code>&lt;esc&gt;</code>", followed by the parameterized character, the (optional) group character, the
+     * value and the termination character. The value may be omitted (or given as "<code>#</code>") to match any
+     * value, or given as a range "<code>min..max</code>" (one of the bounds may be omitted).</li>
+     * </ul>
+     *
+     * @param pattern   the pattern as a string.
+     *
+     * @return the {@link PclCommandPattern}.
+     */
+    public static PclCommandPattern parse(final String pattern) {
+        final String lower = pattern.toLowerCase(Locale.ROOT);
+        if (lower.startsWith(PJL_PREFIX)) {
+            return pjl(pattern.substring(PJL_PREFIX.length()));
+        }
+        if (lower.startsWith(HPGL_PREFIX)) {
+            return hpgl(pattern.substring(HPGL_PREFIX.length()));
+        }
+
+        String rest = pattern;
+        if (lower.startsWith("<esc>")) {
+            rest = pattern.substring(5);
+        } else if (lower.startsWith("esc")) {
+            rest = pattern.substring(3);
+        } else if (pattern.startsWith("\u001B")) {
+            rest = pattern.substring(1);
+        }
+
+        if (rest.length() < 2) {
+            throw new IllegalArgumentException("Invalid PCL command pattern " + pattern);
+        }
+
+        final int parameterizedCharacter = rest.charAt(0);
+        final int groupCharacter = rest.charAt(1) >= 96 && rest.charAt(1) <= 126 && rest.length() > 2
+                ? rest.charAt(1)
+                : 0;
+
+        // The termination character may be given in lower case (as a parameter character)...
+        int terminationCharacter = rest.charAt(rest.length() - 1);
+        if (terminationCharacter >= 96 && terminationCharacter <= 126) {
+            terminationCharacter -= 32;
+        }
+
+        final String value = rest.substring(groupCharacter == 0 ? 1 : 2, rest.length() - 1);
+        try {
+            if (value.isEmpty() || value.equals("#")) {
+                return pcl(parameterizedCharacter, groupCharacter, terminationCharacter);
+            }
+
+            final int range = value.indexOf("..");
+            if (range < 0) {
+                final double number = Double.parseDouble(value);
+                return pcl(parameterizedCharacter, groupCharacter, terminationCharacter, number, number);
+            }
+
+            final String min = value.substring(0, range);
+            final String max = value.substring(range + 2);
+            return pcl(parameterizedCharacter, groupCharacter, terminationCharacter,
+                    min.isEmpty() ? Double.NEGATIVE_INFINITY : Double.parseDouble(min),
+                    max.isEmpty() ? Double.POSITIVE_INFINITY : Double.parseDouble(max));
+
+        } catch (final NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value in PCL command pattern " + pattern, e);
+        }
+    }
+
+    /**
+     * Returns true if the pattern matches PCL commands with the given characters and value.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL command.
+     * @param groupCharacter   the group character of the PCL command.
+     * @param terminationCharacter   the termination character of the PCL command.
+     * @param value   the value of the PCL command.
+     *
+     * @return true if the pattern matches the PCL command.
+     */
+    public boolean matches(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value) {
+
+        if (this.parameterizedCharacter != parameterizedCharacter
+                || this.groupCharacter != groupCharacter
+                || this.terminationCharacter != terminationCharacter) {
+
+            return false;
+        }
+
+        if (this.minValue == Double.NEGATIVE_INFINITY && this.maxValue == Double.POSITIVE_INFINITY) {
+            return true;
+        }
+
+        final double number = ParameterizedPclCommand.toDouble(value);
+        return number >= this.minValue && number <= this.maxValue;
+    }
+
+    /**
+     * Returns true if the pattern matches the given {@link PrinterCommand}. A {@link CombinedPclCommand} is
+     * matched if one of its commands is matched.
+     *
+     * @param command   the {@link PrinterCommand}.
+     *
+     * @return true if the pattern matches the {@link PrinterCommand}.
+     */
+    public boolean matches(final PrinterCommand command) {
+        return this.findMatch(command) >= 0;
+    }
+
+    /**
+     * Returns the index of the first matching command of a {@link CombinedPclCommand} or 0 if any other
+     * {@link PrinterCommand} is matched.
+     *
+     * @return the index of the matching command or -1 if the {@link PrinterCommand} is not matched.
+     */
+    int findMatch(final PrinterCommand command) {
+        if (this.pjlPattern != null) {
+            return command instanceof PjlCommand
+                    && this.pjlPattern.matcher(((PjlCommand) command).getCommand()).find() ? 0 : -1;
+        }
+
+        if (this.mnemonic != null) {
+            return command instanceof HpglCommand
+                    && this.mnemonic.equals(((HpglCommand) command).getCommand()) ? 0 : -1;
+        }
+
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            return this.matches(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getValue()) ? 0 : -1;
+        }
+
+        if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                if (this.matches(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getValue(ix))) {
+
+                    return ix;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static String formatValue(final double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15
+                ? Long.toString((long) value)
+                : Double.toString(value);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.description.hashCode();
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof PclCommandPattern) {
+            return ((PclCommandPattern) other).description.equals(this.description);
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.description;
+    }
+}
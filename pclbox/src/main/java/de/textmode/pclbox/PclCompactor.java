@@ -0,0 +1,261 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The {@link PclCompactor} is a {@link PrinterCommandHandler} that makes a PCL data stream smaller before it is
+ * passed to the next {@link PrinterCommandHandler} (usually a {@link PclWriter}). The following is done:
+ *
+ * <ul>
+ * <li>Consecutive PCL commands that share the parameterized character and the group character are merged into
+ * a single PCL sequence, so "<code>&lt;esc&gt;&amp;l1O&lt;esc&gt;&amp;l2A</code>" becomes
+ * "<code>&lt;esc&gt;&amp;l1o2A</code>". A PCL command with a data section always ends the sequence.</li>
+ * <li>Values are written in their shortest form. Leading zeros and trailing decimal zeros are removed and a
+ * value of zero is omitted completely (the PCL specification defines that an omitted value is zero). Signs are
+ * kept because they distinguish relative from absolute positioning, and the value of a PCL command with a data
+ * section is never changed.</li>
+ * <li>Redundant whitespace is removed from the numeric parameters of HP/GL commands.</li>
+ * </ul>
+ *
+ * <p>PCL commands without a group character (like "<code>&lt;esc&gt;%-12345X</code>" or
+ * "<code>&lt;esc&gt;(10U</code>") are never changed. A PCL command that needs to be changed but is not merged
+ * with other PCL commands is passed as a {@link CombinedPclCommand} with a single PCL command, because a
+ * {@link ParameterizedPclCommand} cannot omit its value. All other commands are passed unchanged.
+ *
+ * <p>Because PCL commands are held back until it is known that the next command does not belong to the same
+ * sequence, {@link #flush()} has to be invoked after the last command.
+ */
+public final class PclCompactor implements PrinterCommandHandler, Flushable {
+
+    // HP/GL commands with parameters that are not just numbers (labels, terminators, symbols and so on)...
+    private static final Set<String> HPGL_COMMANDS_WITH_TEXT = new HashSet<>(
+            Arrays.asList("BL", "CO", "DT", "LB", "MG", "SM", "WD"));
+
+    private final PrinterCommandHandler nextHandler;
+    private final List<ParameterizedPclCommand> pending = new ArrayList<>();
+
+    /**
+     * Constructor of a {@link PclCompactor}.
+     *
+     * @param nextHandler   the {@link PrinterCommandHandler} the compacted commands are passed to.
+     */
+    public PclCompactor(final PrinterCommandHandler nextHandler) {
+        this.nextHandler = nextHandler;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        if (command instanceof ParameterizedPclCommand) {
+            this.add((ParameterizedPclCommand) command);
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand combined = (CombinedPclCommand) command;
+            for (int ix = 0; ix < combined.getCommandCount(); ++ix) {
+                this.add(combined.getCommand(ix));
+            }
+        } else if (command instanceof HpglCommand) {
+            this.emitPending();
+            this.nextHandler.handlePrinterCommand(compact((HpglCommand) command));
+        } else {
+            this.emitPending();
+            this.nextHandler.handlePrinterCommand(command);
+        }
+    }
+
+    /**
+     * Passes the PCL commands that are held back to the next {@link PrinterCommandHandler}. If the next
+     * {@link PrinterCommandHandler} is {@link Flushable} (like a {@link PclWriter}), it is flushed as well.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        this.emitPending();
+
+        if (this.nextHandler instanceof Flushable) {
+            ((Flushable) this.nextHandler).flush();
+        }
+    }
+
+    /**
+     * Adds the given PCL command to the sequence that is currently held back.
+     */
+    private void add(final ParameterizedPclCommand command) throws IOException {
+        if (command.getGroupCharacter() == 0x00) {
+            this.emitPending();
+            this.nextHandler.handlePrinterCommand(command);
+            return;
+        }
+
+        if (!this.pending.isEmpty()) {
+            final ParameterizedPclCommand first = this.pending.get(0);
+            if (first.getParameterizedCharacter() != command.getParameterizedCharacter()
+                    || first.getGroupCharacter() != command.getGroupCharacter()) {
+
+                this.emitPending();
+            }
+        }
+
+        this.pending.add(command);
+
+        // Nothing may follow a data section within a PCL sequence...
+        if (command.getDataSectionWithoutCopy() != null) {
+            this.emitPending();
+        }
+    }
+
+    /**
+     * Passes the PCL sequence that is currently held back to the next {@link PrinterCommandHandler}.
+     */
+    private void emitPending() throws IOException {
+        final int count = this.pending.size();
+        if (count == 0) {
+            return;
+        }
+
+        final ParameterizedPclCommand first = this.pending.get(0);
+        final ParameterizedPclCommand last = this.pending.get(count - 1);
+        final byte[] dataSection = last.getDataSectionWithoutCopy();
+
+        final String[] values = new String[count];
+        final int[] terminationCharacters = new int[count];
+        boolean changed = count > 1;
+        for (int ix = 0; ix < count; ++ix) {
+            final ParameterizedPclCommand command = this.pending.get(ix);
+            final String value = command.getValue();
+
+            values[ix] = command.getDataSectionWithoutCopy() == null ? compactValue(value) : value;
+            terminationCharacters[ix] = command.getTerminationCharacter();
+            changed |= !values[ix].equals(value);
+        }
+
+        this.pending.clear();
+
+        if (!changed) {
+            this.nextHandler.handlePrinterCommand(first);
+            return;
+        }
+
+        this.nextHandler.handlePrinterCommand(new CombinedPclCommand(
+                first.getOffset(),
+                first.getParameterizedCharacter(),
+                first.getGroupCharacter(),
+                values,
+                terminationCharacters,
+                dataSection,
+                false));
+    }
+
+    /**
+     * Returns the shortest form of the given value of a PCL command. A value of zero is returned as an empty
+     * string. If the value is not a valid number, it is returned unchanged.
+     *
+     * @param value   the value of a PCL command.
+     *
+     * @return the shortest form of the value.
+     */
+    static String compactValue(final String value) {
+        final int length = value.length();
+        int start = 0;
+        if (length > 0 && (value.charAt(0) == '+' || value.charAt(0) == '-')) {
+            start = 1;
+        }
+
+        int point = -1;
+        for (int ix = start; ix < length; ++ix) {
+            final char c = value.charAt(ix);
+            if (c == '.' && point < 0) {
+                point = ix;
+            } else if (c < '0' || c > '9') {
+                return value;
+            }
+        }
+
+        final int integerEnd = point < 0 ? length : point;
+
+        // Remove trailing zeros of the decimal places (and the decimal point if nothing remains)...
+        int end = length;
+        if (point >= 0) {
+            while (end > point + 1 && value.charAt(end - 1) == '0') {
+                --end;
+            }
+            if (end == point + 1) {
+                end = point;
+            }
+        }
+
+        // Remove leading zeros of the integer part (but keep one zero in front of a decimal point)...
+        int integerStart = start;
+        while (integerStart < integerEnd - 1 && value.charAt(integerStart) == '0') {
+            ++integerStart;
+        }
+
+        final StringBuilder sb = new StringBuilder(length);
+        sb.append(value, 0, start);
+        if (integerStart == integerEnd && end == integerEnd) {
+            sb.append('0');
+        } else {
+            sb.append(value, integerStart, integerEnd);
+        }
+        sb.append(value, integerEnd, end);
+
+        final String result = sb.toString();
+        if (result.equals("0")) {
+            return "";
+        }
+
+        return result.length() < length ? result : value;
+    }
+
+    /**
+     * Removes redundant whitespace from the parameters of the given {@link HpglCommand}. Only HP/GL commands
+     * with numeric parameters are changed.
+     */
+    private static HpglCommand compact(final HpglCommand command) {
+        final String parameters = command.getParameters();
+        if (parameters.indexOf(' ') < 0 || HPGL_COMMANDS_WITH_TEXT.contains(command.getCommand())) {
+            return command;
+        }
+
+        final StringBuilder sb = new StringBuilder(parameters.length());
+        boolean separate = false;
+        for (int ix = 0; ix < parameters.length(); ++ix) {
+            final char c = parameters.charAt(ix);
+            if (c == ' ') {
+                separate = true;
+            } else if (c == ',' || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '+') {
+                // A space between two numbers separates them just like a comma...
+                if (separate && c != ',' && sb.length() > 0 && sb.charAt(sb.length() - 1) != ',') {
+                    sb.append(',');
+                }
+                sb.append(c);
+                separate = false;
+            } else {
+                return command;
+            }
+        }
+
+        return new HpglCommand(command.getOffset(), command.getCommand(), sb.toString());
+    }
+}
@@ -0,0 +1,201 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link PclDocument} gives random access to the pages of a PCL file. The pages are located with a
+ * {@link PageIndexFile} (that is created if needed) and the {@link PrinterCommand}s of a page are parsed
+ * on demand when the page is requested with {@link #page(int)}.
+ *
+ * <p>The {@link PclDocument} does not hold the parsed pages. A page that is still referenced by the caller
+ * is returned again without parsing it again; a page that is no longer referenced can be garbage collected.
+ * Optionally, the most recently requested pages are kept in a size-bounded cache.
+ *
+ * <p>Note that every page is parsed on its own, so the {@link PrinterCommand}s of a page do not include the
+ * commands of the previous pages (i. e. the page setup of the job or downloaded fonts and macros).
+ *
+ * <p>The methods of the {@link PclDocument} are thread safe.
+ */
+public final class PclDocument implements Closeable {
+
+    private final PageIndexFile index;
+    private final PclInputStream stream;
+    private final Map<Integer, PclPage> recentPages;
+    private final Map<Integer, PageReference> pages = new HashMap<>();
+    private final ReferenceQueue<PclPage> queue = new ReferenceQueue<>();
+
+    /**
+     * A {@link WeakReference} to a parsed {@link PclPage} that knows the number of the page.
+     */
+    private static final class PageReference extends WeakReference<PclPage> {
+
+        private final int pageNumber;
+
+        PageReference(final PclPage page, final ReferenceQueue<PclPage> queue) {
+            super(page, queue);
+            this.pageNumber = page.getPageNumber();
+        }
+    }
+
+    /**
+     * Constructor of the {@link PclDocument}.
+     */
+    private PclDocument(final PageIndexFile index, final PclInputStream stream, final int cacheSize) {
+        this.index = index;
+        this.stream = stream;
+
+        if (cacheSize <= 0) {
+            this.recentPages = null;
+        } else {
+            this.recentPages = new LinkedHashMap<Integer, PclPage>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(final Map.Entry<Integer, PclPage> eldest) {
+                    return this.size() > cacheSize;
+                }
+            };
+        }
+    }
+
+    /**
+     * Opens the given PCL file without caching recently requested pages.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @return the {@link PclDocument}.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public static PclDocument open(final File pclFile) throws IOException, PclException {
+        return open(pclFile, 0);
+    }
+
+    /**
+     * Opens the given PCL file.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     * @param cacheSize   the number of recently requested pages that are kept (0 if no pages shall be kept).
+     *
+     * @return the {@link PclDocument}.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public static PclDocument open(final File pclFile, final int cacheSize) throws IOException, PclException {
+        final PageIndexFile index = PageIndexFile.open(pclFile);
+        return new PclDocument(index, new PclInputStreamForInputStream(new FileInputStream(pclFile)), cacheSize);
+    }
+
+    /**
+     * Returns the {@link PageIndexFile} of the document.
+     *
+     * @return the {@link PageIndexFile}.
+     */
+    public PageIndexFile getIndex() {
+        return this.index;
+    }
+
+    /**
+     * Returns the number of pages of the document.
+     *
+     * @return the number of pages.
+     */
+    public int pageCount() {
+        return this.index.getPageCount();
+    }
+
+    /**
+     * Returns the page with the given number. The page is parsed if it is neither referenced anymore nor
+     * kept in the cache.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the {@link PclPage}.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public synchronized PclPage page(final int pageNumber) throws IOException, PclException {
+        this.expungeStalePages();
+
+        final Integer key = Integer.valueOf(pageNumber);
+        final PageReference reference = this.pages.get(key);
+        PclPage result = reference != null ? reference.get() : null;
+
+        if (result == null) {
+            result = this.parsePage(this.index.getPage(pageNumber));
+            this.pages.put(key, new PageReference(result, this.queue));
+        }
+
+        if (this.recentPages != null) {
+            this.recentPages.put(key, result);
+        }
+
+        return result;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.pages.clear();
+        if (this.recentPages != null) {
+            this.recentPages.clear();
+        }
+        this.stream.close();
+    }
+
+    /**
+     * Parses the given page.
+     */
+    private PclPage parsePage(final PageRange range) throws IOException, PclException {
+        final List<PrinterCommand> commands = new ArrayList<>();
+        try (PclParser parser = new PclParser(this.stream, commands::add)) {
+            final PclParseResult result = parser.parse(range);
+            if (!result.isComplete()) {
+                throw new PclException("The parsing of " + range + " has been stopped at offset " + result.getOffset());
+            }
+        }
+
+        return new PclPage(range, commands);
+    }
+
+    /**
+     * Removes the references to pages that have been garbage collected.
+     */
+    private void expungeStalePages() {
+        PageReference reference;
+        while ((reference = (PageReference) this.queue.poll()) != null) {
+            final Integer key = Integer.valueOf(reference.pageNumber);
+            if (this.pages.get(key) == reference) {
+                this.pages.remove(key);
+            }
+        }
+    }
+}
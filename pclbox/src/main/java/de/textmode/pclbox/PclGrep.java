@@ -0,0 +1,394 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The {@link PclGrep} searches PCL files for {@link PrinterCommand}s that match one or more
+ * {@link PclCommandPattern}s, i. e. to find all jobs that select paper tray 4 (<code>&lt;esc&gt;&amp;l4H</code>)
+ * or use the HP/GL2 command "PE":
+ * <pre>
+ * final PclGrep grep = new PclGrep(Arrays.asList(PclCommandPattern.parse("ESC&amp;l4H")));
+ * grep.setFilesWithMatchesOnly(true);
+ * grep.searchAll(Arrays.asList(new File("/archive")), handler);
+ * </pre>
+ *
+ * <p>Files are parsed with combined PCL sequences and all data sections (raster data, fonts, macros and so on)
+ * are skipped without being read (see {@link DataSectionFilter}). Directories are searched recursively and
+ * the files are searched in parallel. The matches are passed to a {@link PclGrepHandler} as soon as they are
+ * found, so the matches of different files may be interleaved.
+ *
+ * <p>The {@link PclGrep} can also be used from the command line, see {@link #main(String[])}.
+ */
+public final class PclGrep {
+
+    private static final DataSectionFilter SKIP_ALL_DATA_SECTIONS = (p, g, t) -> false;
+
+    private final List<PclCommandPattern> patterns;
+    private boolean filesWithMatchesOnly;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private FileFilter fileFilter;
+
+    /**
+     * Constructor of the {@link PclGrep}.
+     *
+     * @param patterns   the {@link PclCommandPattern}s to search for. A {@link PrinterCommand} matches if it
+     *     matches at least one of the patterns and is reported once (with the first matching pattern).
+     */
+    public PclGrep(final List<PclCommandPattern> patterns) {
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("At least one pattern is required");
+        }
+        this.patterns = new ArrayList<>(patterns);
+    }
+
+    /**
+     * Sets if only the first match of every file shall be reported. The search of a file stops at the first
+     * match, so this is much faster if only the names of the matching files are needed.
+     *
+     * @param filesWithMatchesOnly   true if only the first match of every file shall be reported.
+     */
+    public void setFilesWithMatchesOnly(final boolean filesWithMatchesOnly) {
+        this.filesWithMatchesOnly = filesWithMatchesOnly;
+    }
+
+    /**
+     * Sets the number of threads that are used by {@link #searchAll(List, PclGrepHandler)}. By default, one
+     * thread per available processor is used.
+     *
+     * @param threadCount   the number of threads.
+     */
+    public void setThreadCount(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Sets a {@link FileFilter} that selects the files that are searched by
+     * {@link #searchAll(List, PclGrepHandler)} within directories.
+     *
+     * @param fileFilter   the {@link FileFilter} or <code>null</code> to search all files.
+     */
+    public void setFileFilter(final FileFilter fileFilter) {
+        this.fileFilter = fileFilter;
+    }
+
+    /**
+     * Searches the given file and returns all matches.
+     *
+     * @param file   the file that contains the PCL data stream.
+     *
+     * @return the matches.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public List<PclGrepMatch> search(final File file) throws IOException, PclException {
+        final List<PclGrepMatch> result = new ArrayList<>();
+        this.search(file, new PclGrepHandler() {
+            @Override
+            public void handleMatch(final PclGrepMatch match) {
+                result.add(match);
+            }
+
+            @Override
+            public void handleError(final File errorFile, final Exception exception) {
+                // Errors are thrown by search(File, PclGrepHandler)...
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Searches the given file in the current thread. The matches are passed to the given
+     * {@link PclGrepHandler}.
+     *
+     * @param file   the file that contains the PCL data stream.
+     * @param handler   the {@link PclGrepHandler} that is invoked for every match.
+     *
+     * @return true if at least one match has been found.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public boolean search(final File file, final PclGrepHandler handler) throws IOException, PclException {
+        final FileSearch search = new FileSearch(file, handler);
+        try (PclParser parser = new PclParser(file, search)) {
+            parser.setCombineSequences(true);
+            parser.setDataSectionFilter(SKIP_ALL_DATA_SECTIONS);
+            search.parser = parser;
+            parser.parse();
+        }
+        return search.found;
+    }
+
+    /**
+     * Searches the given files and directories (recursively) in parallel. The matches and errors are passed to
+     * the given {@link PclGrepHandler}, which is never invoked from more than one thread at a time. A file that
+     * cannot be searched does not stop the search of the other files.
+     *
+     * @param paths   the files and directories to be searched.
+     * @param handler   the {@link PclGrepHandler} that is invoked for every match and error.
+     *
+     * @return the number of searched files.
+     *
+     * @throws IOException if a directory cannot be read.
+     * @throws InterruptedException if the current thread has been interrupted while waiting for the search.
+     */
+    public int searchAll(final List<File> paths, final PclGrepHandler handler)
+            throws IOException, InterruptedException {
+
+        final PclGrepHandler synchronizedHandler = new SynchronizedHandler(handler);
+        final ExecutorService executor = Executors.newFixedThreadPool(this.threadCount);
+        int fileCount = 0;
+
+        try {
+            for (final File path : paths) {
+                try (Stream<Path> stream = Files.walk(path.toPath())) {
+                    final Iterator<Path> it = stream.filter(Files::isRegularFile).iterator();
+                    while (it.hasNext()) {
+                        final File file = it.next().toFile();
+                        if (path.isDirectory() && this.fileFilter != null && !this.fileFilter.accept(file)) {
+                            continue;
+                        }
+
+                        executor.execute(() -> this.searchAndReportErrors(file, synchronizedHandler));
+                        ++fileCount;
+                    }
+                } catch (final UncheckedIOException e) {
+                    throw e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (final InterruptedException e) {
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+
+        return fileCount;
+    }
+
+    /**
+     * Searches the given file and passes all errors to the {@link PclGrepHandler}.
+     */
+    private void searchAndReportErrors(final File file, final PclGrepHandler handler) {
+        try {
+            this.search(file, handler);
+        } catch (final IOException | PclException | RuntimeException e) {
+            handler.handleError(file, e);
+        }
+    }
+
+    /**
+     * Searches PCL files from the command line. The matches are written to {@link System#out} as
+     * "<code>file:offset:command</code>" (or just the name of the file if the option <code>-l</code> is given).
+     * The exit code is 0 if a match has been found, 1 if no match has been found and 2 if an error occurred.
+     * <pre>
+     * PclGrep [-l] [-t threads] [-x extension] -e pattern [-e pattern ...] file-or-directory ...
+     *
+     *   -l   print only the names of the files that contain a match
+     *   -t   number of threads (default: number of processors)
+     *   -x   search only files with the given extension within directories (i. e. ".pcl")
+     *   -e   pattern (see PclCommandPattern.parse), i. e. "ESC&amp;l4H", "*p100..200X", "pjl:JOB" or "hpgl:PE"
+     * </pre>
+     *
+     * @param args   the command line arguments.
+     *
+     * @throws Exception if the search has been interrupted.
+     */
+    public static void main(final String[] args) throws Exception {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Runs the command line version of the {@link PclGrep} and returns the exit code.
+     */
+    static int run(final String[] args, final PrintStream out, final PrintStream err) throws InterruptedException {
+        final List<PclCommandPattern> patterns = new ArrayList<>();
+        final List<File> paths = new ArrayList<>();
+        boolean listFiles = false;
+        int threads = 0;
+        String extension = null;
+
+        try {
+            for (int ix = 0; ix < args.length; ++ix) {
+                final String arg = args[ix];
+                if (arg.equals("-l")) {
+                    listFiles = true;
+                } else if (arg.equals("-t") && ix + 1 < args.length) {
+                    threads = Integer.parseInt(args[++ix]);
+                } else if (arg.equals("-x") && ix + 1 < args.length) {
+                    extension = args[++ix].toLowerCase(Locale.ROOT);
+                } else if (arg.equals("-e") && ix + 1 < args.length) {
+                    patterns.add(PclCommandPattern.parse(args[++ix]));
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Invalid option " + arg);
+                } else {
+                    paths.add(new File(arg));
+                }
+            }
+
+            if (patterns.isEmpty() || paths.isEmpty()) {
+                throw new IllegalArgumentException("At least one pattern and one file or directory are required");
+            }
+        } catch (final IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Usage: PclGrep [-l] [-t threads] [-x extension] -e pattern [-e pattern ...] "
+                    + "file-or-directory ...");
+            return 2;
+        }
+
+        final PclGrep grep = new PclGrep(patterns);
+        grep.setFilesWithMatchesOnly(listFiles);
+        if (threads > 0) {
+            grep.setThreadCount(threads);
+        }
+        if (extension != null) {
+            final String suffix = extension;
+            grep.setFileFilter(file -> file.getName().toLowerCase(Locale.ROOT).endsWith(suffix));
+        }
+
+        final boolean printFileNames = listFiles;
+        final boolean[] status = new boolean[2]; // found, error
+        try {
+            grep.searchAll(paths, new PclGrepHandler() {
+                @Override
+                public void handleMatch(final PclGrepMatch match) {
+                    status[0] = true;
+                    out.println(printFileNames ? match.getFile().getPath() : match.toString());
+                }
+
+                @Override
+                public void handleError(final File file, final Exception exception) {
+                    status[1] = true;
+                    err.println(file.getPath() + ": " + exception.getMessage());
+                }
+            });
+        } catch (final IOException e) {
+            err.println(e.getMessage());
+            return 2;
+        }
+
+        out.flush();
+        return status[1] ? 2 : status[0] ? 0 : 1;
+    }
+
+    /**
+     * The {@link PrinterCommandHandler} that searches a single file.
+     */
+    private final class FileSearch implements PrinterCommandHandler {
+
+        private final File file;
+        private final PclGrepHandler handler;
+        private PclParser parser;
+        private boolean found;
+
+        FileSearch(final File file, final PclGrepHandler handler) {
+            this.file = file;
+            this.handler = handler;
+        }
+
+        @Override
+        public void handlePrinterCommand(final PrinterCommand command) {
+            if (this.found && PclGrep.this.filesWithMatchesOnly) {
+                return;
+            }
+
+            // Every command is reported once (with the first matching pattern) and in the order of the data
+            // stream, even if the command is part of a PCL sequence...
+            if (command instanceof CombinedPclCommand) {
+                final CombinedPclCommand cc = (CombinedPclCommand) command;
+                for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                    for (final PclCommandPattern pattern : PclGrep.this.patterns) {
+                        if (pattern.matches(
+                                cc.getParameterizedCharacter(),
+                                cc.getGroupCharacter(),
+                                cc.getTerminationCharacter(ix),
+                                cc.getValue(ix))) {
+
+                            this.report(cc.getCommand(ix), pattern);
+                            break;
+                        }
+                    }
+                }
+            } else {
+                for (final PclCommandPattern pattern : PclGrep.this.patterns) {
+                    if (pattern.matches(command)) {
+                        this.report(command, pattern);
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void report(final PrinterCommand command, final PclCommandPattern pattern) {
+            if (this.found && PclGrep.this.filesWithMatchesOnly) {
+                return;
+            }
+
+            this.found = true;
+            this.handler.handleMatch(new PclGrepMatch(this.file, command, pattern));
+            if (PclGrep.this.filesWithMatchesOnly) {
+                this.parser.stop();
+            }
+        }
+    }
+
+    /**
+     * A {@link PclGrepHandler} that forwards all invocations to another {@link PclGrepHandler} while holding
+     * a lock.
+     */
+    private static final class SynchronizedHandler implements PclGrepHandler {
+
+        private final PclGrepHandler handler;
+
+        SynchronizedHandler(final PclGrepHandler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public synchronized void handleMatch(final PclGrepMatch match) {
+            this.handler.handleMatch(match);
+        }
+
+        @Override
+        public synchronized void handleError(final File file, final Exception exception) {
+            this.handler.handleError(file, exception);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+
+/**
+ * This is the handler interface for the results of {@link PclGrep}. If files are searched in parallel, the
+ * {@link PclGrep} never invokes the {@link PclGrepHandler} from more than one thread at a time.
+ */
+public interface PclGrepHandler {
+
+    /**
+     * Handles a {@link PrinterCommand} that matches one of the searched patterns.
+     *
+     * @param match   the {@link PclGrepMatch}.
+     */
+    void handleMatch(final PclGrepMatch match);
+
+    /**
+     * Handles a file that could not be searched completely (i. e. because it is not a valid PCL data stream).
+     * The matches that have been found before the error occurred have already been passed to
+     * {@link #handleMatch(PclGrepMatch)}.
+     *
+     * @param file   the file that could not be searched.
+     * @param exception   the {@link Exception} that occurred.
+     */
+    void handleError(final File file, final Exception exception);
+}
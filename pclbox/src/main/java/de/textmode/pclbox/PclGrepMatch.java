@@ -0,0 +1,86 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+
+/**
+ * A {@link PclGrepMatch} is a {@link PrinterCommand} that has been found by {@link PclGrep}. If the matching
+ * PCL command is part of a PCL sequence, the {@link PclGrepMatch} contains the single PCL command as a
+ * {@link ParameterizedPclCommand}. Note that the {@link PclGrep} skips all data sections, so the
+ * {@link PrinterCommand} never contains a data section.
+ */
+public final class PclGrepMatch {
+
+    private final File file;
+    private final PrinterCommand command;
+    private final PclCommandPattern pattern;
+
+    /**
+     * Constructor of a {@link PclGrepMatch}.
+     *
+     * @param file   the file that contains the {@link PrinterCommand}.
+     * @param command   the matching {@link PrinterCommand}.
+     * @param pattern   the {@link PclCommandPattern} that matches the {@link PrinterCommand}.
+     */
+    public PclGrepMatch(final File file, final PrinterCommand command, final PclCommandPattern pattern) {
+        this.file = file;
+        this.command = command;
+        this.pattern = pattern;
+    }
+
+    /**
+     * Returns the file that contains the {@link PrinterCommand}.
+     *
+     * @return the file.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Returns the offset of the {@link PrinterCommand} within the file.
+     *
+     * @return the offset of the {@link PrinterCommand}.
+     */
+    public long getOffset() {
+        return this.command.getOffset();
+    }
+
+    /**
+     * Returns the matching {@link PrinterCommand}.
+     *
+     * @return the {@link PrinterCommand}.
+     */
+    public PrinterCommand getCommand() {
+        return this.command;
+    }
+
+    /**
+     * Returns the {@link PclCommandPattern} that matches the {@link PrinterCommand}.
+     *
+     * @return the {@link PclCommandPattern}.
+     */
+    public PclCommandPattern getPattern() {
+        return this.pattern;
+    }
+
+    @Override
+    public String toString() {
+        return this.file.getPath() + ":" + this.command.getOffset() + ":" + this.command.toDisplayString();
+    }
+}
@@ -18,6 +18,7 @@ package de.textmode.pclbox;
 
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.FileInputStream;
 import java.io.FilterInputStream;
 import java.io.IOException;
@@ -215,33 +216,21 @@ final class PclInputStreamForInputStream implements PclInputStream {
 
     @Override
     public int read(byte[] b, int off, int len) throws IOException {
-        if (this.mbb != null) {
-            int remain = this.mbb.remaining();
-            if (b.length <= this.mbb.remaining()) {
-                this.mbb.get(b,off,len);
-                final int result = (remain - this.mbb.remaining());
-                this.position = this.position + result;
-                return result;
-            } else {
-                for (int i = off; i <= len; i++) {
-                    b[i] = this.mbb.get();
-                }
-                final int result = (remain - this.mbb.remaining());
-                this.position = this.position + result;
-                return result;
+        if (this.mbb != null || this.bb != null) {
+            // Reads as many bytes as available (up to len), just like InputStream.read(byte[], int, int) does...
+            final ByteBuffer buffer = this.mbb != null ? this.mbb : this.bb;
+            if (len == 0) {
+                return 0;
             }
-        }        else if (this.bb != null) {
-            int start = this.bb.remaining();
-            if (this.bb.remaining() >= b.length) {
-                this.bb.get(b,off,len);
-                final int result = start - this.bb.remaining();
-                this.position = this.position + result;
-                return result;
-            } else {
+            if (!buffer.hasRemaining()) {
                 return -1;
             }
 
-        }        else {
+            final int result = Math.min(len, buffer.remaining());
+            buffer.get(b, off, result);
+            this.position = this.position + result;
+            return result;
+        } else {
             final int result = this.input.read(b, off, len);
             if (result != -1) {
                 this.position = this.position + result;
@@ -252,12 +241,6 @@ final class PclInputStreamForInputStream implements PclInputStream {
 
     @Override
     public void seek(long offset) throws IOException {
-        if (!this.input.markSupported()) {
-            throw new IOException(new StringBuilder()
-                    .append("Repositioning with the PCL data stream is not supported for input streams of type ")
-                    .append(this.input.getClass().getSimpleName())
-                    .toString());
-        }
         if (this.mbb != null) {
             this.mbb.position(0);
             this.position = 0; // after reset() we are at offset 0
@@ -332,6 +315,28 @@ final class PclInputStreamForInputStream implements PclInputStream {
             }
             this.position = this.bb.position(); //update positioning variable
         }         else {
+            // Only the slow streaming relies on mark() and reset(). The memory mapped buffer and the byte
+            // buffer can be positioned directly. FileInputStream does not support mark() and reset(), so
+            // large files that are not memory mapped are positioned with the FileChannel...
+            if (this.input instanceof FileInputStream) {
+                ((FileInputStream) this.input).getChannel().position(offset);
+                this.position = offset;
+                return;
+            }
+
+            // Positioning forward (i. e. skipping a data section) does not need reset(), so it works for all
+            // input streams and does not depend on the current offset...
+            if (offset >= this.position) {
+                this.skipForward(offset - this.position);
+                return;
+            }
+
+            if (!this.input.markSupported()) {
+                throw new IOException(new StringBuilder()
+                        .append("Repositioning with the PCL data stream is not supported for input streams of type ")
+                        .append(this.input.getClass().getSimpleName())
+                        .toString());
+            }
             this.input.reset();
             this.position = 0; // after reset() we are at offset 0
             this.position = this.input.skip(offset); // now we are at the offset returned from skip
@@ -345,6 +350,43 @@ final class PclInputStreamForInputStream implements PclInputStream {
         }
     }
 
+    /**
+     * Skips the given number of bytes of the (slow) streaming input, starting at the current position.
+     *
+     * @param count   the number of bytes to be skipped.
+     *
+     * @throws EOFException if the end of the stream is reached before all bytes have been skipped.
+     */
+    private void skipForward(final long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = this.input.skip(remaining);
+
+            // InputStream.skip() may return 0 even if the end of the stream has not been reached yet...
+            if (skipped <= 0) {
+                if (this.input.read() == -1) {
+                    throw new EOFException(String.format(
+                            "The PCL data stream unexpectedly ends at offset %1$d. The data stream may be corrupted.",
+                            this.position));
+                }
+                skipped = 1;
+            }
+
+            this.position += skipped;
+            remaining -= skipped;
+        }
+    }
+
+    /**
+     * Returns true if the stream can be positioned backward without mark() and reset() (memory mapped files,
+     * byte arrays and files).
+     *
+     * @return true if the stream can be positioned backward cheaply.
+     */
+    boolean isRandomAccess() {
+        return this.mbb != null || this.bb != null || this.input instanceof FileInputStream;
+    }
+
     @Override
     public long tell() throws IOException {
         return this.position;
@@ -0,0 +1,81 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link PclPage} holds the parsed {@link PrinterCommand}s of a single page of a {@link PclDocument}.
+ */
+public final class PclPage {
+
+    private final PageRange range;
+    private final List<PrinterCommand> commands;
+
+    /**
+     * Constructor of a {@link PclPage}.
+     *
+     * @param range   the {@link PageRange} of the page.
+     * @param commands   the {@link PrinterCommand}s of the page. The {@link List} is not copied.
+     */
+    PclPage(final PageRange range, final List<PrinterCommand> commands) {
+        this.range = range;
+        this.commands = Collections.unmodifiableList(commands);
+    }
+
+    /**
+     * Returns the number of the page, starting with 1.
+     *
+     * @return the number of the page.
+     */
+    public int getPageNumber() {
+        return this.range.getPageNumber();
+    }
+
+    /**
+     * Returns the {@link PageRange} of the page.
+     *
+     * @return the {@link PageRange} of the page.
+     */
+    public PageRange getRange() {
+        return this.range;
+    }
+
+    /**
+     * Returns the {@link PrinterCommand}s of the page.
+     *
+     * @return an unmodifiable {@link List} with the {@link PrinterCommand}s of the page.
+     */
+    public List<PrinterCommand> getCommands() {
+        return this.commands;
+    }
+
+    /**
+     * Returns the number of {@link PrinterCommand}s of the page.
+     *
+     * @return the number of {@link PrinterCommand}s.
+     */
+    public int getCommandCount() {
+        return this.commands.size();
+    }
+
+    @Override
+    public String toString() {
+        return this.range + " (" + this.commands.size() + " commands)";
+    }
+}
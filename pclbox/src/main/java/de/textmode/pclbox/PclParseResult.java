@@ -0,0 +1,99 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The {@link PclParseResult} is returned by {@link PclParser#parse()}. It tells if the complete data
+ * stream has been parsed and the offset the {@link PclParser} has reached.
+ */
+public final class PclParseResult {
+
+    /**
+     * The reason why the {@link PclParser} has stopped parsing.
+     */
+    public enum StopReason {
+
+        /**
+         * The end of the data stream has been reached.
+         */
+        COMPLETED,
+
+        /**
+         * The {@link CancellationToken} of the {@link PclParser} has been cancelled.
+         */
+        CANCELLED,
+
+        /**
+         * The deadline of the {@link PclParser} has been exceeded.
+         */
+        DEADLINE_EXCEEDED,
+
+        /**
+         * The parsing has been stopped with {@link PclParser#stop()} (usually by the {@link PrinterCommandHandler}).
+         */
+        STOPPED
+    }
+
+    private final StopReason stopReason;
+    private final long offset;
+
+    /**
+     * Constructor of the {@link PclParseResult}.
+     *
+     * @param stopReason   the reason why the {@link PclParser} has stopped parsing.
+     * @param offset   the offset the {@link PclParser} has reached.
+     */
+    PclParseResult(final StopReason stopReason, final long offset) {
+        this.stopReason = stopReason;
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the reason why the {@link PclParser} has stopped parsing.
+     *
+     * @return the reason why the {@link PclParser} has stopped parsing.
+     */
+    public StopReason getStopReason() {
+        return this.stopReason;
+    }
+
+    /**
+     * Returns true if the complete data stream has been parsed.
+     *
+     * @return true if the complete data stream has been parsed.
+     */
+    public boolean isComplete() {
+        return this.stopReason == StopReason.COMPLETED;
+    }
+
+    /**
+     * Returns the offset the {@link PclParser} has reached, measured from the beginning of the data
+     * stream. If the parsing has been stopped, this is the offset of the first {@link PrinterCommand}
+     * that has not been passed to the {@link PrinterCommandHandler}. Otherwise this is the length of the
+     * data stream.
+     *
+     * @return the offset the {@link PclParser} has reached.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    @Override
+    public String toString() {
+        return this.stopReason + "@" + this.offset;
+    }
+}
@@ -23,6 +23,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The {@link PclParser} parses the given {@link InputStream} and interprets the printer commands.
@@ -32,6 +33,11 @@ public final class PclParser implements AutoCloseable {
     private final PclInputStream stream;
     private final PrinterCommandHandler commandHandler;
     private final boolean closeStream;
+    private boolean combineSequences;
+    private DataSectionFilter dataSectionFilter;
+    private CancellationToken cancellationToken;
+    private long timeoutNanos = -1;
+    private volatile PclParserContext currentContext;
 
     /**
      * Constructor that internally creates a {@link FileInputStream} for reading and seeking
@@ -143,18 +149,186 @@ public final class PclParser implements AutoCloseable {
         this.closeStream = closeStream;
     }
 
+    /**
+     * Enables or disables the delivery of PCL sequences (like "<code>&lt;esc&gt;&amp;l1o2a0E</code>") as a
+     * single {@link CombinedPclCommand}. By default, every PCL command of a sequence is delivered as a
+     * separate {@link ParameterizedPclCommand}. Delivering complete sequences reduces the number of
+     * objects and handler invocations for dense sequences (i. e. page setup and cursor positioning).
+     *
+     * @param combineSequences   true if PCL sequences shall be delivered as a {@link CombinedPclCommand}.
+     */
+    public void setCombineSequences(final boolean combineSequences) {
+        this.combineSequences = combineSequences;
+    }
+
+    /**
+     * Sets a {@link DataSectionFilter} that decides which data sections are read. A PCL command whose data
+     * section is not required is delivered without a data section (the value of the command still contains
+     * the size of the data section), so these commands must not be written to a new data stream. Skipping
+     * data sections makes parsing much faster if the {@link PrinterCommandHandler} does not look at them.
+     *
+     * <p>Skipped data sections are passed by positioning forward, which works for every {@link InputStream}.
+     * A skipped data section that is truncated by the end of the data stream causes an {@link IOException},
+     * except for files that are larger than 2 GB (where the truncation is not detected).
+     *
+     * <p>If a {@link DataSectionFilter} is set, the data of a foreign language (see
+     * {@link ForeignLanguageCommand}) is only read if the {@link DataSectionFilter} requests it. Use
+     * {@link DataSectionFilter#READ_ALL} if the parsed commands are written again.
+     *
+     * @param dataSectionFilter   the {@link DataSectionFilter} or <code>null</code> to read all data sections
+     *     including the foreign language data (which is the default).
+     */
+    public void setDataSectionFilter(final DataSectionFilter dataSectionFilter) {
+        this.dataSectionFilter = dataSectionFilter;
+    }
+
+    /**
+     * Sets a {@link CancellationToken} that allows to stop the parsing from another thread. The token
+     * is checked at every command boundary.
+     *
+     * @param cancellationToken   the {@link CancellationToken} or <code>null</code> to remove the token.
+     */
+    public void setCancellationToken(final CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Sets the maximum time {@link #parse()} may take. The time is measured from the invocation of
+     * {@link #parse()} and checked at command boundaries, so the parser may exceed the timeout by
+     * the time needed to parse (and handle) a few commands.
+     *
+     * @param timeout   the maximum time {@link #parse()} may take.
+     * @param unit   the {@link TimeUnit} of the timeout.
+     */
+    public void setTimeout(final long timeout, final TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("The timeout must not be negative");
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
     /**
      * Parses the data stream. For every parsed {@link PrinterCommand} the {@link PrinterCommandHandler} is invoked.
      *
+     * <p>If a {@link CancellationToken} has been cancelled or the timeout has been exceeded, the parser
+     * stops at the next command boundary and returns a {@link PclParseResult} that contains the offset
+     * of the first {@link PrinterCommand} that has not been passed to the {@link PrinterCommandHandler}.
+     *
+     * @return the {@link PclParseResult} that tells if the data stream has been parsed completely.
+     *
      * @throws EOFException if the end of the stream was reached unexpectedly.
      * @throws IOException if an I/O error occurs.
      * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
      */
-    public void parse() throws IOException, PclException {
-        final int lastReadBye = new Pcl5Parser(new PclParserContext(this.stream, this.commandHandler)).parse();
-        if (lastReadBye != -1) {
-            throw new PclException(
-                    "The Pcl5Parser unexpectedly returned before the end of the data stream has been reached");
+    public PclParseResult parse() throws IOException, PclException {
+        return this.parseUpTo(Long.MAX_VALUE, new SymbolSetTracker());
+    }
+
+    /**
+     * Parses the part of the data stream that starts at the given offset and ends at the given offset (i. e.
+     * a page as recorded by a {@link PageIndex} or a {@link PageIndexFile}). The {@link PclInputStream} is
+     * positioned with {@link PclInputStream#seek(long)}, so the bytes before the start offset are not read.
+     * The start offset must be located at a command boundary where the data stream is in PCL mode. The
+     * parsing ends at the first command boundary that is located at or after the end offset.
+     *
+     * <p>Note that the offsets of the {@link PrinterCommand}s are still measured from the beginning of the
+     * data stream. If the end offset has been reached, the returned {@link PclParseResult} is complete. The
+     * parsing starts with the symbol sets that are selected after a "Printer Reset". Use
+     * {@link #parse(PageRange)} to start with other symbol sets.
+     *
+     * @param startOffset   the offset of the first {@link PrinterCommand} to be parsed.
+     * @param endOffset   the offset at which the parsing ends.
+     *
+     * @return the {@link PclParseResult} that tells if the part of the data stream has been parsed completely.
+     *
+     * @throws EOFException if the end of the stream was reached unexpectedly.
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public PclParseResult parse(final long startOffset, final long endOffset) throws IOException, PclException {
+        return this.parse(startOffset, endOffset, new SymbolSetTracker());
+    }
+
+    /**
+     * Parses the given page of the data stream just like {@link #parse(long, long)} does. The parsing starts
+     * with the symbol sets of the {@link PageRange}, so the text of a page that has been recorded by a
+     * {@link PageIndexFile} is decoded just like the text is decoded if the whole data stream is parsed.
+     *
+     * @param page   the {@link PageRange} of the page.
+     *
+     * @return the {@link PclParseResult} that tells if the page has been parsed completely.
+     *
+     * @throws EOFException if the end of the stream was reached unexpectedly.
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public PclParseResult parse(final PageRange page) throws IOException, PclException {
+        return this.parse(page.getStartOffset(), page.getEndOffset(), new SymbolSetTracker(
+                page.getPrimarySymbolSet(),
+                page.getSecondarySymbolSet(),
+                page.isSecondaryFontActive()));
+    }
+
+    /**
+     * Parses the part of the data stream that starts at the given offset with the given symbol sets.
+     */
+    private PclParseResult parse(final long startOffset, final long endOffset, final SymbolSetTracker symbolSets)
+            throws IOException, PclException {
+
+        if (startOffset < 0 || endOffset < startOffset) {
+            throw new IllegalArgumentException("Invalid range " + startOffset + " to " + endOffset);
+        }
+
+        this.stream.seek(startOffset);
+        return this.parseUpTo(endOffset, symbolSets);
+    }
+
+    /**
+     * Parses the data stream from the current position up to the given end offset.
+     */
+    private PclParseResult parseUpTo(final long endOffset, final SymbolSetTracker symbolSets)
+            throws IOException, PclException {
+
+        final PclParserContext ctx = new PclParserContext(this.stream, this.commandHandler);
+        ctx.setSymbolSets(symbolSets);
+        ctx.setCombineSequences(this.combineSequences);
+        ctx.setDataSectionFilter(this.dataSectionFilter);
+        ctx.setCancellationToken(this.cancellationToken);
+
+        ctx.setEndOffset(endOffset);
+
+        if (this.timeoutNanos >= 0) {
+            ctx.setDeadline(System.nanoTime() + this.timeoutNanos);
+        }
+
+        this.currentContext = ctx;
+        try {
+            final int lastReadBye = new Pcl5Parser(ctx).parse();
+            if (lastReadBye != -1) {
+                throw new PclException(
+                        "The Pcl5Parser unexpectedly returned before the end of the data stream has been reached");
+            }
+
+            return ctx.createParseResult();
+        } finally {
+            this.currentContext = null;
+        }
+    }
+
+    /**
+     * Stops the parsing cleanly right after the current {@link PrinterCommand} has been handled. This method
+     * is usually invoked by the {@link PrinterCommandHandler} if it has seen everything it needs (i. e. the
+     * PJL header and the page setup commands of the first page). {@link #parse()} will then return a
+     * {@link PclParseResult} that contains the offset where the parsing has stopped.
+     *
+     * <p>Note that if the current {@link PrinterCommand} is part of a PCL sequence, the remaining
+     * commands of the sequence are still handled. This method has no effect if {@link #parse()}
+     * is not running.
+     */
+    public void stop() {
+        final PclParserContext ctx = this.currentContext;
+        if (ctx != null) {
+            ctx.requestStop();
         }
     }
 
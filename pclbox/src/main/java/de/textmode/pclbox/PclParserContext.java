@@ -16,14 +16,33 @@ package de.textmode.pclbox;
  * limitations under the License.
  */
 
+import java.io.IOException;
+
 /**
  * The {@link PclParserContext} contains all information that is required by the
  * concrete {@link DataStreamParser} implementations to do their job.
  */
 final class PclParserContext {
 
+    // The deadline is checked only at every n-th command boundary because System.nanoTime() is
+    // much more expensive than reading a volatile field...
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
     private final PclInputStream stream;
     private final PrinterCommandHandler commandHandler;
+    private boolean combineSequences;
+    private DataSectionFilter dataSectionFilter;
+    private SymbolSetTracker symbolSets = new SymbolSetTracker();
+
+    private CancellationToken cancellationToken;
+    private boolean hasDeadline;
+    private long deadline;
+    private int checkpointCounter;
+    private long endOffset = Long.MAX_VALUE;
+    private volatile boolean stopRequested;
+
+    private PclParseResult.StopReason stopReason;
+    private long stopOffset;
 
     /**
      * Constructor. Gets the {@link PclInputStream} we read from and initializes the
@@ -53,4 +72,153 @@ final class PclParserContext {
     PrinterCommandHandler getPrinterCommandHandler() {
         return this.commandHandler;
     }
+
+    /**
+     * Returns true if PCL sequences shall be delivered as a {@link CombinedPclCommand}.
+     *
+     * @return true if PCL sequences shall be delivered as a {@link CombinedPclCommand}.
+     */
+    boolean isCombineSequences() {
+        return this.combineSequences;
+    }
+
+    /**
+     * Sets if PCL sequences shall be delivered as a {@link CombinedPclCommand}.
+     *
+     * @param combineSequences   true if PCL sequences shall be delivered as a {@link CombinedPclCommand}.
+     */
+    void setCombineSequences(final boolean combineSequences) {
+        this.combineSequences = combineSequences;
+    }
+
+    /**
+     * Gets the {@link DataSectionFilter} that decides which data sections are read.
+     *
+     * @return the {@link DataSectionFilter} or <code>null</code> if all data sections are read.
+     */
+    DataSectionFilter getDataSectionFilter() {
+        return this.dataSectionFilter;
+    }
+
+    /**
+     * Sets the {@link DataSectionFilter} that decides which data sections are read.
+     *
+     * @param dataSectionFilter   the {@link DataSectionFilter} or <code>null</code> if all data sections are read.
+     */
+    void setDataSectionFilter(final DataSectionFilter dataSectionFilter) {
+        this.dataSectionFilter = dataSectionFilter;
+    }
+
+    /**
+     * Gets the {@link SymbolSetTracker} that holds the symbol sets of the primary and the secondary font.
+     *
+     * @return the {@link SymbolSetTracker}.
+     */
+    SymbolSetTracker getSymbolSets() {
+        return this.symbolSets;
+    }
+
+    /**
+     * Sets the {@link SymbolSetTracker} that holds the symbol sets at the beginning of the parsing (i. e. if
+     * the parsing is resumed at a page).
+     *
+     * @param symbolSets   the {@link SymbolSetTracker}.
+     */
+    void setSymbolSets(final SymbolSetTracker symbolSets) {
+        this.symbolSets = symbolSets;
+    }
+
+    /**
+     * Sets the {@link CancellationToken} that is checked at every command boundary.
+     *
+     * @param cancellationToken   the {@link CancellationToken} or <code>null</code>.
+     */
+    void setCancellationToken(final CancellationToken cancellationToken) {
+        this.cancellationToken = cancellationToken;
+    }
+
+    /**
+     * Sets the deadline, measured with {@link System#nanoTime()}.
+     *
+     * @param deadline   the deadline, measured with {@link System#nanoTime()}.
+     */
+    void setDeadline(final long deadline) {
+        this.hasDeadline = true;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Sets the offset at which the parsing ends. The parsing ends at the first command boundary that
+     * is located at or after this offset.
+     *
+     * @param endOffset   the offset at which the parsing ends.
+     */
+    void setEndOffset(final long endOffset) {
+        this.endOffset = endOffset;
+    }
+
+    /**
+     * Requests that the parsing stops at the next command boundary.
+     */
+    void requestStop() {
+        this.stopRequested = true;
+    }
+
+    /**
+     * Invoked by the concrete {@link DataStreamParser} implementations before the {@link PrinterCommand} at
+     * the given offset is parsed. Returns true if the parsing has to be stopped. In this case the concrete
+     * {@link DataStreamParser} has to return -1 immediately (just like at the end of the data stream).
+     *
+     * @param offset   offset of the {@link PrinterCommand} that will be parsed next.
+     *
+     * @return true if the parsing has to be stopped.
+     */
+    boolean checkpoint(final long offset) {
+        if (this.stopReason != null) {
+            return true;
+        }
+
+        if (offset >= this.endOffset) {
+            return this.stop(PclParseResult.StopReason.COMPLETED, offset);
+        }
+
+        if (this.stopRequested) {
+            return this.stop(PclParseResult.StopReason.STOPPED, offset);
+        }
+
+        if (this.cancellationToken != null && this.cancellationToken.isCancelled()) {
+            return this.stop(PclParseResult.StopReason.CANCELLED, offset);
+        }
+
+        if (this.hasDeadline && this.checkpointCounter++ % DEADLINE_CHECK_INTERVAL == 0
+                && System.nanoTime() - this.deadline >= 0) {
+            return this.stop(PclParseResult.StopReason.DEADLINE_EXCEEDED, offset);
+        }
+
+        return false;
+    }
+
+    /**
+     * Records that the parsing has been stopped.
+     *
+     * @return always true.
+     */
+    private boolean stop(final PclParseResult.StopReason reason, final long offset) {
+        this.stopReason = reason;
+        this.stopOffset = offset;
+        return true;
+    }
+
+    /**
+     * Creates the {@link PclParseResult} after the concrete {@link DataStreamParser} has returned.
+     *
+     * @return the {@link PclParseResult}.
+     */
+    PclParseResult createParseResult() throws IOException {
+        if (this.stopReason == null) {
+            return new PclParseResult(PclParseResult.StopReason.COMPLETED, this.stream.tell());
+        } else {
+            return new PclParseResult(this.stopReason, this.stopOffset);
+        }
+    }
 }
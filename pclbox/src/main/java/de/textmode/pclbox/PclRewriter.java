@@ -0,0 +1,203 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@link PclRewriter} copies a PCL file and applies the changes that a {@link RewriteHandler} makes to
+ * single {@link PrinterCommand}s (like changing the paper source, stripping PJL commands or rewriting the
+ * number of copies). Only the inserted and replacing {@link PrinterCommand}s are serialized; all unchanged
+ * byte ranges are moved from the source with {@link FileChannel#transferTo}, so rewriting a large file with
+ * only a few changes costs about as much as copying the file.
+ *
+ * <p>The byte range of a {@link PrinterCommand} reaches up to the next {@link PrinterCommand}, so deleting a PJL
+ * command also deletes its line feed. PCL sequences are delivered to the {@link RewriteHandler} as
+ * {@link CombinedPclCommand}s because a single command of a sequence can not be replaced on its own.
+ *
+ * <p>The data sections are read, so the {@link RewriteHandler} can look at them. The data of foreign languages
+ * (i. e. PostScript or PDF) is not read: it is copied like any other unchanged byte range and the
+ * {@link ForeignLanguageCommand} that is passed to the {@link RewriteHandler} only contains its location.
+ *
+ * <p>Example (select the upper tray for all pages):
+ * <pre>
+ * new PclRewriter((command, edits) -&gt; {
+ *     if (command.toCommandString().equals("&amp;lH")) {
+ *         edits.replace(new ParameterizedPclCommand(0, '&amp;', 'l', "1", 'H'));
+ *     }
+ * }).rewrite(source, target);
+ * </pre>
+ */
+public final class PclRewriter {
+
+    private static final DataSectionFilter READ_DATA_SECTIONS = (p, g, t) -> true;
+
+    private final RewriteHandler rewriteHandler;
+
+    /**
+     * Constructor of the {@link PclRewriter}.
+     *
+     * @param rewriteHandler   the {@link RewriteHandler} that is invoked for every {@link PrinterCommand}.
+     */
+    public PclRewriter(final RewriteHandler rewriteHandler) {
+        this.rewriteHandler = rewriteHandler;
+    }
+
+    /**
+     * Rewrites the source file to the target file.
+     *
+     * @param source   the file that contains the PCL data stream.
+     * @param target   the file the rewritten PCL data stream is written to.
+     *
+     * @return the number of written bytes.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public long rewrite(final File source, final File target) throws IOException, PclException {
+        try (FileOutputStream out = new FileOutputStream(target)) {
+            return this.rewrite(source, out.getChannel());
+        }
+    }
+
+    /**
+     * Rewrites the source file to the given {@link WritableByteChannel}.
+     *
+     * @param source   the file that contains the PCL data stream.
+     * @param out   the {@link WritableByteChannel} the rewritten PCL data stream is written to. The
+     *     {@link WritableByteChannel} is not closed.
+     *
+     * @return the number of written bytes.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public long rewrite(final File source, final WritableByteChannel out) throws IOException, PclException {
+        try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+            final Writer writer = new Writer(channel, out);
+
+            try (PclParser parser = new PclParser(source, writer)) {
+                parser.setCombineSequences(true);
+                parser.setDataSectionFilter(READ_DATA_SECTIONS);
+                writer.finish(parser.parse().getOffset());
+            }
+
+            return writer.written;
+        }
+    }
+
+    /**
+     * The {@link PrinterCommandHandler} that invokes the {@link RewriteHandler} and writes the target.
+     */
+    private final class Writer implements PrinterCommandHandler {
+
+        private final FileChannel source;
+        private final WritableByteChannel out;
+        private final RewriteEdits edits = new RewriteEdits();
+
+        private long copiedUpTo;
+        private boolean skipPrevious;
+        private byte[] afterPrevious;
+        private long written;
+
+        Writer(final FileChannel source, final WritableByteChannel out) {
+            this.source = source;
+            this.out = out;
+        }
+
+        @Override
+        public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+            final long offset = command.getOffset();
+            this.endPrevious(offset);
+
+            this.edits.clear();
+            PclRewriter.this.rewriteHandler.rewrite(command, this.edits);
+            if (this.edits.isEmpty()) {
+                return;
+            }
+
+            this.copyUpTo(offset);
+            this.write(this.edits.getBefore());
+
+            if (this.edits.isReplaced()) {
+                this.write(this.edits.getReplacement());
+                this.skipPrevious = true;
+            }
+
+            final byte[] after = this.edits.getAfter();
+            this.afterPrevious = after.length > 0 ? after : null;
+        }
+
+        /**
+         * Ends the rewriting at the end of the data stream.
+         */
+        void finish(final long endOffset) throws IOException {
+            this.endPrevious(endOffset);
+            this.copyUpTo(endOffset);
+        }
+
+        /**
+         * Completes the changes of the previous {@link PrinterCommand} which ends at the given offset.
+         */
+        private void endPrevious(final long endOffset) throws IOException {
+            if (this.skipPrevious) {
+                this.copiedUpTo = endOffset;
+                this.skipPrevious = false;
+            }
+
+            if (this.afterPrevious != null) {
+                this.copyUpTo(endOffset);
+                this.write(this.afterPrevious);
+                this.afterPrevious = null;
+            }
+        }
+
+        /**
+         * Copies the unchanged bytes of the source up to the given offset.
+         */
+        private void copyUpTo(final long endOffset) throws IOException {
+            long position = this.copiedUpTo;
+            while (position < endOffset) {
+                final long transferred = this.source.transferTo(position, endOffset - position, this.out);
+                if (transferred <= 0) {
+                    throw new IOException("Unable to transfer the bytes at offset " + position);
+                }
+                position += transferred;
+            }
+
+            this.written += endOffset - this.copiedUpTo;
+            this.copiedUpTo = endOffset;
+        }
+
+        /**
+         * Writes the given serialized {@link PrinterCommand}s.
+         */
+        private void write(final byte[] data) throws IOException {
+            final ByteBuffer buffer = ByteBuffer.wrap(data);
+            while (buffer.hasRemaining()) {
+                this.out.write(buffer);
+            }
+            this.written += data.length;
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link PclState} is a snapshot of the PCL state that is maintained by the {@link PclStateInterpreter}: the
+ * cursor position, the margins, the line and character spacing, the page settings, the primary and secondary
+ * font and the state of the raster graphics. All positions and distances are given in decipoints (1/720 inch)
+ * and are measured from the top left corner of the logical page.
+ *
+ * <p>A {@link PclState} that has been returned by the {@link PclStateInterpreter} is never modified. The
+ * {@link FontSelection} objects are immutable and shared by all snapshots that use them, so a snapshot is
+ * cheap. A snapshot can be used to continue the interpretation at the offset of the snapshot (see
+ * {@link PclStateInterpreter#PclStateInterpreter(PclState, PrinterCommandHandler)}).
+ */
+public final class PclState {
+
+    private static final double DECIPOINTS_PER_INCH = 720.0;
+
+    long offset;
+
+    int pageSize;
+    int orientation;
+    int paperSource;
+    int copies;
+    int duplex;
+
+    double unitsPerInch;
+    double hmi;
+    double vmi;
+    double leftMargin;
+    double rightMargin;
+    double topMargin;
+    int textLength;
+    int lineTermination;
+    double cursorX;
+    double cursorY;
+
+    FontSelection primaryFont;
+    FontSelection secondaryFont;
+    boolean secondaryFontActive;
+
+    boolean rasterGraphicsActive;
+    int compressionMethod;
+    int rasterResolution;
+    int rasterWidth;
+    int rasterHeight;
+    int rasterPresentation;
+    double rasterLeft;
+    double rasterTop;
+    int rasterRows;
+
+    /**
+     * Constructor of a {@link PclState} with the default values after a "Printer Reset".
+     */
+    PclState() {
+        this.reset();
+    }
+
+    /**
+     * Copy constructor.
+     */
+    private PclState(final PclState other) {
+        this.offset = other.offset;
+        this.pageSize = other.pageSize;
+        this.orientation = other.orientation;
+        this.paperSource = other.paperSource;
+        this.copies = other.copies;
+        this.duplex = other.duplex;
+        this.unitsPerInch = other.unitsPerInch;
+        this.hmi = other.hmi;
+        this.vmi = other.vmi;
+        this.leftMargin = other.leftMargin;
+        this.rightMargin = other.rightMargin;
+        this.topMargin = other.topMargin;
+        this.textLength = other.textLength;
+        this.lineTermination = other.lineTermination;
+        this.cursorX = other.cursorX;
+        this.cursorY = other.cursorY;
+        this.primaryFont = other.primaryFont;
+        this.secondaryFont = other.secondaryFont;
+        this.secondaryFontActive = other.secondaryFontActive;
+        this.rasterGraphicsActive = other.rasterGraphicsActive;
+        this.compressionMethod = other.compressionMethod;
+        this.rasterResolution = other.rasterResolution;
+        this.rasterWidth = other.rasterWidth;
+        this.rasterHeight = other.rasterHeight;
+        this.rasterPresentation = other.rasterPresentation;
+        this.rasterLeft = other.rasterLeft;
+        this.rasterTop = other.rasterTop;
+        this.rasterRows = other.rasterRows;
+    }
+
+    /**
+     * Returns a copy of this {@link PclState}. The {@link FontSelection} objects are shared.
+     */
+    PclState copy() {
+        return new PclState(this);
+    }
+
+    /**
+     * Sets the default values (i. e. after a "Printer Reset").
+     */
+    void reset() {
+        this.pageSize = PageSizes.DEFAULT_PAGE_SIZE;
+        this.orientation = 0;
+        this.paperSource = 1;
+        this.copies = 1;
+        this.duplex = 0;
+        this.unitsPerInch = 300;
+        this.hmi = 72;
+        this.vmi = 120;
+        this.lineTermination = 0;
+        this.primaryFont = FontSelection.DEFAULT;
+        this.secondaryFont = FontSelection.DEFAULT;
+        this.secondaryFontActive = false;
+        this.rasterGraphicsActive = false;
+        this.compressionMethod = 0;
+        this.rasterResolution = 75;
+        this.rasterWidth = 0;
+        this.rasterHeight = 0;
+        this.rasterPresentation = 0;
+        this.rasterLeft = 0;
+        this.rasterTop = 0;
+        this.rasterRows = 0;
+        this.resetMargins();
+    }
+
+    /**
+     * Sets the default margins and the default text length and moves the cursor to the first line of the
+     * page (i. e. after the orientation or the page size has been changed).
+     */
+    void resetMargins() {
+        this.leftMargin = 0;
+        this.rightMargin = this.getLogicalPageWidth();
+        this.topMargin = DECIPOINTS_PER_INCH / 2;
+        this.textLength = this.getDefaultTextLength();
+        this.homeCursor();
+    }
+
+    /**
+     * Moves the cursor to the left margin of the first line of the page.
+     */
+    void homeCursor() {
+        this.cursorX = this.leftMargin;
+        this.cursorY = this.topMargin + 0.75 * this.vmi;
+    }
+
+    /**
+     * Returns the number of lines of the text area if the bottom margin is half an inch.
+     */
+    int getDefaultTextLength() {
+        if (this.vmi <= 0) {
+            return 0;
+        }
+
+        final double height = this.getLogicalPageHeight() - this.topMargin - DECIPOINTS_PER_INCH / 2;
+        return Math.max(0, (int) (height / this.vmi));
+    }
+
+    /**
+     * Returns the offset of the first command that has not been interpreted when the snapshot has been taken,
+     * measured from the beginning of the data stream.
+     *
+     * @return the offset of the snapshot.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Returns the page size (the value of the PCL command "Page Size").
+     *
+     * @return the page size.
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Returns the orientation (0 = portrait, 1 = landscape, 2 = reverse portrait, 3 = reverse landscape).
+     *
+     * @return the orientation.
+     */
+    public int getOrientation() {
+        return this.orientation;
+    }
+
+    /**
+     * Returns the paper source (the value of the PCL command "Paper Source").
+     *
+     * @return the paper source.
+     */
+    public int getPaperSource() {
+        return this.paperSource;
+    }
+
+    /**
+     * Returns the number of copies.
+     *
+     * @return the number of copies.
+     */
+    public int getCopies() {
+        return this.copies;
+    }
+
+    /**
+     * Returns the duplex mode (0 = simplex, 1 = long edge, 2 = short edge).
+     *
+     * @return the duplex mode.
+     */
+    public int getDuplex() {
+        return this.duplex;
+    }
+
+    /**
+     * Returns the width of the logical page (depending on the page size and the orientation).
+     *
+     * @return the width of the logical page in decipoints.
+     */
+    public double getLogicalPageWidth() {
+        return (this.orientation & 1) == 0 ? PageSizes.getWidth(this.pageSize) : PageSizes.getHeight(this.pageSize);
+    }
+
+    /**
+     * Returns the height of the logical page (depending on the page size and the orientation).
+     *
+     * @return the height of the logical page in decipoints.
+     */
+    public double getLogicalPageHeight() {
+        return (this.orientation & 1) == 0 ? PageSizes.getHeight(this.pageSize) : PageSizes.getWidth(this.pageSize);
+    }
+
+    /**
+     * Returns the number of PCL units per inch (as set by the PCL command "Unit of Measure").
+     *
+     * @return the number of PCL units per inch.
+     */
+    public double getUnitsPerInch() {
+        return this.unitsPerInch;
+    }
+
+    /**
+     * Returns the horizontal motion index (the width of a column).
+     *
+     * @return the horizontal motion index in decipoints.
+     */
+    public double getHmi() {
+        return this.hmi;
+    }
+
+    /**
+     * Returns the vertical motion index (the height of a line).
+     *
+     * @return the vertical motion index in decipoints.
+     */
+    public double getVmi() {
+        return this.vmi;
+    }
+
+    /**
+     * Returns the left margin.
+     *
+     * @return the left margin in decipoints.
+     */
+    public double getLeftMargin() {
+        return this.leftMargin;
+    }
+
+    /**
+     * Returns the right margin (the right edge of the text area).
+     *
+     * @return the right margin in decipoints.
+     */
+    public double getRightMargin() {
+        return this.rightMargin;
+    }
+
+    /**
+     * Returns the top margin.
+     *
+     * @return the top margin in decipoints.
+     */
+    public double getTopMargin() {
+        return this.topMargin;
+    }
+
+    /**
+     * Returns the text length (the number of lines of the text area).
+     *
+     * @return the text length in lines.
+     */
+    public int getTextLength() {
+        return this.textLength;
+    }
+
+    /**
+     * Returns the line termination mode (the value of the PCL command "Line Termination").
+     *
+     * @return the line termination mode.
+     */
+    public int getLineTermination() {
+        return this.lineTermination;
+    }
+
+    /**
+     * Returns the horizontal cursor position.
+     *
+     * @return the horizontal cursor position in decipoints.
+     */
+    public double getCursorX() {
+        return this.cursorX;
+    }
+
+    /**
+     * Returns the vertical cursor position.
+     *
+     * @return the vertical cursor position in decipoints.
+     */
+    public double getCursorY() {
+        return this.cursorY;
+    }
+
+    /**
+     * Returns the selection of the primary font.
+     *
+     * @return the primary {@link FontSelection}.
+     */
+    public FontSelection getPrimaryFont() {
+        return this.primaryFont;
+    }
+
+    /**
+     * Returns the selection of the secondary font.
+     *
+     * @return the secondary {@link FontSelection}.
+     */
+    public FontSelection getSecondaryFont() {
+        return this.secondaryFont;
+    }
+
+    /**
+     * Returns true if the secondary font is active (after a "Shift Out" control character).
+     *
+     * @return true if the secondary font is active.
+     */
+    public boolean isSecondaryFontActive() {
+        return this.secondaryFontActive;
+    }
+
+    /**
+     * Returns the selection of the font that is used for text.
+     *
+     * @return the {@link FontSelection} of the active font.
+     */
+    public FontSelection getActiveFont() {
+        return this.secondaryFontActive ? this.secondaryFont : this.primaryFont;
+    }
+
+    /**
+     * Returns true if raster graphics are active.
+     *
+     * @return true if raster graphics are active.
+     */
+    public boolean isRasterGraphicsActive() {
+        return this.rasterGraphicsActive;
+    }
+
+    /**
+     * Returns the raster compression method.
+     *
+     * @return the raster compression method.
+     */
+    public int getCompressionMethod() {
+        return this.compressionMethod;
+    }
+
+    /**
+     * Returns the raster graphics resolution in dots per inch.
+     *
+     * @return the raster graphics resolution.
+     */
+    public int getRasterResolution() {
+        return this.rasterResolution;
+    }
+
+    /**
+     * Returns the source raster width in pixels or 0 if it has not been set.
+     *
+     * @return the source raster width.
+     */
+    public int getRasterWidth() {
+        return this.rasterWidth;
+    }
+
+    /**
+     * Returns the source raster height in rows or 0 if it has not been set.
+     *
+     * @return the source raster height.
+     */
+    public int getRasterHeight() {
+        return this.rasterHeight;
+    }
+
+    /**
+     * Returns the raster graphics presentation mode.
+     *
+     * @return the raster graphics presentation mode.
+     */
+    public int getRasterPresentation() {
+        return this.rasterPresentation;
+    }
+
+    /**
+     * Returns the number of raster rows that have been transferred since raster graphics have been started.
+     *
+     * @return the number of raster rows.
+     */
+    public int getRasterRows() {
+        return this.rasterRows;
+    }
+
+    /**
+     * Compares the state, but not the offset.
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof PclState)) {
+            return false;
+        }
+
+        final PclState o = (PclState) other;
+        return o.pageSize == this.pageSize
+                && o.orientation == this.orientation
+                && o.paperSource == this.paperSource
+                && o.copies == this.copies
+                && o.duplex == this.duplex
+                && o.unitsPerInch == this.unitsPerInch
+                && o.hmi == this.hmi
+                && o.vmi == this.vmi
+                && o.leftMargin == this.leftMargin
+                && o.rightMargin == this.rightMargin
+                && o.topMargin == this.topMargin
+                && o.textLength == this.textLength
+                && o.lineTermination == this.lineTermination
+                && o.cursorX == this.cursorX
+                && o.cursorY == this.cursorY
+                && o.primaryFont.equals(this.primaryFont)
+                && o.secondaryFont.equals(this.secondaryFont)
+                && o.secondaryFontActive == this.secondaryFontActive
+                && o.rasterGraphicsActive == this.rasterGraphicsActive
+                && o.compressionMethod == this.compressionMethod
+                && o.rasterResolution == this.rasterResolution
+                && o.rasterWidth == this.rasterWidth
+                && o.rasterHeight == this.rasterHeight
+                && o.rasterPresentation == this.rasterPresentation
+                && o.rasterLeft == this.rasterLeft
+                && o.rasterTop == this.rasterTop
+                && o.rasterRows == this.rasterRows;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.pageSize
+                ^ this.orientation << 8
+                ^ Double.hashCode(this.cursorX)
+                ^ Double.hashCode(this.cursorY)
+                ^ this.primaryFont.hashCode()
+                ^ this.secondaryFont.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "PclState@" + this.offset
+                + " cursor=" + this.cursorX + "," + this.cursorY
+                + " page=" + this.pageSize + "/" + this.orientation
+                + " font=" + this.getActiveFont();
+    }
+}
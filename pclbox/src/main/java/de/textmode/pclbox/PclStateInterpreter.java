@@ -0,0 +1,619 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link PclStateInterpreter} is a {@link PrinterCommandHandler} that interprets the PCL commands and
+ * maintains the PCL state: the cursor position, the margins, the line and character spacing, the page settings,
+ * the primary and secondary font and the state of the raster graphics (see {@link PclState}).
+ *
+ * <p>At the start of every page (see {@link PageTracker} for the page boundaries) a snapshot of the state is
+ * taken. Together with the offset of the page (i. e. from a {@link PageIndex} or a {@link PageIndexFile}) the
+ * snapshot allows to interpret a single page without interpreting the previous pages:
+ * <pre>
+ * final PclStateInterpreter pageInterpreter = new PclStateInterpreter(interpreter.getPageState(5), null);
+ * try (PclParser parser = new PclParser(file, pageInterpreter)) {
+ *     parser.setCombineSequences(true);
+ *     parser.parse(index.getPage(5));
+ * }
+ * </pre>
+ *
+ * <p>The interpretation is an approximation of what a printer does. Text advances the cursor by the current
+ * HMI for every byte (proportional fonts are not measured) and every raster row advances the cursor by one row
+ * of the raster resolution. Macros are not executed (commands within a macro definition are ignored), so a
+ * {@link MacroExpander} should be placed in front of the {@link PclStateInterpreter} if the data stream uses
+ * macros. HP/GL commands do not change the state.
+ */
+public final class PclStateInterpreter implements PrinterCommandHandler {
+
+    private static final double DECIPOINTS_PER_INCH = 720.0;
+
+    private final PrinterCommandHandler nextHandler;
+    private final PageIndexer pageIndexer;
+    private final PclState state;
+    private final List<PclState> pageStates = new ArrayList<>();
+
+    private PclState snapshot;
+    private PclState pageStartState;
+    private boolean atPageBoundary = true;
+    private boolean pageEnded;
+    private boolean inMacroDefinition;
+
+    /**
+     * Constructor of a {@link PclStateInterpreter} that starts with the default state.
+     */
+    public PclStateInterpreter() {
+        this(null);
+    }
+
+    /**
+     * Constructor of a {@link PclStateInterpreter} that starts with the default state.
+     *
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public PclStateInterpreter(final PrinterCommandHandler nextHandler) {
+        this(new PclState(), nextHandler);
+    }
+
+    /**
+     * Constructor of a {@link PclStateInterpreter} that continues the interpretation with the given
+     * {@link PclState} (i. e. the state at the start of a page). The pages are numbered starting with 1
+     * from the offset of the given {@link PclState}.
+     *
+     * @param initialState   the {@link PclState} to start with.
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public PclStateInterpreter(final PclState initialState, final PrinterCommandHandler nextHandler) {
+        this.state = initialState.copy();
+        this.nextHandler = nextHandler;
+        this.pageIndexer = new PageIndexer(new PageHandler() {
+            @Override
+            public void handlePageStart(final int pageNumber, final long startOffset) {
+                PclStateInterpreter.this.pageStates.add(PclStateInterpreter.this.pageStartState);
+            }
+
+            @Override
+            public void handlePageEnd(final PageRange page) {
+                PclStateInterpreter.this.pageEnded = true;
+            }
+        });
+    }
+
+    /**
+     * Returns a snapshot of the current state. The offset of the snapshot is the offset of the last
+     * interpreted command.
+     *
+     * @return the current {@link PclState}.
+     */
+    public PclState getState() {
+        if (this.snapshot == null) {
+            this.snapshot = this.state.copy();
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Returns the number of pages that have been started so far.
+     *
+     * @return the number of started pages.
+     */
+    public int getPageCount() {
+        return this.pageStates.size();
+    }
+
+    /**
+     * Returns the snapshot of the state at the start of the page with the given number. The offset of the
+     * snapshot is the offset of the first command of the page.
+     *
+     * @param pageNumber   the number of the page, starting with 1.
+     *
+     * @return the {@link PclState} at the start of the page.
+     */
+    public PclState getPageState(final int pageNumber) {
+        if (pageNumber < 1 || pageNumber > this.pageStates.size()) {
+            throw new IndexOutOfBoundsException("Invalid page number " + pageNumber);
+        }
+        return this.pageStates.get(pageNumber - 1);
+    }
+
+    /**
+     * Returns the current state without copying it. The returned {@link PclState} is modified by the
+     * {@link PclStateInterpreter} and must not be modified by the caller.
+     *
+     * @return the current {@link PclState}.
+     */
+    PclState getCurrentState() {
+        return this.state;
+    }
+
+    /**
+     * Returns true if the last interpreted command is part of a macro definition.
+     *
+     * @return true if a macro is being defined.
+     */
+    boolean isInMacroDefinition() {
+        return this.inMacroDefinition;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        // PJL commands and the data of foreign languages never belong to a page...
+        if (!(command instanceof PjlCommand) && !(command instanceof ForeignLanguageCommand)) {
+            final long offset = command.getOffset();
+            if (this.atPageBoundary) {
+                this.pageStartState = this.takeSnapshot(offset);
+                this.atPageBoundary = false;
+            }
+
+            this.pageEnded = false;
+            this.pageIndexer.handlePrinterCommand(command);
+
+            final boolean formFeed = command instanceof ControlCharacterCommand
+                    && ((ControlCharacterCommand) command).getControlCharacter() == ControlCharacterCommand.FORM_FEED;
+
+            // A command that ejects a marked page belongs to the next page...
+            if (this.pageEnded && !formFeed) {
+                this.pageStartState = this.takeSnapshot(offset);
+            }
+
+            this.interpret(command);
+            this.snapshot = null;
+            this.state.offset = offset;
+
+            if (formFeed || isUniversalExitLanguage(command)) {
+                this.atPageBoundary = true;
+            }
+        }
+
+        if (this.nextHandler != null) {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the current state with the given offset.
+     */
+    private PclState takeSnapshot(final long offset) {
+        final PclState result = this.state.copy();
+        result.offset = offset;
+        return result;
+    }
+
+    /**
+     * Interprets a {@link PrinterCommand}.
+     */
+    private void interpret(final PrinterCommand command) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getValue());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                this.process(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getValue(ix));
+            }
+
+        } else if (command instanceof TwoBytePclCommand) {
+            this.processTwoByteCommand(((TwoBytePclCommand) command).getOperationCharacter());
+
+        } else if (this.inMacroDefinition) {
+            return;
+
+        } else if (command instanceof TextCommand) {
+            this.state.cursorX += this.state.hmi * ((TextCommand) command).text.length;
+
+        } else if (command instanceof ControlCharacterCommand) {
+            this.processControlCharacter(((ControlCharacterCommand) command).getControlCharacter());
+        }
+    }
+
+    /**
+     * Processes a two byte PCL command.
+     */
+    private void processTwoByteCommand(final int operationCharacter) {
+        final PclState s = this.state;
+        if (operationCharacter == 'E') {
+            s.reset();
+            this.inMacroDefinition = false;
+        } else if (this.inMacroDefinition) {
+            return;
+        } else if (operationCharacter == '9') {
+            // Clear Horizontal Margins
+            s.leftMargin = 0;
+            s.rightMargin = s.getLogicalPageWidth();
+        } else if (operationCharacter == '=') {
+            // Half Line Feed
+            s.cursorY += s.vmi / 2;
+        }
+    }
+
+    /**
+     * Processes a control character.
+     */
+    private void processControlCharacter(final int controlCharacter) {
+        final PclState s = this.state;
+        switch (controlCharacter) {
+        case ControlCharacterCommand.BACKSPACE:
+            s.cursorX = Math.max(0, s.cursorX - s.hmi);
+            break;
+        case ControlCharacterCommand.HORIZONTAL_TAB:
+            // Tab stops are located every eight columns, starting at the left margin...
+            if (s.hmi > 0) {
+                final double tab = 8 * s.hmi;
+                s.cursorX = s.leftMargin + (Math.floor((s.cursorX - s.leftMargin) / tab) + 1) * tab;
+            }
+            break;
+        case ControlCharacterCommand.LINE_FEED:
+            s.cursorY += s.vmi;
+            if (s.lineTermination == 2 || s.lineTermination == 3) {
+                s.cursorX = s.leftMargin;
+            }
+            break;
+        case ControlCharacterCommand.FORM_FEED:
+            s.cursorY = s.topMargin + 0.75 * s.vmi;
+            if (s.lineTermination == 2 || s.lineTermination == 3) {
+                s.cursorX = s.leftMargin;
+            }
+            break;
+        case ControlCharacterCommand.CARRIAGE_RETURN:
+            s.cursorX = s.leftMargin;
+            if (s.lineTermination == 1 || s.lineTermination == 3) {
+                s.cursorY += s.vmi;
+            }
+            break;
+        case ControlCharacterCommand.SHIFT_OUT:
+            s.secondaryFontActive = true;
+            break;
+        case ControlCharacterCommand.SHIFT_IN:
+            s.secondaryFontActive = false;
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value) {
+
+        if (this.inMacroDefinition) {
+            if (parameterizedCharacter == '&' && groupCharacter == 'f' && terminationCharacter == 'X'
+                    && ParameterizedPclCommand.toInt(value) == 1) {
+
+                this.inMacroDefinition = false;
+            }
+            return;
+        }
+
+        final double number = ParameterizedPclCommand.toDouble(value);
+        final boolean relative = value.startsWith("+") || value.startsWith("-");
+
+        switch (parameterizedCharacter) {
+        case '*':
+            this.processGraphics(groupCharacter, terminationCharacter, number, relative);
+            break;
+        case '&':
+            this.processJobAndPageControl(groupCharacter, terminationCharacter, number, relative);
+            break;
+        case '(':
+        case ')':
+            this.processFontSelection(parameterizedCharacter, groupCharacter, terminationCharacter, value, number);
+            break;
+        case '%':
+            if (groupCharacter == 0 && terminationCharacter == 'X') {
+                // Universal Exit Language
+                this.state.reset();
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes the PCL commands with the parameterized character "*" (cursor positioning in PCL units and
+     * raster graphics).
+     */
+    private void processGraphics(
+            final int groupCharacter,
+            final int terminationCharacter,
+            final double number,
+            final boolean relative) {
+
+        final PclState s = this.state;
+        if (groupCharacter == 'p') {
+            final double distance = number * DECIPOINTS_PER_INCH / s.unitsPerInch;
+            if (terminationCharacter == 'X') {
+                s.cursorX = moveCursor(s.cursorX, distance, relative);
+            } else if (terminationCharacter == 'Y') {
+                s.cursorY = moveCursor(s.cursorY, distance, relative);
+            }
+        } else if (groupCharacter == 't' && terminationCharacter == 'R') {
+            if (number > 0 && !s.rasterGraphicsActive) {
+                s.rasterResolution = (int) number;
+            }
+        } else if (groupCharacter == 'r') {
+            switch (terminationCharacter) {
+            case 'A':
+                if (!s.rasterGraphicsActive) {
+                    this.startRasterGraphics(number == 1 || number == 3);
+                }
+                break;
+            case 'B':
+            case 'C':
+                if (s.rasterGraphicsActive) {
+                    this.endRasterGraphics();
+                }
+                if (terminationCharacter == 'C') {
+                    s.compressionMethod = 0;
+                }
+                break;
+            case 'S':
+                if (!s.rasterGraphicsActive) {
+                    s.rasterWidth = Math.max(0, (int) number);
+                }
+                break;
+            case 'T':
+                if (!s.rasterGraphicsActive) {
+                    s.rasterHeight = Math.max(0, (int) number);
+                }
+                break;
+            case 'F':
+                s.rasterPresentation = (int) number;
+                break;
+            default:
+                break;
+            }
+        } else if (groupCharacter == 'b') {
+            switch (terminationCharacter) {
+            case 'M':
+                s.compressionMethod = (int) number;
+                break;
+            case 'W':
+            case 'Y':
+                if (!s.rasterGraphicsActive) {
+                    // Implicit start of raster graphics at the left edge of the logical page
+                    this.startRasterGraphics(false);
+                }
+                s.rasterRows += terminationCharacter == 'W' ? 1 : Math.max(0, (int) number);
+                break;
+            case 'V':
+                if (!s.rasterGraphicsActive) {
+                    this.startRasterGraphics(false);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Processes the PCL commands with the parameterized character "&amp;" (cursor positioning, page control,
+     * spacing and macros).
+     */
+    private void processJobAndPageControl(
+            final int groupCharacter,
+            final int terminationCharacter,
+            final double number,
+            final boolean relative) {
+
+        final PclState s = this.state;
+        switch (groupCharacter) {
+        case 'a':
+            this.processCursorPosition(terminationCharacter, number, relative);
+            break;
+        case 'l':
+            this.processPageControl(terminationCharacter, number);
+            break;
+        case 'k':
+            if (terminationCharacter == 'H') {
+                s.hmi = Math.max(0, number * 6);
+            } else if (terminationCharacter == 'S') {
+                // Pitch Mode (10, 16.67 or 12 characters per inch)
+                s.hmi = number == 2 ? DECIPOINTS_PER_INCH / 16.67 : number == 4 ? 60 : 72;
+            } else if (terminationCharacter == 'G') {
+                s.lineTermination = (int) number;
+            }
+            break;
+        case 'u':
+            if (terminationCharacter == 'D' && number > 0) {
+                s.unitsPerInch = number;
+            }
+            break;
+        case 'f':
+            if (terminationCharacter == 'X' && (int) number == 0) {
+                this.inMacroDefinition = true;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes the cursor positioning commands <code>&lt;esc&gt;&amp;a#H/V/C/R</code> and the horizontal
+     * margins <code>&lt;esc&gt;&amp;a#L/M</code>.
+     */
+    private void processCursorPosition(final int terminationCharacter, final double number, final boolean relative) {
+        final PclState s = this.state;
+        switch (terminationCharacter) {
+        case 'H':
+            s.cursorX = moveCursor(s.cursorX, number, relative);
+            break;
+        case 'V':
+            s.cursorY = moveCursor(s.cursorY, number, relative);
+            break;
+        case 'C':
+            s.cursorX = moveCursor(s.cursorX, number * s.hmi, relative);
+            break;
+        case 'R':
+            if (relative) {
+                s.cursorY = Math.max(0, s.cursorY + number * s.vmi);
+            } else {
+                s.cursorY = s.topMargin + (number + 0.75) * s.vmi;
+            }
+            break;
+        case 'L':
+            s.leftMargin = Math.max(0, number * s.hmi);
+            s.cursorX = Math.max(s.cursorX, s.leftMargin);
+            break;
+        case 'M':
+            s.rightMargin = Math.min(s.getLogicalPageWidth(), (number + 1) * s.hmi);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes the page control commands <code>&lt;esc&gt;&amp;l#...</code>.
+     */
+    private void processPageControl(final int terminationCharacter, final double number) {
+        final PclState s = this.state;
+        final int value = (int) number;
+        switch (terminationCharacter) {
+        case 'A':
+            if (PageSizes.isKnown(value)) {
+                s.pageSize = value;
+            }
+            s.resetMargins();
+            break;
+        case 'O':
+            if (value >= 0 && value <= 3) {
+                s.orientation = value;
+            }
+            s.resetMargins();
+            break;
+        case 'H':
+            if (value > 0) {
+                s.paperSource = value;
+            }
+            s.homeCursor();
+            break;
+        case 'P':
+            s.resetMargins();
+            break;
+        case 'X':
+            s.copies = Math.max(1, value);
+            break;
+        case 'S':
+            s.duplex = value;
+            break;
+        case 'C':
+            s.vmi = Math.max(0, number * 15);
+            break;
+        case 'D':
+            if (number > 0) {
+                s.vmi = DECIPOINTS_PER_INCH / number;
+            }
+            break;
+        case 'E':
+            s.topMargin = Math.max(0, number * s.vmi);
+            s.textLength = s.getDefaultTextLength();
+            break;
+        case 'F':
+            s.textLength = Math.max(0, value);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Processes the font selection commands of the primary (parameterized character "(") and the secondary
+     * (parameterized character ")") font.
+     */
+    private void processFontSelection(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value,
+            final double number) {
+
+        final PclState s = this.state;
+        final boolean primary = parameterizedCharacter == '(';
+        if (primary) {
+            s.primaryFont = s.primaryFont.with(groupCharacter, terminationCharacter, value);
+        } else {
+            s.secondaryFont = s.secondaryFont.with(groupCharacter, terminationCharacter, value);
+        }
+
+        // Selecting the pitch of the active font sets the HMI...
+        if (groupCharacter == 's' && terminationCharacter == 'H' && number > 0
+                && primary != s.secondaryFontActive) {
+
+            s.hmi = DECIPOINTS_PER_INCH / number;
+        }
+    }
+
+    /**
+     * Starts raster graphics at the current vertical cursor position.
+     */
+    private void startRasterGraphics(final boolean atCursor) {
+        final PclState s = this.state;
+        s.rasterGraphicsActive = true;
+        s.rasterLeft = atCursor ? s.cursorX : 0;
+        s.rasterTop = s.cursorY;
+        s.rasterRows = 0;
+    }
+
+    /**
+     * Ends raster graphics. The cursor is moved to the left graphics margin below the last raster row.
+     */
+    private void endRasterGraphics() {
+        final PclState s = this.state;
+        s.rasterGraphicsActive = false;
+        s.cursorX = s.rasterLeft;
+        s.cursorY = s.rasterTop + s.rasterRows * DECIPOINTS_PER_INCH / s.rasterResolution;
+    }
+
+    private static double moveCursor(final double position, final double distance, final boolean relative) {
+        return Math.max(0, relative ? position + distance : distance);
+    }
+
+    private static boolean isUniversalExitLanguage(final PrinterCommand command) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            return PageTracker.classify(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getIntValue()) == PageTracker.EXIT_LANGUAGE;
+        }
+        return false;
+    }
+}
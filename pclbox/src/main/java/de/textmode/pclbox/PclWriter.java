@@ -0,0 +1,311 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The {@link PclWriter} writes {@link PrinterCommand}s to a {@link WritableByteChannel}. Every command is encoded
+ * directly into a reusable buffer, so - unlike {@link PrinterCommand#writeTo(OutputStream)} - no strings or
+ * arrays are created for the written commands. The buffer is written to the {@link WritableByteChannel} when
+ * it is full.
+ *
+ * <p>Large data sections (i. e. raster data or font data) are not copied into the buffer. If the
+ * {@link WritableByteChannel} is a {@link GatheringByteChannel} (like a {@link java.nio.channels.FileChannel}
+ * or a {@link java.nio.channels.SocketChannel}), the buffer and the data section are written with a single
+ * gathering write.
+ *
+ * <p>The {@link PclWriter} is a {@link PrinterCommandHandler}, so the {@link PclParser} can pass the parsed
+ * commands directly to it. Note that {@link #flush()} or {@link #close()} has to be invoked after the last
+ * command has been written. A {@link PclWriter} is not thread safe.
+ */
+public final class PclWriter implements PrinterCommandHandler, PrinterCommandVisitor, Flushable, Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final int MINIMUM_BUFFER_SIZE = 64;
+
+    // Data sections of at least this size are not copied into the buffer (if a gathering write is possible)...
+    private static final int GATHERING_THRESHOLD = 4096;
+
+    private static final int ESCAPE = 0x1B;
+    private static final int LINE_FEED = 0x0A;
+    private static final int HPGL_TERMINATOR = ';';
+
+    private final WritableByteChannel out;
+    private final GatheringByteChannel gatheringOut;
+    private final byte[] buffer;
+    private final ByteBuffer bufferView;
+    private final ByteBuffer[] gatheringBuffers = new ByteBuffer[2];
+
+    private int position;
+    private long bytesWritten;
+
+    /**
+     * Constructor of a {@link PclWriter} with a buffer of 64 KiB.
+     *
+     * @param out   the {@link WritableByteChannel} the commands are written to.
+     */
+    public PclWriter(final WritableByteChannel out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor of a {@link PclWriter}.
+     *
+     * @param out   the {@link WritableByteChannel} the commands are written to.
+     * @param bufferSize   the size of the buffer (at least 64 bytes).
+     */
+    public PclWriter(final WritableByteChannel out, final int bufferSize) {
+        if (bufferSize < MINIMUM_BUFFER_SIZE) {
+            throw new IllegalArgumentException("The buffer size must be at least " + MINIMUM_BUFFER_SIZE);
+        }
+
+        this.out = out;
+        this.gatheringOut = out instanceof GatheringByteChannel ? (GatheringByteChannel) out : null;
+        this.buffer = new byte[bufferSize];
+        this.bufferView = ByteBuffer.wrap(this.buffer);
+    }
+
+    /**
+     * Constructor of a {@link PclWriter} with a buffer of 64 KiB that writes to an {@link OutputStream}.
+     *
+     * @param out   the {@link OutputStream} the commands are written to.
+     */
+    public PclWriter(final OutputStream out) {
+        this(Channels.newChannel(out), DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Returns the number of bytes that have been written so far (including the bytes that are still buffered).
+     *
+     * @return the number of written bytes.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten + this.position;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        command.accept(this);
+    }
+
+    /**
+     * Writes the given {@link PrinterCommand}.
+     *
+     * @param command   the {@link PrinterCommand} to be written.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(final PrinterCommand command) throws IOException {
+        command.accept(this);
+    }
+
+    @Override
+    public void handle(final TextCommand command) throws IOException {
+        this.writeData(command.text);
+    }
+
+    @Override
+    public void handle(final ControlCharacterCommand command) throws IOException {
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = command.getControlCharacter();
+    }
+
+    @Override
+    public void handle(final TwoBytePclCommand command) throws IOException {
+        this.ensureCapacity(2);
+        this.buffer[this.position++] = ESCAPE;
+        this.buffer[this.position++] = (byte) command.getOperationCharacter();
+    }
+
+    @Override
+    public void handle(final ParameterizedPclCommand command) throws IOException {
+        this.writePrefix(command.getParameterizedCharacter(), command.getGroupCharacter());
+
+        if (!command.isWithoutValue()) {
+            this.writeString(command.getValue());
+        }
+
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = (byte) command.getTerminationCharacter();
+
+        final byte[] dataSection = command.getDataSectionWithoutCopy();
+        if (dataSection != null) {
+            this.writeData(dataSection);
+        }
+    }
+
+    @Override
+    public void handle(final CombinedPclCommand command) throws IOException {
+        this.writePrefix(command.getParameterizedCharacter(), command.getGroupCharacter());
+
+        // All but the last termination character are written as parameter characters (lower case)...
+        final int last = command.getCommandCount() - 1;
+        for (int ix = 0; ix <= last; ++ix) {
+            this.writeString(command.getRawValue(ix));
+
+            final int terminationCharacter = command.getTerminationCharacter(ix);
+            this.ensureCapacity(1);
+            this.buffer[this.position++] = (byte) (ix == last ? terminationCharacter : terminationCharacter + 32);
+        }
+
+        final byte[] dataSection = command.getDataSectionWithoutCopy();
+        if (dataSection != null) {
+            this.writeData(dataSection);
+        }
+    }
+
+    @Override
+    public void handle(final PjlCommand command) throws IOException {
+        this.writeString(command.getCommand());
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = LINE_FEED;
+    }
+
+    @Override
+    public void handle(final HpglCommand command) throws IOException {
+        this.writeString(command.getCommand());
+        this.writeString(command.getParameters());
+        this.ensureCapacity(1);
+        this.buffer[this.position++] = HPGL_TERMINATOR;
+    }
+
+    @Override
+    public void handle(final ForeignLanguageCommand command) throws IOException {
+        this.writeData(command.getRequiredData());
+    }
+
+    /**
+     * Writes all buffered bytes to the {@link WritableByteChannel}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (this.position > 0) {
+            this.bufferView.limit(this.position).position(0);
+            while (this.bufferView.hasRemaining()) {
+                this.out.write(this.bufferView);
+            }
+
+            this.bytesWritten += this.position;
+            this.position = 0;
+        }
+    }
+
+    /**
+     * Writes all buffered bytes and closes the {@link WritableByteChannel}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.out.close();
+        }
+    }
+
+    /**
+     * Writes the escape byte, the parameterized character and the group character (if present).
+     */
+    private void writePrefix(final int parameterizedCharacter, final int groupCharacter) throws IOException {
+        this.ensureCapacity(3);
+        this.buffer[this.position++] = ESCAPE;
+        this.buffer[this.position++] = (byte) parameterizedCharacter;
+        if (groupCharacter != 0x00) {
+            this.buffer[this.position++] = (byte) groupCharacter;
+        }
+    }
+
+    /**
+     * Writes the characters of the given string (ISO-8859-1 encoded).
+     */
+    private void writeString(final String value) throws IOException {
+        final int length = value.length();
+        int ix = 0;
+        while (ix < length) {
+            if (this.position == this.buffer.length) {
+                this.flush();
+            }
+
+            final int end = Math.min(length, ix + this.buffer.length - this.position);
+            while (ix < end) {
+                this.buffer[this.position++] = (byte) value.charAt(ix++);
+            }
+        }
+    }
+
+    /**
+     * Writes the given data section or text.
+     */
+    private void writeData(final byte[] data) throws IOException {
+        if (data.length >= GATHERING_THRESHOLD && this.gatheringOut != null) {
+            this.writeGathering(data);
+            return;
+        }
+
+        int ix = 0;
+        while (ix < data.length) {
+            if (this.position == this.buffer.length) {
+                this.flush();
+            }
+
+            final int length = Math.min(data.length - ix, this.buffer.length - this.position);
+            System.arraycopy(data, ix, this.buffer, this.position, length);
+            this.position += length;
+            ix += length;
+        }
+    }
+
+    /**
+     * Writes the buffered bytes and the given data section with a gathering write.
+     */
+    private void writeGathering(final byte[] data) throws IOException {
+        this.bufferView.limit(this.position).position(0);
+        this.gatheringBuffers[0] = this.bufferView;
+        this.gatheringBuffers[1] = ByteBuffer.wrap(data);
+
+        try {
+            while (this.gatheringBuffers[1].hasRemaining()) {
+                this.gatheringOut.write(this.gatheringBuffers);
+            }
+        } finally {
+            this.gatheringBuffers[1] = null;
+        }
+
+        this.bytesWritten += this.position + data.length;
+        this.position = 0;
+    }
+
+    /**
+     * Makes sure that the buffer can take the given number of bytes.
+     */
+    private void ensureCapacity(final int length) throws IOException {
+        if (this.position + length > this.buffer.length) {
+            this.flush();
+        }
+    }
+}
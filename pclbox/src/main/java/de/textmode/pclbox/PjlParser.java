@@ -17,11 +17,15 @@ package de.textmode.pclbox;
  */
 
 import java.io.IOException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * This {@link PjlParser} parses PJL commands. It is constructed from the {@link Pcl5Parser}
  * and will return control to the {@link Pcl5Parser} after an escape bye (0x1B) has been read from
- * the data stream.
+ * the data stream. If the PJL command "<code>@PJL ENTER LANGUAGE=...</code>" switches to a language other
+ * than PCL, the following data is handled by the {@link ForeignLanguageParser}.
  */
 final class PjlParser extends DataStreamParser {
 
@@ -32,6 +36,9 @@ final class PjlParser extends DataStreamParser {
 
     private static final String PJL_PREFIX = "@PJL";
 
+    private static final Pattern ENTER_LANGUAGE = Pattern.compile(
+            "^@PJL\\s+ENTER\\s+LANGUAGE\\s*=\\s*(\\S+)", Pattern.CASE_INSENSITIVE);
+
     /**
      * Constructor. Just gets the {@link PclParserContext}.
      *
@@ -51,14 +58,28 @@ final class PjlParser extends DataStreamParser {
         while (readByte != END_OF_STREAM && readByte != ESCAPE) {
 
             // we check the first byte to be sure that we start parsing a PJL command...
-            if (sb.length() == 0 && readByte != '@') {
-                throw new PclException("No PJL command is found at offset " + offset);
+            if (sb.length() == 0) {
+                if (this.getContext().checkpoint(offset)) {
+                    return END_OF_STREAM;
+                }
+
+                if (readByte != '@') {
+                    throw new PclException("No PJL command is found at offset " + offset);
+                }
             }
 
             // The carriage return is optional and stripped...
             if (readByte != CARRIAGE_RETURN) {
                 if (readByte == LINE_FEED) {
-                    this.invokeHandler(offset, sb.toString());
+                    final String command = sb.toString();
+                    this.invokeHandler(offset, command);
+
+                    // The data of a foreign language directly follows the line feed...
+                    final String language = getForeignLanguage(command);
+                    if (language != null) {
+                        return new ForeignLanguageParser(this.getContext(), language).parse();
+                    }
+
                     offset = this.getInputStream().tell();
                     sb.setLength(0);
                 } else {
@@ -84,11 +105,30 @@ final class PjlParser extends DataStreamParser {
      * @param command   the PJL command including the prefix "@PJL"
      */
     private void invokeHandler(final long offset, final String command) throws PclException, IOException {
-        // TODO Check for "ENTER LANGUAGE" command - if not "PCL", then throw an exception!
         if (command.startsWith(PJL_PREFIX)) {
             this.getPrinterCommandHandler().handlePrinterCommand(new PjlCommand(offset, command.trim()));
         } else {
             throw new PclException("No PJL command is found at offset " + offset);
         }
     }
+
+    /**
+     * Returns the name of the language if the given PJL command is an "ENTER LANGUAGE" command that switches to
+     * a language other than PCL 5 (i. e. "POSTSCRIPT", "PDF" or "PCLXL").
+     *
+     * @param command   the PJL command including the prefix "@PJL"
+     *
+     * @return the name of the language (in upper case) or <code>null</code> if the PJL command does not switch
+     *     to a foreign language.
+     */
+    static String getForeignLanguage(final String command) {
+        final Matcher matcher = ENTER_LANGUAGE.matcher(command);
+        if (!matcher.find()) {
+            return null;
+        }
+
+        // Some drivers use "PCL5C" or "PCL5E" instead of "PCL"...
+        final String language = matcher.group(1).toUpperCase(Locale.ROOT);
+        return language.equals("PCL") || language.startsWith("PCL5") ? null : language;
+    }
 }
@@ -59,6 +59,20 @@ public interface PrinterCommandVisitor {
      */
     void handle(final ParameterizedPclCommand command) throws IOException;
 
+    /**
+     * Handle method for {@link CombinedPclCommand} objects. By default, the PCL sequence is split and every
+     * PCL command of the sequence is passed to {@link #handle(ParameterizedPclCommand)}.
+     *
+     * @param command   a {@link CombinedPclCommand} to be handled.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    default void handle(final CombinedPclCommand command) throws IOException {
+        for (final ParameterizedPclCommand pc : command.toParameterizedPclCommands()) {
+            this.handle(pc);
+        }
+    }
+
     /**
      * Handle method for {@link PjlCommand} objects.
      *
@@ -76,4 +90,15 @@ public interface PrinterCommandVisitor {
      * @throws IOException if an I/O error occurs.
      */
     void handle(final HpglCommand command) throws IOException;
+
+    /**
+     * Handle method for {@link ForeignLanguageCommand} objects. By default, the command is ignored.
+     *
+     * @param command   a {@link ForeignLanguageCommand} to be handled.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    default void handle(final ForeignLanguageCommand command) throws IOException {
+        // The data of a foreign language is ignored by default...
+    }
 }
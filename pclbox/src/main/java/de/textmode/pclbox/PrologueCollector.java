@@ -0,0 +1,252 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link PrologueCollector} is a {@link PrinterCommandHandler} that collects the PCL commands that download
+ * resources (soft fonts, symbol sets, user defined patterns and macros) so they can be written in front of pages
+ * that are extracted from a data stream. The {@link PclParser} must deliver combined PCL sequences because the
+ * byte range of a command is computed from the offset of the following command.
+ *
+ * <p>A command is collected as a byte range of the data stream, so its bytes can be copied without serializing
+ * the {@link PrinterCommand} again. Only if a PCL sequence mixes resource commands with other commands
+ * (i. e. "<code>&lt;esc&gt;*c5d0P</code>") the resource commands of the sequence are serialized.
+ *
+ * <p>The "Pattern ID" (<code>&lt;esc&gt;*c#G</code>) also selects the shading or cross-hatch pattern of a
+ * rectangular area fill, so it is not collected on its own. Instead, the last "Pattern ID" is serialized in
+ * front of every "User Defined Pattern" (<code>&lt;esc&gt;*c#W</code>).
+ */
+final class PrologueCollector implements PrinterCommandHandler {
+
+    /**
+     * A part of the prologue: either a byte range of the data stream or some serialized bytes.
+     */
+    static final class Piece {
+
+        private final long startOffset;
+        private long endOffset;
+        private final byte[] data;
+
+        Piece(final long startOffset, final long endOffset, final byte[] data) {
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+            this.data = data;
+        }
+
+        /**
+         * Returns the offset of the first byte of the range or -1 if the piece holds serialized bytes.
+         */
+        long getStartOffset() {
+            return this.startOffset;
+        }
+
+        /**
+         * Returns the offset of the first byte after the range.
+         */
+        long getEndOffset() {
+            return this.endOffset;
+        }
+
+        /**
+         * Returns the serialized bytes or <code>null</code> if the piece is a byte range of the data stream.
+         */
+        byte[] getData() {
+            return this.data;
+        }
+    }
+
+    private final List<Piece> pieces = new ArrayList<>();
+    private PrinterCommand pendingCommand;
+    private boolean inMacroDefinition;
+    private int patternId = -1;
+
+    /**
+     * Returns the collected pieces.
+     *
+     * @return the collected pieces.
+     */
+    List<Piece> getPieces() {
+        return this.pieces;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        this.flush(command.getOffset());
+
+        if (this.inMacroDefinition) {
+            // Everything between "Start Macro Definition" and "Stop Macro Definition" belongs to the macro...
+            this.pendingCommand = command;
+            this.inMacroDefinition = !this.isMacroDefinitionEnd(command);
+
+        } else if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            if (this.process(pc.getParameterizedCharacter(), pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(), pc.getIntValue())) {
+                this.pendingCommand = command;
+            }
+
+        } else if (command instanceof CombinedPclCommand) {
+            this.processSequence((CombinedPclCommand) command);
+        }
+    }
+
+    /**
+     * Ends the collection at the given offset. This must be invoked after the {@link PclParser} has returned.
+     *
+     * @param endOffset   the offset the {@link PclParser} has reached.
+     */
+    void finish(final long endOffset) {
+        this.flush(endOffset);
+    }
+
+    /**
+     * Collects the resource commands of a PCL sequence.
+     */
+    private void processSequence(final CombinedPclCommand cc) {
+        final int count = cc.getCommandCount();
+        final boolean[] resources = new boolean[count];
+        int resourceCount = 0;
+
+        for (int ix = 0; ix < count; ++ix) {
+            resources[ix] = this.process(cc.getParameterizedCharacter(), cc.getGroupCharacter(),
+                    cc.getTerminationCharacter(ix), cc.getIntValue(ix));
+            if (resources[ix]) {
+                ++resourceCount;
+            }
+        }
+
+        if (resourceCount == count) {
+            this.pendingCommand = cc;
+        } else if (resourceCount > 0) {
+            for (int ix = 0; ix < count; ++ix) {
+                if (resources[ix]) {
+                    this.pieces.add(new Piece(-1, -1, cc.getCommand(ix).toByteArray()));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns true if the given PCL command downloads a resource. Starts the recording of a macro definition.
+     */
+    private boolean process(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final int value) {
+
+        if (parameterizedCharacter == '&' && groupCharacter == 'f') {
+            if (terminationCharacter == 'Y') {
+                return true;
+            } else if (terminationCharacter == 'X') {
+                if (value == 0) {
+                    this.inMacroDefinition = true;
+                }
+                // Start/Stop Macro Definition, delete macros and make macros temporary or permanent...
+                return value == 0 || value == 1 || (value >= 6 && value <= 10);
+            }
+            return false;
+        }
+
+        if (parameterizedCharacter == '*' && groupCharacter == 'c') {
+            if (terminationCharacter == 'G') {
+                this.patternId = value;
+                return false;
+            } else if (terminationCharacter == 'W') {
+                // User Defined Pattern, preceded by the Pattern ID it is downloaded for...
+                if (this.patternId >= 0) {
+                    final PrinterCommand id = new ParameterizedPclCommand(
+                            -1, '*', 'c', Integer.toString(this.patternId), 'G');
+                    this.pieces.add(new Piece(-1, -1, id.toByteArray()));
+                }
+                return true;
+            }
+
+            // Font ID, Character Code, Font Control, Pattern Control, Symbol Set ID and Symbol Set Control...
+            return terminationCharacter == 'D' || terminationCharacter == 'E' || terminationCharacter == 'F'
+                    || terminationCharacter == 'Q' || terminationCharacter == 'R' || terminationCharacter == 'S';
+        }
+
+        // Define Symbol Set...
+        if (parameterizedCharacter == '(' && groupCharacter == 'f') {
+            return terminationCharacter == 'W';
+        }
+
+        // Font Header and Character Descriptor/Data...
+        return (parameterizedCharacter == ')' || parameterizedCharacter == '(')
+                && groupCharacter == 's' && terminationCharacter == 'W';
+    }
+
+    /**
+     * Returns true if the given {@link PrinterCommand} ends a macro definition ("Stop Macro Definition" or
+     * "Printer Reset").
+     */
+    private boolean isMacroDefinitionEnd(final PrinterCommand command) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            return isStopMacroDefinition(pc.getParameterizedCharacter(), pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(), pc.getIntValue());
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                if (isStopMacroDefinition(cc.getParameterizedCharacter(), cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix), cc.getIntValue(ix))) {
+                    return true;
+                }
+            }
+            return false;
+        } else {
+            return command instanceof TwoBytePclCommand && ((TwoBytePclCommand) command).getOperationCharacter() == 'E';
+        }
+    }
+
+    /**
+     * Returns true if the given PCL command is "Stop Macro Definition".
+     */
+    private static boolean isStopMacroDefinition(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final int value) {
+
+        return parameterizedCharacter == '&' && groupCharacter == 'f' && terminationCharacter == 'X' && value == 1;
+    }
+
+    /**
+     * Adds the byte range of the pending command (that ends at the given offset) to the pieces. Adjacent
+     * byte ranges are merged.
+     */
+    private void flush(final long endOffset) {
+        if (this.pendingCommand == null) {
+            return;
+        }
+
+        final long startOffset = this.pendingCommand.getOffset();
+        this.pendingCommand = null;
+
+        final Piece last = this.pieces.isEmpty() ? null : this.pieces.get(this.pieces.size() - 1);
+        if (last != null && last.getData() == null && last.getEndOffset() == startOffset) {
+            last.endOffset = endOffset;
+        } else {
+            this.pieces.add(new Piece(startOffset, endOffset, null));
+        }
+    }
+}
@@ -0,0 +1,665 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@link RasterDecoder} is a {@link PrinterCommandHandler} that decodes the raster graphics of a PCL data
+ * stream. It tracks the current compression method, the number of planes and the seed rows and passes every
+ * decoded (uncompressed) raster row to a {@link RasterRowHandler}. All other {@link PrinterCommand} objects
+ * (and the raster commands as well) are passed to an optional {@link PrinterCommandHandler}, so the
+ * {@link RasterDecoder} can be placed in front of another {@link PrinterCommandHandler}.
+ *
+ * <p>The following compression methods are supported:
+ * <ul>
+ * <li>0 - Unencoded</li>
+ * <li>1 - Run-Length Encoding</li>
+ * <li>2 - Tagged Imaged File Format (TIFF) Rev. 4.0 ("PackBits")</li>
+ * <li>3 - Delta Row Compression</li>
+ * <li>5 - Adaptive Compression</li>
+ * <li>9 - Replacement Delta Row Compression</li>
+ * </ul>
+ * Rows that use an unsupported compression method are delivered as blank rows.
+ *
+ * <p>The decoding does not create any objects. The {@link RasterRow} and its plane buffers are reused for
+ * every row. The plane buffers are only enlarged if the rows get longer.
+ */
+public final class RasterDecoder implements PrinterCommandHandler {
+
+    private static final int MAX_ROW_LENGTH = 1 << 20;
+    private static final byte[] NO_DATA = new byte[0];
+
+    private static final int UNENCODED = 0;
+    private static final int RUN_LENGTH_ENCODING = 1;
+    private static final int TIFF = 2;
+    private static final int DELTA_ROW = 3;
+    private static final int ADAPTIVE = 5;
+    private static final int REPLACEMENT_DELTA_ROW = 9;
+
+    private static final int ADAPTIVE_EMPTY_ROWS = 4;
+    private static final int ADAPTIVE_DUPLICATE_ROWS = 5;
+
+    private final RasterRowHandler rowHandler;
+    private final PrinterCommandHandler nextHandler;
+    private final RasterRow row = new RasterRow();
+
+    private int compressionMethod;
+    private int planesPerRow;
+    private int rasterWidth;
+    private int bitsPerPixel;
+    private boolean graphicsActive;
+    private int planeIndex;
+    private boolean seedRowModified;
+
+    /**
+     * Constructor of the {@link RasterDecoder}.
+     *
+     * @param rowHandler   the {@link RasterRowHandler} that is invoked for every decoded raster row.
+     */
+    public RasterDecoder(final RasterRowHandler rowHandler) {
+        this(rowHandler, null);
+    }
+
+    /**
+     * Constructor of the {@link RasterDecoder}.
+     *
+     * @param rowHandler   the {@link RasterRowHandler} that is invoked for every decoded raster row.
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public RasterDecoder(final RasterRowHandler rowHandler, final PrinterCommandHandler nextHandler) {
+        this.rowHandler = rowHandler;
+        this.nextHandler = nextHandler;
+        this.reset();
+    }
+
+    /**
+     * Returns the current compression method (as set by the PCL command "Set Compression Method").
+     *
+     * @return the current compression method.
+     */
+    public int getCompressionMethod() {
+        return this.compressionMethod;
+    }
+
+    /**
+     * Returns the source raster width in pixels (as set by the PCL command "Source Raster Width") or 0 if
+     * the source raster width has not been set.
+     *
+     * @return the source raster width in pixels or 0.
+     */
+    int getRasterWidth() {
+        return this.rasterWidth;
+    }
+
+    /**
+     * Returns true if raster graphics are active (means, a "Start Raster Graphics" command has been
+     * processed or raster data has been transferred and raster graphics have not been ended yet).
+     *
+     * @return true if raster graphics are active.
+     */
+    public boolean isGraphicsActive() {
+        return this.graphicsActive;
+    }
+
+    /**
+     * Returns the current {@link RasterRow}. Its plane buffers are the seed rows.
+     *
+     * @return the current {@link RasterRow}.
+     */
+    RasterRow getRow() {
+        return this.row;
+    }
+
+    /**
+     * Returns the index of the plane that is transferred next.
+     *
+     * @return the index of the plane that is transferred next.
+     */
+    int getPlaneIndex() {
+        return this.planeIndex;
+    }
+
+    /**
+     * Sets the number of bits that are used for one pixel in every plane. The default is 1. This is
+     * used to calculate the length of the raster rows if the source raster width is known.
+     *
+     * @param bitsPerPixel   the number of bits per pixel in every plane.
+     */
+    void setBitsPerPixel(final int bitsPerPixel) {
+        this.bitsPerPixel = bitsPerPixel;
+    }
+
+    /**
+     * Sets the number of planes per row. This is used for the PCL command "Configure Image Data".
+     *
+     * @param planesPerRow   number of planes per row.
+     */
+    void setPlanesPerRow(final int planesPerRow) {
+        this.planesPerRow = Math.max(1, planesPerRow);
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        if (this.nextHandler != null) {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    pc.getOffset(),
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getIntValue(),
+                    pc.getDataSectionWithoutCopy());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            final int last = cc.getCommandCount() - 1;
+            for (int ix = 0; ix <= last; ++ix) {
+                this.process(
+                        cc.getCommandOffset(ix),
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getIntValue(ix),
+                        ix == last ? cc.getDataSectionWithoutCopy() : null);
+            }
+
+        } else if (command instanceof TwoBytePclCommand
+                && ((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+            this.reset();
+        }
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final long offset,
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final int value,
+            final byte[] data) throws IOException {
+
+        if (parameterizedCharacter != '*') {
+            return;
+        }
+
+        if (groupCharacter == 'b') {
+            switch (terminationCharacter) {
+            case 'M':
+                this.compressionMethod = value;
+                break;
+            case 'W':
+                this.transfer(offset, data, true);
+                break;
+            case 'V':
+                this.transfer(offset, data, false);
+                break;
+            case 'Y':
+                this.moveVertically(value);
+                break;
+            default:
+                break;
+            }
+        } else if (groupCharacter == 'r') {
+            switch (terminationCharacter) {
+            case 'A':
+                if (!this.graphicsActive) {
+                    this.startRasterGraphics();
+                }
+                break;
+            case 'B':
+                this.graphicsActive = false;
+                break;
+            case 'C':
+                this.graphicsActive = false;
+                this.compressionMethod = UNENCODED;
+                break;
+            case 'S':
+                // The raster width and the number of planes can not be changed while raster graphics are active
+                if (!this.graphicsActive) {
+                    this.rasterWidth = Math.max(0, value);
+                }
+                break;
+            case 'U':
+                if (!this.graphicsActive) {
+                    this.setPlanesPerRow(Math.abs(value));
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Resets the {@link RasterDecoder} to the default values (i. e. after a "Printer Reset" command).
+     */
+    private void reset() {
+        this.compressionMethod = UNENCODED;
+        this.planesPerRow = 1;
+        this.rasterWidth = 0;
+        this.bitsPerPixel = 1;
+        this.graphicsActive = false;
+        this.planeIndex = 0;
+    }
+
+    /**
+     * Starts raster graphics. The seed rows are cleared.
+     */
+    private void startRasterGraphics() {
+        this.graphicsActive = true;
+        this.planeIndex = 0;
+        this.row.rowIndex = 0;
+        this.row.length = this.rasterWidth > 0 ? Math.min(MAX_ROW_LENGTH,
+                (int) (((long) this.rasterWidth * this.bitsPerPixel + 7) / 8)) : 0;
+
+        this.ensurePlanes(this.planesPerRow);
+        for (final byte[] plane : this.row.planes) {
+            Arrays.fill(plane, (byte) 0x00);
+        }
+        this.seedRowModified = true;
+    }
+
+    /**
+     * Handles the PCL command "Raster Y Offset". The seed rows are cleared.
+     */
+    private void moveVertically(final int rows) {
+        if (!this.graphicsActive) {
+            this.startRasterGraphics();
+        }
+
+        this.row.rowIndex += Math.max(0, rows);
+        this.planeIndex = 0;
+        for (final byte[] plane : this.row.planes) {
+            Arrays.fill(plane, 0, Math.min(plane.length, this.row.length), (byte) 0x00);
+        }
+        this.seedRowModified = true;
+    }
+
+    /**
+     * Handles the PCL commands "Transfer Raster Data by Row" and "Transfer Raster Data by Plane".
+     */
+    private void transfer(final long offset, final byte[] data, final boolean lastPlane) throws IOException {
+        if (!this.graphicsActive) {
+            this.startRasterGraphics();
+        }
+
+        final byte[] input = data == null ? NO_DATA : data;
+
+        if (this.compressionMethod == ADAPTIVE) {
+            this.decodeAdaptive(offset, input);
+            return;
+        }
+
+        this.ensurePlanes(this.planeIndex + 1);
+        this.decodePlane(this.planeIndex, this.compressionMethod, input, 0, input.length);
+
+        if (lastPlane) {
+            this.finishRow(offset);
+        } else {
+            ++this.planeIndex;
+        }
+    }
+
+    /**
+     * Passes the current row to the {@link RasterRowHandler} and advances to the next row.
+     */
+    private void finishRow(final long offset) throws IOException {
+        final int transferredPlanes = this.planeIndex + 1;
+
+        // Planes that have not been transferred are blank...
+        this.ensurePlanes(this.planesPerRow);
+        for (int ix = transferredPlanes; ix < this.planesPerRow; ++ix) {
+            Arrays.fill(this.row.planes[ix], 0, this.row.length, (byte) 0x00);
+            this.seedRowModified = true;
+        }
+
+        this.row.offset = offset;
+        this.row.planeCount = Math.max(transferredPlanes, this.planesPerRow);
+        this.row.unchanged = !this.seedRowModified;
+        this.seedRowModified = false;
+        this.rowHandler.handleRasterRow(this.row);
+
+        ++this.row.rowIndex;
+        this.planeIndex = 0;
+    }
+
+    /**
+     * Decodes a block of rows that is compressed with "Adaptive Compression". Every row within the
+     * block is introduced by a command byte and a two byte count.
+     */
+    private void decodeAdaptive(final long offset, final byte[] data) throws IOException {
+        this.planeIndex = 0;
+
+        int pos = 0;
+        while (pos + 3 <= data.length) {
+            final int command = data[pos] & 0xFF;
+            final int count = ((data[pos + 1] & 0xFF) << 8) | (data[pos + 2] & 0xFF);
+            pos += 3;
+
+            if (command == ADAPTIVE_EMPTY_ROWS) {
+                Arrays.fill(this.row.planes[0], 0, this.row.length, (byte) 0x00);
+                this.seedRowModified = true;
+                for (int ix = 0; ix < count; ++ix) {
+                    this.finishRow(offset);
+                }
+            } else if (command == ADAPTIVE_DUPLICATE_ROWS) {
+                for (int ix = 0; ix < count; ++ix) {
+                    this.finishRow(offset);
+                }
+            } else {
+                final int length = Math.min(count, data.length - pos);
+                this.decodePlane(0, command, data, pos, length);
+                this.finishRow(offset);
+                pos += length;
+            }
+        }
+    }
+
+    /**
+     * Decodes the given compressed data into the plane buffer (seed row) with the given index.
+     */
+    private void decodePlane(final int plane, final int method, final byte[] data, final int off, final int len) {
+        final int end;
+        switch (method) {
+        case UNENCODED:
+            end = this.decodeUnencoded(plane, data, off, len);
+            break;
+        case RUN_LENGTH_ENCODING:
+            end = this.decodeRunLength(plane, data, off, len);
+            break;
+        case TIFF:
+            end = this.decodeTiff(plane, data, off, len);
+            break;
+        case DELTA_ROW:
+            end = this.decodeDeltaRow(plane, data, off, len);
+            break;
+        case REPLACEMENT_DELTA_ROW:
+            end = this.decodeReplacementDeltaRow(plane, data, off, len);
+            break;
+        default:
+            end = 0;
+            break;
+        }
+
+        if (method != DELTA_ROW && method != REPLACEMENT_DELTA_ROW) {
+            // The rest of the row is blank if the row is shorter than the seed row...
+            Arrays.fill(this.row.planes[plane], Math.min(end, this.row.length), this.row.length, (byte) 0x00);
+            this.seedRowModified = true;
+        }
+
+        if (this.rasterWidth == 0 && end > this.row.length) {
+            this.row.length = end;
+            this.seedRowModified = true;
+        }
+    }
+
+    /**
+     * Returns the maximum length of a row. This is either the length that results from the source raster
+     * width or a (large) upper bound if the source raster width is unknown.
+     */
+    private int getRowLimit() {
+        return this.rasterWidth > 0 ? this.row.length : MAX_ROW_LENGTH;
+    }
+
+    /**
+     * Returns the plane buffer with the given index, enlarged so that it can hold at least the given number
+     * of bytes (or the maximum length of a row).
+     */
+    private byte[] getPlaneBuffer(final int plane, final int required) {
+        final byte[] buffer = this.row.planes[plane];
+        final int size = Math.min(Math.max(required, this.row.length), this.getRowLimit());
+        if (buffer.length >= size) {
+            return buffer;
+        }
+
+        final byte[] result = Arrays.copyOf(buffer, Math.min(this.getRowLimit(), Math.max(size, buffer.length * 2)));
+        this.row.planes[plane] = result;
+        return result;
+    }
+
+    /**
+     * Decodes unencoded raster data (compression method 0).
+     */
+    private int decodeUnencoded(final int plane, final byte[] data, final int off, final int len) {
+        final byte[] buffer = this.getPlaneBuffer(plane, len);
+        final int count = Math.min(len, buffer.length);
+        System.arraycopy(data, off, buffer, 0, count);
+        return count;
+    }
+
+    /**
+     * Decodes run-length encoded raster data (compression method 1). The data consists of pairs of a
+     * repeat count (0 to 255, which means 1 to 256 bytes) and a byte value.
+     */
+    private int decodeRunLength(final int plane, final byte[] data, final int off, final int len) {
+        int required = 0;
+        for (int ix = off; ix + 1 < off + len; ix += 2) {
+            required += (data[ix] & 0xFF) + 1;
+        }
+
+        final byte[] buffer = this.getPlaneBuffer(plane, required);
+        final int limit = buffer.length;
+
+        int pos = 0;
+        for (int ix = off; ix + 1 < off + len && pos < limit; ix += 2) {
+            final int count = Math.min((data[ix] & 0xFF) + 1, limit - pos);
+            Arrays.fill(buffer, pos, pos + count, data[ix + 1]);
+            pos += count;
+        }
+        return pos;
+    }
+
+    /**
+     * Decodes TIFF PackBits encoded raster data (compression method 2). A control byte from 0 to 127 is
+     * followed by 1 to 128 literal bytes, a control byte from -1 to -127 is followed by a byte that is
+     * repeated 2 to 128 times. The control byte -128 is ignored.
+     */
+    private int decodeTiff(final int plane, final byte[] data, final int off, final int len) {
+        final int end = off + len;
+
+        int required = 0;
+        for (int ix = off; ix < end;) {
+            final int control = data[ix++];
+            if (control >= 0) {
+                required += control + 1;
+                ix += control + 1;
+            } else if (control != -128) {
+                required += 1 - control;
+                ++ix;
+            }
+        }
+
+        final byte[] buffer = this.getPlaneBuffer(plane, required);
+        final int limit = buffer.length;
+
+        int pos = 0;
+        int ix = off;
+        while (ix < end && pos < limit) {
+            final int control = data[ix++];
+            if (control >= 0) {
+                final int count = Math.min(Math.min(control + 1, end - ix), limit - pos);
+                System.arraycopy(data, ix, buffer, pos, count);
+                pos += count;
+                ix += control + 1;
+            } else if (control != -128 && ix < end) {
+                final int count = Math.min(1 - control, limit - pos);
+                Arrays.fill(buffer, pos, pos + count, data[ix++]);
+                pos += count;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Decodes delta row compressed raster data (compression method 3). The seed row is modified by replacing
+     * bytes. Every replacement is introduced by a command byte: the upper three bits contain the number of
+     * replacement bytes (minus one), the lower five bits contain the offset relative to the byte that follows
+     * the last replaced byte. If the offset is 31, additional offset bytes follow (until a byte that is not 255).
+     *
+     * @return the position after the last replaced byte.
+     */
+    private int decodeDeltaRow(final int plane, final byte[] data, final int off, final int len) {
+        final int end = off + len;
+
+        int maxPos = 0;
+        int pos = 0;
+        int ix = off;
+        while (ix < end) {
+            final int command = data[ix++] & 0xFF;
+            final int count = (command >> 5) + 1;
+
+            int offset = command & 0x1F;
+            if (offset == 31) {
+                int extra;
+                do {
+                    extra = ix < end ? data[ix++] & 0xFF : 0;
+                    offset += extra;
+                } while (extra == 255);
+            }
+
+            pos += offset;
+            final int available = Math.min(count, end - ix);
+            maxPos = Math.max(maxPos, this.replace(plane, pos, data, ix, available));
+            pos += count;
+            ix += available;
+        }
+        return maxPos;
+    }
+
+    /**
+     * Decodes replacement delta row compressed raster data (compression method 9). Just like with compression
+     * method 3, the seed row is modified by replacing bytes. The command byte contains a control bit (bit 7). If
+     * the control bit is 0, bits 6 to 3 contain the offset and bits 2 to 0 the number of replacement bytes (minus
+     * one) that follow unencoded. If the control bit is 1, bits 6 and 5 contain the offset and bits 4 to 0 the
+     * number of replacement bytes (minus one) that follow run-length encoded (like compression method 1). If an
+     * offset or count field contains only 1-bits, additional bytes follow that are added (until a byte that is
+     * not 255).
+     *
+     * @return the position after the last replaced byte.
+     */
+    private int decodeReplacementDeltaRow(final int plane, final byte[] data, final int off, final int len) {
+        final int end = off + len;
+
+        int maxPos = 0;
+        int pos = 0;
+        int ix = off;
+        while (ix < end) {
+            final int command = data[ix++] & 0xFF;
+            final boolean runLength = (command & 0x80) != 0;
+
+            int offset = runLength ? (command >> 5) & 0x03 : (command >> 3) & 0x0F;
+            int count = (runLength ? command & 0x1F : command & 0x07) + 1;
+
+            if (offset == (runLength ? 0x03 : 0x0F)) {
+                int extra;
+                do {
+                    extra = ix < end ? data[ix++] & 0xFF : 0;
+                    offset += extra;
+                } while (extra == 255);
+            }
+
+            if (count == (runLength ? 0x20 : 0x08)) {
+                int extra;
+                do {
+                    extra = ix < end ? data[ix++] & 0xFF : 0;
+                    count += extra;
+                } while (extra == 255);
+            }
+
+            pos += offset;
+            if (runLength) {
+                int replaced = 0;
+                while (replaced < count && ix + 1 < end) {
+                    final int repeat = Math.min((data[ix] & 0xFF) + 1, count - replaced);
+                    maxPos = Math.max(maxPos, this.fill(plane, pos + replaced, repeat, data[ix + 1]));
+                    replaced += repeat;
+                    ix += 2;
+                }
+            } else {
+                final int available = Math.min(count, end - ix);
+                maxPos = Math.max(maxPos, this.replace(plane, pos, data, ix, available));
+                ix += available;
+            }
+            pos += count;
+        }
+        return maxPos;
+    }
+
+    /**
+     * Replaces bytes of the seed row (plane buffer) with the given index.
+     *
+     * @return the position after the last replaced byte.
+     */
+    private int replace(final int plane, final int pos, final byte[] data, final int off, final int count) {
+        if (count <= 0 || pos >= this.getRowLimit()) {
+            return 0;
+        }
+
+        final byte[] buffer = this.getPlaneBuffer(plane, pos + count);
+        final int available = Math.min(count, buffer.length - pos);
+        System.arraycopy(data, off, buffer, pos, available);
+        this.seedRowModified = true;
+        return pos + available;
+    }
+
+    /**
+     * Fills bytes of the seed row (plane buffer) with the given index.
+     *
+     * @return the position after the last replaced byte.
+     */
+    private int fill(final int plane, final int pos, final int count, final byte value) {
+        if (count <= 0 || pos >= this.getRowLimit()) {
+            return 0;
+        }
+
+        final byte[] buffer = this.getPlaneBuffer(plane, pos + count);
+        final int available = Math.min(count, buffer.length - pos);
+        Arrays.fill(buffer, pos, pos + available, value);
+        this.seedRowModified = true;
+        return pos + available;
+    }
+
+    /**
+     * Ensures that the {@link RasterRow} contains at least the given number of plane buffers. All
+     * plane buffers are at least as long as the current row.
+     */
+    private void ensurePlanes(final int count) {
+        final int capacity = Math.max(this.row.length, 64);
+        if (this.row.planes.length < count) {
+            final byte[][] planes = Arrays.copyOf(this.row.planes, count);
+            for (int ix = this.row.planes.length; ix < count; ++ix) {
+                planes[ix] = new byte[capacity];
+            }
+            this.row.planes = planes;
+        }
+
+        for (int ix = 0; ix < this.row.planes.length; ++ix) {
+            if (this.row.planes[ix].length < this.row.length) {
+                this.row.planes[ix] = Arrays.copyOf(this.row.planes[ix], this.row.length);
+            }
+        }
+    }
+}
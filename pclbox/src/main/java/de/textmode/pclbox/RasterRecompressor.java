@@ -0,0 +1,453 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@link RasterRecompressor} is a {@link PrinterCommandHandler} that compresses the raster graphics of a PCL
+ * data stream again before the commands are passed to the next {@link PrinterCommandHandler} (usually a
+ * {@link PclWriter}). Every plane that is transferred with "<code>&lt;esc&gt;*b#W</code>" or
+ * "<code>&lt;esc&gt;*b#V</code>" is decoded with a {@link RasterDecoder} and encoded again with the compression
+ * method that results in the smallest data section:
+ *
+ * <ul>
+ * <li>2 - Tagged Imaged File Format (TIFF) Rev. 4.0 ("PackBits")</li>
+ * <li>3 - Delta Row Compression</li>
+ * <li>9 - Replacement Delta Row Compression (using uncompressed replacement bytes only)</li>
+ * </ul>
+ *
+ * <p>The "Set Compression Method" commands of the data stream are removed. A new "Set Compression Method" command
+ * is written whenever the selected compression method changes (the size of this command is taken into account
+ * when the compression method is selected). The resulting raster rows are identical to the original raster rows.
+ *
+ * <p>Raster data that is compressed with "Adaptive Compression" (method 5) or an unknown compression method is
+ * passed unchanged. Because the seed rows are not known after raster data with an unknown compression method or
+ * after the execution of a macro, the raster data is passed unchanged until the seed rows are cleared again.
+ * Commands within a macro definition are never changed.
+ *
+ * <p>PCL sequences of the "<code>&lt;esc&gt;*b</code>" group are split into single {@link ParameterizedPclCommand}
+ * objects. A {@link PclCompactor} can be used to combine them again.
+ */
+public final class RasterRecompressor implements PrinterCommandHandler {
+
+    private static final int UNENCODED = 0;
+    private static final int RUN_LENGTH_ENCODING = 1;
+    private static final int TIFF = 2;
+    private static final int DELTA_ROW = 3;
+    private static final int ADAPTIVE = 5;
+    private static final int REPLACEMENT_DELTA_ROW = 9;
+
+    private static final int UNKNOWN_METHOD = -1;
+    private static final int MAX_DATA_SECTION_SIZE = 32767;
+
+    // Size of the command "<esc>*b#M" that is needed if the compression method changes...
+    private static final int SET_COMPRESSION_METHOD_SIZE = 5;
+
+    private final PrinterCommandHandler nextHandler;
+    private final RasterDecoder decoder = new RasterDecoder(row -> { });
+
+    private byte[] seedRow = new byte[0];
+    private byte[] tiff = new byte[0];
+    private byte[] deltaRow = new byte[0];
+    private byte[] replacementDeltaRow = new byte[0];
+
+    private int outputMethod = UNENCODED;
+    private boolean passUnchanged;
+    private boolean inMacroDefinition;
+    private long rasterBytesRead;
+    private long rasterBytesWritten;
+
+    /**
+     * Constructor of a {@link RasterRecompressor}.
+     *
+     * @param nextHandler   the {@link PrinterCommandHandler} the commands are passed to.
+     */
+    public RasterRecompressor(final PrinterCommandHandler nextHandler) {
+        this.nextHandler = nextHandler;
+    }
+
+    /**
+     * Returns the number of bytes of all data sections of the raster data that has been read.
+     *
+     * @return the number of bytes of the read raster data.
+     */
+    public long getRasterBytesRead() {
+        return this.rasterBytesRead;
+    }
+
+    /**
+     * Returns the number of bytes of all data sections of the raster data that has been passed to the next
+     * {@link PrinterCommandHandler}.
+     *
+     * @return the number of bytes of the written raster data.
+     */
+    public long getRasterBytesWritten() {
+        return this.rasterBytesWritten;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        if (command instanceof ParameterizedPclCommand) {
+            this.handleCommand((ParameterizedPclCommand) command);
+        } else if (command instanceof CombinedPclCommand && !this.inMacroDefinition
+                && ((CombinedPclCommand) command).getParameterizedCharacter() == '*'
+                && ((CombinedPclCommand) command).getGroupCharacter() == 'b') {
+
+            final CombinedPclCommand combined = (CombinedPclCommand) command;
+            for (int ix = 0; ix < combined.getCommandCount(); ++ix) {
+                this.handleCommand(combined.getCommand(ix));
+            }
+        } else {
+            if (command instanceof CombinedPclCommand) {
+                final CombinedPclCommand combined = (CombinedPclCommand) command;
+                for (int ix = 0; ix < combined.getCommandCount(); ++ix) {
+                    this.observe(combined.getCommand(ix));
+                }
+            } else if (command instanceof TwoBytePclCommand
+                    && ((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+
+                this.outputMethod = UNENCODED;
+                this.passUnchanged = false;
+                this.inMacroDefinition = false;
+            }
+
+            if (!this.inMacroDefinition) {
+                this.decoder.handlePrinterCommand(command);
+            }
+            this.nextHandler.handlePrinterCommand(command);
+        }
+    }
+
+    /**
+     * Handles a single PCL command.
+     */
+    private void handleCommand(final ParameterizedPclCommand command) throws IOException {
+        if (!this.inMacroDefinition && !this.passUnchanged
+                && command.getParameterizedCharacter() == '*' && command.getGroupCharacter() == 'b') {
+
+            switch (command.getTerminationCharacter()) {
+            case 'M':
+                // The compression method is written when it is needed...
+                this.decoder.handlePrinterCommand(command);
+                return;
+            case 'W':
+            case 'V':
+                this.transfer(command);
+                return;
+            default:
+                break;
+            }
+        }
+
+        this.observe(command);
+        if (!this.inMacroDefinition) {
+            this.decoder.handlePrinterCommand(command);
+        }
+        this.nextHandler.handlePrinterCommand(command);
+    }
+
+    /**
+     * Tracks the state of a PCL command that is passed unchanged.
+     */
+    private void observe(final ParameterizedPclCommand command) {
+        final int parameterizedCharacter = command.getParameterizedCharacter();
+        final int groupCharacter = command.getGroupCharacter();
+        final int terminationCharacter = command.getTerminationCharacter();
+
+        if (parameterizedCharacter == '&' && groupCharacter == 'f' && terminationCharacter == 'X') {
+            final int macroControl = command.getIntValue();
+            if (macroControl == 0) {
+                this.inMacroDefinition = true;
+            } else if (macroControl == 1) {
+                this.inMacroDefinition = false;
+            } else if (macroControl == 2 || macroControl == 3) {
+                // The macro may have changed the compression method and the seed rows...
+                this.outputMethod = UNKNOWN_METHOD;
+                this.passUnchanged = true;
+            }
+        }
+
+        if (this.inMacroDefinition || parameterizedCharacter != '*') {
+            return;
+        }
+
+        if (groupCharacter == 'r') {
+            if (terminationCharacter == 'A' && !this.decoder.isGraphicsActive()) {
+                this.passUnchanged = false;
+            } else if (terminationCharacter == 'C') {
+                this.outputMethod = UNENCODED;
+            }
+        } else if (groupCharacter == 'b') {
+            if (terminationCharacter == 'Y') {
+                this.passUnchanged = false;
+            } else if (terminationCharacter == 'M') {
+                this.outputMethod = command.getIntValue();
+            }
+        }
+    }
+
+    /**
+     * Handles the PCL commands "Transfer Raster Data by Row" and "Transfer Raster Data by Plane".
+     */
+    private void transfer(final ParameterizedPclCommand command) throws IOException {
+        final byte[] data = command.getDataSectionWithoutCopy();
+        final int inputMethod = this.decoder.getCompressionMethod();
+        this.rasterBytesRead += data == null ? 0 : data.length;
+
+        if (inputMethod != UNENCODED && inputMethod != RUN_LENGTH_ENCODING && inputMethod != TIFF
+                && inputMethod != DELTA_ROW && inputMethod != REPLACEMENT_DELTA_ROW) {
+
+            // The seed rows are unknown after an unknown compression method...
+            this.passUnchanged = inputMethod != ADAPTIVE;
+            this.decoder.handlePrinterCommand(command);
+            this.passTransfer(command, inputMethod);
+            return;
+        }
+
+        // Save the seed row before the data is decoded...
+        final RasterRow row = this.decoder.getRow();
+        final int plane = this.decoder.getPlaneIndex();
+        final int seedLength = this.decoder.isGraphicsActive() && plane < row.planes.length ? row.length : 0;
+        this.seedRow = ensureCapacity(this.seedRow, seedLength);
+        if (seedLength > 0) {
+            System.arraycopy(row.planes[plane], 0, this.seedRow, 0, seedLength);
+        }
+
+        this.decoder.handlePrinterCommand(command);
+
+        final byte[] current = row.planes[plane];
+        final int length = row.length;
+        this.seedRow = ensureCapacity(this.seedRow, length);
+        if (length > seedLength) {
+            Arrays.fill(this.seedRow, seedLength, length, (byte) 0x00);
+        }
+
+        final int tiffSize = this.encodeTiff(current, length);
+        final int deltaRowSize = this.encodeDeltaRow(current, length);
+        final int replacementDeltaRowSize = this.encodeReplacementDeltaRow(current, length);
+
+        int method = TIFF;
+        int size = tiffSize;
+        if (this.cost(DELTA_ROW, deltaRowSize) < this.cost(method, size)) {
+            method = DELTA_ROW;
+            size = deltaRowSize;
+        }
+        if (this.cost(REPLACEMENT_DELTA_ROW, replacementDeltaRowSize) < this.cost(method, size)) {
+            method = REPLACEMENT_DELTA_ROW;
+            size = replacementDeltaRowSize;
+        }
+
+        if (size > MAX_DATA_SECTION_SIZE) {
+            this.passTransfer(command, inputMethod);
+            return;
+        }
+
+        final byte[] encoded = method == TIFF ? this.tiff
+                : method == DELTA_ROW ? this.deltaRow
+                : this.replacementDeltaRow;
+
+        this.setOutputMethod(command.getOffset(), method);
+        this.rasterBytesWritten += size;
+        this.nextHandler.handlePrinterCommand(new ParameterizedPclCommand(
+                command.getOffset(),
+                '*',
+                'b',
+                Integer.toString(size),
+                command.getTerminationCharacter(),
+                Arrays.copyOf(encoded, size),
+                false));
+    }
+
+    /**
+     * Passes a transfer command unchanged (with the compression method it has been written with). The command
+     * must have been passed to the {@link RasterDecoder} already.
+     */
+    private void passTransfer(final ParameterizedPclCommand command, final int method) throws IOException {
+        this.setOutputMethod(command.getOffset(), method);
+
+        final byte[] data = command.getDataSectionWithoutCopy();
+        this.rasterBytesWritten += data == null ? 0 : data.length;
+        this.nextHandler.handlePrinterCommand(command);
+    }
+
+    /**
+     * Writes the command "Set Compression Method" if the compression method changes.
+     */
+    private void setOutputMethod(final long offset, final int method) throws IOException {
+        if (this.outputMethod != method) {
+            this.nextHandler.handlePrinterCommand(
+                    new ParameterizedPclCommand(offset, '*', 'b', Integer.toString(method), 'M'));
+            this.outputMethod = method;
+        }
+    }
+
+    /**
+     * Returns the number of bytes that are needed to transfer a plane with the given compression method.
+     */
+    private int cost(final int method, final int size) {
+        return method == this.outputMethod ? size : size + SET_COMPRESSION_METHOD_SIZE;
+    }
+
+    /**
+     * Encodes the given plane with TIFF PackBits (compression method 2). Trailing zeros are not encoded because
+     * the rest of a row is blank if the row is shorter than the seed row.
+     *
+     * @return the number of encoded bytes.
+     */
+    private int encodeTiff(final byte[] plane, final int length) {
+        int end = length;
+        while (end > 0 && plane[end - 1] == 0) {
+            --end;
+        }
+
+        this.tiff = ensureCapacity(this.tiff, end + end / 128 + 1);
+        final byte[] out = this.tiff;
+
+        int pos = 0;
+        int ix = 0;
+        while (ix < end) {
+            int run = 1;
+            while (ix + run < end && run < 128 && plane[ix + run] == plane[ix]) {
+                ++run;
+            }
+
+            if (run >= 2) {
+                out[pos++] = (byte) (1 - run);
+                out[pos++] = plane[ix];
+                ix += run;
+            } else {
+                // Collect literal bytes until a run of at least three bytes starts...
+                final int start = ix;
+                while (ix < end && ix - start < 128
+                        && !(ix + 2 < end && plane[ix] == plane[ix + 1] && plane[ix] == plane[ix + 2])) {
+                    ++ix;
+                }
+
+                out[pos++] = (byte) (ix - start - 1);
+                System.arraycopy(plane, start, out, pos, ix - start);
+                pos += ix - start;
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes the differences between the seed row and the given plane with delta row compression (compression
+     * method 3). Every command byte replaces up to eight bytes.
+     *
+     * @return the number of encoded bytes.
+     */
+    private int encodeDeltaRow(final byte[] plane, final int length) {
+        this.deltaRow = ensureCapacity(this.deltaRow, length * 2 + length / 255 + 8);
+        final byte[] out = this.deltaRow;
+
+        int pos = 0;
+        int last = 0;
+        int ix = 0;
+        while (ix < length) {
+            if (plane[ix] == this.seedRow[ix]) {
+                ++ix;
+                continue;
+            }
+
+            final int start = ix;
+            while (ix < length && ix - start < 8 && plane[ix] != this.seedRow[ix]) {
+                ++ix;
+            }
+
+            final int count = ix - start;
+            final int offset = start - last;
+            out[pos++] = (byte) ((count - 1) << 5 | Math.min(offset, 31));
+            if (offset >= 31) {
+                pos = writeExtension(out, pos, offset - 31);
+            }
+
+            System.arraycopy(plane, start, out, pos, count);
+            pos += count;
+            last = ix;
+        }
+        return pos;
+    }
+
+    /**
+     * Encodes the differences between the seed row and the given plane with replacement delta row compression
+     * (compression method 9). Only uncompressed replacement bytes are used, so every command byte replaces a
+     * complete run of changed bytes.
+     *
+     * @return the number of encoded bytes.
+     */
+    private int encodeReplacementDeltaRow(final byte[] plane, final int length) {
+        this.replacementDeltaRow = ensureCapacity(this.replacementDeltaRow, length * 2 + length / 255 * 2 + 8);
+        final byte[] out = this.replacementDeltaRow;
+
+        int pos = 0;
+        int last = 0;
+        int ix = 0;
+        while (ix < length) {
+            if (plane[ix] == this.seedRow[ix]) {
+                ++ix;
+                continue;
+            }
+
+            final int start = ix;
+            while (ix < length && plane[ix] != this.seedRow[ix]) {
+                ++ix;
+            }
+
+            final int count = ix - start;
+            final int offset = start - last;
+            out[pos++] = (byte) (Math.min(offset, 15) << 3 | Math.min(count - 1, 7));
+            if (offset >= 15) {
+                pos = writeExtension(out, pos, offset - 15);
+            }
+            if (count - 1 >= 7) {
+                pos = writeExtension(out, pos, count - 8);
+            }
+
+            System.arraycopy(plane, start, out, pos, count);
+            pos += count;
+            last = ix;
+        }
+        return pos;
+    }
+
+    /**
+     * Writes the additional bytes of an offset or count (bytes with the value 255 until the rest is less
+     * than 255).
+     *
+     * @return the position after the written bytes.
+     */
+    private static int writeExtension(final byte[] out, final int pos, final int value) {
+        int result = pos;
+        int rest = value;
+        while (rest >= 255) {
+            out[result++] = (byte) 255;
+            rest -= 255;
+        }
+        out[result++] = (byte) rest;
+        return result;
+    }
+
+    /**
+     * Returns the given buffer or a larger copy of the given buffer if the given buffer is too small.
+     */
+    private static byte[] ensureCapacity(final byte[] buffer, final int size) {
+        return buffer.length >= size ? buffer : Arrays.copyOf(buffer, Math.max(size, buffer.length * 2));
+    }
+}
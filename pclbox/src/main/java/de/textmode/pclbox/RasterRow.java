@@ -0,0 +1,107 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link RasterRow} contains a decoded (uncompressed) raster row that consists of one or more planes. Every
+ * plane contains {@link #getLength()} bytes. The {@link RasterRow} and the plane buffers are reused by the
+ * {@link RasterDecoder} for every row, so no objects are created while decoding raster graphics. The plane
+ * buffers are also the seed rows of the {@link RasterDecoder} and must not be modified.
+ */
+public final class RasterRow {
+
+    private static final byte[][] NO_PLANES = new byte[0][];
+
+    long offset;
+    int rowIndex;
+    int planeCount;
+    int length;
+    boolean unchanged;
+    byte[][] planes = NO_PLANES;
+
+    /**
+     * Constructor. Only the {@link RasterDecoder} creates {@link RasterRow} objects.
+     */
+    RasterRow() {
+    }
+
+    /**
+     * Gets the offset of the PCL command that has transferred the (last plane of the) raster row, measured
+     * from the beginning of the read data stream.
+     *
+     * @return the offset of the PCL command that has transferred the raster row.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the index of the row, measured from the "Start Raster Graphics" command. Rows that have been
+     * skipped by a "Raster Y Offset" command are counted as well, so the index is the vertical position of
+     * the row (in raster resolution) relative to the start of the raster graphics.
+     *
+     * @return the index of the row.
+     */
+    public int getRowIndex() {
+        return this.rowIndex;
+    }
+
+    /**
+     * Gets the number of planes of the row.
+     *
+     * @return the number of planes of the row.
+     */
+    public int getPlaneCount() {
+        return this.planeCount;
+    }
+
+    /**
+     * Gets the number of valid bytes in every plane of the row.
+     *
+     * @return the number of valid bytes in every plane.
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Returns true if the planes of the row are identical to the planes of the previous row (of the same
+     * raster graphics). This is the case if the row has been transferred with delta row compression without
+     * any replacement data or if it is a duplicated row of adaptive compression. Consumers can reuse results
+     * that they have computed for the previous row.
+     *
+     * @return true if the row is identical to the previous row.
+     */
+    public boolean isUnchanged() {
+        return this.unchanged;
+    }
+
+    /**
+     * Gets the buffer of the plane with the given index. The buffer may be larger than {@link #getLength()}
+     * and must not be modified.
+     *
+     * @param plane   index of the plane (0 to {@link #getPlaneCount()} - 1).
+     *
+     * @return the buffer of the plane.
+     */
+    public byte[] getPlane(final int plane) {
+        if (plane < 0 || plane >= this.planeCount) {
+            throw new IndexOutOfBoundsException("Invalid plane index " + plane);
+        }
+        return this.planes[plane];
+    }
+}
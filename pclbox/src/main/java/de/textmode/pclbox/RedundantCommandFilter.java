@@ -0,0 +1,450 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link RedundantCommandFilter} is a {@link PrinterCommandHandler} that follows the relevant PCL state and
+ * removes PCL commands that do not change this state before the commands are passed to the next
+ * {@link PrinterCommandHandler} (usually a {@link PclCompactor} or a {@link PclWriter}). The following commands
+ * are removed:
+ *
+ * <ul>
+ * <li>Absolute cursor positioning ("<code>&lt;esc&gt;*p#X</code>", "<code>&lt;esc&gt;*p#Y</code>" and
+ * "<code>&lt;esc&gt;&amp;a#H/V/C/R</code>") to the position that has been set by the same command before, if
+ * nothing has moved the cursor in between. Relative cursor positioning by zero is removed as well. Column and
+ * row positions ("<code>&lt;esc&gt;&amp;a#C/R</code>") depend on the character and line spacing, so they are
+ * kept after any font selection or spacing change.</li>
+ * <li>Font selection commands (symbol set, font characteristics and font ID) that select the value that is
+ * already selected.</li>
+ * <li>Orientation, page size and paper source commands that select the current value, if the page has not been
+ * marked and neither the cursor nor the margins have been changed since the current value has been selected.
+ * These commands eject a marked page and reset the margins and the cursor, so they are kept in all other
+ * cases. The number of copies is removed whenever it is unchanged.</li>
+ * </ul>
+ *
+ * <p>The state is not known after a printer reset ("<code>&lt;esc&gt;E</code>"), a Universal Exit Language
+ * command or the execution of a macro, so no command is removed until the state has been set again. Commands
+ * within a macro definition are never removed.
+ *
+ * <p>PCL sequences are handled command by command. If a command of a {@link CombinedPclCommand} is removed, the
+ * remaining commands are passed as a new {@link CombinedPclCommand} (or a {@link ParameterizedPclCommand} if
+ * only one command remains).
+ */
+public final class RedundantCommandFilter implements PrinterCommandHandler {
+
+    private static final int FORM_FEED = 0x0C;
+
+    private final PrinterCommandHandler nextHandler;
+
+    // Last selected values of the font and page settings, keyed by the command (like "(sH" or "&lO")...
+    private final Map<String, String> values = new HashMap<>();
+
+    private String cursorX;
+    private String cursorY;
+    private boolean marked;
+    private boolean cursorMoved;
+    private boolean layoutChanged;
+    private boolean inMacroDefinition;
+
+    /**
+     * Constructor of a {@link RedundantCommandFilter}.
+     *
+     * @param nextHandler   the {@link PrinterCommandHandler} the remaining commands are passed to.
+     */
+    public RedundantCommandFilter(final PrinterCommandHandler nextHandler) {
+        this.nextHandler = nextHandler;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        if (this.inMacroDefinition && command instanceof TwoBytePclCommand) {
+            // A printer reset ends the macro definition...
+            if (((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+                this.reset();
+            }
+            this.nextHandler.handlePrinterCommand(command);
+        } else if (this.inMacroDefinition && !(command instanceof Pcl5Command)) {
+            this.nextHandler.handlePrinterCommand(command);
+        } else if (command instanceof ParameterizedPclCommand) {
+            if (this.isNeeded((ParameterizedPclCommand) command)) {
+                this.nextHandler.handlePrinterCommand(command);
+            }
+        } else if (command instanceof CombinedPclCommand) {
+            this.handleCombinedCommand((CombinedPclCommand) command);
+        } else if (command instanceof TextCommand) {
+            this.marked = true;
+            this.moveCursor();
+            this.nextHandler.handlePrinterCommand(command);
+        } else if (command instanceof ControlCharacterCommand) {
+            if (((ControlCharacterCommand) command).getControlCharacter() == FORM_FEED) {
+                this.startPage();
+            } else {
+                this.moveCursor();
+            }
+            this.nextHandler.handlePrinterCommand(command);
+        } else if (command instanceof TwoBytePclCommand) {
+            if (((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+                this.reset();
+            } else {
+                this.moveCursor();
+                this.layoutChanged = true;
+            }
+            this.nextHandler.handlePrinterCommand(command);
+        } else if (command instanceof HpglCommand) {
+            final String mnemonic = ((HpglCommand) command).getCommand();
+            if (mnemonic.length() == 2 && PageTracker.isMarkingHpglCommand(mnemonic.charAt(0), mnemonic.charAt(1))) {
+                this.marked = true;
+            }
+            this.moveCursor();
+            this.nextHandler.handlePrinterCommand(command);
+        } else {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+    }
+
+    /**
+     * Removes the redundant commands of the given PCL sequence.
+     */
+    private void handleCombinedCommand(final CombinedPclCommand command) throws IOException {
+        final int count = command.getCommandCount();
+        final List<Integer> needed = new ArrayList<>(count);
+        for (int ix = 0; ix < count; ++ix) {
+            if (this.isNeeded(command.getCommand(ix))) {
+                needed.add(ix);
+            }
+        }
+
+        if (needed.size() == count) {
+            this.nextHandler.handlePrinterCommand(command);
+        } else if (needed.size() == 1) {
+            this.nextHandler.handlePrinterCommand(command.getCommand(needed.get(0)));
+        } else if (!needed.isEmpty()) {
+            final String[] remainingValues = new String[needed.size()];
+            final int[] terminationCharacters = new int[needed.size()];
+            for (int ix = 0; ix < remainingValues.length; ++ix) {
+                remainingValues[ix] = command.getRawValue(needed.get(ix));
+                terminationCharacters[ix] = command.getTerminationCharacter(needed.get(ix));
+            }
+
+            // The data section belongs to the last command, which is never removed...
+            this.nextHandler.handlePrinterCommand(new CombinedPclCommand(
+                    command.getCommandOffset(needed.get(0)),
+                    command.getParameterizedCharacter(),
+                    command.getGroupCharacter(),
+                    remainingValues,
+                    terminationCharacters,
+                    needed.get(needed.size() - 1) == count - 1 ? command.getDataSectionWithoutCopy() : null,
+                    false));
+        }
+    }
+
+    /**
+     * Updates the state and returns false if the given PCL command does not change the state.
+     */
+    private boolean isNeeded(final ParameterizedPclCommand command) {
+        final int parameterizedCharacter = command.getParameterizedCharacter();
+        final int groupCharacter = command.getGroupCharacter();
+        final int terminationCharacter = command.getTerminationCharacter();
+
+        if (this.inMacroDefinition) {
+            if (parameterizedCharacter == '&' && groupCharacter == 'f' && terminationCharacter == 'X'
+                    && command.getIntValue() == 1) {
+
+                this.inMacroDefinition = false;
+            }
+            return true;
+        }
+
+        final int kind = PageTracker.classify(
+                parameterizedCharacter, groupCharacter, terminationCharacter, command.getIntValue());
+
+        if (kind == PageTracker.EXIT_LANGUAGE) {
+            this.reset();
+            return true;
+        }
+
+        if (kind == PageTracker.MARK) {
+            this.marked = true;
+        }
+
+        final String value = PclCompactor.compactValue(command.getValue());
+
+        switch (parameterizedCharacter) {
+        case '(':
+        case ')':
+            return this.isNeededFontCommand(parameterizedCharacter, groupCharacter, terminationCharacter, value);
+
+        case '*':
+            if (groupCharacter == 'p' && (terminationCharacter == 'X' || terminationCharacter == 'Y')) {
+                return this.isNeededCursorCommand("*p", terminationCharacter == 'X', value);
+            } else if (groupCharacter == 'c' && (terminationCharacter == 'D' || terminationCharacter == 'F')) {
+                // The Font ID and font management may change or delete the selected fonts...
+                this.changeSoftFont();
+                return true;
+            } else if (groupCharacter == 'v' || groupCharacter == 't' || groupCharacter == 'c'
+                    || groupCharacter == 'l' || groupCharacter == 'o') {
+                return true;
+            }
+            break;
+
+        case '&':
+            if (groupCharacter == 'a') {
+                switch (terminationCharacter) {
+                case 'H':
+                case 'C':
+                    return this.isNeededCursorCommand("&a" + (char) terminationCharacter, true, value);
+                case 'V':
+                case 'R':
+                    return this.isNeededCursorCommand("&a" + (char) terminationCharacter, false, value);
+                default:
+                    this.changeLayout();
+                    return true;
+                }
+            } else if (groupCharacter == 'l') {
+                return this.isNeededPageCommand(terminationCharacter, kind == PageTracker.EJECT, value);
+            } else if (groupCharacter == 'k') {
+                if (terminationCharacter == 'S') {
+                    // The pitch mode overrides the pitch of the font selection...
+                    this.values.remove("(sH");
+                    this.values.remove(")sH");
+                }
+                this.changeLayout();
+                return true;
+            } else if (groupCharacter == 'f' && terminationCharacter == 'X') {
+                final int macroControl = command.getIntValue();
+                if (macroControl == 0) {
+                    this.inMacroDefinition = true;
+                } else if (macroControl == 2 || macroControl == 3) {
+                    this.forgetState();
+                }
+                return true;
+            } else if (groupCharacter == 'd') {
+                return true;
+            }
+            break;
+
+        default:
+            break;
+        }
+
+        this.moveCursor();
+        return true;
+    }
+
+    /**
+     * Handles a command of the font selection (primary or secondary font).
+     */
+    private boolean isNeededFontCommand(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final String value) {
+
+        final boolean isCharacteristic = groupCharacter == 0
+                ? terminationCharacter == 'U' || terminationCharacter == 'X'
+                : groupCharacter == 's' && "PHVSBT".indexOf(terminationCharacter) >= 0;
+
+        if (groupCharacter == 's' && terminationCharacter == 'W') {
+            // A font header or character may replace the primary and the secondary font...
+            this.changeSoftFont();
+            return true;
+        } else if (!isCharacteristic) {
+            // Default font and so on...
+            this.clearFont(parameterizedCharacter);
+            this.changeFont();
+            return true;
+        }
+
+        final String key = fontKey(parameterizedCharacter, groupCharacter, terminationCharacter);
+        if (value.equals(this.values.get(key))) {
+            return false;
+        }
+
+        if (groupCharacter == 0 && terminationCharacter == 'X') {
+            // Selecting a font by its ID replaces all font characteristics...
+            this.clearFont(parameterizedCharacter);
+        } else {
+            this.values.remove(fontKey(parameterizedCharacter, 0, 'X'));
+        }
+
+        this.values.put(key, value);
+        this.changeFont();
+        return true;
+    }
+
+    /**
+     * Handles an absolute or relative cursor positioning command.
+     */
+    private boolean isNeededCursorCommand(final String command, final boolean horizontal, final String value) {
+        if (value.startsWith("+") || value.startsWith("-")) {
+            if (value.length() == 2 && value.charAt(1) == '0') {
+                return false;
+            }
+
+            this.setCursor(horizontal, null);
+            this.cursorMoved = true;
+            return true;
+        }
+
+        final String position = command + value;
+        if (position.equals(horizontal ? this.cursorX : this.cursorY)) {
+            return false;
+        }
+
+        this.setCursor(horizontal, position);
+        this.cursorMoved = true;
+        return true;
+    }
+
+    /**
+     * Handles a command of the "<code>&lt;esc&gt;&amp;l</code>" group (page settings and margins).
+     */
+    private boolean isNeededPageCommand(final int terminationCharacter, final boolean ejects, final String value) {
+        final String key = "&l" + (char) terminationCharacter;
+
+        if (terminationCharacter == 'X') {
+            return !value.equals(this.values.put(key, value));
+        }
+
+        if (!ejects) {
+            this.changeLayout();
+            return true;
+        }
+
+        final String current = this.values.put(key, value);
+        if (this.marked) {
+            this.startPage();
+        } else if (value.equals(current) && !this.cursorMoved && !this.layoutChanged) {
+            return false;
+        }
+
+        // A new value resets the margins and moves the cursor...
+        if (!value.equals(current)) {
+            this.layoutChanged = false;
+        }
+        this.setCursor(true, null);
+        this.setCursor(false, null);
+        return true;
+    }
+
+    /**
+     * Sets the horizontal or vertical cursor position.
+     */
+    private void setCursor(final boolean horizontal, final String position) {
+        if (horizontal) {
+            this.cursorX = position;
+        } else {
+            this.cursorY = position;
+        }
+    }
+
+    /**
+     * Invoked if the cursor may have been moved to an unknown position.
+     */
+    private void moveCursor() {
+        this.cursorX = null;
+        this.cursorY = null;
+        this.cursorMoved = true;
+    }
+
+    /**
+     * Invoked if the selected font may have been changed. A font selection resets the character spacing (HMI),
+     * so a column position ("<code>&lt;esc&gt;&amp;a#C</code>") does not denote the current position anymore.
+     */
+    private void changeFont() {
+        if (this.cursorX != null && this.cursorX.startsWith("&aC")) {
+            this.cursorX = null;
+        }
+    }
+
+    /**
+     * Invoked if a soft font is downloaded or the Font ID changes. Both font selections may refer to the soft
+     * font, so both are forgotten.
+     */
+    private void changeSoftFont() {
+        this.clearFont('(');
+        this.clearFont(')');
+        this.changeFont();
+    }
+
+    /**
+     * Invoked if the margins, the line spacing or the character spacing may have been changed. This makes
+     * every cached position (including column and row positions) unknown.
+     */
+    private void changeLayout() {
+        this.moveCursor();
+        this.layoutChanged = true;
+    }
+
+    /**
+     * Forgets the selected values of the primary or secondary font.
+     */
+    private void clearFont(final int parameterizedCharacter) {
+        this.values.keySet().removeIf(key -> key.charAt(0) == parameterizedCharacter);
+    }
+
+    /**
+     * Invoked at the beginning of a new page.
+     */
+    private void startPage() {
+        this.marked = false;
+        this.cursorMoved = false;
+        this.cursorX = null;
+        this.cursorY = null;
+    }
+
+    /**
+     * Invoked if the state is unknown (but the current page is kept).
+     */
+    private void forgetState() {
+        this.values.clear();
+        this.changeLayout();
+    }
+
+    /**
+     * Invoked on a printer reset.
+     */
+    private void reset() {
+        this.values.clear();
+        this.startPage();
+        this.layoutChanged = false;
+        this.inMacroDefinition = false;
+    }
+
+    /**
+     * Returns the key of a command of the font selection.
+     */
+    private static String fontKey(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter) {
+
+
+        final StringBuilder sb = new StringBuilder(3);
+        sb.append((char) parameterizedCharacter);
+        if (groupCharacter != 0) {
+            sb.append((char) groupCharacter);
+        }
+        return sb.append((char) terminationCharacter).toString();
+    }
+}
@@ -0,0 +1,136 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+/**
+ * The {@link RewriteEdits} record the changes a {@link RewriteHandler} makes to the current
+ * {@link PrinterCommand}: {@link PrinterCommand}s can be inserted before or after it and the
+ * {@link PrinterCommand} can be deleted or replaced. Only the recorded changes are serialized by the
+ * {@link PclRewriter}; everything else is copied from the source.
+ */
+public final class RewriteEdits {
+
+    private final ByteArrayOutputStream before = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream replacement = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream after = new ByteArrayOutputStream();
+    private boolean replaced;
+
+    /**
+     * Constructor of the {@link RewriteEdits}. Only the {@link PclRewriter} creates them.
+     */
+    RewriteEdits() {
+    }
+
+    /**
+     * Inserts the given {@link PrinterCommand}s before the current {@link PrinterCommand}.
+     *
+     * @param commands   the {@link PrinterCommand}s to be inserted.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void insertBefore(final PrinterCommand... commands) throws IOException {
+        for (final PrinterCommand command : commands) {
+            command.writeTo(this.before);
+        }
+    }
+
+    /**
+     * Inserts the given {@link PrinterCommand}s after the current {@link PrinterCommand}.
+     *
+     * @param commands   the {@link PrinterCommand}s to be inserted.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void insertAfter(final PrinterCommand... commands) throws IOException {
+        for (final PrinterCommand command : commands) {
+            command.writeTo(this.after);
+        }
+    }
+
+    /**
+     * Deletes the current {@link PrinterCommand}.
+     */
+    public void delete() {
+        this.replaced = true;
+        this.replacement.reset();
+    }
+
+    /**
+     * Replaces the current {@link PrinterCommand} with the given {@link PrinterCommand}s. If this method is
+     * invoked more than once, the last replacement wins.
+     *
+     * @param commands   the {@link PrinterCommand}s that replace the current {@link PrinterCommand}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void replace(final PrinterCommand... commands) throws IOException {
+        this.delete();
+        for (final PrinterCommand command : commands) {
+            command.writeTo(this.replacement);
+        }
+    }
+
+    /**
+     * Returns true if the current {@link PrinterCommand} has been deleted or replaced.
+     *
+     * @return true if the current {@link PrinterCommand} has been deleted or replaced.
+     */
+    public boolean isReplaced() {
+        return this.replaced;
+    }
+
+    /**
+     * Returns true if no changes have been recorded.
+     */
+    boolean isEmpty() {
+        return !this.replaced && this.before.size() == 0 && this.after.size() == 0;
+    }
+
+    /**
+     * Returns the serialized {@link PrinterCommand}s that are inserted before the current {@link PrinterCommand}.
+     */
+    byte[] getBefore() {
+        return this.before.toByteArray();
+    }
+
+    /**
+     * Returns the serialized {@link PrinterCommand}s that replace the current {@link PrinterCommand}.
+     */
+    byte[] getReplacement() {
+        return this.replacement.toByteArray();
+    }
+
+    /**
+     * Returns the serialized {@link PrinterCommand}s that are inserted after the current {@link PrinterCommand}.
+     */
+    byte[] getAfter() {
+        return this.after.toByteArray();
+    }
+
+    /**
+     * Clears the recorded changes.
+     */
+    void clear() {
+        this.before.reset();
+        this.replacement.reset();
+        this.after.reset();
+        this.replaced = false;
+    }
+}
@@ -0,0 +1,37 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * This is the handler interface for the {@link PclRewriter}. The handler is invoked for every
+ * {@link PrinterCommand} of the source data stream and records its changes with the given {@link RewriteEdits}.
+ * Commands without any changes are copied byte by byte from the source.
+ */
+public interface RewriteHandler {
+
+    /**
+     * Handles a {@link PrinterCommand} of the source data stream.
+     *
+     * @param command   the {@link PrinterCommand}. PCL sequences are delivered as {@link CombinedPclCommand}.
+     * @param edits   the {@link RewriteEdits} that record the changes of the {@link PrinterCommand}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void rewrite(final PrinterCommand command, final RewriteEdits edits) throws IOException;
+}
@@ -0,0 +1,128 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link SoftFont} is a decoded soft font that consists of a {@link SoftFontHeader} and the downloaded
+ * {@link SoftFontCharacter} objects. The characters are stored in an array that is indexed by the character
+ * code.
+ *
+ * <p>A {@link SoftFont} is immutable and does not know the font ID it has been downloaded with, so the same
+ * {@link SoftFont} can be shared by multiple print jobs (see {@link SoftFontCache}).
+ */
+public final class SoftFont {
+
+    private final SoftFontHeader header;
+    private final SoftFontCharacter[] characters;
+    private final int characterCount;
+    private final String contentHash;
+
+    /**
+     * Constructor of a {@link SoftFont}.
+     *
+     * @param header   the {@link SoftFontHeader}.
+     * @param characters   the characters, indexed by the character code (may contain <code>null</code> values).
+     * @param contentHash   the content hash of the soft font (see {@link #getContentHash()}).
+     */
+    SoftFont(final SoftFontHeader header, final SoftFontCharacter[] characters, final String contentHash) {
+        this.header = header;
+        this.characters = characters;
+        this.contentHash = contentHash;
+
+        int count = 0;
+        for (final SoftFontCharacter character : characters) {
+            if (character != null) {
+                ++count;
+            }
+        }
+        this.characterCount = count;
+    }
+
+    /**
+     * Returns the {@link SoftFontHeader} of the soft font.
+     *
+     * @return the {@link SoftFontHeader}.
+     */
+    public SoftFontHeader getHeader() {
+        return this.header;
+    }
+
+    /**
+     * Returns the character with the given character code.
+     *
+     * @param code   the character code.
+     *
+     * @return the {@link SoftFontCharacter} or <code>null</code> if the character has not been downloaded.
+     */
+    public SoftFontCharacter getCharacter(final int code) {
+        return code >= 0 && code < this.characters.length ? this.characters[code] : null;
+    }
+
+    /**
+     * Returns the number of downloaded characters.
+     *
+     * @return the number of downloaded characters.
+     */
+    public int getCharacterCount() {
+        return this.characterCount;
+    }
+
+    /**
+     * Returns all downloaded characters, ordered by the character code.
+     *
+     * @return an unmodifiable {@link List} with all downloaded characters.
+     */
+    public List<SoftFontCharacter> getCharacters() {
+        final List<SoftFontCharacter> result = new ArrayList<>(this.characterCount);
+        for (final SoftFontCharacter character : this.characters) {
+            if (character != null) {
+                result.add(character);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the content hash of the soft font. This is the hex encoded SHA-256 hash of the font header and
+     * all characters (ordered by the character code). Two downloads of the same font have the same content
+     * hash, regardless of the font ID and the order in which the characters have been downloaded.
+     *
+     * @return the content hash.
+     */
+    public String getContentHash() {
+        return this.contentHash;
+    }
+
+    /**
+     * Returns the characters array without copying it. The returned array must not be modified.
+     *
+     * @return the characters, indexed by the character code.
+     */
+    SoftFontCharacter[] getCharactersWithoutCopy() {
+        return this.characters;
+    }
+
+    @Override
+    public String toString() {
+        return "SoftFont[" + this.header.getFontName() + ", " + this.characterCount + " characters]";
+    }
+}
@@ -0,0 +1,134 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link SoftFontCache} holds decoded {@link SoftFont} objects, keyed by their content hash (see
+ * {@link SoftFont#getContentHash()}). A {@link SoftFontCache} can be shared by multiple {@link SoftFontParser}
+ * objects (and threads), so a soft font that is downloaded by many print jobs is decoded only once.
+ *
+ * <p>The {@link SoftFontCache} holds up to a maximum number of soft fonts. If the maximum is exceeded, the
+ * least recently used soft font is removed.
+ */
+public final class SoftFontCache {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private final Map<String, SoftFont> fonts;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor of a {@link SoftFontCache} that holds up to 256 soft fonts.
+     */
+    public SoftFontCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * Constructor of a {@link SoftFontCache}.
+     *
+     * @param maximumSize   the maximum number of soft fonts.
+     */
+    public SoftFontCache(final int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("Invalid maximum size " + maximumSize);
+        }
+
+        this.fonts = new LinkedHashMap<String, SoftFont>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, SoftFont> eldest) {
+                return this.size() > maximumSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the {@link SoftFont} with the given content hash.
+     *
+     * @param contentHash   the content hash of the {@link SoftFont}.
+     *
+     * @return the {@link SoftFont} or <code>null</code> if the {@link SoftFontCache} does not contain it.
+     */
+    public synchronized SoftFont get(final String contentHash) {
+        final SoftFont result = this.fonts.get(contentHash);
+        if (result != null) {
+            ++this.hits;
+        } else {
+            ++this.misses;
+        }
+        return result;
+    }
+
+    /**
+     * Adds a {@link SoftFont} to the {@link SoftFontCache}. If the {@link SoftFontCache} already contains a
+     * {@link SoftFont} with the same content hash, the existing {@link SoftFont} is kept and returned.
+     *
+     * @param font   the {@link SoftFont} to add.
+     *
+     * @return the {@link SoftFont} that is held by the {@link SoftFontCache}.
+     */
+    public synchronized SoftFont put(final SoftFont font) {
+        final SoftFont existing = this.fonts.get(font.getContentHash());
+        if (existing != null) {
+            return existing;
+        }
+
+        this.fonts.put(font.getContentHash(), font);
+        return font;
+    }
+
+    /**
+     * Returns the number of soft fonts in the {@link SoftFontCache}.
+     *
+     * @return the number of soft fonts.
+     */
+    public synchronized int size() {
+        return this.fonts.size();
+    }
+
+    /**
+     * Returns the number of invocations of {@link #get(String)} that have found a soft font.
+     *
+     * @return the number of cache hits.
+     */
+    public synchronized long getHitCount() {
+        return this.hits;
+    }
+
+    /**
+     * Returns the number of invocations of {@link #get(String)} that have not found a soft font.
+     *
+     * @return the number of cache misses.
+     */
+    public synchronized long getMissCount() {
+        return this.misses;
+    }
+
+    /**
+     * Removes all soft fonts from the {@link SoftFontCache}.
+     */
+    public synchronized void clear() {
+        this.fonts.clear();
+    }
+}
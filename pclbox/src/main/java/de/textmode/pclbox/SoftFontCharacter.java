@@ -0,0 +1,235 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+/**
+ * A {@link SoftFontCharacter} is a character of a soft font, downloaded with the PCL command "Character Data"
+ * (<code>&lt;esc&gt;(s#W</code>). The character descriptor is decoded for PCL bitmap characters (format 4).
+ * The bitmap of a PCL bitmap character is decompressed on the first invocation of {@link #getBitmap()}. For all
+ * other formats (Intellifont, TrueType) only the format and the class are decoded, the glyph data is available
+ * with {@link #getData()}.
+ */
+public final class SoftFontCharacter {
+
+    /**
+     * Format of a PCL bitmap character.
+     */
+    public static final int FORMAT_BITMAP = 4;
+
+    /**
+     * Class of an uncompressed bitmap character.
+     */
+    public static final int CLASS_BITMAP = 1;
+
+    /**
+     * Class of a compressed (run-length encoded) bitmap character.
+     */
+    public static final int CLASS_COMPRESSED_BITMAP = 2;
+
+    private static final int BITMAP_DESCRIPTOR_SIZE = 16;
+
+    private final int code;
+    private final byte[] data;
+    private volatile byte[] bitmap;
+
+    /**
+     * Constructor of a {@link SoftFontCharacter}.
+     *
+     * @param code   the character code.
+     * @param data   the data sections of the PCL command "Character Data" (including continuation blocks,
+     *     without their two byte header).
+     */
+    SoftFontCharacter(final int code, final byte[] data) {
+        this.code = code;
+        this.data = data;
+    }
+
+    /**
+     * Returns the character code.
+     *
+     * @return the character code.
+     */
+    public int getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the format of the character descriptor (4 = PCL bitmap, 10 = Intellifont, 15 = TrueType).
+     *
+     * @return the format of the character descriptor.
+     */
+    public int getFormat() {
+        return SoftFontHeader.readUnsignedByte(this.data, 0);
+    }
+
+    /**
+     * Returns the class of the character descriptor (1 = bitmap, 2 = compressed bitmap, ...).
+     *
+     * @return the class of the character descriptor.
+     */
+    public int getCharacterClass() {
+        return SoftFontHeader.readUnsignedByte(this.data, 3);
+    }
+
+    /**
+     * Returns true if this is a PCL bitmap character.
+     *
+     * @return true if this is a PCL bitmap character.
+     */
+    public boolean isBitmap() {
+        final int characterClass = this.getCharacterClass();
+        return this.getFormat() == FORMAT_BITMAP
+                && (characterClass == CLASS_BITMAP || characterClass == CLASS_COMPRESSED_BITMAP);
+    }
+
+    /**
+     * Returns the distance from the reference point to the left of the character bitmap (in dots).
+     *
+     * @return the left offset.
+     */
+    public int getLeftOffset() {
+        return (short) SoftFontHeader.readUnsignedShort(this.data, 6);
+    }
+
+    /**
+     * Returns the distance from the reference point to the top of the character bitmap (in dots).
+     *
+     * @return the top offset.
+     */
+    public int getTopOffset() {
+        return (short) SoftFontHeader.readUnsignedShort(this.data, 8);
+    }
+
+    /**
+     * Returns the width of the character bitmap (in dots).
+     *
+     * @return the width of the character bitmap.
+     */
+    public int getWidth() {
+        return SoftFontHeader.readUnsignedShort(this.data, 10);
+    }
+
+    /**
+     * Returns the height of the character bitmap (in dots).
+     *
+     * @return the height of the character bitmap.
+     */
+    public int getHeight() {
+        return SoftFontHeader.readUnsignedShort(this.data, 12);
+    }
+
+    /**
+     * Returns the horizontal movement of the cursor after the character has been printed (in quarter-dots).
+     *
+     * @return the horizontal movement in quarter-dots.
+     */
+    public int getDeltaX() {
+        return (short) SoftFontHeader.readUnsignedShort(this.data, 14);
+    }
+
+    /**
+     * Returns the uncompressed bitmap of a PCL bitmap character. Every row of the bitmap is padded to a byte
+     * boundary, the most significant bit of a byte is the leftmost pixel.
+     *
+     * @return the bitmap or <code>null</code> if this is not a PCL bitmap character.
+     */
+    public byte[] getBitmap() {
+        if (!this.isBitmap()) {
+            return null;
+        }
+
+        byte[] result = this.bitmap;
+        if (result == null) {
+            result = this.getCharacterClass() == CLASS_BITMAP ? this.copyBitmap() : this.decompressBitmap();
+            this.bitmap = result;
+        }
+        return result.clone();
+    }
+
+    /**
+     * Gets the complete (raw) character data, including the character descriptor.
+     *
+     * @return the character data.
+     */
+    public byte[] getData() {
+        return this.data.clone();
+    }
+
+    /**
+     * Gets the complete (raw) character data without copying it. The returned array must not be modified.
+     *
+     * @return the character data.
+     */
+    byte[] getDataWithoutCopy() {
+        return this.data;
+    }
+
+    @Override
+    public String toString() {
+        return "SoftFontCharacter[code=" + this.code + ", format=" + this.getFormat()
+                + ", class=" + this.getCharacterClass() + "]";
+    }
+
+    /**
+     * Returns the bitmap of an uncompressed bitmap character (missing bytes are blank).
+     */
+    private byte[] copyBitmap() {
+        final byte[] result = new byte[(this.getWidth() + 7) / 8 * this.getHeight()];
+        final int available = Math.max(0, Math.min(result.length, this.data.length - BITMAP_DESCRIPTOR_SIZE));
+        System.arraycopy(this.data, BITMAP_DESCRIPTOR_SIZE, result, 0, available);
+        return result;
+    }
+
+    /**
+     * Decompresses the bitmap of a compressed bitmap character. Every row starts with a repeat count,
+     * followed by alternating run lengths of white and black pixels.
+     */
+    private byte[] decompressBitmap() {
+        final int width = this.getWidth();
+        final int height = this.getHeight();
+        final int bytesPerRow = (width + 7) / 8;
+        final byte[] result = new byte[bytesPerRow * height];
+
+        int pos = BITMAP_DESCRIPTOR_SIZE;
+        int row = 0;
+        while (row < height && pos < this.data.length) {
+            final int repeat = this.data[pos++] & 0xFF;
+            final int rowStart = row * bytesPerRow;
+
+            int x = 0;
+            boolean black = false;
+            while (x < width && pos < this.data.length) {
+                final int run = Math.min(this.data[pos++] & 0xFF, width - x);
+                if (black) {
+                    for (int px = x; px < x + run; ++px) {
+                        result[rowStart + (px >> 3)] |= 0x80 >>> (px & 7);
+                    }
+                }
+                x += run;
+                black = !black;
+            }
+
+            final int copies = Math.min(repeat, height - row - 1);
+            for (int ix = 1; ix <= copies; ++ix) {
+                System.arraycopy(result, rowStart, result, rowStart + ix * bytesPerRow, bytesPerRow);
+            }
+            row += copies + 1;
+        }
+        return result;
+    }
+}
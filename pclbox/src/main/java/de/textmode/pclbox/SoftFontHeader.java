@@ -0,0 +1,278 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A {@link SoftFontHeader} is the decoded font descriptor of a soft font, downloaded with the PCL command
+ * "Font Header" (<code>&lt;esc&gt;)s#W</code>). Only the fields of the common part of the font descriptor
+ * (the first 64 bytes) and the resolution of format 20 headers are decoded. The complete (raw) font descriptor,
+ * including any segmented data of scalable fonts, is available with {@link #getData()}.
+ */
+public final class SoftFontHeader {
+
+    /**
+     * Header format of a PCL bitmap font.
+     */
+    public static final int FORMAT_BITMAP = 0;
+
+    /**
+     * Header format of a resolution-specified PCL bitmap font.
+     */
+    public static final int FORMAT_RESOLUTION_SPECIFIED_BITMAP = 20;
+
+    private final byte[] data;
+
+    /**
+     * Constructor of a {@link SoftFontHeader}.
+     *
+     * @param data   the data section of the PCL command "Font Header".
+     */
+    SoftFontHeader(final byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * Returns the size of the font descriptor (without segmented data) in bytes.
+     *
+     * @return the size of the font descriptor.
+     */
+    public int getDescriptorSize() {
+        return readUnsignedShort(this.data, 0);
+    }
+
+    /**
+     * Returns the header format (0 = PCL bitmap, 10 = Intellifont bound, 11 = Intellifont unbound,
+     * 15 = TrueType, 16 = Universal, 20 = resolution-specified bitmap).
+     *
+     * @return the header format.
+     */
+    public int getHeaderFormat() {
+        return readUnsignedByte(this.data, 2);
+    }
+
+    /**
+     * Returns true if the font is a bitmap font (header format 0 or 20).
+     *
+     * @return true if the font is a bitmap font.
+     */
+    public boolean isBitmapFont() {
+        final int format = this.getHeaderFormat();
+        return format == FORMAT_BITMAP || format == FORMAT_RESOLUTION_SPECIFIED_BITMAP;
+    }
+
+    /**
+     * Returns the font type (0 = 7-bit, 1 = 8-bit, 2 = PC-8, 10 = 16-bit...).
+     *
+     * @return the font type.
+     */
+    public int getFontType() {
+        return readUnsignedByte(this.data, 3);
+    }
+
+    /**
+     * Returns the distance from the top of the cell to the baseline (in dots).
+     *
+     * @return the baseline position.
+     */
+    public int getBaselinePosition() {
+        return readUnsignedShort(this.data, 6);
+    }
+
+    /**
+     * Returns the width of the cell (in dots).
+     *
+     * @return the cell width.
+     */
+    public int getCellWidth() {
+        return readUnsignedShort(this.data, 8);
+    }
+
+    /**
+     * Returns the height of the cell (in dots).
+     *
+     * @return the cell height.
+     */
+    public int getCellHeight() {
+        return readUnsignedShort(this.data, 10);
+    }
+
+    /**
+     * Returns the orientation of the font (0 = portrait, 1 = landscape, 2 = reverse portrait,
+     * 3 = reverse landscape).
+     *
+     * @return the orientation.
+     */
+    public int getOrientation() {
+        return readUnsignedByte(this.data, 12);
+    }
+
+    /**
+     * Returns true if the font is a proportionally spaced font.
+     *
+     * @return true if the font is a proportionally spaced font.
+     */
+    public boolean isProportional() {
+        return readUnsignedByte(this.data, 13) == 1;
+    }
+
+    /**
+     * Returns the symbol set of the font as it is used in the PCL command "Symbol Set" (like "8U" or "19U").
+     *
+     * @return the symbol set.
+     */
+    public String getSymbolSet() {
+        final int value = readUnsignedShort(this.data, 14);
+        return Integer.toString(value / 32) + (char) (value % 32 + 64);
+    }
+
+    /**
+     * Returns the pitch (the default HMI) of the font in quarter-dots.
+     *
+     * @return the pitch in quarter-dots.
+     */
+    public int getPitch() {
+        return readUnsignedShort(this.data, 16);
+    }
+
+    /**
+     * Returns the height of the font in quarter-dots.
+     *
+     * @return the height in quarter-dots.
+     */
+    public int getHeight() {
+        return readUnsignedShort(this.data, 18);
+    }
+
+    /**
+     * Returns the style of the font (style MSB and style LSB).
+     *
+     * @return the style.
+     */
+    public int getStyle() {
+        return readUnsignedByte(this.data, 4) << 8 | readUnsignedByte(this.data, 23);
+    }
+
+    /**
+     * Returns the stroke weight of the font (-7 to 7, 0 = medium).
+     *
+     * @return the stroke weight.
+     */
+    public int getStrokeWeight() {
+        return (byte) readUnsignedByte(this.data, 24);
+    }
+
+    /**
+     * Returns the typeface of the font (typeface MSB and typeface LSB).
+     *
+     * @return the typeface.
+     */
+    public int getTypeface() {
+        return readUnsignedByte(this.data, 26) << 8 | readUnsignedByte(this.data, 25);
+    }
+
+    /**
+     * Returns the first character code of the font.
+     *
+     * @return the first character code.
+     */
+    public int getFirstCode() {
+        return readUnsignedShort(this.data, 36);
+    }
+
+    /**
+     * Returns the last character code (or the number of characters) of the font.
+     *
+     * @return the last character code.
+     */
+    public int getLastCode() {
+        return readUnsignedShort(this.data, 38);
+    }
+
+    /**
+     * Returns the name of the font (up to 16 characters, trailing blanks are removed).
+     *
+     * @return the name of the font.
+     */
+    public String getFontName() {
+        int end = Math.max(0, Math.min(16, this.data.length - 48));
+        while (end > 0 && (this.data[48 + end - 1] == ' ' || this.data[48 + end - 1] == 0)) {
+            --end;
+        }
+        return end > 0 ? new String(this.data, 48, end, StandardCharsets.ISO_8859_1) : "";
+    }
+
+    /**
+     * Returns the horizontal resolution of a bitmap font in dots per inch. This is 300 unless the header
+     * format is 20 (resolution-specified bitmap).
+     *
+     * @return the horizontal resolution.
+     */
+    public int getXResolution() {
+        return this.getHeaderFormat() == FORMAT_RESOLUTION_SPECIFIED_BITMAP ? readUnsignedShort(this.data, 64) : 300;
+    }
+
+    /**
+     * Returns the vertical resolution of a bitmap font in dots per inch. This is 300 unless the header
+     * format is 20 (resolution-specified bitmap).
+     *
+     * @return the vertical resolution.
+     */
+    public int getYResolution() {
+        return this.getHeaderFormat() == FORMAT_RESOLUTION_SPECIFIED_BITMAP ? readUnsignedShort(this.data, 66) : 300;
+    }
+
+    /**
+     * Gets the complete (raw) font descriptor.
+     *
+     * @return the font descriptor.
+     */
+    public byte[] getData() {
+        return this.data.clone();
+    }
+
+    /**
+     * Gets the complete (raw) font descriptor without copying it. The returned array must not be modified.
+     *
+     * @return the font descriptor.
+     */
+    byte[] getDataWithoutCopy() {
+        return this.data;
+    }
+
+    @Override
+    public String toString() {
+        return "SoftFontHeader[format=" + this.getHeaderFormat() + ", name=" + this.getFontName()
+                + ", symbolSet=" + this.getSymbolSet() + "]";
+    }
+
+    /**
+     * Reads an unsigned byte. 0 is returned if the data is too short.
+     */
+    static int readUnsignedByte(final byte[] data, final int pos) {
+        return pos < data.length ? data[pos] & 0xFF : 0;
+    }
+
+    /**
+     * Reads an unsigned 16-bit value (big endian). 0 is returned if the data is too short.
+     */
+    static int readUnsignedShort(final byte[] data, final int pos) {
+        return readUnsignedByte(data, pos) << 8 | readUnsignedByte(data, pos + 1);
+    }
+}
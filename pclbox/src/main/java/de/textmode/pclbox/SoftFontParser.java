@@ -0,0 +1,406 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The {@link SoftFontParser} is a {@link PrinterCommandHandler} that collects the soft fonts that are downloaded
+ * within a PCL data stream. It interprets the following PCL commands:
+ * <ul>
+ * <li><code>&lt;esc&gt;*c#D</code> - Font ID</li>
+ * <li><code>&lt;esc&gt;*c#E</code> - Character Code</li>
+ * <li><code>&lt;esc&gt;)s#W</code> - Font Header</li>
+ * <li><code>&lt;esc&gt;(s#W</code> - Character Data (including continuation blocks)</li>
+ * <li><code>&lt;esc&gt;*c#F</code> - Font Control (delete fonts and characters, make fonts temporary or
+ * permanent)</li>
+ * <li><code>&lt;esc&gt;E</code> - Printer Reset (deletes all temporary fonts)</li>
+ * </ul>
+ * All {@link PrinterCommand} objects are passed to an optional {@link PrinterCommandHandler}.
+ *
+ * <p>While a soft font is downloaded, only the raw data sections are collected. The soft font is completed
+ * when it is requested with {@link #getFont(int)} or when {@link #finish()} is invoked. A completed soft font is
+ * looked up in the {@link SoftFontCache} by its content hash and only decoded if the {@link SoftFontCache} does
+ * not contain it. So if the same {@link SoftFontCache} is used for many print jobs, a soft font that is
+ * downloaded by every print job is decoded only once.
+ */
+public final class SoftFontParser implements PrinterCommandHandler {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final byte[][] NO_CHARACTERS = new byte[0][];
+
+    private final SoftFontCache cache;
+    private final PrinterCommandHandler nextHandler;
+    private final Map<Integer, FontSlot> fonts = new HashMap<>();
+    private final MessageDigest digest;
+
+    private int fontId;
+    private int characterCode;
+
+    /**
+     * Constructor of the {@link SoftFontParser} that uses its own {@link SoftFontCache}.
+     */
+    public SoftFontParser() {
+        this(new SoftFontCache(), null);
+    }
+
+    /**
+     * Constructor of the {@link SoftFontParser}.
+     *
+     * @param cache   the (possibly shared) {@link SoftFontCache}.
+     */
+    public SoftFontParser(final SoftFontCache cache) {
+        this(cache, null);
+    }
+
+    /**
+     * Constructor of the {@link SoftFontParser}.
+     *
+     * @param cache   the (possibly shared) {@link SoftFontCache}.
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public SoftFontParser(final SoftFontCache cache, final PrinterCommandHandler nextHandler) {
+        this.cache = cache;
+        this.nextHandler = nextHandler;
+
+        try {
+            this.digest = MessageDigest.getInstance("SHA-256");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    /**
+     * Returns the IDs of all soft fonts that are currently defined.
+     *
+     * @return an unmodifiable (sorted) {@link Set} with the font IDs.
+     */
+    public Set<Integer> getFontIds() {
+        return Collections.unmodifiableSet(new TreeSet<>(this.fonts.keySet()));
+    }
+
+    /**
+     * Returns the soft font with the given font ID. If the soft font is still being downloaded, the soft font
+     * is completed.
+     *
+     * @param fontId   the font ID.
+     *
+     * @return the {@link SoftFont} or <code>null</code> if no soft font with the given ID is defined.
+     */
+    public SoftFont getFont(final int fontId) {
+        final FontSlot slot = this.fonts.get(fontId);
+        if (slot == null) {
+            return null;
+        }
+
+        this.complete(slot);
+        return slot.font;
+    }
+
+    /**
+     * Returns true if the soft font with the given font ID is a permanent soft font (means, it is not deleted
+     * by a "Printer Reset").
+     *
+     * @param fontId   the font ID.
+     *
+     * @return true if the soft font is a permanent soft font.
+     */
+    public boolean isPermanent(final int fontId) {
+        final FontSlot slot = this.fonts.get(fontId);
+        return slot != null && slot.permanent;
+    }
+
+    /**
+     * Completes all soft fonts that are still being downloaded. This should be invoked after the PCL data
+     * stream has been parsed.
+     */
+    public void finish() {
+        for (final FontSlot slot : this.fonts.values()) {
+            this.complete(slot);
+        }
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        if (this.nextHandler != null) {
+            this.nextHandler.handlePrinterCommand(command);
+        }
+
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            this.process(
+                    pc.getParameterizedCharacter(),
+                    pc.getGroupCharacter(),
+                    pc.getTerminationCharacter(),
+                    pc.getIntValue(),
+                    pc.getDataSectionWithoutCopy());
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            final int last = cc.getCommandCount() - 1;
+            for (int ix = 0; ix <= last; ++ix) {
+                this.process(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getTerminationCharacter(ix),
+                        cc.getIntValue(ix),
+                        ix == last ? cc.getDataSectionWithoutCopy() : null);
+            }
+
+        } else if (command instanceof TwoBytePclCommand
+                && ((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+            this.deleteFonts(false);
+        }
+    }
+
+    /**
+     * Processes a single PCL command.
+     */
+    private void process(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final int terminationCharacter,
+            final int value,
+            final byte[] data) {
+
+        if (parameterizedCharacter == '*' && groupCharacter == 'c') {
+            switch (terminationCharacter) {
+            case 'D':
+                this.fontId = value;
+                break;
+            case 'E':
+                this.characterCode = value;
+                break;
+            case 'F':
+                this.controlFont(value);
+                break;
+            default:
+                break;
+            }
+        } else if (groupCharacter == 's' && terminationCharacter == 'W' && data != null) {
+            if (parameterizedCharacter == ')') {
+                this.downloadHeader(data);
+            } else if (parameterizedCharacter == '(') {
+                this.downloadCharacter(data);
+            }
+        }
+    }
+
+    /**
+     * Handles the PCL command "Font Header". An existing soft font with the same font ID is replaced.
+     */
+    private void downloadHeader(final byte[] data) {
+        final FontSlot slot = new FontSlot();
+        slot.header = data;
+        slot.characters = NO_CHARACTERS;
+        slot.lastCode = -1;
+        this.fonts.put(this.fontId, slot);
+    }
+
+    /**
+     * Handles the PCL command "Character Data". The data of a continuation block (without its two byte header)
+     * is appended to the previously downloaded character.
+     */
+    private void downloadCharacter(final byte[] data) {
+        final FontSlot slot = this.fonts.get(this.fontId);
+        if (slot == null || data.length < 2) {
+            return;
+        }
+
+        slot.reopen();
+        final boolean continuation = data[1] != 0;
+        if (continuation) {
+            if (slot.lastCode >= 0 && slot.lastCode < slot.characters.length
+                    && slot.characters[slot.lastCode] != null) {
+
+                final byte[] previous = slot.characters[slot.lastCode];
+                final byte[] combined = Arrays.copyOf(previous, previous.length + data.length - 2);
+                System.arraycopy(data, 2, combined, previous.length, data.length - 2);
+                slot.characters[slot.lastCode] = combined;
+            }
+        } else if (this.characterCode >= 0 && this.characterCode <= 0xFFFF) {
+            slot.ensureCapacity(this.characterCode + 1);
+            slot.characters[this.characterCode] = data;
+            slot.lastCode = this.characterCode;
+        }
+    }
+
+    /**
+     * Handles the PCL command "Font Control".
+     */
+    private void controlFont(final int operation) {
+        final FontSlot slot = this.fonts.get(this.fontId);
+
+        switch (operation) {
+        case 0:
+            this.deleteFonts(true);
+            break;
+        case 1:
+            this.deleteFonts(false);
+            break;
+        case 2:
+            this.fonts.remove(this.fontId);
+            break;
+        case 3:
+            if (slot != null) {
+                slot.reopen();
+                if (this.characterCode >= 0 && this.characterCode < slot.characters.length) {
+                    slot.characters[this.characterCode] = null;
+                }
+            }
+            break;
+        case 4:
+            if (slot != null) {
+                slot.permanent = false;
+            }
+            break;
+        case 5:
+            if (slot != null) {
+                slot.permanent = true;
+            }
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * Deletes all temporary soft fonts or - if requested - all soft fonts.
+     */
+    private void deleteFonts(final boolean permanentFontsToo) {
+        final Iterator<FontSlot> it = this.fonts.values().iterator();
+        while (it.hasNext()) {
+            final FontSlot slot = it.next();
+            if (permanentFontsToo || !slot.permanent) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Completes a soft font that is being downloaded. The {@link SoftFont} is taken from the
+     * {@link SoftFontCache} if it contains a soft font with the same content hash. Otherwise the soft font is
+     * decoded and added to the {@link SoftFontCache}.
+     */
+    private void complete(final FontSlot slot) {
+        if (slot.font != null) {
+            return;
+        }
+
+        final String contentHash = this.computeContentHash(slot);
+        SoftFont font = this.cache.get(contentHash);
+        if (font == null) {
+            final SoftFontCharacter[] characters = new SoftFontCharacter[slot.characters.length];
+            for (int code = 0; code < characters.length; ++code) {
+                if (slot.characters[code] != null) {
+                    characters[code] = new SoftFontCharacter(code, slot.characters[code]);
+                }
+            }
+            font = this.cache.put(new SoftFont(new SoftFontHeader(slot.header), characters, contentHash));
+        }
+
+        slot.font = font;
+        slot.header = null;
+        slot.characters = null;
+    }
+
+    /**
+     * Computes the SHA-256 hash of the header and all characters (ordered by the character code).
+     */
+    private String computeContentHash(final FontSlot slot) {
+        this.digest.reset();
+        this.updateDigest(slot.header.length);
+        this.digest.update(slot.header);
+
+        for (int code = 0; code < slot.characters.length; ++code) {
+            final byte[] data = slot.characters[code];
+            if (data != null) {
+                this.updateDigest(code);
+                this.updateDigest(data.length);
+                this.digest.update(data);
+            }
+        }
+
+        final byte[] hash = this.digest.digest();
+        final char[] result = new char[hash.length * 2];
+        for (int ix = 0; ix < hash.length; ++ix) {
+            result[ix * 2] = HEX_DIGITS[(hash[ix] >> 4) & 0x0F];
+            result[ix * 2 + 1] = HEX_DIGITS[hash[ix] & 0x0F];
+        }
+        return new String(result);
+    }
+
+    private void updateDigest(final int value) {
+        this.digest.update((byte) (value >>> 24));
+        this.digest.update((byte) (value >>> 16));
+        this.digest.update((byte) (value >>> 8));
+        this.digest.update((byte) value);
+    }
+
+    /**
+     * A {@link FontSlot} holds the soft font of a font ID. While the soft font is being downloaded, the
+     * {@link FontSlot} holds the raw data sections. Afterwards it holds the completed {@link SoftFont}.
+     */
+    private static final class FontSlot {
+
+        private byte[] header;
+        private byte[][] characters;
+        private int lastCode;
+        private SoftFont font;
+        private boolean permanent;
+
+        /**
+         * Makes a completed soft font modifiable again (i. e. if further characters are downloaded).
+         */
+        private void reopen() {
+            if (this.font == null) {
+                return;
+            }
+
+            final SoftFontCharacter[] completed = this.font.getCharactersWithoutCopy();
+            this.header = this.font.getHeader().getDataWithoutCopy();
+            this.characters = new byte[completed.length][];
+            for (int code = 0; code < completed.length; ++code) {
+                if (completed[code] != null) {
+                    this.characters[code] = completed[code].getDataWithoutCopy();
+                }
+            }
+            this.font = null;
+        }
+
+        /**
+         * Ensures that the characters array can hold the given number of characters.
+         */
+        private void ensureCapacity(final int size) {
+            if (this.characters.length < size) {
+                this.characters = Arrays.copyOf(this.characters, Math.max(size, Math.min(0x10000,
+                        Math.max(256, this.characters.length * 2))));
+            }
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * The {@link SymbolSetTracker} tracks the symbol sets of the primary and the secondary font and which of both
+ * fonts is active. The symbol set is changed by the PCL command "Symbol Set" (<code>&lt;esc&gt;(#X</code>) and
+ * reset by the PCL command "Default Font" (<code>&lt;esc&gt;(3@</code>). Selecting a font by its ID does not
+ * change the symbol set. The secondary font is activated by "Shift Out" and deactivated by "Shift In".
+ *
+ * <p>The {@link Pcl5Parser} uses the {@link SymbolSetTracker} for the symbol set of every {@link TextCommand}.
+ * The {@link PageIndexWriter} uses it for the state at the beginning of every page, so parsing can be resumed
+ * at a page with the right symbol sets.
+ */
+final class SymbolSetTracker {
+
+    private String primarySymbolSet;
+    private String secondarySymbolSet;
+    private boolean secondaryFontActive;
+
+    /**
+     * Constructor of a {@link SymbolSetTracker} in the state after a "Printer Reset".
+     */
+    SymbolSetTracker() {
+        this.reset();
+    }
+
+    /**
+     * Constructor of a {@link SymbolSetTracker} in the given state.
+     *
+     * @param primarySymbolSet   the symbol set of the primary font (like "8U").
+     * @param secondarySymbolSet   the symbol set of the secondary font (like "8U").
+     * @param secondaryFontActive   true if the secondary font is active.
+     */
+    SymbolSetTracker(
+            final String primarySymbolSet,
+            final String secondarySymbolSet,
+            final boolean secondaryFontActive) {
+
+        this.primarySymbolSet = primarySymbolSet;
+        this.secondarySymbolSet = secondarySymbolSet;
+        this.secondaryFontActive = secondaryFontActive;
+    }
+
+    /**
+     * Returns the symbol set of the primary font.
+     *
+     * @return the symbol set of the primary font.
+     */
+    String getPrimarySymbolSet() {
+        return this.primarySymbolSet;
+    }
+
+    /**
+     * Returns the symbol set of the secondary font.
+     *
+     * @return the symbol set of the secondary font.
+     */
+    String getSecondarySymbolSet() {
+        return this.secondarySymbolSet;
+    }
+
+    /**
+     * Returns true if the secondary font is active.
+     *
+     * @return true if the secondary font is active.
+     */
+    boolean isSecondaryFontActive() {
+        return this.secondaryFontActive;
+    }
+
+    /**
+     * Returns the symbol set of the active font.
+     *
+     * @return the symbol set of the active font.
+     */
+    String getActiveSymbolSet() {
+        return this.secondaryFontActive ? this.secondarySymbolSet : this.primarySymbolSet;
+    }
+
+    /**
+     * Activates or deactivates the secondary font ("Shift Out" and "Shift In").
+     *
+     * @param secondaryFontActive   true if the secondary font is active.
+     */
+    void setSecondaryFontActive(final boolean secondaryFontActive) {
+        this.secondaryFontActive = secondaryFontActive;
+    }
+
+    /**
+     * Resets the symbol sets of the primary and the secondary font (after a "Printer Reset" or a
+     * "Universal Exit Language" command).
+     */
+    void reset() {
+        this.primarySymbolSet = SymbolSets.DEFAULT_SYMBOL_SET;
+        this.secondarySymbolSet = SymbolSets.DEFAULT_SYMBOL_SET;
+        this.secondaryFontActive = false;
+    }
+
+    /**
+     * Tracks the symbol set of the given PCL command.
+     *
+     * @param parameterizedCharacter   the parameterized character of the PCL command
+     * @param groupCharacter   the group character of the PCL command
+     * @param value   the value of the PCL command
+     * @param terminationCharacter   the termination character of the PCL command
+     */
+    void track(
+            final int parameterizedCharacter,
+            final int groupCharacter,
+            final String value,
+            final int terminationCharacter) {
+
+        if (groupCharacter != 0x00 || terminationCharacter == 'X'
+                || (parameterizedCharacter != '(' && parameterizedCharacter != ')')) {
+            return;
+        }
+
+        final String symbolSet = terminationCharacter == '@'
+                ? SymbolSets.DEFAULT_SYMBOL_SET
+                : ParameterizedPclCommand.toInt(value) + String.valueOf((char) terminationCharacter);
+
+        if (parameterizedCharacter == '(') {
+            this.primarySymbolSet = symbolSet;
+        } else {
+            this.secondarySymbolSet = symbolSet;
+        }
+    }
+
+    /**
+     * Tracks the given {@link PrinterCommand} as delivered by the {@link PclParser}. This includes the reset of
+     * the symbol sets by "Printer Reset" and "Universal Exit Language" commands.
+     *
+     * @param command   the {@link PrinterCommand}.
+     */
+    void track(final PrinterCommand command) {
+        if (command instanceof ParameterizedPclCommand) {
+            final ParameterizedPclCommand pc = (ParameterizedPclCommand) command;
+            if (pc.getParameterizedCharacter() == '%' && pc.getGroupCharacter() == 0x00
+                    && pc.getTerminationCharacter() == 'X' && pc.getValue().equals("-12345")) {
+                this.reset();
+            } else {
+                this.track(
+                        pc.getParameterizedCharacter(),
+                        pc.getGroupCharacter(),
+                        pc.getValue(),
+                        pc.getTerminationCharacter());
+            }
+
+        } else if (command instanceof CombinedPclCommand) {
+            final CombinedPclCommand cc = (CombinedPclCommand) command;
+            for (int ix = 0; ix < cc.getCommandCount(); ++ix) {
+                this.track(
+                        cc.getParameterizedCharacter(),
+                        cc.getGroupCharacter(),
+                        cc.getValue(ix),
+                        cc.getTerminationCharacter(ix));
+            }
+
+        } else if (command instanceof TwoBytePclCommand) {
+            if (((TwoBytePclCommand) command).getOperationCharacter() == 'E') {
+                this.reset();
+            }
+
+        } else if (command instanceof ControlCharacterCommand) {
+            final int controlCharacter = ((ControlCharacterCommand) command).getControlCharacter();
+            if (controlCharacter == ControlCharacterCommand.SHIFT_OUT) {
+                this.secondaryFontActive = true;
+            } else if (controlCharacter == ControlCharacterCommand.SHIFT_IN) {
+                this.secondaryFontActive = false;
+            }
+        }
+    }
+}
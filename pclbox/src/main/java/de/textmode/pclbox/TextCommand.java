@@ -18,7 +18,6 @@ package de.textmode.pclbox;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.nio.charset.Charset;
 import java.util.Arrays;
 
 /**
@@ -26,22 +25,39 @@ import java.util.Arrays;
  * is handled as a byte[] and not a string because decoding of the byte[] depends on
  * the text parsing method that (maybe) has been set by a "Text Parsing Method" PCL command
  * in the data stream (so the text may be encoded 8 Bit, UTF-8 or whatever).
+ *
+ * <p>The {@link PclParser} records the symbol set of the active font (primary or secondary, see
+ * <code>&lt;esc&gt;(#X</code>, <code>&lt;esc&gt;)#X</code>, SI and SO) in every {@link TextCommand}, so
+ * 8 bit text can be decoded with {@link #getDecodedText()}.
  */
 public final class TextCommand extends PrinterCommand {
 
-    private static final Charset ISO_8859_1 = Charset.forName("iso-8859-1");
-
     final byte[] text;
+    private final String symbolSet;
+    private final char[] decodeTable;
 
     /**
-     * Constructor of the {@link TextCommand}.
+     * Constructor of the {@link TextCommand}. The text uses the default symbol set (Roman-8).
      *
      * @param offset   position within the data stream
      * @param text  the text
      */
     public TextCommand(final long offset, final byte[] text) {
+        this(offset, text, SymbolSets.DEFAULT_SYMBOL_SET);
+    }
+
+    /**
+     * Constructor of the {@link TextCommand}.
+     *
+     * @param offset   position within the data stream
+     * @param text  the text
+     * @param symbolSet   the symbol set of the text as it is written in the PCL command "Symbol Set" (like "8U")
+     */
+    public TextCommand(final long offset, final byte[] text, final String symbolSet) {
         super(offset);
         this.text = text.clone();
+        this.symbolSet = symbolSet;
+        this.decodeTable = SymbolSets.getDecodeTable(symbolSet);
     }
 
     /**
@@ -55,6 +71,26 @@ public final class TextCommand extends PrinterCommand {
         return this.text.clone();
     }
 
+    /**
+     * Gets the symbol set of the text as it is written in the PCL command "Symbol Set" (like "8U").
+     *
+     * @return the symbol set of the text.
+     */
+    public String getSymbolSet() {
+        return this.symbolSet;
+    }
+
+    /**
+     * Gets the text decoded with the symbol set of the text (one character per byte). The returned
+     * {@link CharSequence} decodes the characters on access, so no {@link String} is created unless
+     * {@link CharSequence#toString()} is invoked. Text with an unknown symbol set is decoded as ISO 8859-1.
+     *
+     * @return the decoded text.
+     */
+    public CharSequence getDecodedText() {
+        return new DecodedText(this.text, 0, this.text.length, this.decodeTable);
+    }
+
     @Override
     public String getTextualDescription() {
         return "Printable text";
@@ -67,14 +103,16 @@ public final class TextCommand extends PrinterCommand {
 
     @Override
     public int hashCode() {
-        return Arrays.hashCode(this.getText()) ^ this.getOffsetHash();
+        return Arrays.hashCode(this.text) ^ this.getOffsetHash();
     }
 
     @Override
     public boolean equals(final Object other) {
         if (other instanceof TextCommand) {
             final TextCommand o = (TextCommand) other;
-            return Arrays.equals(o.getText(), this.getText()) && o.getOffset() == this.getOffset();
+            return Arrays.equals(o.text, this.text)
+                    && o.symbolSet.equals(this.symbolSet)
+                    && o.getOffset() == this.getOffset();
         } else {
             return false;
         }
@@ -82,7 +120,7 @@ public final class TextCommand extends PrinterCommand {
 
     @Override
     public String toString() {
-        return new String(this.getText(), ISO_8859_1) + "@" + this.getOffset();
+        return this.toDisplayString() + "@" + this.getOffset();
     }
 
     @Override
@@ -94,16 +132,64 @@ public final class TextCommand extends PrinterCommand {
 
     @Override
     public String toDisplayString() {
-        return new String(this.getText(), ISO_8859_1);
+        return this.getDecodedText().toString();
     }
 
     @Override
     public byte[] toByteArray() {
-        return this.getText().clone();
+        return this.text.clone();
     }
 
     @Override
     public void writeTo(final OutputStream out) throws IOException {
-        out.write(this.getText());
+        out.write(this.text);
+    }
+
+    /**
+     * A {@link CharSequence} that decodes the bytes of a text with a decode table on access.
+     */
+    private static final class DecodedText implements CharSequence {
+
+        private final byte[] text;
+        private final int start;
+        private final int length;
+        private final char[] decodeTable;
+
+        DecodedText(final byte[] text, final int start, final int length, final char[] decodeTable) {
+            this.text = text;
+            this.start = start;
+            this.length = length;
+            this.decodeTable = decodeTable;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= this.length) {
+                throw new IndexOutOfBoundsException("Invalid index " + index);
+            }
+            return this.decodeTable[this.text[this.start + index] & 0xFF];
+        }
+
+        @Override
+        public CharSequence subSequence(final int from, final int to) {
+            if (from < 0 || to > this.length || from > to) {
+                throw new IndexOutOfBoundsException("Invalid range " + from + " to " + to);
+            }
+            return new DecodedText(this.text, this.start + from, to - from, this.decodeTable);
+        }
+
+        @Override
+        public String toString() {
+            final char[] result = new char[this.length];
+            for (int i = 0; i < this.length; ++i) {
+                result[i] = this.decodeTable[this.text[this.start + i] & 0xFF];
+            }
+            return new String(result);
+        }
     }
 }
@@ -0,0 +1,102 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * The {@link TextExtractor} is a {@link PrinterCommandHandler} that extracts the text of a PCL data stream
+ * together with the page and the position where the text is printed. For every {@link TextCommand} a
+ * {@link TextRun} is passed to a {@link TextRunHandler}. The text is decoded with the decode table of the
+ * symbol set of the active font (see {@link SymbolSets}), so every byte is decoded by a single table lookup.
+ *
+ * <p>The cursor position and the fonts are maintained by an internal {@link PclStateInterpreter}, so the
+ * restrictions of the {@link PclStateInterpreter} apply (i. e. the position of text that follows
+ * proportional text is an approximation). The {@link TextRun} is reused for every {@link TextCommand} and
+ * the text is read from the {@link TextCommand} without copying it, so no objects are created while
+ * extracting text. Text within a macro definition is not extracted.
+ */
+public final class TextExtractor implements PrinterCommandHandler {
+
+    private final TextRunHandler runHandler;
+    private final PclStateInterpreter interpreter;
+    private final TextRun run = new TextRun();
+
+    private FontSelection lastFont;
+    private char[] decodeTable;
+
+    /**
+     * Constructor of a {@link TextExtractor}.
+     *
+     * @param runHandler   the {@link TextRunHandler} that is invoked for every extracted {@link TextRun}.
+     */
+    public TextExtractor(final TextRunHandler runHandler) {
+        this(runHandler, null);
+    }
+
+    /**
+     * Constructor of a {@link TextExtractor}.
+     *
+     * @param runHandler   the {@link TextRunHandler} that is invoked for every extracted {@link TextRun}.
+     * @param nextHandler   the {@link PrinterCommandHandler} that is invoked for every {@link PrinterCommand}
+     *     or <code>null</code>.
+     */
+    public TextExtractor(final TextRunHandler runHandler, final PrinterCommandHandler nextHandler) {
+        this.runHandler = runHandler;
+        this.interpreter = new PclStateInterpreter(nextHandler);
+    }
+
+    /**
+     * Returns the number of pages that have been started so far.
+     *
+     * @return the number of started pages.
+     */
+    public int getPageCount() {
+        return this.interpreter.getPageCount();
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        if (!(command instanceof TextCommand) || this.interpreter.isInMacroDefinition()) {
+            this.interpreter.handlePrinterCommand(command);
+            return;
+        }
+
+        // The position has to be taken before the text advances the cursor...
+        final PclState state = this.interpreter.getCurrentState();
+        final TextRun textRun = this.run;
+        textRun.offset = command.getOffset();
+        textRun.x = state.cursorX;
+        textRun.y = state.cursorY;
+
+        final FontSelection font = state.getActiveFont();
+        if (font != this.lastFont) {
+            this.lastFont = font;
+            this.decodeTable = SymbolSets.getDecodeTable(font.getSymbolSet());
+        }
+
+        textRun.symbolSet = font.getSymbolSet();
+        textRun.decode(((TextCommand) command).text, this.decodeTable);
+
+        this.interpreter.handlePrinterCommand(command);
+
+        // The text marks the page, so the page has been started by now...
+        textRun.pageNumber = this.interpreter.getPageCount();
+        textRun.endX = state.cursorX;
+        this.runHandler.handleTextRun(textRun);
+    }
+}
@@ -0,0 +1,284 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link TextIndex} is a full-text inverted index over the pages of many PCL files (jobs). For every term
+ * (a sequence of letters and digits, see {@link TextIndexWriter}) the index contains the pages that contain
+ * the term, so the pages that contain some words (i. e. an account number or a name) can be found without
+ * parsing the PCL files:
+ * <pre>
+ * final TextIndex index = TextIndex.add(directory, newPclFiles);
+ * for (final TextIndexHit hit : index.search("Jane Doe 4711")) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>The index is stored in a directory and consists of one or more segment files (with the extension
+ * "{@value #EXTENSION}", see {@link TextIndexSegment} for the format). The segment files are memory mapped,
+ * the terms are found by a binary search and the postings (job and page) are delta and variable length
+ * encoded. New jobs are added incrementally by writing a new segment, the existing segments are never
+ * modified. A segment is written to a temporary file first which is then renamed, so readers never see an
+ * incomplete segment. A {@link TextIndex} is immutable and thread safe; it does not see segments that have
+ * been added after it has been opened.
+ *
+ * <p>A PCL file that has been modified after it has been indexed is indexed again in a new segment. The job of
+ * the older segment is then superseded: it is tombstoned when the index is opened (the newest segment that
+ * contains a PCL file wins), so the search never returns pages of an outdated version of a PCL file.
+ */
+public final class TextIndex {
+
+    /**
+     * The extension of the segment files.
+     */
+    public static final String EXTENSION = ".pcltx";
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final List<TextIndexSegment> segments;
+
+    // The newest job of every PCL file (segment index in the upper 32 bits, job index in the lower 32 bits)...
+    private final Map<String, Long> jobs = new HashMap<>();
+
+    // The superseded jobs of every segment...
+    private final BitSet[] tombstones;
+
+    /**
+     * Constructor of the {@link TextIndex}.
+     */
+    private TextIndex(final List<TextIndexSegment> segments) {
+        this.segments = segments;
+        this.tombstones = new BitSet[segments.size()];
+
+        for (int segmentIndex = 0; segmentIndex < segments.size(); ++segmentIndex) {
+            final TextIndexSegment segment = segments.get(segmentIndex);
+            this.tombstones[segmentIndex] = new BitSet();
+            for (int jobIndex = 0; jobIndex < segment.getJobCount(); ++jobIndex) {
+                final Long previous = this.jobs.put(
+                        segment.getJobName(jobIndex),
+                        Long.valueOf(((long) segmentIndex << 32) | jobIndex));
+
+                if (previous != null) {
+                    this.tombstones[(int) (previous.longValue() >>> 32)].set((int) previous.longValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the index that is stored in the given directory. An empty index is returned if the directory
+     * does not contain any segment files.
+     *
+     * @param directory   the directory of the index.
+     *
+     * @return the {@link TextIndex}.
+     *
+     * @throws IOException if an I/O error occurs or a segment file is corrupt.
+     */
+    public static TextIndex open(final File directory) throws IOException {
+        final List<TextIndexSegment> segments = new ArrayList<>();
+        for (final File segmentFile : getSegmentFiles(directory)) {
+            segments.add(TextIndexSegment.load(segmentFile));
+        }
+        return new TextIndex(segments);
+    }
+
+    /**
+     * Adds the given PCL files to the index that is stored in the given directory. PCL files that are already
+     * contained in the index (same path, length and last modification) are skipped. All other PCL files are
+     * parsed and written to a new segment.
+     *
+     * @param directory   the directory of the index. The directory is created if it does not exist.
+     * @param pclFiles   the files that contain the PCL data streams.
+     *
+     * @return the {@link TextIndex} with the added PCL files.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public static TextIndex add(final File directory, final List<File> pclFiles) throws IOException, PclException {
+        Files.createDirectories(directory.toPath());
+        final TextIndex index = open(directory);
+
+        final TextIndexWriter writer = new TextIndexWriter();
+        for (final File pclFile : new LinkedHashSet<>(pclFiles)) {
+            if (!index.contains(pclFile)) {
+                writer.addJob(pclFile);
+            }
+        }
+
+        if (writer.getJobCount() == 0) {
+            return index;
+        }
+
+        final File[] existing = getSegmentFiles(directory);
+        final int next = existing.length == 0 ? 1 : getSegmentNumber(existing[existing.length - 1]) + 1;
+        final File segmentFile = new File(directory, String.format("%s%08d%s", SEGMENT_PREFIX, next, EXTENSION));
+        final File tempFile = new File(directory, segmentFile.getName() + ".tmp");
+        try {
+            writer.write(tempFile);
+            Files.move(tempFile.toPath(), segmentFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        final List<TextIndexSegment> segments = new ArrayList<>(index.segments);
+        segments.add(TextIndexSegment.load(segmentFile));
+        return new TextIndex(segments);
+    }
+
+    /**
+     * Returns the number of segments.
+     *
+     * @return the number of segments.
+     */
+    public int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * Returns the number of jobs (PCL files) of all segments. Jobs that have been superseded by a newer segment
+     * are not counted.
+     *
+     * @return the number of jobs.
+     */
+    public int getJobCount() {
+        return this.jobs.size();
+    }
+
+    /**
+     * Returns true if the given PCL file is contained in the index and has not been modified since it has
+     * been indexed.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @return true if the PCL file is contained in the index.
+     */
+    public boolean contains(final File pclFile) {
+        final Long job = this.jobs.get(pclFile.getPath());
+        if (job == null) {
+            return false;
+        }
+
+        final TextIndexSegment segment = this.segments.get((int) (job.longValue() >>> 32));
+        final int jobIndex = (int) job.longValue();
+        return segment.getJobLength(jobIndex) == pclFile.length()
+                && segment.getJobLastModified(jobIndex) == pclFile.lastModified();
+    }
+
+    /**
+     * Searches the pages that contain all terms of the given query. The query is split into terms just like
+     * the text of the PCL files (so the search is case insensitive and punctuation is ignored). The terms may
+     * appear anywhere on the page and in any order.
+     *
+     * @param query   the query (one or more words).
+     *
+     * @return the pages that contain all terms of the query, ordered by segment, job and page. Pages of
+     *     superseded jobs are not returned. The result is empty if the query does not contain a term.
+     */
+    public List<TextIndexHit> search(final String query) {
+        final List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextIndexWriter.toTerms(query)));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        final byte[][] keys = new byte[terms.size()][];
+        for (int ix = 0; ix < keys.length; ++ix) {
+            keys[ix] = terms.get(ix).getBytes(StandardCharsets.UTF_8);
+        }
+
+        final List<TextIndexHit> result = new ArrayList<>();
+        for (int segmentIndex = 0; segmentIndex < this.segments.size(); ++segmentIndex) {
+            final TextIndexSegment segment = this.segments.get(segmentIndex);
+            final BitSet superseded = this.tombstones[segmentIndex];
+
+            long[] postings = segment.getPostings(keys[0]);
+            for (int ix = 1; ix < keys.length && postings.length > 0; ++ix) {
+                postings = intersect(postings, segment.getPostings(keys[ix]));
+            }
+
+            for (final long posting : postings) {
+                final int jobIndex = (int) (posting >>> 32);
+                if (!superseded.get(jobIndex)) {
+                    result.add(new TextIndexHit(segment.getJobName(jobIndex), (int) posting));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the postings that are contained in both sorted arrays.
+     */
+    private static long[] intersect(final long[] a, final long[] b) {
+        final long[] result = new long[Math.min(a.length, b.length)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                ++i;
+            } else if (a[i] > b[j]) {
+                ++j;
+            } else {
+                result[count++] = a[i];
+                ++i;
+                ++j;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Returns the segment files of the given directory, ordered by their number.
+     */
+    private static File[] getSegmentFiles(final File directory) {
+        final File[] result = directory.listFiles(
+                file -> file.isFile() && file.getName().startsWith(SEGMENT_PREFIX)
+                        && file.getName().endsWith(EXTENSION));
+
+        if (result == null) {
+            return new File[0];
+        }
+
+        Arrays.sort(result, (a, b) -> Integer.compare(getSegmentNumber(a), getSegmentNumber(b)));
+        return result;
+    }
+
+    /**
+     * Returns the number of the given segment file.
+     */
+    private static int getSegmentNumber(final File segmentFile) {
+        final String name = segmentFile.getName();
+        return ParameterizedPclCommand.toInt(
+                name.substring(SEGMENT_PREFIX.length(), name.length() - EXTENSION.length()));
+    }
+}
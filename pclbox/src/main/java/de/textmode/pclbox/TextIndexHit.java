@@ -0,0 +1,90 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+
+/**
+ * A {@link TextIndexHit} is a page that has been found by {@link TextIndex#search(String)}. The page can be
+ * located within the PCL file with a {@link PageIndexFile}:
+ * <pre>
+ * final PageRange page = PageIndexFile.open(hit.getFile()).getPage(hit.getPageNumber());
+ * </pre>
+ */
+public final class TextIndexHit {
+
+    private final String jobName;
+    private final int pageNumber;
+
+    /**
+     * Constructor of a {@link TextIndexHit}.
+     *
+     * @param jobName   the name of the job (the path of the PCL file).
+     * @param pageNumber   the number of the page, starting with 1.
+     */
+    public TextIndexHit(final String jobName, final int pageNumber) {
+        this.jobName = jobName;
+        this.pageNumber = pageNumber;
+    }
+
+    /**
+     * Returns the name of the job (the path of the PCL file).
+     *
+     * @return the name of the job.
+     */
+    public String getJobName() {
+        return this.jobName;
+    }
+
+    /**
+     * Returns the PCL file of the job.
+     *
+     * @return the PCL file.
+     */
+    public File getFile() {
+        return new File(this.jobName);
+    }
+
+    /**
+     * Returns the number of the page, starting with 1.
+     *
+     * @return the number of the page.
+     */
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.jobName.hashCode() ^ this.pageNumber;
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        if (other instanceof TextIndexHit) {
+            final TextIndexHit o = (TextIndexHit) other;
+            return o.jobName.equals(this.jobName) && o.pageNumber == this.pageNumber;
+        } else {
+            return false;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.jobName + "@" + this.pageNumber;
+    }
+}
@@ -0,0 +1,305 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@link TextIndexSegment} is a memory mapped segment file of a {@link TextIndex}. A segment is written once
+ * by the {@link TextIndexWriter} and never modified, so new jobs are added to a {@link TextIndex} by writing
+ * a new segment.
+ *
+ * <p>The segment file consists of a header, the job table, the postings, the term table, the term data and a
+ * footer. All fixed size numbers are big endian, the postings are variable length integers (seven bits per
+ * byte, least significant group first, the high bit is set in all but the last byte):
+ * <pre>
+ * header     int     magic "PCLT"
+ *            int     version
+ *            int     number of jobs
+ *            int     number of terms
+ * job table  short   length of the name of the job (in bytes)
+ *            byte[]  name of the job (the path of the PCL file, UTF-8)
+ *            long    length of the PCL file
+ *            long    last modification of the PCL file
+ * postings   varint  number of postings of the term
+ *            varint  job delta (job index minus the job index of the previous posting)
+ *            varint  page number (minus the page number of the previous posting if the job delta is 0)
+ * term table int     position of the postings of the term
+ *            int     position of the term within the term data
+ *            int     length of the term (in bytes)
+ * term data  byte[]  the terms (UTF-8), sorted by their bytes (unsigned)
+ * footer     int     position of the term table
+ * </pre>
+ */
+final class TextIndexSegment {
+
+    static final int MAGIC = 0x50434C54;
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 16;
+    static final int TERM_ENTRY_SIZE = 12;
+    static final int FOOTER_SIZE = 4;
+
+    private static final long[] NO_POSTINGS = new long[0];
+
+    private final ByteBuffer buffer;
+    private final String[] jobNames;
+    private final long[] jobLengths;
+    private final long[] jobLastModified;
+    private final int termCount;
+    private final int termTable;
+    private final int termData;
+
+    /**
+     * Constructor of the {@link TextIndexSegment}.
+     */
+    private TextIndexSegment(final ByteBuffer buffer, final int jobCount, final int termCount, final int termTable) {
+        this.buffer = buffer;
+        this.jobNames = new String[jobCount];
+        this.jobLengths = new long[jobCount];
+        this.jobLastModified = new long[jobCount];
+        this.termCount = termCount;
+        this.termTable = termTable;
+        this.termData = termTable + termCount * TERM_ENTRY_SIZE;
+    }
+
+    /**
+     * Maps the given segment file.
+     *
+     * @param segmentFile   the segment file.
+     *
+     * @return the {@link TextIndexSegment}.
+     *
+     * @throws IOException if an I/O error occurs or the segment file is corrupt.
+     */
+    static TextIndexSegment load(final File segmentFile) throws IOException {
+        final ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segmentFile.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE + FOOTER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The segment file " + segmentFile + " is corrupt");
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        final int jobCount = buffer.getInt(8);
+        final int termCount = buffer.getInt(12);
+        final int termTable = buffer.getInt(buffer.capacity() - FOOTER_SIZE);
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || jobCount < 0 || termCount < 0
+                || termTable < HEADER_SIZE
+                || termTable + (long) termCount * TERM_ENTRY_SIZE > buffer.capacity() - FOOTER_SIZE) {
+
+            throw new IOException("The segment file " + segmentFile + " is corrupt");
+        }
+
+        final TextIndexSegment result = new TextIndexSegment(buffer, jobCount, termCount, termTable);
+        final ByteBuffer jobs = buffer.duplicate();
+        jobs.position(HEADER_SIZE);
+        for (int ix = 0; ix < jobCount; ++ix) {
+            final byte[] name = new byte[jobs.getShort() & 0xFFFF];
+            jobs.get(name);
+            result.jobNames[ix] = new String(name, StandardCharsets.UTF_8);
+            result.jobLengths[ix] = jobs.getLong();
+            result.jobLastModified[ix] = jobs.getLong();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of jobs of the segment.
+     *
+     * @return the number of jobs.
+     */
+    int getJobCount() {
+        return this.jobNames.length;
+    }
+
+    /**
+     * Returns the number of distinct terms of the segment.
+     *
+     * @return the number of terms.
+     */
+    int getTermCount() {
+        return this.termCount;
+    }
+
+    /**
+     * Returns the name of the job with the given index (the path of the PCL file).
+     *
+     * @param jobIndex   the index of the job within the segment, starting with 0.
+     *
+     * @return the name of the job.
+     */
+    String getJobName(final int jobIndex) {
+        return this.jobNames[jobIndex];
+    }
+
+    /**
+     * Returns the length of the PCL file of the job with the given index.
+     *
+     * @param jobIndex   the index of the job within the segment, starting with 0.
+     *
+     * @return the length of the PCL file.
+     */
+    long getJobLength(final int jobIndex) {
+        return this.jobLengths[jobIndex];
+    }
+
+    /**
+     * Returns the last modification of the PCL file of the job with the given index.
+     *
+     * @param jobIndex   the index of the job within the segment, starting with 0.
+     *
+     * @return the last modification of the PCL file.
+     */
+    long getJobLastModified(final int jobIndex) {
+        return this.jobLastModified[jobIndex];
+    }
+
+    /**
+     * Returns the postings of the given term. Every posting contains the job index (upper 32 bits) and the
+     * page number (lower 32 bits), so the postings are sorted by job and page.
+     *
+     * @param term   the term (UTF-8).
+     *
+     * @return the postings or an empty array if the segment does not contain the term.
+     */
+    long[] getPostings(final byte[] term) {
+        final int entry = this.findTerm(term);
+        if (entry < 0) {
+            return NO_POSTINGS;
+        }
+
+        final ByteBuffer buf = this.buffer.duplicate();
+        buf.position(this.buffer.getInt(this.termTable + entry * TERM_ENTRY_SIZE));
+
+        final int count = readVarInt(buf);
+        final long[] result = new long[count];
+
+        int job = 0;
+        int page = 0;
+        for (int ix = 0; ix < count; ++ix) {
+            final int jobDelta = readVarInt(buf);
+            final int pageValue = readVarInt(buf);
+            job += jobDelta;
+            page = jobDelta == 0 ? page + pageValue : pageValue;
+            result[ix] = ((long) job << 32) | page;
+        }
+
+        return result;
+    }
+
+    /**
+     * Searches the term table (binary search) for the given term.
+     *
+     * @return the index of the term within the term table or -1 if the segment does not contain the term.
+     */
+    private int findTerm(final byte[] term) {
+        int low = 0;
+        int high = this.termCount - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = this.compareTerm(mid, term);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Compares the term with the given index within the term table with the given term (unsigned bytes).
+     */
+    private int compareTerm(final int entry, final byte[] term) {
+        final int pos = this.termTable + entry * TERM_ENTRY_SIZE;
+        final int start = this.termData + this.buffer.getInt(pos + 4);
+        final int length = this.buffer.getInt(pos + 8);
+
+        final int common = Math.min(length, term.length);
+        for (int i = 0; i < common; ++i) {
+            final int cmp = (this.buffer.get(start + i) & 0xFF) - (term[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return length - term.length;
+    }
+
+    /**
+     * Compares the given terms (unsigned bytes). This is the order of the term table.
+     *
+     * @param a   the first term (UTF-8).
+     * @param b   the second term (UTF-8).
+     *
+     * @return a negative number, zero or a positive number if the first term is less than, equal to or greater
+     *     than the second term.
+     */
+    static int compareTerms(final byte[] a, final byte[] b) {
+        final int common = Math.min(a.length, b.length);
+        for (int i = 0; i < common; ++i) {
+            final int cmp = (a[i] & 0xFF) - (b[i] & 0xFF);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Writes a variable length integer (seven bits per byte, the high bit is set in all but the last byte).
+     *
+     * @param out   the {@link DataOutput} to write to.
+     * @param value   the value to write (must not be negative).
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    static void writeVarInt(final DataOutput out, final int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.write((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.write(remaining);
+    }
+
+    /**
+     * Reads a variable length integer at the current position of the given {@link ByteBuffer}.
+     */
+    private static int readVarInt(final ByteBuffer buf) {
+        int result = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = buf.get();
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return result;
+    }
+}
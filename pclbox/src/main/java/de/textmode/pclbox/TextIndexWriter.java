@@ -0,0 +1,336 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link TextIndexWriter} builds a segment of a {@link TextIndex}. The text of every added job is extracted
+ * by a {@link TextExtractor} and split into terms (see {@link #toTerms(CharSequence)}). For every term the pages
+ * (job and page number) that contain the term are recorded.
+ *
+ * <p>Text runs that continue the previous text run (same page, same line and starting where the previous text
+ * run ended) are joined, so a word that is split into several text runs (i. e. because of a font change) is
+ * recorded as one term.
+ *
+ * <p>The {@link TextIndexWriter} is usually not used directly but by {@link TextIndex#add(File, List)}.
+ */
+public final class TextIndexWriter implements TextRunHandler {
+
+    /**
+     * Terms that are longer than this are not indexed.
+     */
+    static final int MAX_TERM_LENGTH = 64;
+
+    private static final DataSectionFilter SKIP_ALL_DATA_SECTIONS = (p, g, t) -> false;
+
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final List<String> jobNames = new ArrayList<>();
+    private long[] jobFiles = new long[32];
+    private final StringBuilder term = new StringBuilder();
+
+    private boolean inJob;
+    private int pageNumber;
+    private double lastY;
+    private double lastEndX;
+
+    /**
+     * Parses the given PCL file and adds its text to the segment. The path of the PCL file is used as the
+     * name of the job.
+     *
+     * @param pclFile   the file that contains the PCL data stream.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public void addJob(final File pclFile) throws IOException, PclException {
+        this.startJob(pclFile.getPath(), pclFile.length(), pclFile.lastModified());
+        try (PclParser parser = new PclParser(pclFile, new TextExtractor(this))) {
+            // The text does not depend on any data section (raster graphics, fonts and so on)...
+            parser.setCombineSequences(true);
+            parser.setDataSectionFilter(SKIP_ALL_DATA_SECTIONS);
+            parser.parse();
+        }
+        this.endJob();
+    }
+
+    /**
+     * Starts a new job. All {@link TextRun} objects that are passed to {@link #handleTextRun(TextRun)} until
+     * {@link #endJob()} is invoked belong to this job.
+     *
+     * @param name   the name of the job (usually the path of the PCL file).
+     * @param length   the length of the PCL file.
+     * @param lastModified   the time of the last modification of the PCL file.
+     */
+    public void startJob(final String name, final long length, final long lastModified) {
+        if (this.inJob) {
+            throw new IllegalStateException("The previous job has not been ended");
+        }
+
+        final int ix = this.jobNames.size();
+        if (2 * ix == this.jobFiles.length) {
+            this.jobFiles = Arrays.copyOf(this.jobFiles, this.jobFiles.length * 2);
+        }
+
+        this.jobNames.add(name);
+        this.jobFiles[2 * ix] = length;
+        this.jobFiles[2 * ix + 1] = lastModified;
+        this.inJob = true;
+        this.pageNumber = 0;
+    }
+
+    /**
+     * Ends the current job.
+     */
+    public void endJob() {
+        this.addTerm();
+        this.inJob = false;
+    }
+
+    /**
+     * Returns the number of added jobs.
+     *
+     * @return the number of added jobs.
+     */
+    public int getJobCount() {
+        return this.jobNames.size();
+    }
+
+    /**
+     * Returns the number of distinct terms.
+     *
+     * @return the number of distinct terms.
+     */
+    public int getTermCount() {
+        return this.postings.size();
+    }
+
+    @Override
+    public void handleTextRun(final TextRun run) {
+        if (!this.inJob) {
+            throw new IllegalStateException("No job has been started");
+        }
+
+        if (run.getPageNumber() != this.pageNumber
+                || run.getY() != this.lastY
+                || Math.abs(run.getX() - this.lastEndX) > 0.5) {
+
+            this.addTerm();
+        }
+
+        this.pageNumber = run.getPageNumber();
+        this.lastY = run.getY();
+        this.lastEndX = run.getEndX();
+
+        final int length = run.length();
+        for (int i = 0; i < length; ++i) {
+            final char c = run.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                this.term.append(Character.toLowerCase(c));
+            } else {
+                this.addTerm();
+            }
+        }
+    }
+
+    /**
+     * Writes the segment to the given file.
+     *
+     * @param segmentFile   the file to be written.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void write(final File segmentFile) throws IOException {
+        try (OutputStream out = new FileOutputStream(segmentFile)) {
+            this.writeTo(out);
+        }
+    }
+
+    /**
+     * Writes the segment to the given {@link OutputStream}. The format is described at
+     * {@link TextIndexSegment}.
+     *
+     * @param out   the {@link OutputStream} the segment is written to. The {@link OutputStream} is not closed.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        if (this.inJob) {
+            throw new IllegalStateException("The current job has not been ended");
+        }
+
+        // The terms are sorted by their UTF-8 bytes, so the term table can be searched without decoding...
+        final int termCount = this.postings.size();
+        final byte[][] terms = new byte[termCount][];
+        final Postings[] termPostings = new Postings[termCount];
+        int ix = 0;
+        for (final Postings p : this.postings.values()) {
+            terms[ix] = p.term;
+            termPostings[ix++] = p;
+        }
+
+        final Integer[] order = new Integer[termCount];
+        for (int i = 0; i < termCount; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> TextIndexSegment.compareTerms(terms[a], terms[b]));
+
+        final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+        data.writeInt(TextIndexSegment.MAGIC);
+        data.writeInt(TextIndexSegment.VERSION);
+        data.writeInt(this.jobNames.size());
+        data.writeInt(termCount);
+
+        for (int job = 0; job < this.jobNames.size(); ++job) {
+            final byte[] name = this.jobNames.get(job).getBytes(StandardCharsets.UTF_8);
+            if (name.length > 0xFFFF) {
+                throw new IOException("The name of the job " + this.jobNames.get(job) + " is too long");
+            }
+            data.writeShort(name.length);
+            data.write(name);
+            data.writeLong(this.jobFiles[2 * job]);
+            data.writeLong(this.jobFiles[2 * job + 1]);
+        }
+
+        final int[] positions = new int[termCount];
+        for (int i = 0; i < termCount; ++i) {
+            positions[i] = data.size();
+            termPostings[order[i]].writeTo(data);
+        }
+
+        final int termTable = data.size();
+        int termPosition = 0;
+        for (int i = 0; i < termCount; ++i) {
+            data.writeInt(positions[i]);
+            data.writeInt(termPosition);
+            data.writeInt(terms[order[i]].length);
+            termPosition += terms[order[i]].length;
+        }
+
+        for (int i = 0; i < termCount; ++i) {
+            data.write(terms[order[i]]);
+        }
+
+        // DataOutputStream.size() sticks at Integer.MAX_VALUE if more bytes have been written...
+        if (data.size() >= Integer.MAX_VALUE - TextIndexSegment.FOOTER_SIZE) {
+            throw new IOException("The segment is too large, add less jobs per segment");
+        }
+
+        data.writeInt(termTable);
+        data.flush();
+    }
+
+    /**
+     * Splits the given text into terms. A term is a sequence of letters and digits, converted to lower case.
+     * Terms that are longer than {@value #MAX_TERM_LENGTH} characters are dropped.
+     *
+     * @param text   the text.
+     *
+     * @return the terms of the text.
+     */
+    static List<String> toTerms(final CharSequence text) {
+        final List<String> result = new ArrayList<>();
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i <= text.length(); ++i) {
+            final char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(Character.toLowerCase(c));
+            } else if (sb.length() > 0) {
+                if (sb.length() <= MAX_TERM_LENGTH) {
+                    result.add(sb.toString());
+                }
+                sb.setLength(0);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records the collected term for the current page.
+     */
+    private void addTerm() {
+        final int length = this.term.length();
+        if (length == 0) {
+            return;
+        }
+
+        if (length <= MAX_TERM_LENGTH) {
+            final String key = this.term.toString();
+            Postings p = this.postings.get(key);
+            if (p == null) {
+                p = new Postings(key.getBytes(StandardCharsets.UTF_8));
+                this.postings.put(key, p);
+            }
+            p.add(this.jobNames.size() - 1, this.pageNumber);
+        }
+
+        this.term.setLength(0);
+    }
+
+    /**
+     * The postings (job index and page number) of a term. The postings are stored in ascending order
+     * without duplicates because jobs and pages are added in ascending order.
+     */
+    private static final class Postings {
+
+        private final byte[] term;
+        private int[] values = new int[4];
+        private int size;
+
+        Postings(final byte[] term) {
+            this.term = term;
+        }
+
+        void add(final int job, final int page) {
+            if (this.size > 0 && this.values[this.size - 2] == job && this.values[this.size - 1] == page) {
+                return;
+            }
+
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.size * 2);
+            }
+            this.values[this.size++] = job;
+            this.values[this.size++] = page;
+        }
+
+        void writeTo(final DataOutputStream out) throws IOException {
+            TextIndexSegment.writeVarInt(out, this.size / 2);
+
+            int lastJob = 0;
+            int lastPage = 0;
+            for (int ix = 0; ix < this.size; ix += 2) {
+                final int job = this.values[ix];
+                final int page = this.values[ix + 1];
+                TextIndexSegment.writeVarInt(out, job - lastJob);
+                TextIndexSegment.writeVarInt(out, job == lastJob ? page - lastPage : page);
+                lastJob = job;
+                lastPage = page;
+            }
+        }
+    }
+}
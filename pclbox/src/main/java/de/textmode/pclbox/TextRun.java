@@ -0,0 +1,141 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * A {@link TextRun} contains the decoded text of a {@link TextCommand} together with the page and the
+ * position where the text is printed. The {@link TextRun} and its character buffer are reused by the
+ * {@link TextExtractor} for every text command, so no objects are created while extracting text. Use
+ * {@link #toString()} to get a copy of the text.
+ */
+public final class TextRun implements CharSequence {
+
+    long offset;
+    int pageNumber;
+    double x;
+    double y;
+    double endX;
+    String symbolSet;
+    char[] chars = new char[256];
+    int length;
+
+    /**
+     * Constructor. Only the {@link TextExtractor} creates {@link TextRun} objects.
+     */
+    TextRun() {
+    }
+
+    /**
+     * Gets the offset of the {@link TextCommand}, measured from the beginning of the read data stream.
+     *
+     * @return the offset of the {@link TextCommand}.
+     */
+    public long getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the number of the page the text is printed on, starting with 1.
+     *
+     * @return the number of the page.
+     */
+    public int getPageNumber() {
+        return this.pageNumber;
+    }
+
+    /**
+     * Gets the horizontal position of the first character in decipoints (1/720 inch), measured from the
+     * left edge of the logical page.
+     *
+     * @return the horizontal position of the text.
+     */
+    public double getX() {
+        return this.x;
+    }
+
+    /**
+     * Gets the horizontal position of the cursor after the text in decipoints (1/720 inch), measured from the
+     * left edge of the logical page. A following {@link TextRun} that starts at this position (on the same
+     * line) continues the text.
+     *
+     * @return the horizontal position after the text.
+     */
+    public double getEndX() {
+        return this.endX;
+    }
+
+    /**
+     * Gets the vertical position of the base line in decipoints (1/720 inch), measured from the top edge of
+     * the logical page.
+     *
+     * @return the vertical position of the text.
+     */
+    public double getY() {
+        return this.y;
+    }
+
+    /**
+     * Gets the symbol set that has been used to decode the text (like "8U").
+     *
+     * @return the symbol set of the active font.
+     */
+    public String getSymbolSet() {
+        return this.symbolSet;
+    }
+
+    @Override
+    public int length() {
+        return this.length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        if (index < 0 || index >= this.length) {
+            throw new IndexOutOfBoundsException("Invalid index " + index);
+        }
+        return this.chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || end > this.length || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range " + start + " to " + end);
+        }
+        return new String(this.chars, start, end - start);
+    }
+
+    /**
+     * Decodes the given text with the given decode table into the character buffer.
+     */
+    void decode(final byte[] text, final char[] decodeTable) {
+        final int count = text.length;
+        if (this.chars.length < count) {
+            this.chars = new char[Math.max(count, this.chars.length * 2)];
+        }
+
+        final char[] buffer = this.chars;
+        for (int i = 0; i < count; ++i) {
+            buffer[i] = decodeTable[text[i] & 0xFF];
+        }
+        this.length = count;
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.chars, 0, this.length);
+    }
+}
@@ -0,0 +1,35 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+/**
+ * This is the handler interface for every text run that has been extracted by the {@link TextExtractor}.
+ */
+public interface TextRunHandler {
+
+    /**
+     * Handles the extracted {@link TextRun}. Note that the {@link TextRun} (and its character buffer) is reused
+     * by the {@link TextExtractor}, so it is only valid until this method returns.
+     *
+     * @param run   the extracted {@link TextRun}.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    void handleTextRun(final TextRun run) throws IOException;
+}
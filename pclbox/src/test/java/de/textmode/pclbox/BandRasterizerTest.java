@@ -0,0 +1,168 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link BandRasterizer}.
+ */
+public final class BandRasterizerTest extends TestCase implements PageBitmapHandler {
+
+    private final List<String> pages = new ArrayList<>();
+    private final List<int[]> probes = new ArrayList<>();
+    private final List<String> probeResults = new ArrayList<>();
+
+    @Override
+    public void handlePageBitmap(final PageBitmap bitmap) {
+        this.pages.add(bitmap.getWidth() + "x" + bitmap.getHeight() + ":" + countPixels(bitmap));
+
+        final StringBuilder sb = new StringBuilder();
+        for (final int[] probe : this.probes) {
+            sb.append(bitmap.isSet(probe[0], probe[1]) ? '1' : '0');
+        }
+        this.probeResults.add(sb.toString());
+    }
+
+    /**
+     * Counts the set pixels of a {@link PageBitmap}.
+     */
+    private static int countPixels(final PageBitmap bitmap) {
+        final ByteBuffer buffer = bitmap.getBuffer();
+        int result = 0;
+        while (buffer.hasRemaining()) {
+            result += Integer.bitCount(buffer.get() & 0xFF);
+        }
+        return result;
+    }
+
+    /**
+     * Registers a pixel whose state is recorded for every rendered page.
+     */
+    private void probe(final int x, final int y) {
+        this.probes.add(new int[] {x, y});
+    }
+
+    /**
+     * Parses the given PCL data stream and passes it to a {@link BandRasterizer} with 300 dpi.
+     */
+    private void render(final String pcl) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (final BandRasterizer rasterizer = new BandRasterizer(this, executor, 300)) {
+            final byte[] data = pcl.getBytes(StandardCharsets.ISO_8859_1);
+            new PclParser(new ByteArrayInputStream(data), rasterizer).parse();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Checks a solid rule positioned in PCL units.
+     */
+    public void testRule() throws Exception {
+        this.probe(300, 300);
+        this.probe(329, 319);
+        this.probe(299, 300);
+        this.probe(330, 300);
+        this.probe(300, 320);
+
+        this.render("\u001B*p300x300Y\u001B*c30a20b0P\f");
+
+        assertEquals("[2550x3300:600]", this.pages.toString());
+        assertEquals("[11000]", this.probeResults.toString());
+    }
+
+    /**
+     * Checks a rule that is higher than a band (so it is rendered by multiple tasks) and a rule
+     * positioned and sized in decipoints.
+     */
+    public void testLargeRule() throws Exception {
+        this.render("\u001B*p0x0Y\u001B*c2550a3300b0P\f\u001B&a720h720V\u001B*c72h144v0P\f");
+
+        assertEquals("[2550x3300:8415000, 2550x3300:1800]", this.pages.toString());
+    }
+
+    /**
+     * Checks that an erase fill clears pixels and that shading and cross-hatch patterns are applied.
+     */
+    public void testErasePatternFills() throws Exception {
+        this.render("\u001B*p0x0Y\u001B*c80a80b0P\u001B*p8x8Y\u001B*c8a8b1P\f"
+                + "\u001B*p0x0Y\u001B*c64a64b100g2P\u001B*c1g2P\f"
+                + "\u001B*p0x0Y\u001B*c64a64b1g3P\f");
+
+        assertEquals("[2550x3300:6336, 2550x3300:4096, 2550x3300:512]", this.pages.toString());
+    }
+
+    /**
+     * Checks unscaled raster graphics at the current cursor position.
+     */
+    public void testRaster() throws Exception {
+        this.probe(100, 200);
+        this.probe(103, 200);
+        this.probe(104, 200);
+        this.probe(115, 201);
+        this.probe(100, 202);
+
+        this.render("\u001B*t300R\u001B*p100x200Y\u001B*r1A\u001B*b1Wð\u001B*b2W\u0000\u0001\u001B*rB\f");
+
+        assertEquals("[2550x3300:5]", this.pages.toString());
+        assertEquals("[11010]", this.probeResults.toString());
+    }
+
+    /**
+     * Checks scaled raster graphics (75 dpi raster graphics are the default).
+     */
+    public void testScaledRaster() throws Exception {
+        this.probe(0, 200);
+        this.probe(15, 203);
+        this.probe(16, 200);
+        this.probe(0, 204);
+
+        this.render("\u001B*p100x200Y\u001B*b1Wð\f");
+
+        assertEquals("[2550x3300:64]", this.pages.toString());
+        assertEquals("[1100]", this.probeResults.toString());
+    }
+
+    /**
+     * Checks when pages are ejected.
+     */
+    public void testPageEject() throws Exception {
+        this.render("\u001BE\u001B&l0O\f\u001BE\u001B*c1a1b0P\u001BE\u001B*c1a1b0P\u001B&l1O"
+                + "\u001B*c1a1b0P\u001B%-12345X\u001BEText");
+
+        assertEquals("[2550x3300:0, 2550x3300:1, 2550x3300:1, 3300x2550:1, 2550x3300:0]", this.pages.toString());
+    }
+
+    /**
+     * Checks the page size and orientation.
+     */
+    public void testPageSize() throws Exception {
+        this.render("\u001B&l26A\f\u001B&l3a1O\f");
+
+        assertEquals("[2480x3508:0, 4200x2550:0]", this.pages.toString());
+    }
+}
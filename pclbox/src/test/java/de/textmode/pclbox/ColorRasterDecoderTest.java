@@ -0,0 +1,169 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link ColorRasterDecoder}.
+ */
+public final class ColorRasterDecoderTest extends TestCase implements ColorScanlineHandler {
+
+    private final List<String> scanlines = new ArrayList<>();
+    private final ColorRasterDecoder decoder = new ColorRasterDecoder(this);
+
+    @Override
+    public void handleScanline(final ColorScanline scanline) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(scanline.getRowIndex()).append(scanline.isIndexed() ? "i:" : ":");
+        for (int x = 0; x < scanline.getWidth(); ++x) {
+            if (x > 0) {
+                sb.append(',');
+            }
+            if (scanline.isIndexed()) {
+                sb.append(scanline.getIndex(x)).append('=');
+            }
+            sb.append(String.format("%06X", scanline.getRgb(x)));
+        }
+        this.scanlines.add(sb.toString());
+    }
+
+    /**
+     * Passes a PCL command to the {@link ColorRasterDecoder}.
+     */
+    private void send(final int group, final String value, final int termination) throws Exception {
+        this.decoder.handlePrinterCommand(new ParameterizedPclCommand(0, '*', group, value, termination));
+    }
+
+    /**
+     * Passes a PCL command with a data section to the {@link ColorRasterDecoder}.
+     */
+    private void send(final int group, final int termination, final int... data) throws Exception {
+        final byte[] bytes = new byte[data.length];
+        for (int ix = 0; ix < data.length; ++ix) {
+            bytes[ix] = (byte) data[ix];
+        }
+        this.decoder.handlePrinterCommand(
+                new ParameterizedPclCommand(0, '*', group, Integer.toString(bytes.length), termination, bytes));
+    }
+
+    /**
+     * Checks the default (monochrome) palette.
+     */
+    public void testMonochrome() throws Exception {
+        this.send('r', "4", 'S');
+        this.send('b', 'W', 0xA0);
+
+        assertEquals(2, this.decoder.getPaletteSize());
+        assertEquals("[0i:1=000000,0=FFFFFF,1=000000,0=FFFFFF]", this.scanlines.toString());
+    }
+
+    /**
+     * Checks the simple color modes RGB and CMY (three planes, indexed by plane).
+     */
+    public void testSimpleColor() throws Exception {
+        this.send('r', "3", 'U');
+        this.send('r', "3", 'S');
+        this.send('b', 'V', 0x80);
+        this.send('b', 'V', 0xC0);
+        this.send('b', 'W', 0x40);
+        this.send('r', "", 'B');
+
+        this.send('r', "-3", 'U');
+        this.send('b', 'V', 0xE0);
+        this.send('b', 'V', 0x60);
+        this.send('b', 'W', 0x20);
+
+        assertEquals("[0i:3=FFFF00,6=00FFFF,0=000000, 0i:1=00FFFF,3=0000FF,7=000000]", this.scanlines.toString());
+    }
+
+    /**
+     * Checks "Configure Image Data" with indexed by pixel, palette assignments and push/pop palette.
+     */
+    public void testIndexedByPixel() throws Exception {
+        this.send('v', 'W', 0, 1, 4, 8, 8, 8);
+        assertEquals(16, this.decoder.getPaletteSize());
+
+        this.send('p', "0", 'P');
+        this.send('v', "255", 'A');
+        this.send('v', "127.5", 'B');
+        this.send('v', "15", 'I');
+        this.send('b', 'W', 0x12, 0x3F);
+        this.send('p', "1", 'P');
+        this.send('b', 'W', 0x0F);
+
+        assertEquals("[0i:1=FF0000,2=00FF00,3=FFFF00,15=FF8000, 1i:0=000000,15=000000,0=000000,0=000000]",
+                this.scanlines.toString());
+    }
+
+    /**
+     * Checks "Configure Image Data" with direct by pixel (RGB) and direct by plane (CMY).
+     */
+    public void testDirect() throws Exception {
+        this.send('v', 'W', 0, 3, 8, 8, 8, 8);
+        this.send('b', 'W', 0x12, 0x34, 0x56, 0xFF, 0x00, 0x80);
+        this.send('r', "", 'C');
+
+        this.send('v', 'W', 1, 2, 1, 1, 1, 1);
+        this.send('r', "2", 'S');
+        this.send('b', 'V', 0x80);
+        this.send('b', 'V', 0x80);
+        this.send('b', 'W', 0xC0);
+
+        assertEquals("[0:123456,FF0080, 0:000000,FFFF00]", this.scanlines.toString());
+    }
+
+    /**
+     * Checks "Configure Image Data" with direct by pixel and other than eight bits per primary.
+     */
+    public void testDirectByPixelWithBitsPerPrimary() throws Exception {
+        this.send('v', 'W', 0, 3, 8, 4, 4, 4);
+        this.send('r', "2", 'S');
+        this.send('b', 'W', 0xF8, 0x0F, 0x30);
+        this.send('r', "", 'C');
+
+        this.send('v', 'W', 1, 3, 8, 2, 3, 3);
+        this.send('b', 'W', 0xC0);
+        this.send('r', "", 'C');
+
+        this.send('v', 'W', 0, 3, 8, 16, 16, 16);
+        this.send('b', 'W', 0xFF, 0xFF, 0x80, 0x00, 0x00, 0x00);
+
+        assertEquals("[0:FF8800,FF3300, 0:00FFFF,FFFFFF, 0:FF8000,000000]", this.scanlines.toString());
+    }
+
+    /**
+     * Checks that a "Printer Reset" restores the monochrome palette and that "Configure Image Data" is ignored
+     * while raster graphics are active.
+     */
+    public void testReset() throws Exception {
+        this.send('v', 'W', 0, 1, 8, 8, 8, 8);
+        this.send('r', "1", 'A');
+        this.send('v', 'W', 0, 3, 8, 8, 8, 8);
+        this.send('b', 'W', 0x07);
+        assertEquals(256, this.decoder.getPaletteSize());
+
+        this.decoder.handlePrinterCommand(new TwoBytePclCommand(0, 'E'));
+        assertEquals(2, this.decoder.getPaletteSize());
+        assertEquals(0xFFFFFF, this.decoder.getPaletteColor(0));
+        assertEquals("[0i:7=FFFFFF]", this.scanlines.toString());
+    }
+}
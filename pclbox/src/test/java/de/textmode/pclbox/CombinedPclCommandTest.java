@@ -0,0 +1,128 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link CombinedPclCommand}.
+ */
+public final class CombinedPclCommandTest extends TestCase {
+
+    private static final CombinedPclCommand PAGE_SETUP = new CombinedPclCommand(
+            10, '&', 'l', new String[] { "1", "2", "" }, new int[] { 'O', 'A', 'E' }, null);
+
+    private static final CombinedPclCommand RASTER_ROW = new CombinedPclCommand(
+            0, '*', 'b', new String[] { "2", "3" }, new int[] { 'M', 'W' }, new byte[] { 0x01, 0x02, 0x03 });
+
+    /**
+     * Checks the getters for the single commands of the sequence.
+     */
+    public void testGetters() {
+        assertEquals('&', PAGE_SETUP.getParameterizedCharacter());
+        assertEquals('l', PAGE_SETUP.getGroupCharacter());
+        assertEquals(3, PAGE_SETUP.getCommandCount());
+        assertEquals("1", PAGE_SETUP.getValue(0));
+        assertEquals("0", PAGE_SETUP.getValue(2));
+        assertEquals('A', PAGE_SETUP.getTerminationCharacter(1));
+        assertEquals(10, PAGE_SETUP.getCommandOffset(0));
+        assertEquals(15, PAGE_SETUP.getCommandOffset(1));
+        assertEquals(17, PAGE_SETUP.getCommandOffset(2));
+        assertNull(PAGE_SETUP.getDataSection());
+
+        assertTrue(Arrays.equals(new byte[] { 0x01, 0x02, 0x03 }, RASTER_ROW.getDataSection()));
+    }
+
+    /**
+     * Checks that the sequence can be splitted into {@link ParameterizedPclCommand} objects.
+     */
+    public void testToParameterizedPclCommands() {
+        assertEquals(
+                Arrays.asList(
+                        new ParameterizedPclCommand(10, '&', 'l', "1", 'O'),
+                        new ParameterizedPclCommand(15, '&', 'l', "2", 'A'),
+                        new ParameterizedPclCommand(17, '&', 'l', "0", 'E')),
+                PAGE_SETUP.toParameterizedPclCommands());
+
+        assertEquals(
+                Arrays.asList(
+                        new ParameterizedPclCommand(0, '*', 'b', "2", 'M'),
+                        new ParameterizedPclCommand(5, '*', 'b', "3", 'W', new byte[] { 0x01, 0x02, 0x03 })),
+                RASTER_ROW.toParameterizedPclCommands());
+    }
+
+    /**
+     * Checks the method equals.
+     */
+    public void testEquals() {
+        assertFalse(PAGE_SETUP.equals("DUMMY"));
+        assertFalse(PAGE_SETUP.equals(RASTER_ROW));
+        assertTrue(PAGE_SETUP.equals(new CombinedPclCommand(
+                10, '&', 'l', new String[] { "1", "2", "" }, new int[] { 'O', 'A', 'E' }, null)));
+        assertFalse(PAGE_SETUP.equals(new CombinedPclCommand(
+                11, '&', 'l', new String[] { "1", "2", "" }, new int[] { 'O', 'A', 'E' }, null)));
+        assertFalse(PAGE_SETUP.equals(new CombinedPclCommand(
+                10, '&', 'l', new String[] { "1", "2", "" }, new int[] { 'O', 'A', 'F' }, null)));
+    }
+
+    /**
+     * Checks the methods toString, toCommandString, toDisplayString and getTextualDescription.
+     */
+    public void testStrings() {
+        assertEquals("<esc>&l1o2aE@10", PAGE_SETUP.toString());
+        assertEquals("&lOAE", PAGE_SETUP.toCommandString());
+        assertEquals("&l1o2aE", PAGE_SETUP.toDisplayString());
+        assertEquals("Page Orientation, Page Size, Top Margin", PAGE_SETUP.getTextualDescription());
+    }
+
+    /**
+     * Checks the method toByteArray and writeTo.
+     */
+    public void testToBinary() throws Exception {
+        final byte[] expected = new byte[] { 0x1B, '*', 'b', '2', 'm', '3', 'W', 0x01, 0x02, 0x03 };
+        assertTrue(Arrays.equals(expected, RASTER_ROW.toByteArray()));
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        RASTER_ROW.writeTo(baos);
+        assertTrue(Arrays.equals(expected, baos.toByteArray()));
+    }
+
+    /**
+     * Checks that the public constructor copies the arrays and that the package private constructor takes
+     * ownership of them.
+     */
+    public void testOwnership() {
+        final String[] values = new String[] { "2", "3" };
+        final int[] terminationCharacters = new int[] { 'M', 'W' };
+        final byte[] data = new byte[] { 0x01, 0x02, 0x03 };
+
+        final CombinedPclCommand copied = new CombinedPclCommand(0, '*', 'b', values, terminationCharacters, data);
+        final CombinedPclCommand owned = new CombinedPclCommand(
+                0, '*', 'b', values, terminationCharacters, data, false);
+
+        assertNotSame(data, copied.getDataSectionWithoutCopy());
+        assertSame(data, owned.getDataSectionWithoutCopy());
+        assertSame(data, owned.getCommand(1).getDataSectionWithoutCopy());
+        assertEquals(copied, owned);
+
+        values[0] = "5";
+        assertEquals("2", copied.getValue(0));
+    }
+}
@@ -0,0 +1,107 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link CoverageAnalyzer}.
+ */
+public final class CoverageAnalyzerTest extends TestCase implements PageCoverageHandler {
+
+    private static final double DELTA = 1e-9;
+
+    private final List<PageCoverage> pages = new ArrayList<>();
+
+    @Override
+    public void handlePageCoverage(final PageCoverage coverage) {
+        this.pages.add(coverage);
+    }
+
+    /**
+     * Parses the given PCL data stream and passes it to a {@link CoverageAnalyzer}.
+     */
+    private void analyze(final String pcl) throws Exception {
+        final CoverageAnalyzer analyzer = new CoverageAnalyzer(this);
+        final byte[] data = pcl.getBytes(StandardCharsets.ISO_8859_1);
+        new PclParser(new ByteArrayInputStream(data), analyzer).parse();
+        analyzer.finish();
+        assertEquals(this.pages.size(), analyzer.getPageCount());
+    }
+
+    /**
+     * Checks the counted raster pixels, including rows that are repeated by delta row compression and
+     * rows that are longer than eight bytes (so they are counted in 64-bit words).
+     */
+    public void testRaster() throws Exception {
+        this.analyze("\u001B*t300R\u001B*r0A\u001B*b2Wÿ\u000F\u001B*b3M\u001B*b0W\u001B*b0W\u001B*rC"
+                + "\u001B*b10W\u0001\u0003\u0007\u000F\u001F?\u007Fÿ\u0080\u0000\f");
+
+        assertEquals(1, this.pages.size());
+        final PageCoverage page = this.pages.get(0);
+        assertEquals(1, page.getPageNumber());
+        assertEquals(36 + 37, page.getRasterPixels());
+        assertEquals(73 / 90000.0, page.getRasterArea(), DELTA);
+        assertEquals(0.0, page.getRuleArea(), DELTA);
+        assertEquals(93.5, page.getPageArea(), DELTA);
+    }
+
+    /**
+     * Checks the coverage of the individual planes of color raster graphics.
+     */
+    public void testPlanes() throws Exception {
+        this.analyze("\u001B*t75R\u001B*r-3U\u001B*b1Vÿ\u001B*b1V\u000F\u001B*b1W\u0000\u001B*b1Vð\u001B*b0W\f");
+
+        final PageCoverage page = this.pages.get(0);
+        assertEquals(3, page.getPlaneCount());
+        assertEquals(12 / 5625.0, page.getPlaneArea(0), DELTA);
+        assertEquals(4 / 5625.0, page.getPlaneArea(1), DELTA);
+        assertEquals(0.0, page.getPlaneArea(2), DELTA);
+        assertEquals(12, page.getRasterPixels());
+    }
+
+    /**
+     * Checks the area of rectangular area fills (solid, shaded and erased).
+     */
+    public void testRules() throws Exception {
+        this.analyze("\u001B*c300a150b0P\u001B*c720h360v100g2P\u001B*c1P\f");
+
+        final PageCoverage page = this.pages.get(0);
+        assertEquals(1.0, page.getRuleArea(), DELTA);
+        assertEquals(100.0 / 93.5, page.getCoverage(), DELTA);
+    }
+
+    /**
+     * Checks when pages end.
+     */
+    public void testPageEnd() throws Exception {
+        this.analyze("\u001BE\f\u001BE\u001B*c300a300b0P\u001BE\u001B&l26A\u001B*c1P\u001B%-12345X\u001BEText");
+
+        assertEquals(4, this.pages.size());
+        assertEquals(0.0, this.pages.get(0).getCoverage(), DELTA);
+        assertEquals(1.0, this.pages.get(1).getRuleArea(), DELTA);
+        assertEquals(8.27 * 11.69, this.pages.get(2).getPageArea(), 0.01);
+        assertEquals(0.0, this.pages.get(3).getRuleArea(), DELTA);
+        assertEquals("Page 2: 1.07%", this.pages.get(1).toString());
+    }
+}
@@ -0,0 +1,108 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link MacroExpander}.
+ */
+public final class MacroExpanderTest extends TestCase {
+
+    private final List<String> commands = new ArrayList<>();
+    private final MacroExpander expander = new MacroExpander(command -> this.commands.add(command.toDisplayString()));
+
+    /**
+     * Parses the given PCL data stream and passes it to the {@link MacroExpander}.
+     */
+    private void parse(final String pcl, final boolean combineSequences) throws Exception {
+        final byte[] data = pcl.getBytes(StandardCharsets.ISO_8859_1);
+        final PclParser parser = new PclParser(new ByteArrayInputStream(data), this.expander);
+        parser.setCombineSequences(combineSequences);
+        parser.parse();
+    }
+
+    /**
+     * Checks that a macro definition is recorded and expanded by "Execute Macro" and "Call Macro".
+     */
+    public void testExecuteAndCall() throws Exception {
+        this.parse("\u001B&f1Y\u001B&f0XAB\u001B*p10X\u001B&f1XC\u001B&f2X\u001B&f3X", false);
+
+        assertEquals("[C, AB, *p10X, AB, *p10X]", this.commands.toString());
+
+        final MacroDefinition macro = this.expander.getMacro(1);
+        assertEquals(1, macro.getMacroId());
+        assertEquals(2, macro.getCommandCount());
+        assertEquals(10, macro.getStartOffset());
+        assertEquals(18, macro.getEndOffset());
+        assertEquals("[1]", this.expander.getMacroIds().toString());
+    }
+
+    /**
+     * Checks that macros are nested up to two levels.
+     */
+    public void testNesting() throws Exception {
+        this.parse("\u001B&f1Y\u001B&f0XM1\u001B&f1X"
+                + "\u001B&f2Y\u001B&f0X\u001B&f1Y\u001B&f3XM2\u001B&f1X"
+                + "\u001B&f3Y\u001B&f0X\u001B&f2Y\u001B&f3XM3\u001B&f1X"
+                + "\u001B&f2Y\u001B&f3X\u001B&f3Y\u001B&f3X", false);
+
+        assertEquals("[M1, M2, M2, M3]", this.commands.toString());
+    }
+
+    /**
+     * Checks the overlay macro and that a "Printer Reset" deletes temporary macros and disables the overlay.
+     */
+    public void testOverlay() throws Exception {
+        this.parse("\u001B&f5Y\u001B&f0XOVL\u001B&f1X\u001B&f6Y\u001B&f0XPERM\u001B&f1X\u001B&f10X"
+                + "\u001B&f5Y\u001B&f4XP1\fP2\f\u001B&f5XP3\f\u001B&f4X\u001BE\u001B&f4XP4\u001BEP5\f", false);
+
+        assertEquals("[P1, OVL, 0x0C, P2, OVL, 0x0C, P3, 0x0C, E, P4, E, P5, 0x0C]", this.commands.toString());
+        assertEquals("[6]", this.expander.getMacroIds().toString());
+        assertTrue(this.expander.isPermanent(6));
+        assertEquals(-1, this.expander.getOverlayMacroId());
+    }
+
+    /**
+     * Checks that combined sequences are split if they contain macro commands.
+     */
+    public void testCombinedSequences() throws Exception {
+        this.parse("\u001B&f7y0XA\u001B&f1x2X\u001B&f0s1S\u001B&f8X", true);
+
+        assertEquals("[A, &f0s1S]", this.commands.toString());
+        assertEquals("[]", this.expander.getMacroIds().toString());
+    }
+
+    /**
+     * Checks that "Macro Control" deletes the temporary macros or all macros.
+     */
+    public void testDeleteMacros() throws Exception {
+        this.parse("\u001B&f1Y\u001B&f0XM1\u001B&f1X\u001B&f2Y\u001B&f0XM2\u001B&f1X\u001B&f10X"
+                + "\u001B&f3Y\u001B&f0XM3\u001B&f1X\u001B&f7X", false);
+
+        assertEquals("[2]", this.expander.getMacroIds().toString());
+
+        this.parse("\u001B&f6X", false);
+        assertEquals("[]", this.expander.getMacroIds().toString());
+    }
+}
@@ -0,0 +1,126 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PageExtractor}.
+ */
+public final class PageExtractorTest extends TestCase {
+
+    private static final String PJL_HEADER = "\u001B%-12345X@PJL JOB\r\n@PJL ENTER LANGUAGE=PCL\r\n";
+    private static final String RESOURCES = "\u001B*c5D\u001B)s3Wabc\u001B&f1Y\u001B&f0XM\u001B&f1X";
+
+    private static final String JOB = PJL_HEADER
+            + "\u001BE" + RESOURCES + "Page1\f"
+            + "\u001B*c6d0PPage2\f"
+            + "Page3\f"
+            + "\u001B%-12345X";
+
+    private File pclFile;
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final WritableByteChannel out = Channels.newChannel(this.bytes);
+
+    @Override
+    protected void setUp() throws Exception {
+        this.pclFile = File.createTempFile("pclbox", ".pcl");
+        Files.write(this.pclFile.toPath(), JOB.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(PageIndexFile.getIndexFile(this.pclFile).toPath());
+        Files.deleteIfExists(this.pclFile.toPath());
+    }
+
+    /**
+     * Returns the written bytes as a string and clears them.
+     */
+    private String written() {
+        final String result = new String(this.bytes.toByteArray(), StandardCharsets.ISO_8859_1);
+        this.bytes.reset();
+        return result;
+    }
+
+    /**
+     * Checks that an extracted page is preceded by the PJL header and the resource downloads.
+     */
+    public void testExtractPage() throws Exception {
+        try (PageExtractor extractor = new PageExtractor(this.pclFile)) {
+            assertEquals(3, extractor.getIndex().getPageCount());
+
+            final long length = extractor.extractPage(3, this.out);
+            final String expected = PJL_HEADER + RESOURCES + "\u001B*c6DPage3\f\u001B%-12345X";
+            assertEquals(expected, this.written());
+            assertEquals(expected.length(), length);
+
+            // Going back requires that the resources are collected again...
+            extractor.extractPage(1, this.out);
+            assertEquals(PJL_HEADER + "\u001BE" + RESOURCES + "Page1\f\u001B%-12345X", this.written());
+
+            extractor.extractPages(1, 2, this.out);
+            assertEquals(PJL_HEADER + "\u001BE" + RESOURCES + "Page1\f\u001B*c6d0PPage2\f\u001B%-12345X",
+                    this.written());
+        }
+    }
+
+    /**
+     * Checks that symbol set downloads and user defined patterns are written in front of an extracted page, but
+     * not the "Pattern ID" of a rectangular area fill.
+     */
+    public void testExtractPageAfterSymbolSetDownload() throws Exception {
+        final String resources = "\u001B*c300R\u001B(f5Wabcde\u001B*c7G\u001B*c4W1234";
+        Files.write(this.pclFile.toPath(), (PJL_HEADER + resources + "Page1\f"
+                + "\u001B*c2g3PPage2\f\u001B%-12345X").getBytes(StandardCharsets.ISO_8859_1));
+
+        try (PageExtractor extractor = new PageExtractor(this.pclFile)) {
+            extractor.extractPage(2, this.out);
+            assertEquals(PJL_HEADER + resources + "\u001B*c2g3PPage2\f\u001B%-12345X", this.written());
+        }
+    }
+
+    /**
+     * Checks that a job and a byte range are copied unmodified.
+     */
+    public void testExtractJob() throws Exception {
+        try (PageExtractor extractor = new PageExtractor(this.pclFile)) {
+            assertEquals(2, extractor.getIndex().getJobCount());
+
+            extractor.extractJob(1, this.out);
+            assertEquals(JOB.substring(0, JOB.length() - 9), this.written());
+
+            extractor.transfer(44, 46, this.out);
+            assertEquals("\u001BE", this.written());
+
+            try {
+                extractor.transfer(0, JOB.length() + 1, this.out);
+                fail();
+            } catch (final IllegalArgumentException e) {
+                // expected...
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PageIndexFile} and {@link PageIndexWriter}.
+ */
+public final class PageIndexFileTest extends TestCase {
+
+    private File pclFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.pclFile = File.createTempFile("pclbox", ".pcl");
+        Files.write(this.pclFile.toPath(), (PageIndexerTest.JOB + "\u001BEPage4\f\u001B%-12345X")
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(PageIndexFile.getIndexFile(this.pclFile).toPath());
+        Files.deleteIfExists(this.pclFile.toPath());
+    }
+
+    /**
+     * Checks the pages and jobs of a newly created index file.
+     */
+    public void testCreate() throws Exception {
+        final PageIndexFile index = PageIndexFile.open(this.pclFile);
+        assertTrue(PageIndexFile.getIndexFile(this.pclFile).isFile());
+
+        assertEquals(this.pclFile.length(), index.getFileLength());
+        assertEquals(4, index.getPageCount());
+        assertEquals("Page 1@44-57", index.getPage(1).toString());
+        assertEquals("Page 3@68-78", index.getPage(3).toString());
+        assertEquals("Page 4@99-107", index.getPage(4).toString());
+        assertEquals(57, index.getStartOffset(2));
+        assertEquals(68, index.getEndOffset(2));
+
+        // Job 1 is the PCL job, job 2 contains "@PJL EOJ" and the following PCL page...
+        assertEquals(3, index.getJobCount());
+        assertEquals(1, index.getJobNumber(3));
+        assertEquals(2, index.getJobNumber(4));
+        assertEquals(0, index.getJobStartOffset(1));
+        assertEquals(44, index.getPjlHeaderEndOffset(1));
+        assertEquals(80, index.getJobEndOffset(1));
+        assertEquals(80, index.getJobStartOffset(2));
+        assertEquals(99, index.getPjlHeaderEndOffset(2));
+        assertEquals(107, index.getJobEndOffset(2));
+        assertEquals(107, index.getJobStartOffset(3));
+        assertEquals(116, index.getPjlHeaderEndOffset(3));
+        assertEquals(116, index.getJobEndOffset(3));
+    }
+
+    /**
+     * Checks that an existing index file is reused and that a stale index file is written again.
+     */
+    public void testReuseAndStaleIndex() throws Exception {
+        PageIndexFile.create(this.pclFile);
+
+        final File indexFile = PageIndexFile.getIndexFile(this.pclFile);
+        assertNotNull(PageIndexFile.load(indexFile, this.pclFile));
+        assertEquals(4, PageIndexFile.open(this.pclFile).getPageCount());
+
+        Files.write(this.pclFile.toPath(), "A\fB\f".getBytes(StandardCharsets.ISO_8859_1));
+        assertNull(PageIndexFile.load(indexFile, this.pclFile));
+
+        final PageIndexFile index = PageIndexFile.open(this.pclFile);
+        assertEquals(2, index.getPageCount());
+        assertEquals(1, index.getJobCount());
+        assertEquals(0, index.getPjlHeaderEndOffset(1));
+        assertNotNull(PageIndexFile.load(indexFile, this.pclFile));
+    }
+
+    /**
+     * Checks that a single page can be parsed with the offsets from the index file.
+     */
+    public void testParsePage() throws Exception {
+        final PageIndexFile index = PageIndexFile.open(this.pclFile);
+        final List<String> commands = new ArrayList<>();
+
+        try (PclParser parser = new PclParser(this.pclFile, command -> commands.add(command.toDisplayString()))) {
+            assertTrue(parser.parse(index.getPage(3)).isComplete());
+            assertEquals("[&l1O, Page3]", commands.toString());
+
+            commands.clear();
+            assertTrue(parser.parse(index.getPage(1)).isComplete());
+            assertEquals("[E, &l0O, Page1, 0x0C]", commands.toString());
+        }
+    }
+
+    /**
+     * Checks that a page is parsed with the symbol sets that are selected at the beginning of the page.
+     */
+    public void testSymbolSets() throws Exception {
+        Files.write(this.pclFile.toPath(), "\u001B(0N\u001B)2NA\u000E\f\u00E9\f\u001BE\u00E9\f"
+                .getBytes(StandardCharsets.ISO_8859_1));
+
+        final PageIndexFile index = PageIndexFile.open(this.pclFile);
+        assertEquals(3, index.getPageCount());
+        assertEquals(new PageRange(2, 11, 13, "0N", "2N", true), index.getPage(2));
+        assertEquals(new PageRange(3, 13, 17, "0N", "2N", true), index.getPage(3));
+
+        final List<TextCommand> texts = new ArrayList<>();
+        try (PclParser parser = new PclParser(this.pclFile, command -> {
+            if (command instanceof TextCommand) {
+                texts.add((TextCommand) command);
+            }
+        })) {
+            assertTrue(parser.parse(index.getPage(2)).isComplete());
+            assertTrue(parser.parse(index.getPage(3)).isComplete());
+        }
+
+        // The "Printer Reset" on page 3 selects the default symbol set again...
+        assertEquals("2N", texts.get(0).getSymbolSet());
+        assertEquals("\u00E9", texts.get(0).getDecodedText().toString());
+        assertEquals("8U", texts.get(1).getSymbolSet());
+    }
+}
@@ -0,0 +1,163 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PageIndexer} and {@link PageIndex}.
+ */
+public final class PageIndexerTest extends TestCase {
+
+    /**
+     * A PCL job with three pages, wrapped in PJL.
+     */
+    static final String JOB = "\u001B%-12345X@PJL JOB\r\n@PJL ENTER LANGUAGE=PCL\r\n"
+            + "\u001BE\u001B&l0OPage1\f"
+            + "\u001B*c10a10b0P"
+            + "\u001B&l1OPage3"
+            + "\u001BE\u001B%-12345X@PJL EOJ\r\n";
+
+    /**
+     * Parses the given PCL data stream and returns the {@link PageIndex}.
+     */
+    static PageIndex index(final String pcl, final boolean combineSequences) throws Exception {
+        final byte[] data = pcl.getBytes(StandardCharsets.ISO_8859_1);
+        final PageIndex index = new PageIndex();
+        final PageIndexer indexer = new PageIndexer(index);
+
+        final PclParser parser = new PclParser(new ByteArrayInputStream(data), indexer);
+        parser.setCombineSequences(combineSequences);
+        indexer.finish(parser.parse().getOffset());
+
+        assertEquals(index.getPageCount(), indexer.getPageCount());
+        return index;
+    }
+
+    /**
+     * Returns the pages of the {@link PageIndex} as a string.
+     */
+    static String toString(final PageIndex index) {
+        final List<PageRange> pages = new ArrayList<>();
+        for (int page = 1; page <= index.getPageCount(); ++page) {
+            pages.add(index.getPage(page));
+        }
+        return pages.toString();
+    }
+
+    /**
+     * Checks the pages of a job that ends its pages with a form feed, an "Orientation" command and a
+     * "Printer Reset". The PJL commands and the empty page before the final UEL do not belong to any page.
+     */
+    public void testPages() throws Exception {
+        final PageIndex index = index(JOB, false);
+
+        assertEquals("[Page 1@44-57, Page 2@57-68, Page 3@68-78]", toString(index));
+        assertEquals(3, index.getPageCount());
+        assertEquals(57, index.getStartOffset(2));
+        assertEquals(68, index.getEndOffset(2));
+        assertEquals(11, index.getPage(2).getLength());
+        assertEquals(toString(index), toString(index(JOB, true)));
+    }
+
+    /**
+     * Checks that the form feed always ends a page, the other commands only end a marked page and that
+     * "Number of Copies" does not end a page at all.
+     */
+    public void testEjectRules() throws Exception {
+        assertEquals("[Page 1@0-1, Page 2@1-2]", toString(index("\f\f", false)));
+        assertEquals("[Page 1@0-9]", toString(index("\u001BE\u001B&l1HA\f", false)));
+        assertEquals("[Page 1@0-8]", toString(index("A\u001B&l2XB\f", false)));
+        assertEquals("[Page 1@0-1, Page 2@1-7]", toString(index("A\u001B&l1HB", false)));
+        assertEquals("[]", toString(index("\u001BE\u001B&l1H\r\n\u001BE", false)));
+    }
+
+    /**
+     * Checks that a form feed or an escape byte within a data section is not taken as a page boundary.
+     */
+    public void testDataSection() throws Exception {
+        assertEquals("[Page 1@0-9]", toString(index("\u001B*b3W\f\u001BE\f", false)));
+    }
+
+    /**
+     * Checks that HP/GL drawing commands mark a page.
+     */
+    public void testHpgl() throws Exception {
+        final String pcl = "\u001B%0BIN;SP1;\u001B%0A\u001BE\u001B%0BIN;PD10,10;\u001B%0A\u001BE";
+        assertEquals("[Page 1@0-36]", toString(index(pcl, false)));
+    }
+
+    /**
+     * Checks the offset of a page boundary that is caused by a command in the middle of a PCL sequence.
+     */
+    public void testSequence() throws Exception {
+        assertEquals("[Page 1@0-6]", toString(index("A\u001B&l2x2A", false)));
+        assertEquals("[Page 1@0-1]", toString(index("A\u001B&l2x2A", true)));
+    }
+
+    /**
+     * Checks the order of the events passed to the {@link PageHandler}.
+     */
+    public void testEvents() throws Exception {
+        final List<String> events = new ArrayList<>();
+        final PageIndexer indexer = new PageIndexer(new PageHandler() {
+            @Override
+            public void handlePageStart(final int pageNumber, final long startOffset) {
+                events.add("start " + pageNumber + "@" + startOffset);
+            }
+
+            @Override
+            public void handlePageEnd(final PageRange page) {
+                events.add("end " + page);
+            }
+        }, command -> events.add(command.toDisplayString()));
+
+        final byte[] data = "\u001BEA\u001BEB".getBytes(StandardCharsets.ISO_8859_1);
+        final PclParser parser = new PclParser(new ByteArrayInputStream(data), indexer);
+        indexer.finish(parser.parse().getOffset());
+
+        assertEquals("[E, start 1@0, A, end Page 1@0-3, E, start 2@3, B, end Page 2@3-6]", events.toString());
+    }
+
+    /**
+     * Checks {@link PageIndex#findPage(long)}.
+     */
+    public void testFindPage() throws Exception {
+        final PageIndex index = index(JOB, false);
+
+        assertEquals(0, index.findPage(0));
+        assertEquals(0, index.findPage(43));
+        assertEquals(1, index.findPage(44));
+        assertEquals(1, index.findPage(56));
+        assertEquals(2, index.findPage(57));
+        assertEquals(3, index.findPage(77));
+        assertEquals(0, index.findPage(78));
+
+        try {
+            index.getPage(4);
+            fail();
+        } catch (final IndexOutOfBoundsException e) {
+            // expected...
+        }
+    }
+}
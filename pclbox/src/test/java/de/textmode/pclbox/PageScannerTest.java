@@ -0,0 +1,150 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PageScanner}.
+ */
+public final class PageScannerTest extends TestCase {
+
+    /**
+     * Scans the given PCL data stream and returns the {@link PageIndex}.
+     */
+    private static PageIndex scan(final byte[] data) throws Exception {
+        final PageIndex index = new PageIndex();
+        assertEquals(data.length, new PageScanner(index).scan(new ByteArrayInputStream(data)));
+        return index;
+    }
+
+    /**
+     * Checks that the {@link PageScanner} finds the same pages as the {@link PageIndexer}.
+     */
+    private static void assertSamePages(final String pcl) throws Exception {
+        final String expected = PageIndexerTest.toString(PageIndexerTest.index(pcl, true));
+        assertEquals(expected, PageIndexerTest.toString(scan(pcl.getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    /**
+     * Checks some small data streams.
+     */
+    public void testSmallStreams() throws Exception {
+        assertSamePages(PageIndexerTest.JOB);
+        assertSamePages("\f\f");
+        assertSamePages("A\u001B&l2XB\f");
+        assertSamePages("A\u001B&l1HB");
+        assertSamePages("A\u001B&l2x2A");
+        assertSamePages("\u001B*b3W\f\u001BE\f");
+        assertSamePages("\u001B&p3X\f\u001BE\u001BE\u001B&f2X\u001BE\u001B&f8X\u001BE");
+        assertSamePages("\u001B%0BIN;SP1;\u001B%0A\u001BE\u001B%0BIN;pd10,10;\u001B%0A\u001BE");
+        assertSamePages("\u001B%0BIN;CO\"A;\"\"\u001BE\";LB\u001B%0A\u001BE");
+        assertSamePages("\u001B%-12345X@PJL\n\u001BEA\u001B%-12345X@PJL\n\u001BEB");
+        assertSamePages("");
+
+        assertEquals("[Page 1@44-57, Page 2@57-68, Page 3@68-78]",
+                PageIndexerTest.toString(scan(PageIndexerTest.JOB.getBytes(StandardCharsets.ISO_8859_1))));
+    }
+
+    /**
+     * Checks a large data stream with raster data that crosses the boundaries of the read buffer.
+     */
+    public void testLargeStream() throws Exception {
+        final Random random = new Random(4711);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final StringBuilder pcl = new StringBuilder();
+
+        for (int page = 0; page < 40; ++page) {
+            pcl.setLength(0);
+            pcl.append(page % 3 == 0 ? "\u001BE" : "").append("\u001B&l").append(page % 2).append("o2x26A");
+            pcl.append("\u001B*t300R\u001B*r1A");
+            out.write(pcl.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+            for (int row = 0; row < 20; ++row) {
+                final byte[] data = new byte[random.nextInt(500)];
+                random.nextBytes(data);
+                out.write(("\u001B*b" + data.length + "W").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(data);
+            }
+
+            out.write((page % 5 == 0 ? "\u001B*rB\f" : "\u001B*rB").getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        final byte[] data = out.toByteArray();
+        final String expected = PageIndexerTest.toString(PageIndexerTest.index(
+                new String(data, StandardCharsets.ISO_8859_1), true));
+
+        final PageIndex index = scan(data);
+        assertEquals(40, index.getPageCount());
+        assertEquals(expected, PageIndexerTest.toString(index));
+    }
+
+    /**
+     * Checks that the data of foreign languages is skipped, even if the "Universal Exit Language" command that
+     * ends the data crosses the boundaries of the read buffer.
+     */
+    public void testForeignLanguage() throws Exception {
+        final String job = "\u001BEA\f\u001B%-12345X@PJL ENTER LANGUAGE=POSTSCRIPT\r\n%!PS\f\u001BE\u001B%-1234X\f";
+        final String next = "\u001B%-12345X@PJL\n\u001BEB\f";
+
+        assertSamePages(job + next);
+        assertEquals(2, scan((job + next).getBytes(StandardCharsets.ISO_8859_1)).getPageCount());
+        assertSamePages(job);
+
+        final StringBuilder padding = new StringBuilder();
+        for (int ix = 0; ix < 65536 - job.length() - 12; ++ix) {
+            padding.append(ix % 80 == 0 ? '\u001B' : 'x');
+        }
+        for (int ix = 0; ix < 16; ++ix) {
+            padding.append('x');
+            assertSamePages(job + padding + next);
+        }
+    }
+
+    /**
+     * Checks that corrupt data streams are rejected.
+     */
+    public void testCorruptStreams() throws Exception {
+        try {
+            scan("\u001B*b10W123".getBytes(StandardCharsets.ISO_8859_1));
+            fail();
+        } catch (final EOFException e) {
+            // expected...
+        }
+
+        try {
+            scan("\u001B*bxW".getBytes(StandardCharsets.ISO_8859_1));
+            fail();
+        } catch (final PclException e) {
+            // expected...
+        }
+
+        try {
+            scan("\u001B%-12345XPJL\n".getBytes(StandardCharsets.ISO_8859_1));
+            fail();
+        } catch (final PclException e) {
+            // expected...
+        }
+    }
+}
@@ -39,6 +39,34 @@ public final class Pcl5ParserTest extends DataStreamParserTest {
         return new Pcl5Parser(new PclParserContext(pclStream, this));
     }
 
+    /**
+     * Creates a {@link Pcl5Parser} just like {@link #getPcl5ParserFor(String)} does, but with the delivery
+     * of combined PCL sequences enabled.
+     */
+    private final Pcl5Parser getCombiningPcl5ParserFor(final String data) throws UnsupportedEncodingException {
+        final byte[] bytes = data.replace('~', (char) 0x1B).replace('#', (char) 0x0C).getBytes("iso-8859-1");
+
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final PclParserContext ctx = new PclParserContext(new PclInputStreamForInputStream(input), this);
+        ctx.setCombineSequences(true);
+
+        return new Pcl5Parser(ctx);
+    }
+
+    /**
+     * Creates a {@link Pcl5Parser} just like {@link #getPcl5ParserFor(String)} does, but reads the data of
+     * foreign languages.
+     */
+    private final Pcl5Parser getReadingPcl5ParserFor(final String data) throws UnsupportedEncodingException {
+        final byte[] bytes = data.replace('~', (char) 0x1B).replace('#', (char) 0x0C).getBytes("iso-8859-1");
+
+        final ByteArrayInputStream input = new ByteArrayInputStream(bytes);
+        final PclParserContext ctx = new PclParserContext(new PclInputStreamForInputStream(input), this);
+        ctx.setDataSectionFilter(DataSectionFilter.READ_ALL);
+
+        return new Pcl5Parser(ctx);
+    }
+
     /**
      * Checks parsing of a complete empty stream (zero file size).
      */
@@ -372,4 +400,181 @@ public final class Pcl5ParserTest extends DataStreamParserTest {
                         new TwoBytePclCommand(11, 'E')),
                 this.getCommands());
     }
+
+    /**
+     * Checks that a PCL sequence is delivered as a {@link CombinedPclCommand} if requested.
+     */
+    public void testCombinedPclSequence() throws Exception {
+        this.getCombiningPcl5ParserFor("~E~&l1o2a0E~*p100Y").parse();
+
+        assertEquals(
+                buildExpected(
+                        new TwoBytePclCommand(0, 'E'),
+                        new CombinedPclCommand(2, '&', 'l', new String[] { "1", "2", "0" }, new int[] { 'O', 'A', 'E' },
+                                null),
+                        new ParameterizedPclCommand(11, '*', 'p', "100", 'Y')),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that a combined PCL sequence may end with a command that has a data section.
+     */
+    public void testCombinedPclSequenceWithDataSection() throws Exception {
+        this.getCombiningPcl5ParserFor("~*b2m3Wxyz~E").parse();
+
+        assertEquals(
+                buildExpected(
+                        new CombinedPclCommand(0, '*', 'b', new String[] { "2", "3" }, new int[] { 'M', 'W' },
+                                new byte[] { 'x', 'y', 'z' }),
+                        new TwoBytePclCommand(10, 'E')),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that a combined PCL sequence that ends with a parameter character is delivered as well.
+     */
+    public void testCombinedPclSequenceWithoutTerminationCharacter() throws Exception {
+        this.getCombiningPcl5ParserFor("~&u300d~&a1r2c~E").parse();
+
+        assertEquals(
+                buildExpected(
+                        new ParameterizedPclCommand(0, '&', 'u', "300", 'D'),
+                        new CombinedPclCommand(7, '&', 'a', new String[] { "1", "2" }, new int[] { 'R', 'C' }, null),
+                        new TwoBytePclCommand(14, 'E')),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that the UEL command is recognized if the delivery of combined PCL sequences is enabled.
+     */
+    public void testCombinedPclSequenceAndUniversalExitLanguage() throws Exception {
+        this.getCombiningPcl5ParserFor("~%-12345X@PJL\n~E").parse();
+
+        assertEquals(
+                buildExpected(
+                        new ParameterizedPclCommand(0, '%', 0, "-12345", 'X'),
+                        new PjlCommand(9, "@PJL"),
+                        new TwoBytePclCommand(14, 'E')),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that SI (Shift In) and SO (Shift Out) are parsed as control characters.
+     */
+    public void testShiftInAndShiftOut() throws Exception {
+        this.getPcl5ParserFor("A\u000EB\u000FC").parse();
+
+        assertEquals(
+                buildExpected(
+                        new TextCommand(0, new byte[] { 'A' }),
+                        new ControlCharacterCommand(1, (byte) 0x0E),
+                        new TextCommand(2, new byte[] { 'B' }),
+                        new ControlCharacterCommand(3, (byte) 0x0F),
+                        new TextCommand(4, new byte[] { 'C' })),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that the symbol sets of the primary and the secondary font are recorded in the text commands.
+     */
+    public void testSymbolSets() throws Exception {
+        this.getPcl5ParserFor("A~(0NB~)10UC\u000ED\u000FE~(3@F~(0N~EG").parse();
+
+        assertEquals(
+                buildExpected(
+                        new TextCommand(0, new byte[] { 'A' }, "8U"),
+                        new ParameterizedPclCommand(1, '(', 0, "0", 'N'),
+                        new TextCommand(5, new byte[] { 'B' }, "0N"),
+                        new ParameterizedPclCommand(6, ')', 0, "10", 'U'),
+                        new TextCommand(11, new byte[] { 'C' }, "0N"),
+                        new ControlCharacterCommand(12, (byte) 0x0E),
+                        new TextCommand(13, new byte[] { 'D' }, "10U"),
+                        new ControlCharacterCommand(14, (byte) 0x0F),
+                        new TextCommand(15, new byte[] { 'E' }, "0N"),
+                        new ParameterizedPclCommand(16, '(', 0, "3", '@'),
+                        new TextCommand(20, new byte[] { 'F' }, "8U"),
+                        new ParameterizedPclCommand(21, '(', 0, "0", 'N'),
+                        new TwoBytePclCommand(25, 'E'),
+                        new TextCommand(27, new byte[] { 'G' }, "8U")),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that the symbol sets are tracked if the delivery of combined PCL sequences is enabled.
+     */
+    public void testSymbolSetsInCombinedPclSequence() throws Exception {
+        this.getCombiningPcl5ParserFor("~(19u10XA~)2n8X\u000EB").parse();
+
+        final PrinterCommand first = this.getCommands().get(1);
+        final PrinterCommand second = this.getCommands().get(4);
+        assertEquals(new TextCommand(8, new byte[] { 'A' }, "19U"), first);
+        assertEquals(new TextCommand(16, new byte[] { 'B' }, "2N"), second);
+    }
+
+    /**
+     * Checks that the data of a foreign language is delivered as one {@link ForeignLanguageCommand} up to the
+     * next "Universal Exit Language" command.
+     */
+    public void testForeignLanguage() throws Exception {
+        this.getReadingPcl5ParserFor(
+                "~%-12345X@PJL ENTER LANGUAGE=POSTSCRIPT\r\n%!PS\n~%-1234~show\n~%-12345X@PJL EOJ\n").parse();
+
+        assertEquals(
+                buildExpected(
+                        new ParameterizedPclCommand(0, '%', 0, "-12345", 'X'),
+                        new PjlCommand(9, "@PJL ENTER LANGUAGE=POSTSCRIPT"),
+                        new ForeignLanguageCommand(41, "POSTSCRIPT", 18,
+                                "%!PS\n\u001B%-1234\u001Bshow\n".getBytes("iso-8859-1")),
+                        new ParameterizedPclCommand(59, '%', 0, "-12345", 'X'),
+                        new PjlCommand(68, "@PJL EOJ")),
+                this.getCommands());
+    }
+
+    /**
+     * Checks that the data of a foreign language may end with the data stream and that PCL is still parsed.
+     */
+    public void testForeignLanguageUpToEndOfStream() throws Exception {
+        this.getReadingPcl5ParserFor("~%-12345X@PJL enter language = pdf\n%PDF").parse();
+        assertEquals(new ForeignLanguageCommand(35, "PDF", 4, "%PDF".getBytes("iso-8859-1")),
+                this.getCommands().get(2));
+
+        this.setUp();
+        this.getPcl5ParserFor("~%-12345X@PJL ENTER LANGUAGE=PCL\n~E").parse();
+        assertEquals(new TwoBytePclCommand(33, 'E'), this.getCommands().get(2));
+
+        this.setUp();
+        this.getPcl5ParserFor("~%-12345X@PJL ENTER LANGUAGE=PCLXL\n~%-12345X").parse();
+        assertEquals(3, this.getCommands().size());
+        assertEquals(new ParameterizedPclCommand(35, '%', 0, "-12345", 'X'), this.getCommands().get(2));
+    }
+
+    /**
+     * Checks that the data of a foreign language is read if no {@link DataSectionFilter} is set and skipped
+     * unless the {@link DataSectionFilter} requests it.
+     */
+    public void testSkippedForeignLanguage() throws Exception {
+        this.getPcl5ParserFor("~%-12345X@PJL ENTER LANGUAGE=PDF\n%PDF").parse();
+        final byte[] data = ((ForeignLanguageCommand) this.getCommands().get(2)).getData();
+        assertEquals("%PDF", new String(data, "iso-8859-1"));
+
+        this.setUp();
+        final byte[] bytes = "\u001B%-12345X@PJL ENTER LANGUAGE=PDF\n%PDF\u001B%-12345X".getBytes("iso-8859-1");
+        final PclParserContext ctx = new PclParserContext(
+                new PclInputStreamForInputStream(new ByteArrayInputStream(bytes)), this);
+        ctx.setDataSectionFilter((p, g, t) -> true);
+        new Pcl5Parser(ctx).parse();
+
+        final ForeignLanguageCommand command = (ForeignLanguageCommand) this.getCommands().get(2);
+        assertEquals(33, command.getOffset());
+        assertEquals(37, command.getEndOffset());
+        assertNull(command.getData());
+        assertEquals(new ParameterizedPclCommand(37, '%', 0, "-12345", 'X'), this.getCommands().get(3));
+
+        try {
+            command.toByteArray();
+            fail("Should fail because the data has been skipped");
+        } catch (final IllegalStateException e) {
+            assertTrue(e.getMessage().contains("offset 33"));
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclCompactor}.
+ */
+public final class PclCompactorTest extends TestCase {
+
+    /**
+     * Parses the given data stream, passes it through a {@link PclCompactor} and returns the written data stream.
+     */
+    private static String compact(final String pcl, final boolean combine) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PclCompactor compactor = new PclCompactor(new PclWriter(out));
+        final PclParser parser = new PclParser(
+                new PclInputStreamForInputStream(new ByteArrayInputStream(pcl.getBytes(StandardCharsets.ISO_8859_1))),
+                compactor);
+
+        parser.setCombineSequences(combine);
+        parser.parse();
+        compactor.flush();
+
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parses the given data stream and returns the display strings of all commands.
+     */
+    private static List<String> parse(final String pcl) throws Exception {
+        final List<String> result = new ArrayList<>();
+        final PclParser parser = new PclParser(
+                new PclInputStreamForInputStream(new ByteArrayInputStream(pcl.getBytes(StandardCharsets.ISO_8859_1))),
+                command -> {
+                    if (command instanceof CombinedPclCommand) {
+                        for (final ParameterizedPclCommand c
+                                : ((CombinedPclCommand) command).toParameterizedPclCommands()) {
+                            result.add(c.toDisplayString());
+                        }
+                    } else {
+                        result.add(command.toDisplayString());
+                    }
+                });
+
+        parser.parse();
+        return result;
+    }
+
+    /**
+     * Checks that consecutive PCL commands are merged into a PCL sequence.
+     */
+    public void testMerge() throws Exception {
+        final String pcl = "\u001BE\u001B&l1O\u001B&l2A\u001B&l1E\u001B*p100x200YText\u001B*p+10X\u001B&l6D";
+        final String expected = "\u001BE\u001B&l1o2a1E\u001B*p100x200YText\u001B*p+10X\u001B&l6D";
+
+        assertEquals(expected, compact(pcl, false));
+        assertEquals(expected, compact(pcl, true));
+        assertEquals(parse(pcl), parse(expected));
+    }
+
+    /**
+     * Checks that a PCL command with a data section ends a PCL sequence.
+     */
+    public void testDataSection() throws Exception {
+        final String pcl = "\u001B*b2M\u001B*b3WABC\u001B*b0W\u001B*b2W12\u001B*rC";
+        final String expected = "\u001B*b2m3WABC\u001B*b0W\u001B*b2W12\u001B*rC";
+
+        assertEquals(expected, compact(pcl, false));
+        assertEquals(parse(pcl), parse(expected));
+    }
+
+    /**
+     * Checks that values are written in their shortest form and that PCL commands without a group character
+     * are not changed.
+     */
+    public void testValues() throws Exception {
+        final String pcl = "\u001B&l0E\u001B&a007.50H\u001B&a+0V\u001B(0N\u001B%-12345X";
+
+        assertEquals("\u001B&lE\u001B&a7.5h+0V\u001B(0N\u001B%-12345X", compact(pcl, false));
+    }
+
+    /**
+     * Checks the shortest form of single values.
+     */
+    public void testCompactValue() {
+        assertEquals("", PclCompactor.compactValue("0"));
+        assertEquals("", PclCompactor.compactValue("000"));
+        assertEquals("", PclCompactor.compactValue("0.00"));
+        assertEquals("", PclCompactor.compactValue(""));
+        assertEquals("12", PclCompactor.compactValue("0012"));
+        assertEquals("1.5", PclCompactor.compactValue("1.500"));
+        assertEquals("2", PclCompactor.compactValue("2.0"));
+        assertEquals("0.5", PclCompactor.compactValue("0.5"));
+        assertEquals(".5", PclCompactor.compactValue(".50"));
+        assertEquals("+0", PclCompactor.compactValue("+0"));
+        assertEquals("-3", PclCompactor.compactValue("-03.0"));
+        assertEquals("+", PclCompactor.compactValue("+"));
+        assertEquals("1-2", PclCompactor.compactValue("1-2"));
+    }
+
+    /**
+     * Checks that redundant whitespace is removed from numeric HP/GL parameters only.
+     */
+    public void testHpgl() throws Exception {
+        final String pcl = "\u001B%0BIN;PA 10 , 20 30,40;CO \"1 2\";\u001B%0A";
+
+        assertEquals("\u001B%0BIN;PA10,20,30,40;CO\"1 2\";\u001B%0A", compact(pcl, false));
+    }
+}
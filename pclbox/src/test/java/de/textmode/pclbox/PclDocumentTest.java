@@ -0,0 +1,97 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclDocument}.
+ */
+public final class PclDocumentTest extends TestCase {
+
+    private File pclFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.pclFile = File.createTempFile("pclbox", ".pcl");
+        Files.write(this.pclFile.toPath(), (PageIndexerTest.JOB + "\u001BE\u001B*b2WxyPage4\f")
+                .getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(PageIndexFile.getIndexFile(this.pclFile).toPath());
+        Files.deleteIfExists(this.pclFile.toPath());
+    }
+
+    /**
+     * Returns the display strings of the commands of the given page.
+     */
+    private static String toString(final PclPage page) {
+        final List<String> result = new ArrayList<>();
+        for (final PrinterCommand command : page.getCommands()) {
+            result.add(command.toDisplayString());
+        }
+        return result.toString();
+    }
+
+    /**
+     * Checks that the pages are parsed on demand and in any order.
+     */
+    public void testPages() throws Exception {
+        try (PclDocument document = PclDocument.open(this.pclFile)) {
+            assertEquals(4, document.pageCount());
+            assertTrue(PageIndexFile.getIndexFile(this.pclFile).isFile());
+
+            assertEquals("[E, *b2W, Page4, 0x0C]", toString(document.page(4)));
+            assertEquals("[*c10A, *c10B, *c0P]", toString(document.page(2)));
+            assertEquals("[E, &l0O, Page1, 0x0C]", toString(document.page(1)));
+
+            final PclPage page = document.page(3);
+            assertEquals(3, page.getPageNumber());
+            assertEquals(2, page.getCommandCount());
+            assertEquals(68, page.getRange().getStartOffset());
+            assertSame(page, document.page(3));
+
+            try {
+                document.page(5);
+                fail();
+            } catch (final IndexOutOfBoundsException e) {
+                // expected...
+            }
+        }
+    }
+
+    /**
+     * Checks that the recently requested pages are kept.
+     */
+    public void testCache() throws Exception {
+        try (PclDocument document = PclDocument.open(this.pclFile, 2)) {
+            final int hash = System.identityHashCode(document.page(1));
+            document.page(2);
+            assertEquals(hash, System.identityHashCode(document.page(1)));
+            assertEquals(4, document.getIndex().getPageCount());
+        }
+    }
+}
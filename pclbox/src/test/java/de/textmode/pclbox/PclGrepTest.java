@@ -0,0 +1,237 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclGrep} and {@link PclCommandPattern}.
+ */
+public final class PclGrepTest extends TestCase {
+
+    private File directory;
+    private File firstFile;
+    private File secondFile;
+    private File corruptFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("pclbox").toFile();
+        this.firstFile = new File(this.directory, "first.pcl");
+        this.secondFile = new File(this.directory, "second.pcl");
+        this.corruptFile = new File(this.directory, "corrupt.prn");
+
+        write(this.firstFile, "\u001BE\u001B&l1o4h0E\u001B*b3WABCText\f\u001B&l4H\f");
+        write(this.secondFile, "\u001B%-12345X@PJL JOB NAME=\"Test\"\r\n@PJL ENTER LANGUAGE=PCL\r\n"
+                + "\u001BE\u001B&l2H\u001B%1BIN;SP1;PE<=;\u001B%1A\f");
+        write(this.corruptFile, "\u001BE\u001B&l4H\u001B\u0001");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(this.firstFile.toPath());
+        Files.deleteIfExists(this.secondFile.toPath());
+        Files.deleteIfExists(this.corruptFile.toPath());
+        Files.deleteIfExists(this.directory.toPath());
+    }
+
+    private static void write(final File file, final String pcl) throws IOException {
+        Files.write(file.toPath(), pcl.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static PclGrep grep(final String... patterns) {
+        final List<PclCommandPattern> result = new ArrayList<>();
+        for (final String pattern : patterns) {
+            result.add(PclCommandPattern.parse(pattern));
+        }
+        return new PclGrep(result);
+    }
+
+    /**
+     * Checks the parsing of patterns.
+     */
+    public void testParsePattern() {
+        assertTrue(PclCommandPattern.parse("ESC&l4H").matches('&', 'l', 'H', "4"));
+        assertTrue(PclCommandPattern.parse("<esc>&l4h").matches('&', 'l', 'H', "4.0"));
+        assertFalse(PclCommandPattern.parse("\u001B&l4H").matches('&', 'l', 'H', "2"));
+        assertTrue(PclCommandPattern.parse("&lH").matches('&', 'l', 'H', "2"));
+        assertTrue(PclCommandPattern.parse("&l#H").matches('&', 'l', 'H', "7"));
+        assertFalse(PclCommandPattern.parse("&lH").matches('&', 'l', 'O', "2"));
+
+        final PclCommandPattern range = PclCommandPattern.parse("*p100..200X");
+        assertTrue(range.matches('*', 'p', 'X', "100"));
+        assertTrue(range.matches('*', 'p', 'X', "+200"));
+        assertFalse(range.matches('*', 'p', 'X', "200.5"));
+        assertFalse(range.matches('*', 'p', 'X', "99"));
+        assertTrue(PclCommandPattern.parse("*p..0X").matches('*', 'p', 'X', "-5"));
+        assertTrue(PclCommandPattern.parse("*p1000..X").matches('*', 'p', 'X', "5000"));
+
+        assertTrue(PclCommandPattern.parse("%-12345X").matches('%', 0, 'X', "-12345"));
+        assertEquals(PclCommandPattern.parse("ESC&l4H"), PclCommandPattern.parse("&l4h"));
+
+        assertTrue(PclCommandPattern.parse("pjl:enter language").matches(new PjlCommand(0, "@PJL ENTER LANGUAGE=PCL")));
+        assertTrue(PclCommandPattern.parse("hpgl:pe").matches(new HpglCommand(0, "PE", "")));
+
+        for (final String invalid : Arrays.asList("", "ESC&", "&lxH", "*p1..aX", "hpgl:P")) {
+            try {
+                PclCommandPattern.parse(invalid);
+                fail("Should fail because the pattern \"" + invalid + "\" is invalid");
+            } catch (final IllegalArgumentException e) {
+                // expected...
+            }
+        }
+    }
+
+    /**
+     * Checks that commands within combined PCL sequences are found and that data sections are skipped.
+     */
+    public void testSearch() throws Exception {
+        final List<PclGrepMatch> matches = grep("&l4H", "*bW").search(this.firstFile);
+        assertEquals(3, matches.size());
+
+        // The offset of a command within a sequence is the offset of the command itself...
+        assertEquals(new ParameterizedPclCommand(7, '&', 'l', "4", 'H'), matches.get(0).getCommand());
+        assertEquals(7, matches.get(0).getOffset());
+
+        // The data section of "<esc>*b3W" has been skipped...
+        final ParameterizedPclCommand transfer = (ParameterizedPclCommand) matches.get(1).getCommand();
+        assertEquals(11, transfer.getOffset());
+        assertNull(transfer.getDataSection());
+
+        assertEquals(24, matches.get(2).getOffset());
+        assertEquals(this.firstFile.getPath() + ":24:&l4H", matches.get(2).toString());
+
+        assertTrue(grep("&l2H").search(this.firstFile).isEmpty());
+    }
+
+    /**
+     * Checks that a command that matches several patterns is reported once and that the commands of a sequence
+     * are reported in the order of the data stream.
+     */
+    public void testSearchWithOverlappingPatterns() throws Exception {
+        final List<PclGrepMatch> matches = grep("&l4H", "&lH", "&lO").search(this.firstFile);
+        assertEquals(3, matches.size());
+
+        assertEquals(2, matches.get(0).getOffset());
+        assertEquals(PclCommandPattern.parse("&lO"), matches.get(0).getPattern());
+        assertEquals(7, matches.get(1).getOffset());
+        assertEquals(PclCommandPattern.parse("&l4H"), matches.get(1).getPattern());
+        assertEquals(24, matches.get(2).getOffset());
+    }
+
+    /**
+     * Checks the search for PJL and HP/GL2 commands.
+     */
+    public void testSearchPjlAndHpgl() throws Exception {
+        final List<PclGrepMatch> matches = grep("pjl:^@PJL JOB\\b", "hpgl:PE").search(this.secondFile);
+        assertEquals(2, matches.size());
+        assertTrue(matches.get(0).getCommand() instanceof PjlCommand);
+        assertEquals(new HpglCommand(74, "PE", "<="), matches.get(1).getCommand());
+    }
+
+    /**
+     * Checks that only the first match is reported if only the files with matches are requested.
+     */
+    public void testFilesWithMatchesOnly() throws Exception {
+        final PclGrep grep = grep("&lH");
+        grep.setFilesWithMatchesOnly(true);
+
+        final List<PclGrepMatch> matches = grep.search(this.firstFile);
+        assertEquals(1, matches.size());
+        assertEquals(7, matches.get(0).getOffset());
+    }
+
+    /**
+     * Checks the parallel search of a directory.
+     */
+    public void testSearchAll() throws Exception {
+        final PclGrep grep = grep("&lH");
+        grep.setThreadCount(2);
+
+        final List<String> matches = new ArrayList<>();
+        final List<File> errors = new ArrayList<>();
+        final int fileCount = grep.searchAll(Collections.singletonList(this.directory), new PclGrepHandler() {
+            @Override
+            public void handleMatch(final PclGrepMatch match) {
+                matches.add(match.toString());
+            }
+
+            @Override
+            public void handleError(final File file, final Exception exception) {
+                errors.add(file);
+            }
+        });
+
+        assertEquals(3, fileCount);
+        Collections.sort(matches);
+        assertEquals(Arrays.asList(
+                this.corruptFile.getPath() + ":2:&l4H",
+                this.firstFile.getPath() + ":24:&l4H",
+                this.firstFile.getPath() + ":7:&l4H",
+                this.secondFile.getPath() + ":58:&l2H"), matches);
+        assertEquals(Collections.singletonList(this.corruptFile), errors);
+
+        // Now only the files with the extension ".pcl"...
+        grep.setFileFilter(file -> file.getName().endsWith(".pcl"));
+        errors.clear();
+        assertEquals(2, grep.searchAll(Collections.singletonList(this.directory), new PclGrepHandler() {
+            @Override
+            public void handleMatch(final PclGrepMatch match) {
+                // not checked...
+            }
+
+            @Override
+            public void handleError(final File file, final Exception exception) {
+                errors.add(file);
+            }
+        }));
+        assertTrue(errors.isEmpty());
+    }
+
+    /**
+     * Checks the command line interface.
+     */
+    public void testRun() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        final String[] args = {"-l", "-x", ".PCL", "-e", "&l4H", "-e", "&lO", this.directory.getPath()};
+        assertEquals(0, PclGrep.run(args, new PrintStream(out, true), new PrintStream(err, true)));
+        assertEquals(this.firstFile.getPath() + System.lineSeparator(), out.toString());
+        assertEquals("", err.toString());
+
+        out.reset();
+        final String[] noMatch = {"-e", "*p100X", this.secondFile.getPath()};
+        assertEquals(1, PclGrep.run(noMatch, new PrintStream(out, true), new PrintStream(err, true)));
+        assertEquals("", out.toString());
+
+        final String[] invalid = {"-e", "*p100X"};
+        assertEquals(2, PclGrep.run(invalid, new PrintStream(out, true), new PrintStream(err, true)));
+        assertTrue(err.toString().contains("Usage"));
+    }
+}
@@ -16,9 +16,14 @@ package de.textmode.pclbox;
  * limitations under the License.
  */
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
 
 import junit.framework.TestCase;
 
@@ -68,22 +73,105 @@ public final class PclInputStreamForInputStreamTest extends TestCase {
     }
 
     /**
-     * Test with an {@link InputStream} that does not support {@link InputStream#mark(int)}.
+     * Test with an {@link InputStream} that does not support {@link InputStream#mark(int)}. Positioning
+     * forward is possible, positioning backward is not.
      */
     public void testWithMarkNotSupported() throws Exception {
 
         final PclInputStream pclStream = new PclInputStreamForInputStream(new InputStream() {
+            private int remaining = 5;
+
             @Override
             public int read() throws IOException {
-                return -1;
+                return this.remaining-- > 0 ? 'A' : -1;
             }
         });
 
+        assertEquals('A', pclStream.read());
+        pclStream.seek(3);
+        assertEquals(3, pclStream.tell());
+        assertEquals('A', pclStream.read());
+
         try {
             pclStream.seek(1);
             fail("Seek should fail because mark() is not supported!");
         } catch (final IOException e) {
             assertTrue(e.getMessage().contains("is not supported"));
         }
+
+        try {
+            pclStream.seek(10);
+            fail("Seek should fail because the stream ends at offset 5");
+        } catch (final EOFException e) {
+            assertTrue(e.getMessage().contains("ends at offset 5"));
+        }
+    }
+
+    /**
+     * Checks that positioning forward skips from the current position and does not use
+     * {@link InputStream#reset()} (which would fail because no mark has been set).
+     */
+    public void testSeekForwardWithBufferedInputStream() throws Exception {
+        final PclInputStream pclStream = new PclInputStreamForInputStream(
+                new BufferedInputStream(new ByteArrayInputStream("ABCDEFGH".getBytes("utf-8")), 2));
+
+        assertEquals('A', pclStream.read());
+        pclStream.seek(5);
+        assertEquals(5, pclStream.tell());
+        assertEquals('F', pclStream.read());
+        pclStream.seek(6);
+        assertEquals('G', pclStream.read());
+        pclStream.close();
+    }
+
+    /**
+     * Checks that a {@link FileInputStream} (that does not support {@link InputStream#mark(int)}) can
+     * be positioned because the file is memory mapped.
+     */
+    public void testWithFileInputStream() throws Exception {
+        final File file = File.createTempFile("pclbox", ".pcl");
+        try {
+            Files.write(file.toPath(), "TEST".getBytes("utf-8"));
+
+            final PclInputStream pclStream = new PclInputStreamForInputStream(new FileInputStream(file));
+            assertEquals(84, pclStream.read());
+
+            pclStream.seek(2);
+            assertEquals(2, pclStream.tell());
+            assertEquals(83, pclStream.read());
+
+            pclStream.seek(0);
+            assertEquals(84, pclStream.read());
+            pclStream.close();
+        } finally {
+            assertTrue(file.delete());
+        }
+    }
+
+    /**
+     * Checks that a bulk read at the end of the stream returns the remaining bytes and -1 afterwards, just like
+     * {@link InputStream#read(byte[], int, int)} does.
+     */
+    public void testBulkReadAtEndOfStream() throws Exception {
+        final File file = File.createTempFile("pclbox", ".pcl");
+        try {
+            Files.write(file.toPath(), "TEST".getBytes("utf-8"));
+
+            for (final InputStream in : new InputStream[] {
+                new ByteArrayInputStream("TEST".getBytes("utf-8")), new FileInputStream(file) }) {
+
+                final PclInputStream pclStream = new PclInputStreamForInputStream(in);
+                final byte[] buffer = new byte[10];
+                assertEquals(84, pclStream.read());
+                assertEquals(3, pclStream.read(buffer, 2, 8));
+                assertEquals(69, buffer[2]);
+                assertEquals(84, buffer[4]);
+                assertEquals(4, pclStream.tell());
+                assertEquals(-1, pclStream.read(buffer, 0, 10));
+                pclStream.close();
+            }
+        } finally {
+            assertTrue(file.delete());
+        }
     }
 }
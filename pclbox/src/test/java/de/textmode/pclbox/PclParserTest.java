@@ -16,10 +16,16 @@ package de.textmode.pclbox;
  * limitations under the License.
  */
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.TestCase;
 
@@ -83,4 +89,180 @@ public final class PclParserTest extends TestCase {
             }
         }, null).close();
     }
+
+    /**
+     * Checks that a complete parse returns a complete {@link PclParseResult}.
+     */
+    public void testCompleteParseResult() throws Exception {
+        final List<PrinterCommand> commands = new ArrayList<>();
+        final byte[] data = { 0x1B, 'E', 'A', 'B' };
+
+        try (final PclParser pclParser = new PclParser(new ByteArrayInputStream(data), commands::add)) {
+            final PclParseResult result = pclParser.parse();
+
+            assertTrue(result.isComplete());
+            assertEquals(PclParseResult.StopReason.COMPLETED, result.getStopReason());
+            assertEquals(4, result.getOffset());
+            assertEquals(2, commands.size());
+        }
+    }
+
+    /**
+     * Checks that the parser stops at the next command boundary if the {@link CancellationToken} is cancelled.
+     */
+    public void testCancellation() throws Exception {
+        final CancellationToken token = new CancellationToken();
+        final List<PrinterCommand> commands = new ArrayList<>();
+        final byte[] data = { 0x1B, 'E', 'A', 'B', 0x0C, 0x1B, 'E' };
+
+        try (final PclParser pclParser = new PclParser(new ByteArrayInputStream(data), new PrinterCommandHandler() {
+            @Override
+            public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+                commands.add(command);
+                if (command instanceof TextCommand) {
+                    token.cancel();
+                }
+            }
+        })) {
+            pclParser.setCancellationToken(token);
+            final PclParseResult result = pclParser.parse();
+
+            assertFalse(result.isComplete());
+            assertEquals(PclParseResult.StopReason.CANCELLED, result.getStopReason());
+            assertEquals(4, result.getOffset());
+            assertEquals(2, commands.size());
+        }
+    }
+
+    /**
+     * Checks that the parser stops if the timeout has been exceeded.
+     */
+    public void testTimeout() throws Exception {
+        final List<PrinterCommand> commands = new ArrayList<>();
+        final byte[] data = { 0x1B, 'E', 'A', 'B' };
+
+        try (final PclParser pclParser = new PclParser(new ByteArrayInputStream(data), commands::add)) {
+            pclParser.setTimeout(0, TimeUnit.MILLISECONDS);
+            final PclParseResult result = pclParser.parse();
+
+            assertEquals(PclParseResult.StopReason.DEADLINE_EXCEEDED, result.getStopReason());
+            assertEquals(0, result.getOffset());
+            assertTrue(commands.isEmpty());
+        }
+    }
+
+    /**
+     * Checks that the {@link PrinterCommandHandler} can stop the parser right after the PJL header.
+     */
+    public void testStopByHandler() throws Exception {
+        final List<PrinterCommand> commands = new ArrayList<>();
+        final byte[] data = "\u001B%-12345X@PJL JOB\n@PJL ENTER LANGUAGE=PCL\n\u001BE\u001B&l1O".getBytes("iso-8859-1");
+        final PclParser[] parser = new PclParser[1];
+
+        try (final PclParser pclParser = new PclParser(new ByteArrayInputStream(data), new PrinterCommandHandler() {
+            @Override
+            public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+                commands.add(command);
+                if (command.toDisplayString().startsWith("@PJL ENTER LANGUAGE")) {
+                    parser[0].stop();
+                }
+            }
+        })) {
+            parser[0] = pclParser;
+            final PclParseResult result = pclParser.parse();
+
+            assertFalse(result.isComplete());
+            assertEquals(PclParseResult.StopReason.STOPPED, result.getStopReason());
+            assertEquals(42, result.getOffset());
+            assertEquals(3, commands.size());
+        }
+    }
+
+    /**
+     * Checks that a part of the data stream can be parsed with {@link PclParser#parse(long, long)}.
+     */
+    public void testParseRange() throws Exception {
+        final List<String> commands = new ArrayList<>();
+        final byte[] data = "A\fB\u001B&l1OC\fD".getBytes("iso-8859-1");
+
+        try (final PclParser parser = new PclParser(new ByteArrayInputStream(data),
+                command -> commands.add(command.toString()))) {
+
+            final PclParseResult result = parser.parse(2, 10);
+            assertTrue(result.isComplete());
+            assertEquals(10, result.getOffset());
+            assertEquals("[B@2, <esc>&l1O@3, C@8, <0x0C>@9]", commands.toString());
+
+            commands.clear();
+            assertEquals(11, parser.parse(new PageRange(1, 10, 20)).getOffset());
+            assertEquals("[D@10]", commands.toString());
+        }
+    }
+
+    /**
+     * Checks that skipped data sections work with an input stream that cannot be positioned backward.
+     */
+    public void testDataSectionFilterWithBufferedInputStream() throws Exception {
+        final List<String> commands = new ArrayList<>();
+        final byte[] data = "\u001B*b3WABCD\u001B*b2WEF".getBytes("iso-8859-1");
+
+        try (final PclParser parser = new PclParser(new BufferedInputStream(new ByteArrayInputStream(data), 4),
+                command -> commands.add(command.toString()))) {
+
+            parser.setDataSectionFilter((p, g, t) -> false);
+            assertTrue(parser.parse().isComplete());
+            assertEquals("[<esc>*b3W@0, D@8, <esc>*b2W@9]", commands.toString());
+        }
+
+        // A truncated data section is detected...
+        try (final PclParser parser = new PclParser(new BufferedInputStream(
+                new ByteArrayInputStream("\u001B*b3WA".getBytes("iso-8859-1"))), command -> { })) {
+
+            parser.setDataSectionFilter((p, g, t) -> false);
+            parser.parse();
+            fail("Should fail because the data section is truncated");
+        } catch (final EOFException e) {
+            assertTrue(e.getMessage().contains("ends at offset 6"));
+        }
+    }
+
+    /**
+     * Checks that a job of a foreign language is parsed from streams that cannot be positioned backward.
+     */
+    public void testForeignLanguageWithSequentialStreams() throws Exception {
+        final String job = "\u001B%-12345X@PJL ENTER LANGUAGE=POSTSCRIPT\n%!PS\u001B%-1234\n"
+                + "\u001B%-12345X@PJL EOJ\n\u001BE";
+        final String expected = "[<esc>%-12345X@0, @PJL ENTER LANGUAGE=POSTSCRIPT@9, POSTSCRIPT[12]@40, "
+                + "<esc>%-12345X@52, @PJL EOJ@61, <esc>E@70]";
+        final byte[] data = job.getBytes("iso-8859-1");
+
+        final List<String> commands = new ArrayList<>();
+        final List<byte[]> foreignData = new ArrayList<>();
+        final PrinterCommandHandler handler = command -> {
+            commands.add(command.toString());
+            if (command instanceof ForeignLanguageCommand) {
+                foreignData.add(((ForeignLanguageCommand) command).getData());
+            }
+        };
+
+        try (final PclParser parser = new PclParser(
+                new BufferedInputStream(new ByteArrayInputStream(data), 4), handler)) {
+
+            assertTrue(parser.parse().isComplete());
+            assertEquals(expected, commands.toString());
+            assertEquals("%!PS\u001B%-1234\n", new String(foreignData.get(0), "iso-8859-1"));
+        }
+
+        commands.clear();
+        foreignData.clear();
+        try (final PclParser parser = new PclParser(new SequenceInputStream(
+                new ByteArrayInputStream(data, 0, 30), new ByteArrayInputStream(data, 30, data.length - 30)),
+                handler)) {
+
+            parser.setDataSectionFilter((p, g, t) -> true);
+            assertTrue(parser.parse().isComplete());
+            assertEquals(expected, commands.toString());
+            assertNull(foreignData.get(0));
+        }
+    }
 }
@@ -0,0 +1,127 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclRewriter}.
+ */
+public final class PclRewriterTest extends TestCase {
+
+    private static final String JOB = "\u001B%-12345X@PJL JOB\r\n@PJL SET COPIES=2\r\n@PJL ENTER LANGUAGE=PCL\r\n"
+            + "\u001BE\u001B&l1h2A\u001B*b3W\u001B&\fPage1\f\u001B&l4HPage2\f\u001B%-12345X";
+
+    private File pclFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.pclFile = File.createTempFile("pclbox", ".pcl");
+        Files.write(this.pclFile.toPath(), JOB.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(this.pclFile.toPath());
+    }
+
+    /**
+     * Rewrites the PCL file with the given {@link RewriteHandler} and returns the result.
+     */
+    private String rewrite(final RewriteHandler handler) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long written = new PclRewriter(handler).rewrite(this.pclFile, Channels.newChannel(out));
+        assertEquals(out.size(), written);
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Checks that a data stream without changes is copied unmodified.
+     */
+    public void testUnchanged() throws Exception {
+        assertEquals(JOB, this.rewrite((command, edits) -> { }));
+    }
+
+    /**
+     * Checks that the data of a foreign language is copied without being read.
+     */
+    public void testForeignLanguage() throws Exception {
+        final String job = "\u001B%-12345X@PJL ENTER LANGUAGE=POSTSCRIPT\n%!PS\nshowpage\n"
+                + "\u001B%-12345X@PJL ENTER LANGUAGE=PCL\n\u001BE\u001B&l4HPage\f";
+        Files.write(this.pclFile.toPath(), job.getBytes(StandardCharsets.ISO_8859_1));
+
+        final List<ForeignLanguageCommand> foreign = new ArrayList<>();
+        final String result = this.rewrite((command, edits) -> {
+            if (command instanceof ForeignLanguageCommand) {
+                foreign.add((ForeignLanguageCommand) command);
+            } else if (command.toCommandString().equals("&lH")) {
+                edits.replace(new ParameterizedPclCommand(0, '&', 'l', "1", 'H'));
+            }
+        });
+
+        assertEquals(job.replace("\u001B&l4H", "\u001B&l1H"), result);
+        assertEquals(1, foreign.size());
+        assertEquals(14, foreign.get(0).getLength());
+        assertNull(foreign.get(0).getData());
+    }
+
+    /**
+     * Checks the replacement of a single PCL command and of a PCL sequence.
+     */
+    public void testReplace() throws Exception {
+        final String result = this.rewrite((command, edits) -> {
+            if (command.toCommandString().equals("&lH")) {
+                edits.replace(new ParameterizedPclCommand(0, '&', 'l', "1", 'H'));
+            } else if (command.toCommandString().equals("&lHA")) {
+                edits.replace(
+                        new ParameterizedPclCommand(0, '&', 'l', "5", 'H'),
+                        new ParameterizedPclCommand(0, '&', 'l', "26", 'A'));
+            }
+        });
+
+        assertEquals(JOB.replace("\u001B&l1h2A", "\u001B&l5H\u001B&l26A").replace("\u001B&l4H", "\u001B&l1H"), result);
+    }
+
+    /**
+     * Checks the deletion of PJL commands and insertions before and after commands.
+     */
+    public void testDeleteAndInsert() throws Exception {
+        final String result = this.rewrite((command, edits) -> {
+            if (command instanceof PjlCommand && command.toDisplayString().startsWith("@PJL SET")) {
+                edits.delete();
+            } else if (command instanceof TwoBytePclCommand) {
+                edits.insertAfter(new ParameterizedPclCommand(0, '&', 'l', "3", 'X'));
+            } else if (command instanceof TextCommand && command.toDisplayString().equals("Page2")) {
+                edits.insertBefore(new TextCommand(0, "Before".getBytes(StandardCharsets.ISO_8859_1)));
+                edits.insertAfter(new TextCommand(0, "After".getBytes(StandardCharsets.ISO_8859_1)));
+            }
+        });
+
+        assertEquals(JOB.replace("@PJL SET COPIES=2\r\n", "")
+                .replace("\u001BE", "\u001BE\u001B&l3X")
+                .replace("Page2", "BeforePage2After"), result);
+    }
+}
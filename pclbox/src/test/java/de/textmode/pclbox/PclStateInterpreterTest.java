@@ -0,0 +1,164 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclStateInterpreter} and {@link PclState}.
+ */
+public final class PclStateInterpreterTest extends TestCase {
+
+    /**
+     * A PCL job with three pages.
+     */
+    private static final String JOB = "\u001BE\u001B&l1O\u001B(s12H\u001B&a10LAB\r\n\f"
+            + "\u001B(10U\u001B*p300XC\f"
+            + "\u001B)s1S\u000EDE\f";
+
+    /**
+     * Interprets the given PCL data stream with a new {@link PclStateInterpreter}.
+     */
+    private static PclStateInterpreter interpret(final String pcl, final boolean combineSequences) throws Exception {
+        final byte[] data = pcl.getBytes(StandardCharsets.ISO_8859_1);
+        final PclStateInterpreter interpreter = new PclStateInterpreter();
+
+        try (final PclParser parser = new PclParser(new ByteArrayInputStream(data), interpreter)) {
+            parser.setCombineSequences(combineSequences);
+            parser.parse();
+        }
+
+        return interpreter;
+    }
+
+    /**
+     * Checks the states at the start of the pages.
+     */
+    public void testPageStates() throws Exception {
+        for (final boolean combineSequences : new boolean[] {false, true}) {
+            final PclStateInterpreter interpreter = interpret(JOB, combineSequences);
+            assertEquals(3, interpreter.getPageCount());
+
+            final PclState page1 = interpreter.getPageState(1);
+            assertEquals(0, page1.getOffset());
+            assertEquals(new PclState(), page1);
+
+            final PclState page2 = interpreter.getPageState(2);
+            assertEquals(JOB.indexOf("\u001B(10U"), page2.getOffset());
+            assertEquals(1, page2.getOrientation());
+            assertEquals(60.0, page2.getHmi(), 0.0001);
+            assertEquals(600.0, page2.getLeftMargin(), 0.0001);
+            assertEquals(600.0, page2.getCursorX(), 0.0001);
+            assertEquals(450.0, page2.getCursorY(), 0.0001);
+            assertEquals(12.0, page2.getPrimaryFont().getPitch(), 0.0001);
+            assertEquals("8U", page2.getPrimaryFont().getSymbolSet());
+
+            final PclState page3 = interpreter.getPageState(3);
+            assertEquals(780.0, page3.getCursorX(), 0.0001);
+            assertEquals("10U", page3.getPrimaryFont().getSymbolSet());
+            assertSame(page2.getSecondaryFont(), page3.getSecondaryFont());
+
+            final PclState end = interpreter.getState();
+            assertEquals(JOB.length() - 1, end.getOffset());
+            assertTrue(end.isSecondaryFontActive());
+            assertEquals(1, end.getActiveFont().getStyle());
+            assertEquals(900.0, end.getCursorX(), 0.0001);
+        }
+    }
+
+    /**
+     * Checks that the interpretation can be continued at the start of a page.
+     */
+    public void testContinueAtPage() throws Exception {
+        final PclStateInterpreter full = interpret(JOB, true);
+        final PclState page2 = full.getPageState(2);
+
+        final byte[] data = JOB.getBytes(StandardCharsets.ISO_8859_1);
+        final PclStateInterpreter interpreter = new PclStateInterpreter(page2, null);
+        try (final PclParser parser = new PclParser(new ByteArrayInputStream(data), interpreter)) {
+            parser.parse(page2.getOffset(), data.length);
+        }
+
+        assertEquals(2, interpreter.getPageCount());
+        assertEquals(page2, interpreter.getPageState(1));
+        assertEquals(full.getPageState(3), interpreter.getPageState(2));
+        assertEquals(full.getState(), interpreter.getState());
+    }
+
+    /**
+     * Checks that a page eject starts a new page with the state before the eject.
+     */
+    public void testEject() throws Exception {
+        final PclStateInterpreter interpreter = interpret("\u001BEA\u001B&l3X\u001B&l2HB", false);
+
+        assertEquals(2, interpreter.getPageCount());
+        assertEquals(1, interpreter.getPageState(1).getPaperSource());
+        assertEquals(1, interpreter.getPageState(2).getPaperSource());
+        assertEquals(3, interpreter.getPageState(2).getCopies());
+        assertEquals(2, interpreter.getState().getPaperSource());
+    }
+
+    /**
+     * Checks the cursor position after raster graphics.
+     */
+    public void testRasterGraphics() throws Exception {
+        final PclStateInterpreter interpreter = interpret(
+                "\u001B*t150R\u001B*p100Y\u001B*r1A\u001B*b2M\u001B*b2W\u0000\u0000\u001B*b3Y", false);
+
+        final PclState raster = interpreter.getState();
+        assertTrue(raster.isRasterGraphicsActive());
+        assertEquals(150, raster.getRasterResolution());
+        assertEquals(2, raster.getCompressionMethod());
+        assertEquals(4, raster.getRasterRows());
+
+        final PclStateInterpreter ended = interpret(
+                "\u001B*t150R\u001B*p100Y\u001B*r1A\u001B*b2M\u001B*b2W\u0000\u0000\u001B*b3Y\u001B*rC", false);
+
+        final PclState state = ended.getState();
+        assertFalse(state.isRasterGraphicsActive());
+        assertEquals(0, state.getCompressionMethod());
+        assertEquals(240.0 + 4 * 4.8, state.getCursorY(), 0.0001);
+    }
+
+    /**
+     * Checks that commands within a macro definition do not change the state.
+     */
+    public void testMacroDefinition() throws Exception {
+        final PclStateInterpreter interpreter = interpret(
+                "\u001B&f1y0X\u001B&l1OText\u001B&f1X\u001B&a10C", true);
+
+        final PclState state = interpreter.getState();
+        assertEquals(0, state.getOrientation());
+        assertEquals(720.0, state.getCursorX(), 0.0001);
+    }
+
+    /**
+     * Checks that an invalid page number is rejected.
+     */
+    public void testInvalidPageNumber() throws Exception {
+        final PclStateInterpreter interpreter = interpret(JOB, false);
+        try {
+            interpreter.getPageState(4);
+            fail("IndexOutOfBoundsException expected");
+        } catch (final IndexOutOfBoundsException e) {
+            assertEquals("Invalid page number 4", e.getMessage());
+        }
+    }
+}
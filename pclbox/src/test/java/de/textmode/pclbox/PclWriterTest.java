@@ -0,0 +1,189 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclWriter}.
+ */
+public final class PclWriterTest extends TestCase {
+
+    private static final String JOB = "\u001B%-12345X@PJL JOB\n@PJL ENTER LANGUAGE=PCL\n"
+            + "\u001BE\u001B&l1o2a0E\u001B*rB\u001B&d@\u001B*b3WABC\u001B(s1p12v0s0b4148T"
+            + "Hello\r\n\u001B%0BIN;SP1;PA10,20;\u001B%0A\f\u001B%-12345X";
+
+    /**
+     * Parses the given data stream and returns all commands.
+     */
+    private static List<PrinterCommand> parse(final byte[] pcl, final boolean combine) throws Exception {
+        final List<PrinterCommand> result = new ArrayList<>();
+        final PclInputStream in = new PclInputStreamForInputStream(new ByteArrayInputStream(pcl));
+        final PclParser parser = new PclParser(in, result::add);
+        parser.setCombineSequences(combine);
+        parser.parse();
+        return result;
+    }
+
+    /**
+     * Returns the data stream as produced by {@link PrinterCommand#toByteArray()}.
+     */
+    private static byte[] toByteArray(final List<PrinterCommand> commands) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (final PrinterCommand command : commands) {
+            out.write(command.toByteArray());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes the commands with a {@link PclWriter} that uses the given buffer size.
+     */
+    private static byte[] write(final List<PrinterCommand> commands, final int bufferSize) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (final PclWriter writer = new PclWriter(Channels.newChannel(out), bufferSize)) {
+            for (final PrinterCommand command : commands) {
+                writer.write(command);
+            }
+            assertEquals(commands.isEmpty() ? 0 : toByteArray(commands).length, writer.getBytesWritten());
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks that the {@link PclWriter} writes exactly the same bytes as {@link PrinterCommand#toByteArray()}.
+     */
+    public void testSameAsToByteArray() throws Exception {
+        final byte[] pcl = JOB.getBytes(StandardCharsets.ISO_8859_1);
+        for (final boolean combine : new boolean[] { false, true }) {
+            final List<PrinterCommand> commands = parse(pcl, combine);
+            final byte[] expected = toByteArray(commands);
+
+            assertTrue(Arrays.equals(expected, write(commands, 64 * 1024)));
+            assertTrue(Arrays.equals(expected, write(commands, 64)));
+        }
+    }
+
+    /**
+     * Checks that an unmodified data stream is written unmodified (values that have been omitted in a
+     * PCL sequence are omitted again). Note that PJL lines are always terminated with a line feed.
+     */
+    public void testRoundTrip() throws Exception {
+        final byte[] pcl = JOB.getBytes(StandardCharsets.ISO_8859_1);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PclWriter writer = new PclWriter(out);
+        final PclInputStream in = new PclInputStreamForInputStream(new ByteArrayInputStream(pcl));
+        final PclParser parser = new PclParser(in, writer);
+        parser.setCombineSequences(true);
+        parser.parse();
+        writer.flush();
+
+        assertEquals(JOB, new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Checks that a job of a foreign language is written unmodified if the data stream has been parsed without
+     * a {@link DataSectionFilter}, from a stream as well as from a file.
+     */
+    public void testForeignLanguageRoundTrip() throws Exception {
+        final String job = "\u001B%-12345X@PJL ENTER LANGUAGE=POSTSCRIPT\n%!PS\nshowpage\n"
+                + "\u001B%-12345X@PJL EOJ\n\u001BE";
+        final byte[] pcl = job.getBytes(StandardCharsets.ISO_8859_1);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PclWriter writer = new PclWriter(out);
+        new PclParser(new ByteArrayInputStream(pcl), writer).parse();
+        writer.flush();
+        assertEquals(job, new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+
+        final File file = File.createTempFile("pclbox", ".pcl");
+        try {
+            Files.write(file.toPath(), pcl);
+            out = new ByteArrayOutputStream();
+            writer = new PclWriter(out);
+            try (final PclParser parser = new PclParser(file, writer)) {
+                parser.parse();
+            }
+            writer.flush();
+            assertEquals(job, new String(out.toByteArray(), StandardCharsets.ISO_8859_1));
+        } finally {
+            Files.delete(file.toPath());
+        }
+    }
+
+    /**
+     * Checks large data sections and texts, which are written with a gathering write to a {@link FileChannel}.
+     */
+    public void testGatheringWrite() throws Exception {
+        final Random random = new Random(4711);
+        final byte[] raster = new byte[20000];
+        random.nextBytes(raster);
+        final byte[] text = new byte[10000];
+        for (int ix = 0; ix < text.length; ++ix) {
+            text[ix] = (byte) ('A' + ix % 26);
+        }
+
+        final List<PrinterCommand> commands = new ArrayList<>();
+        commands.add(new TwoBytePclCommand(0, 'E'));
+        commands.add(new ParameterizedPclCommand(2, '*', 'b', "20000", 'W', raster));
+        commands.add(new TextCommand(20010, text));
+        commands.add(new ControlCharacterCommand(30010, (byte) 0x0C));
+        final byte[] expected = toByteArray(commands);
+
+        final File file = File.createTempFile("pclbox", ".pcl");
+        try {
+            try (final FileChannel channel = new FileOutputStream(file).getChannel();
+                 final PclWriter writer = new PclWriter(channel, 4096)) {
+                for (final PrinterCommand command : commands) {
+                    writer.write(command);
+                }
+                assertEquals(expected.length, writer.getBytesWritten());
+            }
+
+            assertTrue(Arrays.equals(expected, Files.readAllBytes(file.toPath())));
+        } finally {
+            Files.delete(file.toPath());
+        }
+
+        assertTrue(Arrays.equals(expected, write(commands, 64)));
+    }
+
+    /**
+     * Checks that a too small buffer is rejected.
+     */
+    public void testInvalidBufferSize() throws Exception {
+        try {
+            new PclWriter(Channels.newChannel(new ByteArrayOutputStream()), 10);
+            fail("IllegalArgumentException expected");
+        } catch (final IllegalArgumentException e) {
+            // expected...
+        }
+    }
+}
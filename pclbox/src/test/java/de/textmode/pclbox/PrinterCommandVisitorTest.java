@@ -41,8 +41,10 @@ public final class PrinterCommandVisitorTest extends DataStreamParserTest {
         private int controlCharacterCounter = 0;
         private int twoBytePclCommandCounter = 0;
         private int parameterizedPclCommand = 0;
+        private int combinedPclCommand = 0;
         private int pjlCommand = 0;
         private int hpglCommand = 0;
+        private int foreignLanguageCommand = 0;
 
         @Override
         public void handle(TextCommand command) {
@@ -64,6 +66,11 @@ public final class PrinterCommandVisitorTest extends DataStreamParserTest {
             ++this.parameterizedPclCommand;
         }
 
+        @Override
+        public void handle(CombinedPclCommand combinedPclCommand) {
+            ++this.combinedPclCommand;
+        }
+
         @Override
         public void handle(PjlCommand pjlCommand) {
             ++this.pjlCommand;
@@ -73,6 +80,99 @@ public final class PrinterCommandVisitorTest extends DataStreamParserTest {
         public void handle(HpglCommand hpglCommand) {
             ++this.hpglCommand;
         }
+
+        @Override
+        public void handle(ForeignLanguageCommand foreignLanguageCommand) {
+            ++this.foreignLanguageCommand;
+        }
+    }
+
+    /**
+     * Simple visitor that only implements the handle methods for the basic types of {@link PrinterCommand}.
+     */
+    private static class ParameterizedVisitor implements PrinterCommandVisitor {
+
+        private final StringBuilder commands = new StringBuilder();
+
+        @Override
+        public void handle(TextCommand command) {
+        }
+
+        @Override
+        public void handle(ControlCharacterCommand command) {
+        }
+
+        @Override
+        public void handle(TwoBytePclCommand twoBytePclCommand) {
+        }
+
+        @Override
+        public void handle(ParameterizedPclCommand parameterizedPclCommand) {
+            this.commands.append((char) parameterizedPclCommand.getTerminationCharacter());
+        }
+
+        @Override
+        public void handle(PjlCommand pjlCommand) {
+        }
+
+        @Override
+        public void handle(HpglCommand hpglCommand) {
+        }
+    }
+
+    /**
+     * Checks that a {@link CombinedPclCommand} is split by default if the visitor does not handle it.
+     */
+    public void testDefaultVisitorWithCombinedSequence() throws Exception {
+        final ParameterizedVisitor visitor = new ParameterizedVisitor();
+        final ByteArrayInputStream data = new ByteArrayInputStream(
+                new byte[] { 0x1B, '&', 'l', '1', 'o', '2', 'A', 0x1B, '&', 'l', '0', 'E' });
+
+        final PclParserContext ctx = new PclParserContext(
+                new PclInputStreamForInputStream(data), command -> command.accept(visitor));
+
+        ctx.setCombineSequences(true);
+        new Pcl5Parser(ctx).parse();
+
+        assertEquals("OAE", visitor.commands.toString());
+    }
+
+    /**
+     * Checks that a {@link ForeignLanguageCommand} is ignored by default if the visitor does not handle it.
+     */
+    public void testDefaultVisitorWithForeignLanguage() throws Exception {
+        final ParameterizedVisitor visitor = new ParameterizedVisitor();
+        final ByteArrayInputStream data = new ByteArrayInputStream(
+                "\u001B%-12345X@PJL ENTER LANGUAGE=PDF\n%PDF-1.4\u001B%-12345X".getBytes("iso-8859-1"));
+
+        new Pcl5Parser(new PclParserContext(
+                new PclInputStreamForInputStream(data), command -> command.accept(visitor))).parse();
+
+        assertEquals("XX", visitor.commands.toString());
+    }
+
+    /**
+     * Parses a PCL data stream that contains a PCL sequence with delivery of combined sequences enabled.
+     */
+    public void testVisitorWithCombinedSequence() throws Exception {
+        final CountingVisitor visitor = new CountingVisitor();
+        final ByteArrayInputStream data = new ByteArrayInputStream(
+                new byte[] { 0x1B, '&', 'l', '1', 'o', '2', 'A', 0x1B, '&', 'l', '0', 'E' });
+
+        final PrinterCommandHandler handler = new PrinterCommandHandler() {
+            @Override
+            public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+                command.accept(visitor);
+            }
+        };
+
+        final PclParserContext ctx = new PclParserContext(new PclInputStreamForInputStream(data), handler);
+
+        ctx.setCombineSequences(true);
+        new Pcl5Parser(ctx).parse();
+
+        assertEquals(1, visitor.combinedPclCommand);
+        assertEquals(1, visitor.parameterizedPclCommand);
     }
 
     /**
@@ -109,7 +209,30 @@ public final class PrinterCommandVisitorTest extends DataStreamParserTest {
         assertEquals(1, VISITOR.controlCharacterCounter);
         assertEquals(1, VISITOR.twoBytePclCommandCounter);
         assertEquals(3, VISITOR.parameterizedPclCommand);
+        assertEquals(0, VISITOR.combinedPclCommand);
         assertEquals(1, VISITOR.pjlCommand);
         assertEquals(1, VISITOR.hpglCommand);
     }
+
+    /**
+     * Checks that the visitor is invoked for the data of a foreign language.
+     */
+    public void testVisitorWithForeignLanguage() throws Exception {
+        final CountingVisitor visitor = new CountingVisitor();
+        final ByteArrayInputStream data = new ByteArrayInputStream(
+                "\u001B%-12345X@PJL ENTER LANGUAGE=PDF\n%PDF-1.4".getBytes("iso-8859-1"));
+
+        final PrinterCommandHandler handler = new PrinterCommandHandler() {
+            @Override
+            public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+                command.accept(visitor);
+            }
+        };
+
+        new Pcl5Parser(new PclParserContext(new PclInputStreamForInputStream(data), handler)).parse();
+
+        assertEquals(1, visitor.parameterizedPclCommand);
+        assertEquals(1, visitor.pjlCommand);
+        assertEquals(1, visitor.foreignLanguageCommand);
+    }
 }
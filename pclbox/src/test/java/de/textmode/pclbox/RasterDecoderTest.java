@@ -0,0 +1,228 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link RasterDecoder}.
+ */
+public final class RasterDecoderTest extends TestCase implements RasterRowHandler {
+
+    private final List<String> rows = new ArrayList<>();
+    private final StringBuilder unchangedRows = new StringBuilder();
+    private final RasterDecoder decoder = new RasterDecoder(this);
+
+    @Override
+    public void handleRasterRow(final RasterRow row) {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(row.getRowIndex()).append(':');
+        for (int plane = 0; plane < row.getPlaneCount(); ++plane) {
+            if (plane > 0) {
+                sb.append('/');
+            }
+            for (int ix = 0; ix < row.getLength(); ++ix) {
+                sb.append(String.format("%02X", row.getPlane(plane)[ix] & 0xFF));
+            }
+        }
+        this.rows.add(sb.toString());
+        this.unchangedRows.append(row.isUnchanged() ? 'U' : 'C');
+    }
+
+    /**
+     * Passes a PCL command to the {@link RasterDecoder}.
+     */
+    private void send(final int group, final int value, final int termination) throws Exception {
+        this.decoder.handlePrinterCommand(
+                new ParameterizedPclCommand(0, '*', group, Integer.toString(value), termination));
+    }
+
+    /**
+     * Passes a "Transfer Raster Data" PCL command to the {@link RasterDecoder}.
+     */
+    private void transfer(final int termination, final int... data) throws Exception {
+        final byte[] bytes = new byte[data.length];
+        for (int ix = 0; ix < data.length; ++ix) {
+            bytes[ix] = (byte) data[ix];
+        }
+        this.decoder.handlePrinterCommand(
+                new ParameterizedPclCommand(0, '*', 'b', Integer.toString(bytes.length), termination, bytes));
+    }
+
+    /**
+     * Checks unencoded data and that short rows are padded with zeros.
+     */
+    public void testUnencoded() throws Exception {
+        this.send('r', 24, 'S');
+        this.send('r', 0, 'A');
+        this.transfer('W', 0x01, 0x02, 0x03);
+        this.transfer('W', 0xFF);
+        this.transfer('W', 0x01, 0x02, 0x03, 0x04);
+
+        assertEquals("[0:010203, 1:FF0000, 2:010203]", this.rows.toString());
+    }
+
+    /**
+     * Checks run-length encoded data (compression method 1).
+     */
+    public void testRunLength() throws Exception {
+        this.send('b', 1, 'M');
+        this.transfer('W', 0x02, 0xAA, 0x00, 0xFF);
+
+        assertEquals("[0:AAAAAAFF]", this.rows.toString());
+    }
+
+    /**
+     * Checks TIFF encoded data (compression method 2).
+     */
+    public void testTiff() throws Exception {
+        this.send('b', 2, 'M');
+        this.transfer('W', 0x02, 0x01, 0x02, 0x03, 0xFE, 0x09, 0x80);
+
+        assertEquals("[0:010203090909]", this.rows.toString());
+    }
+
+    /**
+     * Checks delta row compressed data (compression method 3), including extended offsets.
+     */
+    public void testDeltaRow() throws Exception {
+        this.send('r', 0, 'A');
+        this.send('b', 0, 'M');
+        this.transfer('W', 0x11, 0x22, 0x33, 0x44);
+        this.send('b', 3, 'M');
+        this.transfer('W', 0x21, 0x77, 0x88);
+        this.transfer('W');
+        this.transfer('W', 0x1F, 0x01, 0x55);
+
+        assertEquals(4, this.rows.size());
+        assertEquals("0:11223344", this.rows.get(0));
+        assertEquals("1:11778844", this.rows.get(1));
+        assertEquals("2:11778844", this.rows.get(2));
+        assertTrue(this.rows.get(3).startsWith("3:11778844"));
+        assertTrue(this.rows.get(3).endsWith("0055"));
+        assertEquals(2 + 33 * 2, this.rows.get(3).length());
+    }
+
+    /**
+     * Checks replacement delta row compressed data (compression method 9).
+     */
+    public void testReplacementDeltaRow() throws Exception {
+        this.send('r', 48, 'S');
+        this.send('r', 0, 'A');
+        this.send('b', 9, 'M');
+        this.transfer('W', 0x09, 0x01, 0x02);
+        this.transfer('W', 0xA2, 0x02, 0x55);
+
+        assertEquals("[0:000102000000, 1:005555550000]", this.rows.toString());
+    }
+
+    /**
+     * Checks adaptive compression (compression method 5) with empty and duplicate rows.
+     */
+    public void testAdaptive() throws Exception {
+        this.send('b', 5, 'M');
+        this.transfer('W',
+                0x00, 0x00, 0x02, 0xAB, 0xCD,   // unencoded row
+                0x05, 0x00, 0x01,               // one duplicate row
+                0x04, 0x00, 0x02,               // two empty rows
+                0x03, 0x00, 0x02, 0x01, 0x20);  // delta row
+
+        assertEquals("[0:ABCD, 1:ABCD, 2:0000, 3:0000, 4:0020]", this.rows.toString());
+        assertEquals("CUCUC", this.unchangedRows.toString());
+    }
+
+    /**
+     * Checks that rows are flagged as unchanged if delta row compression does not replace any bytes.
+     */
+    public void testUnchangedRows() throws Exception {
+        this.send('b', 3, 'M');
+        this.transfer('W', 0x01, 0xFF);
+        this.transfer('W');
+        this.transfer('W');
+        this.transfer('W', 0x20, 0x0F);
+        this.send('b', 1, 'Y');
+        this.transfer('W');
+        this.send('b', 0, 'M');
+        this.transfer('W', 0x00, 0x0F);
+
+        assertEquals("[0:00FF, 1:00FF, 2:00FF, 3:0FFF, 5:0000, 6:000F]", this.rows.toString());
+        assertEquals("CUUCCC", this.unchangedRows.toString());
+    }
+
+    /**
+     * Checks that "Raster Y Offset" skips rows and clears the seed row.
+     */
+    public void testYOffset() throws Exception {
+        this.send('b', 3, 'M');
+        this.transfer('W', 0x00, 0x11);
+        this.send('b', 5, 'Y');
+        this.transfer('W', 0x01, 0x22);
+
+        assertEquals("[0:11, 6:0022]", this.rows.toString());
+    }
+
+    /**
+     * Checks raster data that is transferred by plane (missing planes are blank) and that the end of
+     * the raster graphics resets the compression method.
+     */
+    public void testPlanes() throws Exception {
+        this.send('r', 3, 'U');
+        this.send('r', 1, 'A');
+        this.transfer('V', 0x01);
+        this.transfer('V', 0x02);
+        this.transfer('W', 0x03);
+        this.send('b', 2, 'M');
+        this.transfer('W', 0x00, 0x04);
+        this.decoder.handlePrinterCommand(new ParameterizedPclCommand(0, '*', 'r', "", 'C'));
+
+        assertEquals("[0:01/02/03, 1:04/00/00]", this.rows.toString());
+        assertEquals(0, this.decoder.getCompressionMethod());
+        assertFalse(this.decoder.isGraphicsActive());
+    }
+
+    /**
+     * Checks the {@link RasterDecoder} together with the {@link PclParser} and combined PCL sequences. The offset
+     * of a row is the offset of the "Transfer Raster Data" command within the sequence.
+     */
+    public void testWithParser() throws Exception {
+        final ByteArrayOutputStream pcl = new ByteArrayOutputStream();
+        pcl.write(new byte[] { 0x1B, '*', 'r', '1', 'A', 0x1B, '*', 'b', '1', 'm', '2', 'W', 0x01, 0x7F });
+        pcl.write(new byte[] { 0x1B, '*', 'r', 'B', 0x1B, 'E' });
+
+        final List<PrinterCommand> commands = new ArrayList<>();
+        final List<Long> offsets = new ArrayList<>();
+        final RasterRowHandler handler = row -> {
+            offsets.add(row.getOffset());
+            this.handleRasterRow(row);
+        };
+
+        try (final PclParser parser = new PclParser(new ByteArrayInputStream(pcl.toByteArray()),
+                new RasterDecoder(handler, commands::add))) {
+            parser.setCombineSequences(true);
+            parser.parse();
+        }
+
+        assertEquals("[0:7F7F]", this.rows.toString());
+        assertEquals("[10]", offsets.toString());
+        assertEquals(4, commands.size());
+    }
+}
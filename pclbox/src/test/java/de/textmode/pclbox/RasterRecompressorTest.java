@@ -0,0 +1,195 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link RasterRecompressor}.
+ */
+public final class RasterRecompressorTest extends TestCase {
+
+    /**
+     * Writes a PCL command (with an optional data section) to the given stream.
+     */
+    private static void write(final ByteArrayOutputStream out, final String command, final byte[] data) {
+        final byte[] bytes = ("\u001B" + command).getBytes(StandardCharsets.ISO_8859_1);
+        out.write(bytes, 0, bytes.length);
+        if (data != null) {
+            out.write(data, 0, data.length);
+        }
+    }
+
+    /**
+     * Writes a "Transfer Raster Data" command with unencoded data to the given stream.
+     */
+    private static void transfer(final ByteArrayOutputStream out, final char termination, final byte[] row) {
+        write(out, "*b" + row.length + termination, row);
+    }
+
+    /**
+     * Parses the given data stream and returns all decoded raster rows.
+     */
+    private static List<String> decode(final byte[] pcl) throws Exception {
+        final List<String> result = new ArrayList<>();
+        final RasterDecoder decoder = new RasterDecoder(row -> {
+            final StringBuilder sb = new StringBuilder();
+            sb.append(row.getRowIndex()).append(':');
+            for (int plane = 0; plane < row.getPlaneCount(); ++plane) {
+                sb.append('/');
+                for (int ix = 0; ix < row.getLength(); ++ix) {
+                    sb.append(String.format("%02X", row.getPlane(plane)[ix] & 0xFF));
+                }
+            }
+            result.add(sb.toString());
+        });
+
+        new PclParser(new PclInputStreamForInputStream(new ByteArrayInputStream(pcl)), decoder).parse();
+        return result;
+    }
+
+    /**
+     * Passes the given data stream through a {@link RasterRecompressor} and returns the written data stream.
+     */
+    private static byte[] recompress(final byte[] pcl, final boolean combine) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PclWriter writer = new PclWriter(out);
+        final RasterRecompressor recompressor = new RasterRecompressor(writer);
+        final PclParser parser = new PclParser(
+                new PclInputStreamForInputStream(new ByteArrayInputStream(pcl)), recompressor);
+
+        parser.setCombineSequences(combine);
+        parser.parse();
+        writer.flush();
+
+        assertTrue(recompressor.getRasterBytesWritten() <= recompressor.getRasterBytesRead());
+        return out.toByteArray();
+    }
+
+    /**
+     * Creates a raster image that is typical for scanned or rendered documents: mostly blank rows, some
+     * repeated rows and rows that differ only in a few bytes from the previous row.
+     */
+    private static byte[] createImage(final int mode) {
+        final Random random = new Random(mode);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, "E", null);
+        write(out, "*r800S", null);
+        write(out, "*r1A", null);
+        write(out, "*b" + mode + "M", null);
+
+        final byte[] row = new byte[100];
+        for (int ix = 0; ix < 200; ++ix) {
+            if (ix % 50 == 10) {
+                random.nextBytes(row);
+            } else if (ix % 7 == 0) {
+                row[random.nextInt(row.length)] = (byte) random.nextInt(256);
+            } else if (ix % 50 == 40) {
+                Arrays.fill(row, (byte) 0x00);
+            }
+
+            if (mode == 0) {
+                transfer(out, 'W', row);
+            } else {
+                // Compression method 1, two bytes per run...
+                final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                for (final byte b : row) {
+                    encoded.write(0);
+                    encoded.write(b);
+                }
+                transfer(out, 'W', encoded.toByteArray());
+            }
+        }
+
+        write(out, "*rC", null);
+        write(out, "Text\f", null);
+        return out.toByteArray();
+    }
+
+    /**
+     * Checks that the raster rows are not changed and that the raster data gets (much) smaller.
+     */
+    public void testRecompress() throws Exception {
+        for (final int mode : new int[] { 0, 1 }) {
+            final byte[] pcl = createImage(mode);
+            for (final boolean combine : new boolean[] { false, true }) {
+                final byte[] result = recompress(pcl, combine);
+
+                assertEquals(decode(pcl), decode(result));
+                assertTrue(result.length * 3 < pcl.length);
+            }
+        }
+    }
+
+    /**
+     * Checks raster data with multiple planes and the selection of the compression method per plane.
+     */
+    public void testPlanes() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(out, "*r-3U", null);
+        write(out, "*r64S", null);
+        write(out, "*r1A", null);
+
+        final byte[] blank = new byte[8];
+        final byte[] pattern = { 1, 2, 3, 4, 5, 6, 7, 8 };
+        final byte[] changed = { 1, 2, 3, 4, 5, 6, 7, 9 };
+        transfer(out, 'V', pattern);
+        transfer(out, 'V', blank);
+        transfer(out, 'W', pattern);
+        transfer(out, 'V', changed);
+        transfer(out, 'V', blank);
+        transfer(out, 'W', pattern);
+        write(out, "*b2y0M", null);
+        transfer(out, 'W', changed);
+        write(out, "*rB", null);
+
+        final byte[] pcl = out.toByteArray();
+        final byte[] result = recompress(pcl, false);
+
+        assertEquals(decode(pcl), decode(result));
+        assertEquals(
+                "\u001B*r-3U\u001B*r64S\u001B*r1A"
+                + "\u001B*b2M\u001B*b9V\u0007\u0001\u0002\u0003\u0004\u0005\u0006\u0007\u0008\u001B*b0V"
+                + "\u001B*b9W\u0007\u0001\u0002\u0003\u0004\u0005\u0006\u0007\u0008"
+                + "\u001B*b3M\u001B*b2V\u0007\u0009\u001B*b0V\u001B*b0W"
+                + "\u001B*b2Y\u001B*b9Wà\u0001\u0002\u0003\u0004\u0005\u0006\u0007\u0009\u001B*rB",
+                new String(result, StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Checks that raster data with an unknown compression method and raster data within a macro definition
+     * are passed unchanged.
+     */
+    public void testUnchanged() throws Exception {
+        final String pcl = "\u001B*r1A\u001B*b7M\u001B*b2W\u0001\u0002\u001B*b0M\u001B*b2W\u0001\u0002\u001B*rB"
+                + "\u001B&f1y0X\u001B*b0M\u001B*b2W\u0001\u0002\u001B&f1X";
+
+        final String expected = "\u001B*r1A\u001B*b7M\u001B*b2W\u0001\u0002\u001B*b0M\u001B*b2W\u0001\u0002"
+                + "\u001B*rB\u001B&f1Y\u001B&f0X\u001B*b0M\u001B*b2W\u0001\u0002\u001B&f1X";
+
+        assertEquals(expected, new String(
+                recompress(pcl.getBytes(StandardCharsets.ISO_8859_1), false), StandardCharsets.ISO_8859_1));
+    }
+}
@@ -0,0 +1,143 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link RedundantCommandFilter}.
+ */
+public final class RedundantCommandFilterTest extends TestCase {
+
+    /**
+     * Parses the given data stream, passes it through a {@link RedundantCommandFilter} and returns the
+     * written data stream.
+     */
+    private static String filter(final String pcl, final boolean combine) throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final PclWriter writer = new PclWriter(out);
+        final PclParser parser = new PclParser(
+                new PclInputStreamForInputStream(new ByteArrayInputStream(pcl.getBytes(StandardCharsets.ISO_8859_1))),
+                new RedundantCommandFilter(writer));
+
+        parser.setCombineSequences(combine);
+        parser.parse();
+        writer.flush();
+
+        return new String(out.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Checks that cursor positioning to the current position is removed.
+     */
+    public void testCursor() throws Exception {
+        assertEquals(
+                "\u001B*p100X\u001B*p200Y\u001B(s3BA\u001B*p100XB\u001B&a720H",
+                filter("\u001B*p100X\u001B*p200Y\u001B(s3B\u001B*p100X\u001B*p200Y\u001B*p+0X"
+                        + "A\u001B*p100X\u001B*p+0YB\u001B&a720H\u001B&a720H", false));
+
+        // A relative move or a change of the units makes the position unknown...
+        assertEquals(
+                "\u001B*p100X\u001B*p+5X\u001B*p100X\u001B&u300D\u001B*p100X",
+                filter("\u001B*p100X\u001B*p+5X\u001B*p100X\u001B&u300D\u001B*p100X", false));
+    }
+
+    /**
+     * Checks that column and row positions are kept after the character or line spacing may have been changed.
+     */
+    public void testColumnsAndRows() throws Exception {
+        // A font selection resets the HMI, so the same column is a different position...
+        assertEquals(
+                "\u001B&a10C\u001B(s16.67H\u001B&a10C\u001B(3@\u001B&a10C",
+                filter("\u001B&a10C\u001B(s16.67H\u001B&a10C\u001B(3@\u001B&a10C", false));
+
+        // ... but a position in decipoints or a row is still known...
+        assertEquals(
+                "\u001B&a720H\u001B&a5R\u001B(s3B",
+                filter("\u001B&a720H\u001B&a5R\u001B(s3B\u001B&a720H\u001B&a5R", false));
+
+        // A change of the VMI or the HMI makes the rows and columns unknown...
+        assertEquals(
+                "\u001B&a5R\u001B&a10C\u001B&l8D\u001B&a5R\u001B&a10C\u001B&k10H\u001B&a10C",
+                filter("\u001B&a5R\u001B&a10C\u001B&l8D\u001B&a5R\u001B&a10C\u001B&k10H\u001B&a10C", false));
+    }
+
+    /**
+     * Checks that font selections of the current font are removed.
+     */
+    public void testFont() throws Exception {
+        assertEquals(
+                "\u001B(10U\u001B(s1P\u001B(s12H\u001B(s3BAB\u001B(s0B\u001B)s3B\u001B(5XC\u001B(s1PD\u001B(5XE",
+                filter("\u001B(10U\u001B(s1p12h3BA\u001B(10U\u001B(s1p12.00h3BB\u001B(s0B\u001B)s3B"
+                        + "\u001B(5XC\u001B(5X\u001B(s1PD\u001B(5XE", false));
+    }
+
+    /**
+     * Checks that both font selections are kept after a soft font download or a Font ID change.
+     */
+    public void testSoftFontDownload() throws Exception {
+        final String pcl = "\u001B(5XA\u001B*c5D\u001B)s3WabcB\u001B(5XC\u001B*c6DD\u001B(5XE";
+        assertEquals(pcl, filter(pcl, false));
+    }
+
+    /**
+     * Checks that PCL sequences are split if some of their commands are removed.
+     */
+    public void testSequence() throws Exception {
+        final String pcl = "\u001B(s1p12h3B\u001B*p10x20YA\u001B(s1p10h3B\u001B*p10x30Y";
+
+        assertEquals("\u001B(s1p12h3B\u001B*p10x20YA\u001B(s10H\u001B*p10x30Y", filter(pcl, true));
+        assertEquals("\u001B(s1P\u001B(s12H\u001B(s3B\u001B*p10X\u001B*p20YA\u001B(s10H\u001B*p10X\u001B*p30Y",
+                filter(pcl, false));
+    }
+
+    /**
+     * Checks that page settings are only removed if they do not eject a page and do not reset anything.
+     */
+    public void testPageSettings() throws Exception {
+        // The second page repeats orientation and page size and the number of copies...
+        assertEquals(
+                "\u001BE\u001B&l1o26a2XPage1\fPage2\f",
+                filter("\u001BE\u001B&l1o26a2XPage1\f\u001B&l1o26a2XPage2\f", true));
+
+        // A marked page is ejected by the orientation command, so it is kept...
+        assertEquals(
+                "\u001B&l1OPage1\u001B&l1OPage2\f",
+                filter("\u001B&l1OPage1\u001B&l1OPage2\f", true));
+
+        // The orientation command resets the margins, so it is kept if the margins have been changed...
+        assertEquals(
+                "\u001B&l1O\u001B&l5EPage1\f\u001B&l1OPage2\f",
+                filter("\u001B&l1O\u001B&l5EPage1\f\u001B&l1OPage2\f", true));
+    }
+
+    /**
+     * Checks that nothing is removed after a printer reset, after a macro execution and within a macro definition.
+     */
+    public void testUnknownState() throws Exception {
+        assertEquals(
+                "\u001B*p10XA\u001BE\u001B*p10X\u001B&f3X\u001B*p10X",
+                filter("\u001B*p10XA\u001BE\u001B*p10X\u001B&f3X\u001B*p10X", false));
+
+        final String macro = "\u001B*p10X\u001B&f1y0X\u001B*p10X\u001B*p10X\u001B&f1X";
+        assertEquals(macro, filter(macro, true));
+    }
+}
@@ -0,0 +1,245 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link SoftFontParser}.
+ */
+public final class SoftFontParserTest extends TestCase {
+
+    private final ByteArrayOutputStream pcl = new ByteArrayOutputStream();
+
+    /**
+     * Appends PCL commands (without data) to the data stream.
+     */
+    private void commands(final String commands) {
+        final byte[] bytes = commands.getBytes(StandardCharsets.ISO_8859_1);
+        this.pcl.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends a PCL command with a data section to the data stream.
+     */
+    private void download(final String prefix, final int... data) {
+        this.commands("\u001B" + prefix + data.length + "W");
+        for (final int b : data) {
+            this.pcl.write(b);
+        }
+    }
+
+    /**
+     * Appends the header of a bitmap font.
+     */
+    private void header(final int fontId) {
+        final int[] header = new int[64];
+        header[1] = 64;     // descriptor size
+        header[3] = 1;      // 8-bit font
+        header[7] = 20;     // baseline position
+        header[9] = 16;     // cell width
+        header[11] = 24;    // cell height
+        header[13] = 1;     // proportional
+        header[14] = 277 >> 8;
+        header[15] = 277 & 0xFF;
+        header[17] = 120;   // pitch
+        header[19] = 200;   // height
+        header[24] = 3;     // bold
+        final byte[] name = "CORPORATE".getBytes(StandardCharsets.ISO_8859_1);
+        for (int ix = 0; ix < 16; ++ix) {
+            header[48 + ix] = ix < name.length ? name[ix] : ' ';
+        }
+
+        this.commands("\u001B*c" + fontId + "D");
+        this.download(")s", header);
+    }
+
+    /**
+     * Appends the uncompressed character 'A' (8x2 dots).
+     */
+    private void characterA() {
+        this.commands("\u001B*c65E");
+        this.download("(s", 4, 0, 14, 1, 0, 0, 0, 1, 0, 20, 0, 8, 0, 2, 0, 40, 0xFF, 0x81);
+    }
+
+    /**
+     * Appends the compressed character 'B' (10x3 dots).
+     */
+    private void characterB() {
+        this.commands("\u001B*c66E");
+        this.download("(s", 4, 0, 14, 2, 0, 0, 0xFF, 0xFE, 0, 20, 0, 10, 0, 3, 0, 48, 1, 2, 6, 2, 0, 0, 10);
+    }
+
+    /**
+     * Parses the data stream with a {@link SoftFontParser}.
+     */
+    private SoftFontParser parse(final SoftFontCache cache) throws Exception {
+        final SoftFontParser parser = new SoftFontParser(cache);
+        new PclParser(new ByteArrayInputStream(this.pcl.toByteArray()), parser).parse();
+        this.pcl.reset();
+        return parser;
+    }
+
+    /**
+     * Checks the decoded header and characters.
+     */
+    public void testDecode() throws Exception {
+        this.header(5);
+        this.characterA();
+        this.characterB();
+
+        final SoftFontParser parser = this.parse(new SoftFontCache());
+        assertEquals("[5]", parser.getFontIds().toString());
+        assertNull(parser.getFont(6));
+
+        final SoftFont font = parser.getFont(5);
+        final SoftFontHeader header = font.getHeader();
+        assertEquals(0, header.getHeaderFormat());
+        assertTrue(header.isBitmapFont());
+        assertEquals(1, header.getFontType());
+        assertEquals(20, header.getBaselinePosition());
+        assertEquals(16, header.getCellWidth());
+        assertEquals(24, header.getCellHeight());
+        assertTrue(header.isProportional());
+        assertEquals("8U", header.getSymbolSet());
+        assertEquals(120, header.getPitch());
+        assertEquals(200, header.getHeight());
+        assertEquals(3, header.getStrokeWeight());
+        assertEquals("CORPORATE", header.getFontName());
+        assertEquals(300, header.getXResolution());
+
+        assertEquals(2, font.getCharacterCount());
+        assertNull(font.getCharacter(67));
+
+        final SoftFontCharacter a = font.getCharacter(65);
+        assertTrue(a.isBitmap());
+        assertEquals(1, a.getLeftOffset());
+        assertEquals(20, a.getTopOffset());
+        assertEquals(8, a.getWidth());
+        assertEquals(2, a.getHeight());
+        assertEquals(40, a.getDeltaX());
+        assertTrue(Arrays.equals(new byte[] {(byte) 0xFF, (byte) 0x81}, a.getBitmap()));
+
+        final SoftFontCharacter b = font.getCharacter(66);
+        assertEquals(SoftFontCharacter.CLASS_COMPRESSED_BITMAP, b.getCharacterClass());
+        assertEquals(-2, b.getLeftOffset());
+        assertTrue(Arrays.equals(new byte[] {0x3F, 0x00, 0x3F, 0x00, (byte) 0xFF, (byte) 0xC0}, b.getBitmap()));
+    }
+
+    /**
+     * Checks that a continuation block is appended to the previous character.
+     */
+    public void testContinuation() throws Exception {
+        this.header(1);
+        this.commands("\u001B*c65E");
+        this.download("(s", 4, 0, 14, 1, 0, 0, 0, 0, 0, 0, 0, 16, 0, 2, 0, 0, 0x12, 0x34);
+        this.download("(s", 4, 1, 0x56, 0x78);
+
+        final SoftFontCharacter a = this.parse(new SoftFontCache()).getFont(1).getCharacter(65);
+        assertTrue(Arrays.equals(new byte[] {0x12, 0x34, 0x56, 0x78}, a.getBitmap()));
+    }
+
+    /**
+     * Checks that the same soft font that is downloaded by two jobs (with another font ID and another order of
+     * the characters) is decoded only once.
+     */
+    public void testSharedCache() throws Exception {
+        final SoftFontCache cache = new SoftFontCache();
+
+        this.header(5);
+        this.characterA();
+        this.characterB();
+        final SoftFont first = this.parse(cache).getFont(5);
+
+        this.header(17);
+        this.characterB();
+        this.characterA();
+        final SoftFontParser parser = this.parse(cache);
+        parser.finish();
+        final SoftFont second = parser.getFont(17);
+
+        assertSame(first, second);
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        this.header(5);
+        this.characterA();
+        assertNotSame(first, this.parse(cache).getFont(5));
+        assertEquals(2, cache.size());
+    }
+
+    /**
+     * Checks the "Font Control" command, the "Printer Reset" and characters that are downloaded after the
+     * soft font has been completed.
+     */
+    public void testFontControl() throws Exception {
+        final SoftFontParser parser = new SoftFontParser();
+
+        this.header(1);
+        this.commands("\u001B*c5F");
+        this.header(2);
+        this.characterA();
+        this.header(3);
+        this.characterA();
+        this.commands("\u001B*c2F");
+        new PclParser(new ByteArrayInputStream(this.pcl.toByteArray()), parser).parse();
+        this.pcl.reset();
+
+        assertEquals("[1, 2]", parser.getFontIds().toString());
+        assertTrue(parser.isPermanent(1));
+        assertFalse(parser.isPermanent(2));
+        assertEquals(1, parser.getFont(2).getCharacterCount());
+
+        this.commands("\u001B*c2D");
+        this.characterB();
+        this.commands("\u001B*c65E\u001B*c3F");
+        new PclParser(new ByteArrayInputStream(this.pcl.toByteArray()), parser).parse();
+        this.pcl.reset();
+
+        final SoftFont font = parser.getFont(2);
+        assertEquals(1, font.getCharacterCount());
+        assertEquals(66, font.getCharacters().get(0).getCode());
+        assertNull(font.getCharacter(65));
+
+        this.commands("\u001BE");
+        new PclParser(new ByteArrayInputStream(this.pcl.toByteArray()), parser).parse();
+        assertEquals("[1]", parser.getFontIds().toString());
+    }
+
+    /**
+     * Checks that "Font Control" with value 0 deletes all soft fonts, including the permanent ones.
+     */
+    public void testDeleteAllFonts() throws Exception {
+        final SoftFontParser parser = new SoftFontParser();
+
+        this.header(1);
+        this.commands("\u001B*c5F");
+        this.header(2);
+        this.characterA();
+        this.commands("\u001B*c0F");
+        new PclParser(new ByteArrayInputStream(this.pcl.toByteArray()), parser).parse();
+
+        assertTrue(parser.getFontIds().isEmpty());
+    }
+}
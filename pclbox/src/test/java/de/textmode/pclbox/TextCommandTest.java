@@ -98,4 +98,31 @@ public final class TextCommandTest extends TestCase {
         TEXT_B_AT_1.writeTo(baos2);
         assertTrue(Arrays.equals(TEXT_B_AT_1.toByteArray(), baos2.toByteArray()));
     }
+
+    /**
+     * Checks the method getDecodedText.
+     */
+    public void testGetDecodedText() {
+        final byte[] text = { 'A', (byte) 0xC5, (byte) 0x82, (byte) 0xE9 };
+
+        final TextCommand roman8 = new TextCommand(1, text);
+        assertEquals("8U", roman8.getSymbolSet());
+        assertEquals("A\u00E9\u0082\u00D5", roman8.getDecodedText().toString());
+        assertEquals("A\u00E9\u0082\u00D5@1", roman8.toString());
+
+        final CharSequence pc8 = new TextCommand(1, text, "10U").getDecodedText();
+        assertEquals(4, pc8.length());
+        assertEquals('\u00E9', pc8.charAt(2));
+        assertEquals("\u253C\u00E9", pc8.subSequence(1, 3).toString());
+        assertEquals("A\u00C5\u0082\u00E9", new TextCommand(1, text, "999Q").toDisplayString());
+        assertEquals("A\u00C5\u201A\u00E9", new TextCommand(1, text, "19U").toDisplayString());
+    }
+
+    /**
+     * Checks that text commands with different symbol sets are not equal.
+     */
+    public void testEqualsWithSymbolSet() {
+        assertTrue(TEXT_A_AT_1.equals(new TextCommand(1, new byte[] { 65 }, "8U")));
+        assertFalse(TEXT_A_AT_1.equals(new TextCommand(1, new byte[] { 65 }, "0N")));
+    }
 }
@@ -0,0 +1,107 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link TextExtractor} and {@link TextRun}.
+ */
+public final class TextExtractorTest extends TestCase {
+
+    /**
+     * Parses the given PCL data stream and returns the extracted text runs as strings.
+     */
+    private static List<String> extract(final String pcl) throws Exception {
+        final byte[] data = pcl.getBytes(StandardCharsets.ISO_8859_1);
+        final List<String> runs = new ArrayList<>();
+        final TextExtractor extractor = new TextExtractor(run -> runs.add(
+                run.getPageNumber() + ":" + run.getX() + "," + run.getY() + ":" + run.getSymbolSet() + ":" + run));
+
+        try (final PclParser parser = new PclParser(new ByteArrayInputStream(data), extractor)) {
+            parser.parse();
+        }
+
+        return runs;
+    }
+
+    /**
+     * Checks the pages and positions of the extracted text.
+     */
+    public void testPositions() throws Exception {
+        final List<String> runs = extract(
+                "\u001BE\u001B*p300x600YHello\r\nWorld\f\u001B&a2R\u001B&a10CPage 2\u001B&l0HPage 3");
+
+        assertEquals(4, runs.size());
+        assertEquals("1:720.0,1440.0:8U:Hello", runs.get(0));
+        assertEquals("1:0.0,1560.0:8U:World", runs.get(1));
+        assertEquals("2:720.0,690.0:8U:Page 2", runs.get(2));
+        assertEquals("3:0.0,450.0:8U:Page 3", runs.get(3));
+    }
+
+    /**
+     * Checks that the text is decoded with the symbol set of the active font.
+     */
+    public void testSymbolSets() throws Exception {
+        final List<String> runs = extract(
+                "\u001BE\u00C5t\u00C5 \u001B(0N\u00E9t\u00E9\u001B)8U\u000E\u00C5t\u00C5\u001B)0N\u00C5");
+
+        assertEquals(4, runs.size());
+        assertTrue(runs.get(0).endsWith(":8U:\u00E9t\u00E9 "));
+        assertTrue(runs.get(1).endsWith(":0N:\u00E9t\u00E9"));
+        assertTrue(runs.get(2).endsWith(":8U:\u00E9t\u00E9"));
+        assertTrue(runs.get(3).endsWith(":0N:\u00C5"));
+    }
+
+    /**
+     * Checks that text within a macro definition is not extracted.
+     */
+    public void testMacroDefinition() throws Exception {
+        final List<String> runs = extract("\u001B&f1y0XMacro\u001B&f1XText");
+        assertEquals(1, runs.size());
+        assertTrue(runs.get(0).endsWith(":Text"));
+    }
+
+    /**
+     * Checks the {@link CharSequence} implementation of the {@link TextRun}.
+     */
+    public void testCharSequence() throws Exception {
+        final TextRun run = new TextRun();
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 300; ++i) {
+            sb.append((char) ('A' + i % 26));
+        }
+
+        run.decode(sb.toString().getBytes(StandardCharsets.ISO_8859_1), SymbolSets.getDecodeTable("0N"));
+        assertEquals(300, run.length());
+        assertEquals('D', run.charAt(29));
+        assertEquals("ABC", run.subSequence(26, 29));
+        assertEquals(sb.toString(), run.toString());
+
+        try {
+            run.charAt(300);
+            fail("IndexOutOfBoundsException expected");
+        } catch (final IndexOutOfBoundsException e) {
+            assertEquals("Invalid index 300", e.getMessage());
+        }
+    }
+}
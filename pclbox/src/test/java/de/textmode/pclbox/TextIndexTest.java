@@ -0,0 +1,192 @@
+package de.textmode.pclbox;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link TextIndex}, {@link TextIndexWriter} and {@link TextIndexSegment}.
+ */
+public final class TextIndexTest extends TestCase {
+
+    private File directory;
+    private File firstFile;
+    private File secondFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.directory = Files.createTempDirectory("pclbox").toFile();
+        this.firstFile = new File(this.directory, "first.pcl");
+        this.secondFile = new File(this.directory, "second.pcl");
+
+        // "Acc" and "ount" are two text runs that continue each other...
+        write(this.firstFile, "\u001BEAcc\u001B(s3Bount: 4711-0815\f\u001B*p300Y\u001B*p0XJane\u001B*p600X Doe\f");
+        write(this.secondFile, "\u001B%-12345X@PJL ENTER LANGUAGE=PCL\r\n\u001BEjane SMITH\f\u001BE");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        final File index = new File(this.directory, "index");
+        final File[] segments = index.listFiles();
+        if (segments != null) {
+            for (final File segment : segments) {
+                Files.delete(segment.toPath());
+            }
+        }
+        Files.deleteIfExists(index.toPath());
+        Files.deleteIfExists(this.firstFile.toPath());
+        Files.deleteIfExists(this.secondFile.toPath());
+        Files.deleteIfExists(this.directory.toPath());
+    }
+
+    private static void write(final File file, final String pcl) throws IOException {
+        Files.write(file.toPath(), pcl.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private File getIndexDirectory() {
+        return new File(this.directory, "index");
+    }
+
+    /**
+     * Checks the search for one or more terms.
+     */
+    public void testSearch() throws Exception {
+        final TextIndex index = TextIndex.add(this.getIndexDirectory(), Arrays.asList(this.firstFile, this.secondFile));
+        assertEquals(1, index.getSegmentCount());
+        assertEquals(2, index.getJobCount());
+
+        final String first = this.firstFile.getPath();
+        final String second = this.secondFile.getPath();
+
+        assertEquals(Arrays.asList(new TextIndexHit(first, 1)), index.search("account"));
+        assertEquals(Arrays.asList(new TextIndexHit(first, 1)), index.search("4711-0815"));
+        assertEquals(Arrays.asList(new TextIndexHit(first, 2), new TextIndexHit(second, 1)), index.search("JANE"));
+        assertEquals(Arrays.asList(new TextIndexHit(first, 2)), index.search("Doe, Jane"));
+        assertEquals(Arrays.asList(new TextIndexHit(second, 1)), index.search("jane smith"));
+        assertTrue(index.search("acc").isEmpty());
+        assertTrue(index.search("account jane").isEmpty());
+        assertTrue(index.search(" - ").isEmpty());
+    }
+
+    /**
+     * Checks that new jobs are added as new segments and indexed jobs are skipped.
+     */
+    public void testIncrementalAdd() throws Exception {
+        final File dir = this.getIndexDirectory();
+        assertEquals(0, TextIndex.open(dir).getSegmentCount());
+
+        TextIndex index = TextIndex.add(dir, Arrays.asList(this.firstFile));
+        assertEquals(1, index.getSegmentCount());
+        assertTrue(index.contains(this.firstFile));
+        assertFalse(index.contains(this.secondFile));
+
+        index = TextIndex.add(dir, Arrays.asList(this.firstFile, this.secondFile));
+        assertEquals(2, index.getSegmentCount());
+        assertEquals(2, index.getJobCount());
+
+        index = TextIndex.add(dir, Arrays.asList(this.secondFile));
+        assertEquals(2, index.getSegmentCount());
+
+        final TextIndex reopened = TextIndex.open(dir);
+        assertEquals(2, reopened.getSegmentCount());
+        assertEquals(index.search("jane"), reopened.search("jane"));
+        assertEquals(2, reopened.search("jane").size());
+
+        // A modified file is indexed again...
+        write(this.firstFile, "\u001BEChanged\f");
+        assertTrue(this.firstFile.setLastModified(this.firstFile.lastModified() + 2000));
+        assertFalse(reopened.contains(this.firstFile));
+        assertEquals(3, TextIndex.add(dir, Arrays.asList(this.firstFile)).getSegmentCount());
+    }
+
+    /**
+     * Checks that the pages of a modified file are only found in the version that has been indexed last.
+     */
+    public void testSupersededJob() throws Exception {
+        final File dir = this.getIndexDirectory();
+        TextIndex.add(dir, Arrays.asList(this.firstFile, this.secondFile));
+
+        write(this.firstFile, "\u001BEChanged\f");
+        assertTrue(this.firstFile.setLastModified(this.firstFile.lastModified() + 2000));
+
+        final TextIndex index = TextIndex.add(dir, Arrays.asList(this.firstFile, this.secondFile));
+        assertEquals(2, index.getSegmentCount());
+        assertEquals(2, index.getJobCount());
+        assertTrue(index.contains(this.firstFile));
+
+        final String first = this.firstFile.getPath();
+        final String second = this.secondFile.getPath();
+        assertEquals(Arrays.asList(new TextIndexHit(second, 1)), index.search("jane"));
+        assertTrue(index.search("account").isEmpty());
+        assertEquals(Arrays.asList(new TextIndexHit(first, 1)), index.search("changed"));
+
+        final TextIndex reopened = TextIndex.open(dir);
+        assertEquals(2, reopened.getJobCount());
+        assertEquals(index.search("jane"), reopened.search("jane"));
+    }
+
+    /**
+     * Checks postings whose page numbers do not fit into one byte.
+     */
+    public void testManyPages() throws Exception {
+        final StringBuilder sb = new StringBuilder("\u001BE");
+        for (int page = 1; page <= 300; ++page) {
+            sb.append("Common page").append(page % 7 == 0 ? " seventh" : "").append('\f');
+        }
+        write(this.firstFile, sb.toString());
+
+        final TextIndex index = TextIndex.add(this.getIndexDirectory(), Arrays.asList(this.firstFile));
+        assertEquals(300, index.search("common").size());
+
+        final List<TextIndexHit> hits = index.search("seventh page");
+        assertEquals(42, hits.size());
+        assertEquals(7, hits.get(0).getPageNumber());
+        assertEquals(294, hits.get(41).getPageNumber());
+    }
+
+    /**
+     * Checks that a corrupt segment file is rejected.
+     */
+    public void testCorruptSegment() throws Exception {
+        final File dir = this.getIndexDirectory();
+        TextIndex.add(dir, Arrays.asList(this.firstFile));
+
+        final File segment = dir.listFiles()[0];
+        Files.write(segment.toPath(), "PCLT but not a segment".getBytes(StandardCharsets.ISO_8859_1));
+        try {
+            TextIndex.open(dir);
+            fail("IOException expected");
+        } catch (final IOException e) {
+            assertTrue(e.getMessage().endsWith("is corrupt"));
+        }
+    }
+
+    /**
+     * Checks the splitting of text into terms.
+     */
+    public void testToTerms() {
+        assertEquals(Arrays.asList("m\u00FCller", "gmbh", "co", "kg", "12"),
+                TextIndexWriter.toTerms("M\u00FCller GmbH & Co. KG, 12"));
+    }
+}
@@ -0,0 +1,149 @@
+package de.textmode.pcldump;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import de.textmode.pclbox.CombinedPclCommand;
+import de.textmode.pclbox.ControlCharacterCommand;
+import de.textmode.pclbox.ForeignLanguageCommand;
+import de.textmode.pclbox.HpglCommand;
+import de.textmode.pclbox.ParameterizedPclCommand;
+import de.textmode.pclbox.PjlCommand;
+import de.textmode.pclbox.PrinterCommand;
+import de.textmode.pclbox.PrinterCommandHandler;
+import de.textmode.pclbox.PrinterCommandVisitor;
+import de.textmode.pclbox.TextCommand;
+import de.textmode.pclbox.TwoBytePclCommand;
+
+/**
+ * The {@link CommandDumper} writes one line for every {@link PrinterCommand} to a {@link Writer}. The line
+ * contains the offset of the command, the command itself and the textual description of the command:
+ * <pre>
+ *          0  &lt;esc&gt;E                 Printer Reset
+ *          2  &lt;esc&gt;&amp;l1O              Orientation
+ *          7  "Hello"               Text
+ *         12  &lt;0x0C&gt;                Form Feed
+ * </pre>
+ *
+ * <p>The {@link CommandDumper} does not flush the {@link Writer}, so a large buffer should be used.
+ */
+final class CommandDumper implements PrinterCommandHandler, PrinterCommandVisitor {
+
+    private static final int OFFSET_WIDTH = 11;
+    private static final int COMMAND_WIDTH = 20;
+    private static final char[] SPACES = new char[Math.max(OFFSET_WIDTH, COMMAND_WIDTH)];
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    private final Writer out;
+
+    /**
+     * Constructor of the {@link CommandDumper}.
+     *
+     * @param out   the {@link Writer} the lines are written to.
+     */
+    CommandDumper(final Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    public void handlePrinterCommand(final PrinterCommand command) throws IOException {
+        final String offset = Long.toString(command.getOffset());
+        this.pad(OFFSET_WIDTH - offset.length());
+        this.out.write(offset);
+        this.out.write("  ");
+
+        command.accept(this);
+
+        this.out.write("  ");
+        this.out.write(command.getTextualDescription());
+        this.out.write('\n');
+    }
+
+    @Override
+    public void handle(final TextCommand command) throws IOException {
+        final CharSequence text = command.getDecodedText();
+        this.out.write('"');
+        this.out.append(text);
+        this.out.write('"');
+        this.pad(COMMAND_WIDTH - text.length() - 2);
+    }
+
+    @Override
+    public void handle(final ControlCharacterCommand command) throws IOException {
+        final int controlCharacter = command.getControlCharacter() & 0xFF;
+        this.out.write("<0x");
+        this.out.write(HEX_DIGITS[controlCharacter >> 4]);
+        this.out.write(HEX_DIGITS[controlCharacter & 0x0F]);
+        this.out.write('>');
+        this.pad(COMMAND_WIDTH - 6);
+    }
+
+    @Override
+    public void handle(final TwoBytePclCommand command) throws IOException {
+        this.writeEscapeCommand(command.toDisplayString());
+    }
+
+    @Override
+    public void handle(final ParameterizedPclCommand command) throws IOException {
+        this.writeEscapeCommand(command.toDisplayString());
+    }
+
+    @Override
+    public void handle(final CombinedPclCommand command) throws IOException {
+        this.writeEscapeCommand(command.toDisplayString());
+    }
+
+    @Override
+    public void handle(final PjlCommand command) throws IOException {
+        this.writeCommand(command.toDisplayString());
+    }
+
+    @Override
+    public void handle(final HpglCommand command) throws IOException {
+        this.writeCommand(command.toDisplayString());
+    }
+
+    @Override
+    public void handle(final ForeignLanguageCommand command) throws IOException {
+        this.writeCommand(command.toDisplayString());
+    }
+
+    private void writeEscapeCommand(final String command) throws IOException {
+        this.out.write("<esc>");
+        this.out.write(command);
+        this.pad(COMMAND_WIDTH - command.length() - 5);
+    }
+
+    private void writeCommand(final String command) throws IOException {
+        this.out.write(command);
+        this.pad(COMMAND_WIDTH - command.length());
+    }
+
+    /**
+     * Writes the given number of spaces (nothing if the number is negative).
+     */
+    private void pad(final int count) throws IOException {
+        this.out.write(SPACES, 0, Math.max(count, 0));
+    }
+}
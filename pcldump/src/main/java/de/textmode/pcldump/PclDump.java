@@ -0,0 +1,278 @@
+package de.textmode.pcldump;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.textmode.pclbox.DataSectionFilter;
+import de.textmode.pclbox.PclException;
+import de.textmode.pclbox.PclParser;
+
+/**
+ * The {@link PclDump} writes all commands of one or more PCL data streams, together with their offsets and
+ * their textual descriptions, in a human readable form (see {@link CommandDumper}).
+ *
+ * <p>The output is written through a large buffer. Data sections (raster data, soft fonts and so on) are
+ * not dumped, so they are skipped without being read. If more than one file is dumped, the files are
+ * dumped in parallel and the output of every file is preceded by a header line with the name of the file.
+ * The output of the files is written in the order the files were given, and the output of one file is never
+ * mixed with the output of another file.
+ */
+public final class PclDump {
+
+    static final int BUFFER_SIZE = 1024 * 1024;
+
+    private static final DataSectionFilter SKIP_ALL_DATA_SECTIONS = (p, g, t) -> false;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private boolean combineSequences;
+
+    /**
+     * Sets the number of threads that are used to dump multiple files. By default, one thread per available
+     * processor is used.
+     *
+     * @param threadCount   the number of threads.
+     */
+    public void setThreadCount(final int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The number of threads must be at least 1");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Sets if PCL sequences like "<code>&lt;esc&gt;&amp;l1o2a0E</code>" shall be dumped as one line (see
+     * {@link PclParser#setCombineSequences(boolean)}). By default, every command of a sequence is dumped
+     * on its own line.
+     *
+     * @param combineSequences   true if PCL sequences shall be dumped as one line.
+     */
+    public void setCombineSequences(final boolean combineSequences) {
+        this.combineSequences = combineSequences;
+    }
+
+    /**
+     * Dumps the given file to the given {@link Writer}. The {@link Writer} is not flushed.
+     *
+     * @param file   the file that contains the PCL data stream.
+     * @param out   the {@link Writer} the dump is written to.
+     *
+     * @throws IOException if an I/O error occurs.
+     * @throws PclException if a PCL, PJL or HP/GL2 command if corrupt.
+     */
+    public void dump(final File file, final Writer out) throws IOException, PclException {
+        try (PclParser parser = new PclParser(file, new CommandDumper(out))) {
+            parser.setCombineSequences(this.combineSequences);
+            parser.setDataSectionFilter(SKIP_ALL_DATA_SECTIONS);
+            parser.parse();
+        }
+    }
+
+    /**
+     * Dumps the given files to the given {@link OutputStream} (encoded with UTF-8). If more than one file is
+     * given, the files are dumped in parallel to temporary files which are then copied to the
+     * {@link OutputStream} in the given order. Files that cannot be dumped are reported to the given
+     * {@link PrintStream} and do not stop the dump of the other files.
+     *
+     * @param files   the files to be dumped.
+     * @param out   the {@link OutputStream} the dump is written to.
+     * @param err   the {@link PrintStream} errors are reported to.
+     *
+     * @return the number of files that could not be dumped.
+     *
+     * @throws IOException if an I/O error occurs while writing the dump.
+     * @throws InterruptedException if the current thread has been interrupted while waiting for a dump.
+     */
+    public int dumpAll(final List<File> files, final OutputStream out, final PrintStream err)
+            throws IOException, InterruptedException {
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE);
+        if (files.size() == 1) {
+            final int failed = this.dumpAndReportErrors(files.get(0), writer, err);
+            writer.flush();
+            return failed;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threadCount, files.size()));
+        final List<Future<File>> dumps = new ArrayList<>(files.size());
+        int failed = 0;
+        int next = 0;
+
+        try {
+            for (final File file : files) {
+                dumps.add(executor.submit(() -> this.dumpToTemporaryFile(file)));
+            }
+
+            for (; next < files.size(); ++next) {
+                final File file = files.get(next);
+                writer.write("==> ");
+                writer.write(file.getPath());
+                writer.write(" <==\n");
+
+                final File dump;
+                try {
+                    dump = dumps.get(next).get();
+                } catch (final ExecutionException e) {
+                    writer.flush();
+                    reportError(file, e.getCause(), err);
+                    ++failed;
+                    continue;
+                }
+
+                try {
+                    writer.flush();
+                    Files.copy(dump.toPath(), out);
+                } finally {
+                    Files.delete(dump.toPath());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+
+            // Remove the temporary files that will not be copied anymore because writing the dump failed...
+            for (int ix = next; ix < dumps.size(); ++ix) {
+                deleteTemporaryFile(dumps.get(ix));
+            }
+        }
+
+        writer.flush();
+        return failed;
+    }
+
+    /**
+     * Dumps the given file to a temporary file. If the dump fails, the temporary file is deleted.
+     */
+    private File dumpToTemporaryFile(final File file) throws IOException, PclException {
+        final File dump = File.createTempFile("pcldump", ".txt");
+        boolean success = false;
+
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(dump), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            this.dump(file, writer);
+            success = true;
+        } finally {
+            if (!success) {
+                Files.delete(dump.toPath());
+            }
+        }
+
+        return dump;
+    }
+
+    /**
+     * Deletes the temporary file of a dump that has been completed successfully.
+     */
+    private static void deleteTemporaryFile(final Future<File> dump) {
+        if (!dump.isDone()) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(dump.get().toPath());
+        } catch (final ExecutionException | InterruptedException | IOException e) {
+            // The dump failed (so there is no temporary file) or the file cannot be deleted...
+        }
+    }
+
+    /**
+     * Dumps the given file and reports all errors to the given {@link PrintStream}.
+     */
+    private int dumpAndReportErrors(final File file, final Writer out, final PrintStream err) throws IOException {
+        try {
+            this.dump(file, out);
+            return 0;
+        } catch (final PclException | IOException e) {
+            out.flush();
+            reportError(file, e, err);
+            return 1;
+        }
+    }
+
+    private static void reportError(final File file, final Throwable error, final PrintStream err) {
+        err.println(file.getPath() + ": " + error.getMessage());
+    }
+
+    /**
+     * Dumps PCL files from the command line. The exit code is 0 if all files have been dumped and 2 if at
+     * least one file could not be dumped.
+     * <pre>
+     * PclDump [-c] [-t threads] file ...
+     *
+     *   -c   dump PCL sequences as one line
+     *   -t   number of threads (default: number of processors)
+     * </pre>
+     *
+     * @param args   the command line arguments.
+     *
+     * @throws Exception if the dump has been interrupted.
+     */
+    public static void main(final String[] args) throws Exception {
+        System.exit(run(args, new FileOutputStream(FileDescriptor.out), System.err));
+    }
+
+    /**
+     * Runs the command line version of the {@link PclDump} and returns the exit code.
+     */
+    static int run(final String[] args, final OutputStream out, final PrintStream err)
+            throws IOException, InterruptedException {
+
+        final PclDump dump = new PclDump();
+        final List<File> files = new ArrayList<>();
+
+        try {
+            for (int ix = 0; ix < args.length; ++ix) {
+                final String arg = args[ix];
+                if (arg.equals("-c")) {
+                    dump.setCombineSequences(true);
+                } else if (arg.equals("-t") && ix + 1 < args.length) {
+                    dump.setThreadCount(Integer.parseInt(args[++ix]));
+                } else if (arg.startsWith("-")) {
+                    throw new IllegalArgumentException("Invalid option " + arg);
+                } else {
+                    files.add(new File(arg));
+                }
+            }
+
+            if (files.isEmpty()) {
+                throw new IllegalArgumentException("At least one file is required");
+            }
+        } catch (final IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("Usage: PclDump [-c] [-t threads] file ...");
+            return 2;
+        }
+
+        return dump.dumpAll(files, out, err) == 0 ? 0 : 2;
+    }
+}
@@ -0,0 +1,145 @@
+package de.textmode.pcldump;
+
+/*
+ * Copyright 2017 Michael Knigge
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+/**
+ * JUnit-Tests for {@link PclDump} and {@link CommandDumper}.
+ */
+public final class PclDumpTest extends TestCase {
+
+    private File firstFile;
+    private File secondFile;
+    private File corruptFile;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.firstFile = createFile("\u001BE\u001B&l1o4H\u001B*b3WABCHello\r\f");
+        this.secondFile = createFile("\u001B%-12345X@PJL ENTER LANGUAGE=PCL\n\u001B%1BIN;SP1;\u001B%1A");
+        this.corruptFile = createFile("\u001BE\u001B\u0001");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(this.firstFile.toPath());
+        Files.deleteIfExists(this.secondFile.toPath());
+        Files.deleteIfExists(this.corruptFile.toPath());
+    }
+
+    private static File createFile(final String pcl) throws IOException {
+        final File file = File.createTempFile("pcldump", ".pcl");
+        Files.write(file.toPath(), pcl.getBytes(StandardCharsets.ISO_8859_1));
+        return file;
+    }
+
+    private static String line(final long offset, final String command, final String description) {
+        return String.format("%11d  %-20s  %s%n", offset, command, description).replace(System.lineSeparator(), "\n");
+    }
+
+    /**
+     * Checks the dump of a single file.
+     */
+    public void testDump() throws Exception {
+        final StringWriter out = new StringWriter();
+        new PclDump().dump(this.firstFile, out);
+
+        final String expected = line(0, "<esc>E", "Printer Reset")
+                + line(2, "<esc>&l1O", "Page Orientation")
+                + line(7, "<esc>&l4H", "Paper Source")
+                + line(9, "<esc>*b3W", "Transfer Raster Data By Block")
+                + line(17, "\"Hello\"", "Printable text")
+                + line(22, "<0x0D>", "Carriage Return")
+                + line(23, "<0x0C>", "Form Feed");
+
+        assertEquals(expected, out.toString());
+    }
+
+    /**
+     * Checks the dump of combined PCL sequences.
+     */
+    public void testDumpCombinedSequences() throws Exception {
+        final PclDump dump = new PclDump();
+        dump.setCombineSequences(true);
+
+        final StringWriter out = new StringWriter();
+        dump.dump(this.firstFile, out);
+
+        assertTrue(out.toString().contains(line(2, "<esc>&l1o4H", "Page Orientation, Paper Source")));
+    }
+
+    /**
+     * Checks the parallel dump of multiple files. The output must be in the given order.
+     */
+    public void testDumpAll() throws Exception {
+        final ByteArrayOutputStream single = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        final PclDump dump = new PclDump();
+        assertEquals(0, dump.dumpAll(Arrays.asList(this.secondFile), single, new PrintStream(err, true)));
+
+        final String second = single.toString("UTF-8");
+        assertEquals(line(0, "<esc>%-12345X", "Universal Exit Language")
+                + line(9, "@PJL ENTER LANGUAGE=PCL", "PJL Command")
+                + line(33, "<esc>%1B", "Enter HP-GL/2 Mode")
+                + line(37, "IN", "Initialize")
+                + line(40, "SP1", "Select Pen")
+                + line(44, "<esc>%1A", "Enter PCL Mode"), second);
+
+        final StringWriter first = new StringWriter();
+        dump.dump(this.firstFile, first);
+
+        final ByteArrayOutputStream all = new ByteArrayOutputStream();
+        dump.setThreadCount(3);
+        assertEquals(1, dump.dumpAll(
+                Arrays.asList(this.firstFile, this.corruptFile, this.secondFile),
+                all,
+                new PrintStream(err, true)));
+
+        assertEquals("==> " + this.firstFile.getPath() + " <==\n"
+                + first
+                + "==> " + this.corruptFile.getPath() + " <==\n"
+                + "==> " + this.secondFile.getPath() + " <==\n"
+                + second, all.toString("UTF-8"));
+
+        assertTrue(err.toString("UTF-8").startsWith(this.corruptFile.getPath() + ": "));
+    }
+
+    /**
+     * Checks the command line interface.
+     */
+    public void testRun() throws Exception {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        final String[] args = {"-c", "-t", "2", this.firstFile.getPath()};
+        assertEquals(0, PclDump.run(args, out, new PrintStream(err, true)));
+        assertTrue(out.toString("UTF-8").startsWith(line(0, "<esc>E", "Printer Reset")));
+
+        assertEquals(2, PclDump.run(new String[] {this.corruptFile.getPath()}, out, new PrintStream(err, true)));
+        assertEquals(2, PclDump.run(new String[] {"-x"}, out, new PrintStream(err, true)));
+        assertTrue(err.toString("UTF-8").contains("Usage"));
+    }
+}